@@ -0,0 +1,110 @@
+/*
+ * Copyright (c) 2016 The Ontario Institute for Cancer Research. All rights reserved.                             
+ *                                                                                                               
+ * This program and the accompanying materials are made available under the terms of the GNU Public License v3.0.
+ * You should have received a copy of the GNU General Public License along with                                  
+ * this program. If not, see <http://www.gnu.org/licenses/>.                                                     
+ *                                                                                                               
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY                           
+ * EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES                          
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT                           
+ * SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,                                
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED                          
+ * TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS;                               
+ * OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER                              
+ * IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN                         
+ * ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package bio.overture.score.benchmark;
+
+import com.google.common.hash.Hashing;
+import com.google.common.hash.HashingInputStream;
+import com.google.common.hash.HashingOutputStream;
+import com.google.common.io.ByteStreams;
+import lombok.val;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayInputStream;
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * MD5 of whole parts as computed on the data path: through the Guava hashing streams that wrap every part transfer,
+ * and through a plain {@link MessageDigest} over a direct buffer as a baseline.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class HashingBenchmark {
+
+  private static final int BUFFER_SIZE = 64 * 1024;
+
+  @Param({"1048576", "16777216", "67108864"})
+  private int partSize;
+  @Param({"1", "4"})
+  private int threads;
+
+  private byte[] data;
+  private ByteBuffer direct;
+  private Workers workers;
+
+  @Setup
+  public void setUp() {
+    data = new byte[partSize];
+    new Random(0).nextBytes(data);
+    direct = ByteBuffer.allocateDirect(partSize);
+    direct.put(data).flip();
+    workers = new Workers(threads);
+  }
+
+  @TearDown
+  public void tearDown() {
+    workers.close();
+  }
+
+  @Benchmark
+  public void hashingOutputStream() throws Exception {
+    workers.run(index -> {
+      val hos = new HashingOutputStream(Hashing.md5(), ByteStreams.nullOutputStream());
+      for (int offset = 0; offset < data.length; offset += BUFFER_SIZE) {
+        hos.write(data, offset, Math.min(BUFFER_SIZE, data.length - offset));
+      }
+      hos.hash();
+    });
+  }
+
+  @Benchmark
+  public void hashingInputStream() throws Exception {
+    workers.run(index -> {
+      val his = new HashingInputStream(Hashing.md5(), new ByteArrayInputStream(data));
+      ByteStreams.copy(his, ByteStreams.nullOutputStream());
+      his.hash();
+    });
+  }
+
+  @Benchmark
+  public void messageDigest() throws Exception {
+    workers.run(index -> {
+      val md = MessageDigest.getInstance("MD5");
+      md.update(direct.duplicate());
+      md.digest();
+    });
+  }
+
+}
@@ -0,0 +1,74 @@
+/*
+ * Copyright (c) 2016 The Ontario Institute for Cancer Research. All rights reserved.                             
+ *                                                                                                               
+ * This program and the accompanying materials are made available under the terms of the GNU Public License v3.0.
+ * You should have received a copy of the GNU General Public License along with                                  
+ * this program. If not, see <http://www.gnu.org/licenses/>.                                                     
+ *                                                                                                               
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY                           
+ * EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES                          
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT                           
+ * SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,                                
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED                          
+ * TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS;                               
+ * OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER                              
+ * IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN                         
+ * ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package bio.overture.score.benchmark;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import lombok.val;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Runs one task per part on {@code threads} threads and waits for all of them, the way the parallel transports keep
+ * several parts in flight. With a single thread the task runs on the benchmark thread itself.
+ */
+public class Workers implements Closeable {
+
+  private final int threads;
+  private final ExecutorService executor;
+
+  public interface Task {
+
+    void run(int index) throws Exception;
+
+  }
+
+  public Workers(int threads) {
+    this.threads = threads;
+    this.executor = Executors.newFixedThreadPool(threads,
+        new ThreadFactoryBuilder().setNameFormat("benchmark-worker-%s").setDaemon(true).build());
+  }
+
+  public void run(Task task) throws Exception {
+    if (threads == 1) {
+      task.run(0);
+      return;
+    }
+
+    val results = new ArrayList<Future<?>>();
+    for (int i = 0; i < threads; i++) {
+      final int index = i;
+      results.add(executor.submit(() -> {
+        task.run(index);
+        return null;
+      }));
+    }
+    for (val result : results) {
+      result.get();
+    }
+  }
+
+  @Override
+  public void close() {
+    executor.shutdownNow();
+  }
+
+}
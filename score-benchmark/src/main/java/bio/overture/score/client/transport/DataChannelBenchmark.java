@@ -0,0 +1,167 @@
+/*
+ * Copyright (c) 2016 The Ontario Institute for Cancer Research. All rights reserved.                             
+ *                                                                                                               
+ * This program and the accompanying materials are made available under the terms of the GNU Public License v3.0.
+ * You should have received a copy of the GNU General Public License along with                                  
+ * this program. If not, see <http://www.gnu.org/licenses/>.                                                     
+ *                                                                                                               
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY                           
+ * EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES                          
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT                           
+ * SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,                                
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED                          
+ * TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS;                               
+ * OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER                              
+ * IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN                         
+ * ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package bio.overture.score.client.transport;
+
+import bio.overture.score.benchmark.Workers;
+import bio.overture.score.client.cli.Terminal;
+import bio.overture.score.client.progress.Progress;
+import bio.overture.score.client.progress.ProgressDataChannel;
+import bio.overture.score.core.model.DataChannel;
+import com.google.common.io.ByteStreams;
+import lombok.val;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import static java.nio.file.StandardOpenOption.READ;
+import static java.nio.file.StandardOpenOption.WRITE;
+
+/**
+ * Throughput of the file backed {@link DataChannel} implementations. Every operation moves {@code threads} parts of
+ * {@code partSize} bytes concurrently, either out of a local file into a discarding stream ({@link #writeTo()}, as in
+ * an upload) or from an in-memory stream into a local file ({@link #readFrom()}, as in a download). With
+ * {@code progress} set the channels are wrapped the way every transport wraps them.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+// MemoryMappedDataChannel unmaps its buffer through the JDK internal cleaner
+@Fork(value = 1, jvmArgsAppend = "--add-exports=java.base/jdk.internal.ref=ALL-UNNAMED")
+public class DataChannelBenchmark {
+
+  @Param({"file", "mapped", "positional", "pooled"})
+  private String channel;
+  @Param({"1048576", "16777216", "67108864"})
+  private int partSize;
+  @Param({"1", "4"})
+  private int threads;
+  @Param({"false", "true"})
+  private boolean progress;
+
+  private byte[] data;
+  private File objectFile;
+  private File[] partFiles;
+  private DirectBufferPool pool;
+  private Progress progressBar;
+  private Workers workers;
+
+  @Setup
+  public void setUp() throws IOException {
+    data = new byte[partSize];
+    new Random(0).nextBytes(data);
+
+    // One region per thread in a shared object file, and one part file per thread for the part file channel
+    objectFile = File.createTempFile("channel-object", ".bin");
+    partFiles = new File[threads];
+    try (RandomAccessFile raf = new RandomAccessFile(objectFile, "rw")) {
+      for (int i = 0; i < threads; i++) {
+        raf.write(data);
+        partFiles[i] = File.createTempFile("channel-part", ".bin");
+        Files.write(partFiles[i].toPath(), data);
+      }
+    }
+
+    pool = new DirectBufferPool(partSize, threads);
+    progressBar = new Progress(new Terminal(false, true), true, 1, 0);
+    workers = new Workers(threads);
+  }
+
+  @TearDown
+  public void tearDown() throws IOException {
+    workers.close();
+    Files.delete(objectFile.toPath());
+    for (val partFile : partFiles) {
+      Files.delete(partFile.toPath());
+    }
+  }
+
+  @Benchmark
+  public void writeTo() throws Exception {
+    workers.run(index -> transfer(index, true));
+  }
+
+  @Benchmark
+  public void readFrom() throws Exception {
+    workers.run(index -> transfer(index, false));
+  }
+
+  private void transfer(int index, boolean write) throws Exception {
+    val position = (long) index * partSize;
+    ByteBuffer buffer = null;
+    DataChannel dataChannel;
+    switch (channel) {
+    case "file":
+      dataChannel = new FileDataChannel(partFiles[index], 0, partSize, null);
+      break;
+    case "mapped":
+      try (FileChannel fileChannel = FileChannel.open(objectFile.toPath(), READ, WRITE)) {
+        val mode = write ? FileChannel.MapMode.READ_ONLY : FileChannel.MapMode.READ_WRITE;
+        dataChannel = new MemoryMappedDataChannel(fileChannel.map(mode, position, partSize), position, partSize, null);
+      }
+      break;
+    case "positional":
+      dataChannel = new PositionalFileDataChannel(objectFile, position, partSize, null);
+      break;
+    case "pooled":
+      buffer = pool.acquire();
+      dataChannel = new PooledDataChannel(buffer, objectFile, position, partSize);
+      break;
+    default:
+      throw new IllegalArgumentException("Unknown channel: " + channel);
+    }
+
+    if (progress) {
+      dataChannel = new ProgressDataChannel(dataChannel, progressBar);
+    }
+
+    try {
+      if (write) {
+        dataChannel.writeTo(ByteStreams.nullOutputStream());
+      } else {
+        dataChannel.readFrom(new ByteArrayInputStream(data));
+      }
+      dataChannel.commitToDisk();
+    } finally {
+      if (buffer != null) {
+        pool.release(buffer);
+      }
+    }
+  }
+
+}
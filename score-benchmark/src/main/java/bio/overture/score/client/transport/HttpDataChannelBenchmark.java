@@ -0,0 +1,184 @@
+/*
+ * Copyright (c) 2016 The Ontario Institute for Cancer Research. All rights reserved.                             
+ *                                                                                                               
+ * This program and the accompanying materials are made available under the terms of the GNU Public License v3.0.
+ * You should have received a copy of the GNU General Public License along with                                  
+ * this program. If not, see <http://www.gnu.org/licenses/>.                                                     
+ *                                                                                                               
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY                           
+ * EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES                          
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT                           
+ * SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,                                
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED                          
+ * TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS;                               
+ * OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER                              
+ * IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN                         
+ * ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package bio.overture.score.client.transport;
+
+import bio.overture.score.benchmark.Workers;
+import bio.overture.score.core.model.DataChannel;
+import com.google.common.io.ByteStreams;
+import com.sun.net.httpserver.HttpServer;
+import lombok.val;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.net.HttpURLConnection;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static java.net.HttpURLConnection.HTTP_OK;
+
+/**
+ * Parts sent to and received from an in-process HTTP server over the loopback interface, so that the numbers include
+ * the copying between the channels and the socket streams but not a real network. The server discards what it is
+ * sent and serves the same part over and over.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class HttpDataChannelBenchmark {
+
+  @Param({"positional", "pooled"})
+  private String channel;
+  @Param({"1048576", "16777216"})
+  private int partSize;
+  @Param({"1", "4", "16"})
+  private int threads;
+
+  private byte[] data;
+  private File objectFile;
+  private DirectBufferPool pool;
+  private Workers workers;
+  private ExecutorService serverThreads;
+  private HttpServer server;
+  private URL sink;
+  private URL source;
+
+  @Setup
+  public void setUp() throws IOException {
+    data = new byte[partSize];
+    new Random(0).nextBytes(data);
+
+    objectFile = File.createTempFile("http-object", ".bin");
+    try (RandomAccessFile raf = new RandomAccessFile(objectFile, "rw")) {
+      for (int i = 0; i < threads; i++) {
+        raf.write(data);
+      }
+    }
+
+    serverThreads = Executors.newFixedThreadPool(threads);
+    server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), threads);
+    server.setExecutor(serverThreads);
+    server.createContext("/sink", exchange -> {
+      try (InputStream body = exchange.getRequestBody()) {
+        ByteStreams.copy(body, ByteStreams.nullOutputStream());
+      }
+      exchange.sendResponseHeaders(HTTP_OK, -1);
+      exchange.close();
+    });
+    server.createContext("/source", exchange -> {
+      exchange.sendResponseHeaders(HTTP_OK, data.length);
+      try (OutputStream body = exchange.getResponseBody()) {
+        body.write(data);
+      }
+    });
+    server.start();
+
+    val base = "http://" + server.getAddress().getHostString() + ":" + server.getAddress().getPort();
+    sink = new URL(base + "/sink");
+    source = new URL(base + "/source");
+
+    pool = new DirectBufferPool(partSize, threads);
+    workers = new Workers(threads);
+  }
+
+  @TearDown
+  public void tearDown() throws IOException {
+    workers.close();
+    server.stop(0);
+    serverThreads.shutdownNow();
+    Files.delete(objectFile.toPath());
+  }
+
+  @Benchmark
+  public void send() throws Exception {
+    workers.run(index -> {
+      val buffer = pool.acquire();
+      try {
+        val connection = (HttpURLConnection) sink.openConnection();
+        connection.setRequestMethod("PUT");
+        connection.setDoOutput(true);
+        connection.setFixedLengthStreamingMode((long) partSize);
+        try (OutputStream body = connection.getOutputStream()) {
+          open(index, buffer).writeTo(body);
+        }
+        check(connection);
+      } finally {
+        pool.release(buffer);
+      }
+    });
+  }
+
+  @Benchmark
+  public void receive() throws Exception {
+    workers.run(index -> {
+      val buffer = pool.acquire();
+      try {
+        val connection = (HttpURLConnection) source.openConnection();
+        try (InputStream body = connection.getInputStream()) {
+          open(index, buffer).readFrom(body);
+        }
+        check(connection);
+      } finally {
+        pool.release(buffer);
+      }
+    });
+  }
+
+  private DataChannel open(int index, ByteBuffer buffer) {
+    val position = (long) index * partSize;
+    switch (channel) {
+    case "positional":
+      return new PositionalFileDataChannel(objectFile, position, partSize, null);
+    case "pooled":
+      return new PooledDataChannel(buffer, objectFile, position, partSize);
+    default:
+      throw new IllegalArgumentException("Unknown channel: " + channel);
+    }
+  }
+
+  private static void check(HttpURLConnection connection) throws IOException {
+    if (connection.getResponseCode() != HTTP_OK) {
+      throw new IOException("Unexpected response: " + connection.getResponseCode());
+    }
+  }
+
+}
@@ -0,0 +1,137 @@
+/*
+ * Copyright (c) 2016 The Ontario Institute for Cancer Research. All rights reserved.                             
+ *                                                                                                               
+ * This program and the accompanying materials are made available under the terms of the GNU Public License v3.0.
+ * You should have received a copy of the GNU General Public License along with                                  
+ * this program. If not, see <http://www.gnu.org/licenses/>.                                                     
+ *                                                                                                               
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY                           
+ * EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES                          
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT                           
+ * SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,                                
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED                          
+ * TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS;                               
+ * OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER                              
+ * IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN                         
+ * ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package bio.overture.score.client.transport;
+
+import bio.overture.score.benchmark.Workers;
+import com.google.common.io.ByteStreams;
+import lombok.val;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static java.nio.file.StandardOpenOption.READ;
+
+/**
+ * Throughput of {@link PipedDataChannel}, which only goes one way: a producer reads {@code threads} parts of the local
+ * file in chunks, as {@link PipedParallelPartObjectTransport} does, while the consumers write them into a discarding
+ * stream.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class PipedDataChannelBenchmark {
+
+  @Param({"1048576", "16777216", "67108864"})
+  private int partSize;
+  @Param({"1", "4"})
+  private int threads;
+  @Param({"65536", "1048576"})
+  private int chunkSize;
+
+  private File objectFile;
+  private DirectBufferPool pool;
+  private ExecutorService consumers;
+
+  @Setup
+  public void setUp() throws IOException {
+    val data = new byte[partSize];
+    new Random(0).nextBytes(data);
+
+    objectFile = File.createTempFile("piped-object", ".bin");
+    try (RandomAccessFile raf = new RandomAccessFile(objectFile, "rw")) {
+      for (int i = 0; i < threads; i++) {
+        raf.write(data);
+      }
+    }
+
+    pool = new DirectBufferPool(chunkSize, threads * 4);
+    consumers = Executors.newFixedThreadPool(threads);
+  }
+
+  @TearDown
+  public void tearDown() throws IOException {
+    consumers.shutdownNow();
+    Files.delete(objectFile.toPath());
+  }
+
+  @Benchmark
+  public void writeTo() throws Exception {
+    val pipes = new PipedDataChannel[threads];
+    val results = new CompletableFuture<?>[threads];
+    for (int i = 0; i < threads; i++) {
+      val pipe = pipes[i] = new PipedDataChannel(pool, partSize);
+      results[i] = CompletableFuture.runAsync(() -> {
+        try {
+          pipe.writeTo(ByteStreams.nullOutputStream());
+        } catch (IOException e) {
+          throw new IllegalStateException(e);
+        } finally {
+          pipe.commitToDisk();
+        }
+      }, consumers);
+    }
+
+    try (FileChannel fileChannel = FileChannel.open(objectFile.toPath(), READ)) {
+      for (int i = 0; i < threads; i++) {
+        long position = (long) i * partSize;
+        val end = position + partSize;
+        while (position < end) {
+          val chunk = pool.acquire();
+          chunk.limit((int) Math.min(chunk.capacity(), end - position));
+          while (chunk.hasRemaining()) {
+            val count = fileChannel.read(chunk, position);
+            if (count < 0) {
+              pool.release(chunk);
+              throw new EOFException(String.format("Reached end of file %s at position %d", objectFile, position));
+            }
+            position += count;
+          }
+          chunk.flip();
+          pipes[i].put(chunk);
+        }
+      }
+    }
+
+    CompletableFuture.allOf(results).get();
+  }
+
+}
@@ -72,6 +72,15 @@ public class ClientMain implements CommandLineRunner {
   @Getter
   @Parameter(names = "--silent", description = "Do not produce any informational messages", required = false, help = true)
   private boolean silent = false;
+  @Getter
+  @Parameter(names = "--metrics-file", description = "Append telemetry of every transferred part to this file as JSON lines", required = false, help = true)
+  private String metricsFile;
+  @Getter
+  @Parameter(names = "--openmetrics-file", description = "Periodically write transfer totals to this file in the OpenMetrics text format", required = false, help = true)
+  private String openMetricsFile;
+  @Getter
+  @Parameter(names = "--metrics-interval", description = "Seconds between updates of --openmetrics-file", required = false, help = true)
+  private int metricsInterval = 15;
   @Parameter(names = "--version", description = "Show version information", required = false, help = true)
   private boolean version = false;
   @Parameter(names = "--help", description = "Show help information", required = false, help = true)
@@ -223,6 +232,13 @@ public class ClientMain implements CommandLineRunner {
     System.setProperty("client.silent", Boolean.toString(options.isSilent()));
     System.setProperty("client.quiet", Boolean.toString(options.isQuiet()));
     System.setProperty("storage.profile", options.getProfile());
+    if (options.getMetricsFile() != null) {
+      System.setProperty("client.metrics.file", options.getMetricsFile());
+    }
+    if (options.getOpenMetricsFile() != null) {
+      System.setProperty("client.metrics.openMetricsFile", options.getOpenMetricsFile());
+    }
+    System.setProperty("client.metrics.interval", Integer.toString(options.getMetricsInterval()));
 
     return options.getProfile() == null ? new String[] {} : new String[] { options.getProfile() };
   }
@@ -21,6 +21,7 @@ import bio.overture.score.client.cli.ConverterFactory.OutputLayoutConverter;
 import bio.overture.score.client.cli.CreatableDirectoryValidator;
 import bio.overture.score.client.cli.ObjectIdListValidator;
 import bio.overture.score.client.download.DownloadRequest;
+import bio.overture.score.client.download.DownloadScheduler;
 import bio.overture.score.client.download.DownloadService;
 import bio.overture.score.client.exception.BadManifestException;
 import bio.overture.score.client.manifest.ManifestResource;
@@ -110,6 +111,8 @@ public class DownloadCommand extends RepositoryAccessCommand {
   private MetadataService metadataService;
   @Autowired
   private DownloadService downloadService;
+  @Autowired
+  private DownloadScheduler downloadScheduler;
 
   @Override
   public int execute() throws Exception {
@@ -190,13 +193,8 @@ public class DownloadCommand extends RepositoryAccessCommand {
     }
 
 
+    val requests = new ArrayList<DownloadRequest>();
     for (val entity : entitySet) {
-      terminal
-        .printLine()
-        .printf("[%s/%s] Downloading object: %s (%s)%n", i++, entities.size(), terminal.value(entity.getId()),
-          entity.getFileName())
-        .printLine();
-
       val builder = DownloadRequest.builder();
       val request = builder.outputDir(outputDir).entity(entity).objectId(entity.getId()).offset(offset).length(length)
         .validate(validate).build();
@@ -215,12 +213,34 @@ public class DownloadCommand extends RepositoryAccessCommand {
           continue;
         }
       }
-      // Download the file by parts into <outputDir>/<.objectId>, resuming from previous downloads if possible.
-      // Don't try to resume if --force was specified.
-      downloadService.download(request, force);
+      requests.add(request);
+    }
 
-      // Rename file to target.
-      finalizeDownload(entity);
+    if (requests.size() > 1) {
+      terminal
+        .printLine()
+        .printf("Downloading %s objects%n", requests.size())
+        .printLine();
+
+      // Parts of all objects share the same workers; each file is renamed to its target as soon as it is complete.
+      // Don't try to resume if --force was specified.
+      downloadScheduler.download(requests, force, request -> finalizeDownload(request.getEntity()));
+    } else {
+      for (val request : requests) {
+        val entity = request.getEntity();
+        terminal
+          .printLine()
+          .printf("[%s/%s] Downloading object: %s (%s)%n", i++, entities.size(), terminal.value(entity.getId()),
+            entity.getFileName())
+          .printLine();
+
+        // Download the file by parts into <outputDir>/<.objectId>, resuming from previous downloads if possible.
+        // Don't try to resume if --force was specified.
+        downloadService.download(request, force);
+
+        // Rename file to target.
+        finalizeDownload(entity);
+      }
     }
 
     terminal.println("Done.");
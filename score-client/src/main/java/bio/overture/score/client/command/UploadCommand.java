@@ -22,6 +22,7 @@ import bio.overture.score.client.cli.ObjectIdValidator;
 import bio.overture.score.client.manifest.ManifestResource;
 import bio.overture.score.client.manifest.ManifestService;
 import bio.overture.score.client.manifest.UploadManifest;
+import bio.overture.score.client.upload.UploadRequest;
 import bio.overture.score.client.upload.UploadService;
 import com.beust.jcommander.Parameter;
 import com.beust.jcommander.Parameters;
@@ -34,6 +35,7 @@ import org.springframework.stereotype.Component;
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.util.ArrayList;
 
 import static bio.overture.score.client.cli.Parameters.checkParameter;
 
@@ -82,12 +84,16 @@ public class UploadCommand extends RepositoryAccessCommand {
     terminal.print("\r");
     if (manifestResource != null) {
       val manifest = readManifest();
-      for (val entry : manifest.getEntries()) {
-        val objectId = entry.getFileUuid();
-        val file = new File(entry.getFileName());
-        val checksum = entry.getFileMd5sum();
-
-        uploadFile(objectId, file, checksum);
+      if (manifest.getEntries().size() > 1) {
+        uploadFiles(manifest);
+      } else {
+        for (val entry : manifest.getEntries()) {
+          val objectId = entry.getFileUuid();
+          val file = new File(entry.getFileName());
+          val checksum = entry.getFileMd5sum();
+
+          uploadFile(objectId, file, checksum);
+        }
       }
     } else {
       checkParameter(file != null, "--file must be specified if --object-id is specified");
@@ -98,7 +104,30 @@ public class UploadCommand extends RepositoryAccessCommand {
     return SUCCESS_STATUS;
   }
 
+  private void uploadFiles(UploadManifest manifest) throws IOException {
+    val requests = new ArrayList<UploadRequest>();
+    for (val entry : manifest.getEntries()) {
+      val objectId = entry.getFileUuid();
+      val file = new File(entry.getFileName());
+      checkUpload(objectId, file);
+
+      requests.add(UploadRequest.builder().file(file).objectId(objectId).md5(entry.getFileMd5sum()).build());
+    }
+
+    terminal.printf("Uploading %s objects%n", requests.size());
+    uploader.upload(requests, isForce);
+    terminal.println("Upload completed");
+  }
+
   private void uploadFile(String objectId, File file, String md5) throws IOException {
+    checkUpload(objectId, file);
+
+    terminal.printf("Uploading object: '%s' using the object id %s%n", file, objectId);
+    uploader.upload(file, objectId, md5, isForce);
+    terminal.println("Upload completed");
+  }
+
+  private void checkUpload(String objectId, File file) throws IOException {
     log.info("Uploading file '{}'...", file);
     checkParameter(file.length() > 0,
         "File '%s' is empty. Uploads of empty files are not permitted. Aborting...%n", file.getCanonicalPath());
@@ -111,10 +140,6 @@ public class UploadCommand extends RepositoryAccessCommand {
     if (warn) {
       terminal.printWarn("Object %s exists and --force specified. Overwriting...", objectId);
     }
-
-    terminal.printf("Uploading object: '%s' using the object id %s%n", file, objectId);
-    uploader.upload(file, objectId, md5, isForce);
-    terminal.println("Upload completed");
   }
 
   private UploadManifest readManifest() throws IOException, FileNotFoundException {
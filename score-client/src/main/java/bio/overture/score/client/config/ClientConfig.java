@@ -56,6 +56,7 @@ import org.thymeleaf.templateresolver.ITemplateResolver;
 import javax.net.ssl.HostnameVerifier;
 import javax.net.ssl.SSLContext;
 import java.io.IOException;
+import java.time.Duration;
 
 import static com.google.common.base.MoreObjects.firstNonNull;
 import static java.lang.String.format;
@@ -142,6 +143,21 @@ public class ClientConfig {
     return dataTemplate;
   }
 
+  /**
+   * Non-blocking client for part transfers. Connections are kept alive and shared between parts, and HTTP/2 is used
+   * where the object store offers it. Like the data template, it uses the default SSL settings of the JVM.
+   */
+  @Bean
+  public java.net.http.HttpClient asyncDataClient() {
+    val client = java.net.http.HttpClient.newBuilder()
+        .version(java.net.http.HttpClient.Version.HTTP_2);
+    if (properties.getConnectTimeoutSeconds() > 0) {
+      client.connectTimeout(Duration.ofSeconds(properties.getConnectTimeoutSeconds()));
+    }
+
+    return client.build();
+  }
+
   @Bean
   public RestTemplate pingTemplate() {
     val pingTemplate = new RestTemplate(pingHttpRequestFactory());
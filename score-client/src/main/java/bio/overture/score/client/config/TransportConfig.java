@@ -18,13 +18,17 @@
 package bio.overture.score.client.config;
 
 import bio.overture.score.client.storage.StorageService;
+import bio.overture.score.client.transport.AsyncParallelPartObjectTransport;
+import bio.overture.score.client.transport.DirectParallelPartObjectTransport;
 import bio.overture.score.client.transport.MemoryMappedParallelPartObjectTransport;
 import bio.overture.score.client.transport.ParallelPartObjectTransport;
 import bio.overture.score.client.transport.PipedParallelPartObjectTransport;
+import bio.overture.score.client.transport.PooledParallelPartObjectTransport;
 import bio.overture.score.client.transport.SequentialPartObjectTransport;
 import bio.overture.score.client.transport.Transport;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
@@ -39,6 +43,8 @@ public class TransportConfig {
   TransportProperties properties;
   @Autowired
   StorageService proxy;
+  @Value("${storage.retryNumber}")
+  int retryNumber;
 
   @Bean
   public Transport.Builder builder() {
@@ -57,6 +63,37 @@ public class TransportConfig {
           ParallelPartObjectTransport.builder()
               .withMemory(properties.getMemory() * 1024 * 1024 * 1024)
               .withNumberOfWorkerThreads(properties.getParallel())
+              .withAdaptiveConcurrency(properties.isAdaptive())
+              .withProxy(proxy);
+      break;
+    case "direct":
+      log.debug("Transport: {}", "Direct");
+      builder =
+          DirectParallelPartObjectTransport.builder()
+              .withCoalescing(properties.getCoalesce() * 1024 * 1024)
+              .withMemory(properties.getMemory() * 1024 * 1024 * 1024)
+              .withNumberOfWorkerThreads(properties.getParallel())
+              .withAdaptiveConcurrency(properties.isAdaptive())
+              .withProxy(proxy);
+      break;
+    case "pooled":
+      log.debug("Transport: {}", "Pooled");
+      builder =
+          PooledParallelPartObjectTransport.builder()
+              .withMemory(properties.getMemory() * 1024 * 1024 * 1024)
+              .withNumberOfWorkerThreads(properties.getParallel())
+              .withAdaptiveConcurrency(properties.isAdaptive())
+              .withProxy(proxy);
+      break;
+    case "async":
+      log.debug("Transport: {}", "Async");
+      builder =
+          AsyncParallelPartObjectTransport.builder()
+              .withRetryNumber(retryNumber)
+              .withHedging(properties.isHedge())
+              .withMemory(properties.getMemory() * 1024 * 1024 * 1024)
+              .withNumberOfWorkerThreads(properties.getParallel())
+              .withAdaptiveConcurrency(properties.isAdaptive())
               .withProxy(proxy);
       break;
     case "sequential":
@@ -29,5 +29,9 @@ public class TransportProperties {
   String fileFrom;
   long memory;
   int parallel;
+  boolean adaptive;
+  boolean paranoid;
+  boolean hedge;
+  long coalesce;
 
 }
@@ -0,0 +1,181 @@
+/*
+ * Copyright (c) 2016 The Ontario Institute for Cancer Research. All rights reserved.                             
+ *                                                                                                               
+ * This program and the accompanying materials are made available under the terms of the GNU Public License v3.0.
+ * You should have received a copy of the GNU General Public License along with                                  
+ * this program. If not, see <http://www.gnu.org/licenses/>.                                                     
+ *                                                                                                               
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY                           
+ * EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES                          
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT                           
+ * SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,                                
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED                          
+ * TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS;                               
+ * OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER                              
+ * IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN                         
+ * ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package bio.overture.score.client.download;
+
+import static java.nio.charset.StandardCharsets.US_ASCII;
+import static java.nio.file.StandardOpenOption.CREATE;
+import static java.nio.file.StandardOpenOption.READ;
+import static java.nio.file.StandardOpenOption.WRITE;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+import lombok.extern.slf4j.Slf4j;
+import lombok.val;
+
+/**
+ * Append-only record of the parts of one object that were downloaded and verified, kept next to its specification
+ * in the object state directory. It replaces one marker file per part, so resuming or finalizing an object reads a
+ * single file sequentially instead of opening thousands of small ones on a shared file system.
+ * <p>
+ * Every record is a line: {@code <part number> <md5>} when a part is committed and {@code -<part number>} when it is
+ * discarded again. A crash can only tear the last line, which has no newline yet. It is ignored when reading and
+ * dropped when the journal is opened again.
+ * <p>
+ * Records are forced to disk before {@link #commit} and {@link #discard} return. Concurrent callers share a single
+ * {@code fsync} for all records written while the previous one was in progress.
+ */
+@Slf4j
+class DownloadJournal implements Closeable {
+
+  /**
+   * Constants.
+   */
+  static final String NAME = "journal";
+  private static final char DISCARDED = '-';
+  private static final Pattern MD5 = Pattern.compile("[0-9a-fA-F]{32}");
+
+  /**
+   * State.
+   */
+  private final FileChannel channel;
+  private final Object syncLock = new Object();
+  private long written;
+  private long synced;
+
+  private DownloadJournal(FileChannel channel) {
+    this.channel = channel;
+  }
+
+  static DownloadJournal open(File objectStateDir) throws IOException {
+    val channel = FileChannel.open(new File(objectStateDir, NAME).toPath(), CREATE, READ, WRITE);
+    try {
+      // Drops a record torn by a crash, which could otherwise pass for a complete one once the next record follows
+      val end = getEndOfLastRecord(channel);
+      if (end < channel.size()) {
+        log.warn("Dropping incomplete last record of {}", objectStateDir);
+        channel.truncate(end);
+      }
+      channel.position(end);
+    } catch (IOException e) {
+      channel.close();
+      throw e;
+    }
+
+    return new DownloadJournal(channel);
+  }
+
+  /**
+   * @return the length of the journal up to and including the newline of its last complete record
+   */
+  private static long getEndOfLastRecord(FileChannel channel) throws IOException {
+    val buffer = ByteBuffer.allocate(1);
+    for (long position = channel.size() - 1; position >= 0; position--) {
+      buffer.clear();
+      if (channel.read(buffer, position) == 1 && buffer.get(0) == '\n') {
+        return position + 1;
+      }
+    }
+
+    return 0;
+  }
+
+  void commit(int partNumber, String md5) throws IOException {
+    append(partNumber + " " + md5 + "\n");
+  }
+
+  void discard(int partNumber) throws IOException {
+    append(DISCARDED + Integer.toString(partNumber) + "\n");
+  }
+
+  @Override
+  public void close() throws IOException {
+    channel.close();
+  }
+
+  /**
+   * Applies the records of the journal in {@code objectStateDir}, if any, to {@code parts}, which maps part numbers to
+   * their MD5.
+   */
+  static void read(File objectStateDir, Map<Integer, String> parts) throws IOException {
+    val file = new File(objectStateDir, NAME);
+    if (!file.exists()) {
+      return;
+    }
+
+    val content = new String(Files.readAllBytes(file.toPath()), US_ASCII);
+    int start = 0;
+    for (int end = content.indexOf('\n'); end >= 0; start = end + 1, end = content.indexOf('\n', start)) {
+      val record = content.substring(start, end);
+      try {
+        if (record.charAt(0) == DISCARDED) {
+          parts.remove(Integer.valueOf(record.substring(1)));
+        } else {
+          val separator = record.indexOf(' ');
+          val md5 = record.substring(separator + 1);
+          if (!MD5.matcher(md5).matches()) {
+            throw new IllegalArgumentException(md5);
+          }
+          parts.put(Integer.valueOf(record.substring(0, separator)), md5);
+        }
+      } catch (RuntimeException e) {
+        log.warn("Ignoring malformed record '{}' in {}", record, file);
+      }
+    }
+
+    if (start < content.length()) {
+      log.warn("Ignoring incomplete last record of {}", file);
+    }
+  }
+
+  private void append(String record) throws IOException {
+    long sequence;
+    synchronized (this) {
+      val buffer = ByteBuffer.wrap(record.getBytes(US_ASCII));
+      while (buffer.hasRemaining()) {
+        channel.write(buffer);
+      }
+      sequence = ++written;
+    }
+
+    sync(sequence);
+  }
+
+  private void sync(long sequence) throws IOException {
+    synchronized (syncLock) {
+      if (synced >= sequence) {
+        // Forced by another caller in the meantime
+        return;
+      }
+
+      long target;
+      synchronized (this) {
+        target = written;
+      }
+      channel.force(false);
+      synced = target;
+    }
+  }
+
+}
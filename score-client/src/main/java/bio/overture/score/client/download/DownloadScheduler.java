@@ -0,0 +1,363 @@
+/*
+ * Copyright (c) 2016 The Ontario Institute for Cancer Research. All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the terms of the GNU Public License v3.0.
+ * You should have received a copy of the GNU General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY
+ * EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT
+ * SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED
+ * TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS;
+ * OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER
+ * IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN
+ * ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package bio.overture.score.client.download;
+
+import bio.overture.score.client.cli.Terminal;
+import bio.overture.score.client.config.TransportProperties;
+import bio.overture.score.client.progress.Progress;
+import bio.overture.score.client.progress.ProgressDataChannel;
+import bio.overture.score.client.storage.StorageService;
+import bio.overture.score.client.transport.ParallelPartObjectTransport;
+import bio.overture.score.client.transport.PositionalFileDataChannel;
+import bio.overture.score.core.model.ObjectSpecification;
+import bio.overture.score.core.model.Part;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Ordering;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import lombok.Getter;
+import lombok.NonNull;
+import lombok.RequiredArgsConstructor;
+import lombok.SneakyThrows;
+import lombok.extern.slf4j.Slf4j;
+import lombok.val;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Downloads many objects at once by queuing the parts of all of them on a single pool of workers. Each object is
+ * written in place into its preallocated file and is finalized, validated and handed to the caller as soon as its
+ * last part lands, so a manifest of many small files keeps every worker busy instead of waiting for one file at a
+ * time.
+ * <p>
+ * Objects with state left over from a previous run, and objects that fail here, are passed on to
+ * {@link DownloadService#download(DownloadRequest, boolean)} afterwards, which knows how to resume them.
+ * <p>
+ * Only transports that write parts in place into the object file can share state with this class. With any other
+ * transport, or when the transport is tuned in ways the scheduler does not reproduce, every object goes through
+ * {@link DownloadService} one at a time.
+ */
+@Slf4j
+@Component
+public class DownloadScheduler {
+
+  /**
+   * Constants.
+   */
+  private static final int OPEN_OBJECTS_PER_WORKER = 2;
+  private static final Set<String> IN_PLACE_TRANSPORTS = ImmutableSet.of("memory", "direct", "pooled", "async");
+
+  /**
+   * Configuration.
+   */
+  @Value("${client.quiet}")
+  private boolean quiet;
+  @Value("${transport.parallel}")
+  private int parallel;
+
+  /**
+   * Dependencies.
+   */
+  @Autowired
+  private TransportProperties transport;
+  @Autowired
+  private StorageService storageService;
+  @Autowired
+  private DownloadStateStore downloadStateStore;
+  @Autowired
+  private DownloadService downloadService;
+  @Autowired
+  private Terminal terminal;
+
+  /**
+   * Receives every object once it is completely downloaded and validated. Calls are never concurrent.
+   */
+  public interface Listener {
+
+    void completed(DownloadRequest request) throws IOException;
+
+  }
+
+  /**
+   * Downloads all {@code requests}, sharing one set of worker threads between them.
+   *
+   * @param redo - ignore the state of previous downloads instead of resuming them
+   */
+  @SneakyThrows
+  public void download(@NonNull List<DownloadRequest> requests, boolean redo, @NonNull Listener listener) {
+    if (!isSupported()) {
+      log.info("Transport '{}' is not supported by the scheduler; downloading one object at a time",
+          transport.getFileFrom());
+      for (val request : requests) {
+        terminal
+            .printLine()
+            .printf("Downloading object: %s%n", terminal.value(request.getObjectId()))
+            .printLine();
+        downloadService.download(request, redo);
+        listener.completed(request);
+      }
+
+      return;
+    }
+
+    val nThreads = Math.max(1, parallel);
+    val workers = Executors.newFixedThreadPool(nThreads,
+        new ThreadFactoryBuilder().setNameFormat("download-worker-%s").setDaemon(true).build());
+
+    val deferred = Collections.synchronizedList(new ArrayList<DownloadRequest>());
+    try {
+      val downloads = prepare(requests, redo, workers, deferred);
+      if (!downloads.isEmpty()) {
+        new Batch(workers, nThreads * OPEN_OBJECTS_PER_WORKER, listener, deferred).run(downloads);
+      }
+    } finally {
+      workers.shutdownNow();
+    }
+
+    for (val request : deferred) {
+      terminal
+          .printLine()
+          .printf("Resuming object: %s%n", terminal.value(request.getObjectId()))
+          .printLine();
+      downloadService.download(request, false);
+      listener.completed(request);
+    }
+  }
+
+  /**
+   * Parts written here must be where the configured transport expects them when a deferred object is resumed, and
+   * adaptive concurrency, hedging and coalescing only exist in the transports themselves.
+   */
+  private boolean isSupported() {
+    return IN_PLACE_TRANSPORTS.contains(transport.getFileFrom()) && !transport.isAdaptive() && !transport.isHedge()
+        && transport.getCoalesce() <= 0;
+  }
+
+  /**
+   * Fetches the specification of every object that can be started from scratch. The requests are independent, so
+   * they are spread over the workers as well.
+   */
+  private List<ObjectDownload> prepare(List<DownloadRequest> requests, boolean redo, ExecutorService workers,
+      List<DownloadRequest> deferred) throws InterruptedException {
+    val scheduled = new ArrayList<DownloadRequest>();
+    val specs = new ArrayList<Future<ObjectSpecification>>();
+    for (val request : requests) {
+      if (!redo && downloadStateStore.hasStarted(request.getOutputDir(), request.getObjectId())) {
+        log.info("Found previous download state for {}; it will be resumed separately", request.getObjectId());
+        deferred.add(request);
+        continue;
+      }
+
+      scheduled.add(request);
+      specs.add(workers.submit(() -> storageService.getDownloadSpecification(request.getObjectId(),
+          request.getOffset(), request.getLength())));
+    }
+
+    val downloads = new ArrayList<ObjectDownload>();
+    for (int i = 0; i < scheduled.size(); i++) {
+      val request = scheduled.get(i);
+      try {
+        downloads.add(new ObjectDownload(request, specs.get(i).get()));
+      } catch (ExecutionException e) {
+        log.warn("Failed to retrieve download specification for {}", request.getObjectId(), e.getCause());
+        deferred.add(request);
+      }
+    }
+
+    return downloads;
+  }
+
+  /**
+   * State of a single object while its parts are in flight.
+   */
+  @Getter
+  private static class ObjectDownload {
+
+    private final DownloadRequest request;
+    private final ObjectSpecification spec;
+    private final List<Part> parts;
+    private final AtomicInteger remainingParts;
+    private volatile Throwable failure;
+    private volatile ObjectDigest digest;
+
+    private ObjectDownload(DownloadRequest request, ObjectSpecification spec) {
+      this.request = request;
+      this.spec = spec;
+      this.parts = Ordering.natural().sortedCopy(spec.getParts());
+      this.remainingParts = new AtomicInteger(parts.size());
+    }
+
+    private void fail(Throwable e) {
+      if (failure == null) {
+        failure = e;
+      }
+    }
+
+    private boolean isFailed() {
+      return failure != null;
+    }
+
+  }
+
+  /**
+   * One invocation of {@link DownloadScheduler#download}. At most {@code window} objects are open at a time, which
+   * bounds the number of partially written files while still giving the workers parts from several objects.
+   */
+  @RequiredArgsConstructor
+  private class Batch {
+
+    private final ExecutorService workers;
+    private final int window;
+    private final Listener listener;
+    private final List<DownloadRequest> deferred;
+
+    private Semaphore openObjects;
+    private CountDownLatch finishedObjects;
+    private Progress progress;
+
+    private void run(List<ObjectDownload> downloads) throws InterruptedException {
+      int totalParts = 0;
+      for (val download : downloads) {
+        totalParts += download.getParts().size();
+      }
+      log.info("Scheduling {} parts of {} objects", totalParts, downloads.size());
+
+      openObjects = new Semaphore(window);
+      finishedObjects = new CountDownLatch(downloads.size());
+      progress = new Progress(terminal, quiet, Math.max(1, totalParts), 0);
+
+      progress.start();
+      for (val download : downloads) {
+        openObjects.acquire();
+        open(download);
+      }
+      finishedObjects.await();
+      progress.stop();
+      progress.end(!deferred.isEmpty());
+    }
+
+    private void open(ObjectDownload download) {
+      val request = download.getRequest();
+      val file = request.getOutputFilePath();
+      try {
+        downloadService.resetDownload(file);
+        Files.createDirectories(request.getOutputDir().toPath());
+        downloadStateStore.init(request.getOutputDir(), download.getSpec());
+        ParallelPartObjectTransport.allocate(file, Downloads.calculateTotalSize(download.getParts()));
+
+        if (request.isValidate() && download.getSpec().getObjectMd5() != null) {
+          download.digest = new ObjectDigest(file, download.getParts());
+        }
+      } catch (Throwable e) {
+        download.fail(e);
+        finish(download);
+        return;
+      }
+
+      if (download.getParts().isEmpty()) {
+        finish(download);
+        return;
+      }
+
+      // Positions in the local file are relative to the first part, which matters for ranged downloads
+      long position = 0;
+      for (val part : download.getParts()) {
+        final long partPosition = position;
+        position += part.getPartSize();
+        workers.execute(() -> downloadPart(download, part, partPosition));
+      }
+    }
+
+    private void downloadPart(ObjectDownload download, Part part, long position) {
+      try {
+        // Once an object has failed its remaining parts are left to the resume
+        if (!download.isFailed()) {
+          val request = download.getRequest();
+          val channel = new ProgressDataChannel(
+              new PositionalFileDataChannel(request.getOutputFilePath(), position, part.getPartSize(), null),
+              progress);
+
+          progress.transferPart(
+              () -> storageService.downloadPart(channel, part, request.getObjectId(), request.getOutputDir()));
+          progress.incrementParts(1);
+          if (download.getDigest() != null) {
+            download.getDigest().partCompleted(part);
+          }
+        }
+      } catch (Throwable e) {
+        log.warn("Failed to download part# {} of {}", part.getPartNumber(), download.getRequest().getObjectId(), e);
+        download.fail(e);
+      } finally {
+        if (download.getRemainingParts().decrementAndGet() == 0) {
+          finish(download);
+        }
+      }
+    }
+
+    private void finish(ObjectDownload download) {
+      val request = download.getRequest();
+      val digest = download.getDigest();
+      try {
+        if (!download.isFailed()) {
+          storageService.finalizeDownload(request.getOutputDir(), request.getObjectId());
+          if (request.isValidate()) {
+            downloadService.doMd5Checksum(request, download.getSpec(),
+                digest == null ? Optional.empty() : digest.getMd5());
+          }
+
+          synchronized (listener) {
+            listener.completed(request);
+          }
+          log.info("Finished download of {}", request.getObjectId());
+        }
+      } catch (Throwable e) {
+        download.fail(e);
+      } finally {
+        if (download.isFailed()) {
+          log.warn("Download of {} failed; it will be resumed separately", request.getObjectId(),
+              download.getFailure());
+          if (digest != null) {
+            digest.cancel();
+          }
+          deferred.add(request);
+        }
+
+        storageService.releaseDownloadParts(request.getObjectId(), download.getSpec().getParts());
+        openObjects.release();
+        finishedObjects.countDown();
+      }
+    }
+
+  }
+
+}
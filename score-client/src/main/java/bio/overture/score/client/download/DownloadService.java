@@ -23,11 +23,14 @@ import bio.overture.score.client.exception.NotRetryableException;
 import bio.overture.score.client.exception.RetryableException;
 import bio.overture.score.client.metadata.Entity;
 import bio.overture.score.client.progress.Progress;
+import bio.overture.score.client.state.PartDigestCache;
+import bio.overture.score.client.state.TransferState;
 import bio.overture.score.client.storage.StorageService;
 import bio.overture.score.client.transport.Transport;
 import bio.overture.score.core.model.ObjectSpecification;
 import bio.overture.score.core.model.Part;
 import bio.overture.score.core.util.MD5s;
+import com.google.common.collect.Ordering;
 import com.google.common.io.BaseEncoding;
 import lombok.NonNull;
 import lombok.SneakyThrows;
@@ -48,6 +51,7 @@ import java.nio.file.Files;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 import java.util.List;
+import java.util.Optional;
 import java.util.Set;
 
 import static com.google.common.base.Preconditions.checkState;
@@ -57,6 +61,8 @@ import static com.google.common.collect.Iterables.getOnlyElement;
 @Component
 public class DownloadService {
 
+  private static final int CHECKSUM_BUFFER_SIZE = 1024 * 1024;
+
   /**
    * Configuration.
    */
@@ -64,6 +70,8 @@ public class DownloadService {
   private boolean quiet;
   @Value("${storage.retryNumber}")
   private int retryNumber;
+  @Value("${transport.paranoid}")
+  private boolean paranoid;
 
   /**
    * Dependencies.
@@ -174,13 +182,15 @@ public class DownloadService {
     val remainingParts = totalParts - completedParts;
 
     log.info("Total parts: {}, completed parts: {}, remaining parts: {}", totalParts, completedParts, remainingParts);
+    storageService.registerDownloadParts(request.getObjectId(), spec.getParts());
     val progress = new Progress(terminal, quiet, totalParts, completedParts);
     downloadParts(spec.getParts(), request.getOutputDir(), request.getObjectId(), request.getObjectId(), progress,
-        checksum);
+        checksum, Transport.PartListener.NONE);
 
     if (request.isValidate()) {
+      // Parts from the previous attempt were never digested, so the whole file has to be read again
       terminal.printStatus("Verifying checksum...");
-      doMd5Checksum(request, spec);
+      doMd5Checksum(request, spec, Optional.empty());
       terminal.printStatus("Ok");
     }
   }
@@ -221,6 +231,7 @@ public class DownloadService {
 
     for (val entity : entities) {
       val spec = storageService.getDownloadSpecification(entity.getId());
+      storageService.releaseDownloadParts(entity.getId(), spec.getParts());
       total += spec.getObjectSize();
     }
 
@@ -258,14 +269,27 @@ public class DownloadService {
 
     downloadStateStore.init(dir, spec);
 
+    // Digest the object while it is being downloaded instead of re-reading it afterwards
+    val digest = request.isValidate() && spec.getObjectMd5() != null ?
+        new ObjectDigest(request.getOutputFilePath(), Ordering.natural().sortedCopy(spec.getParts())) :
+        null;
+
     // TODO: Assign session id
     val progress = new Progress(terminal, quiet, spec.getParts().size(), 0);
-    downloadParts(spec.getParts(), dir, request.getObjectId(), request.getObjectId(), progress, false);
+    try {
+      downloadParts(spec.getParts(), dir, request.getObjectId(), request.getObjectId(), progress, false,
+          digest == null ? Transport.PartListener.NONE : digest::partCompleted);
+    } catch (Throwable e) {
+      if (digest != null) {
+        digest.cancel();
+      }
+      throw e;
+    }
 
     if (request.isValidate()) {
       terminal.printStatus("Verifying checksum...");
       log.info("Beginning MD5 checksum calculation for {}", request.getOutputFilePath().toString());
-      doMd5Checksum(request, spec);
+      doMd5Checksum(request, spec, digest == null ? Optional.empty() : digest.getMd5());
     }
 
   }
@@ -275,26 +299,42 @@ public class DownloadService {
    */
   @SneakyThrows
   private void downloadParts(List<Part> parts, File file, String objectId, String sessionId, Progress progressBar,
-      boolean checksum) {
+      boolean checksum, Transport.PartListener partListener) {
     log.debug("Setting up download of parts");
+    val digestCache = paranoid ? PartDigestCache.NONE : PartDigestCache.open(
+        TransferState.getObjectStateDir(file, objectId), Downloads.getDownloadFile(file, objectId));
     transportBuilder.withProxy(storageService)
         .withProgressBar(progressBar)
         .withParts(parts)
         .withObjectId(objectId)
         .withTransportMode(Transport.Mode.DOWNLOAD)
         .withChecksum(checksum)
+        .withPartListener(partListener)
+        .withDigestCache(digestCache)
         .withSessionId(sessionId);
-    transportBuilder.build().receive(file);
+    try {
+      transportBuilder.build().receive(file);
+    } finally {
+      storageService.releaseDownloadParts(objectId, parts);
+      downloadStateStore.release(file, objectId);
+      digestCache.close();
+    }
   }
 
-  private void doMd5Checksum(DownloadRequest req, ObjectSpecification spec) {
+  /**
+   * @param streamedMd5 - MD5 computed while downloading, if available; otherwise the file is read again
+   */
+  void doMd5Checksum(DownloadRequest req, ObjectSpecification spec, Optional<String> streamedMd5) {
 
     if (spec.getObjectMd5() == null) {
       log.warn("meta file does not contain the object MD5 checksum. Skipping check.");
       return;
     }
     val outputFile = req.getOutputFilePath();
-    val downloadedMd5 = calculateChecksum(outputFile);
+    if (!streamedMd5.isPresent()) {
+      log.info("Calculating MD5 checksum of {} from disk", outputFile.getAbsolutePath());
+    }
+    val downloadedMd5 = streamedMd5.orElseGet(() -> calculateChecksum(outputFile));
 
     boolean check;
     try {
@@ -318,23 +358,17 @@ public class DownloadService {
 
   private String calculateChecksum(File outputFile) {
     String downloadedMd5 = null;
-    try {
+    try (val fis = new FileInputStream(outputFile)) {
       val md = MessageDigest.getInstance("MD5");
-      val fis = new FileInputStream(outputFile);
       val fchannel = fis.getChannel();
-      val buffer = ByteBuffer.allocateDirect(8192); // allocation in bytes - 1024, 2048, 4096, 8192
+      val buffer = ByteBuffer.allocateDirect(CHECKSUM_BUFFER_SIZE);
 
-      int byteCount = fchannel.read(buffer);
-      while ((byteCount != -1) && (byteCount != 0)) {
+      while (fchannel.read(buffer) > 0) {
         buffer.flip();
-        byte[] bytes = new byte[byteCount];
-        buffer.get(bytes);
-        md.update(bytes, 0, byteCount);
+        md.update(buffer);
         buffer.clear();
-        byteCount = fchannel.read(buffer);
       }
 
-      fis.close();
       downloadedMd5 = decodeDigest(md.digest());
 
     } catch (NoSuchAlgorithmException e) {
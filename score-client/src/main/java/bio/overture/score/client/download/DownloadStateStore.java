@@ -30,8 +30,18 @@ import org.springframework.beans.factory.annotation.Autowired;
 import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.nio.file.Files;
-
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Keeps the specification of every object being downloaded and a {@link DownloadJournal} of its verified parts in the
+ * object state directory, so an interrupted download can be resumed.
+ * <p>
+ * State directories written by earlier versions, with one {@code part-XXXXXXXX} marker file per part, are still read.
+ */
 @Slf4j
 public class DownloadStateStore extends TransferState {
 
@@ -40,11 +50,17 @@ public class DownloadStateStore extends TransferState {
 
   private static final ObjectMapper MAPPER = new ObjectMapper();
 
+  /**
+   * Open journals by object state directory.
+   */
+  private final Map<File, DownloadJournal> journals = new ConcurrentHashMap<>();
+
   public void init(File stateDir, ObjectSpecification spec) {
     log.debug("Download Specification : {}", spec);
     try {
       byte[] content = MAPPER.writeValueAsBytes(spec);
       File objectStateDir = getObjectStateDir(stateDir, spec.getObjectId());
+      closeJournal(objectStateDir);
 
       log.debug("About to delete {}", objectStateDir.toString());
       deleteDirectoryIfExist(objectStateDir);
@@ -80,15 +96,15 @@ public class DownloadStateStore extends TransferState {
     log.debug("Loading local progress for {} from {}", objectId, stateDir.toString());
     val spec = loadSpecification(stateDir, objectId);
     log.debug("Completed loading local object specification (meta file)");
+    val completed = loadCompletedParts(stateDir, objectId);
     for (val part : spec.getParts()) {
       log.debug("Checking md5 for part {}", part.getPartNumber());
-      if (isCompleted(stateDir, objectId, part)) {
-        val completedPart = loadPart(stateDir, objectId, getPartName(part));
+      if (completed.containsKey(part.getPartNumber())) {
         // Copy download md5 into ObjectSpecification
-        part.setMd5(completedPart.getMd5());
+        part.setMd5(completed.get(part.getPartNumber()));
       } else {
-        // Part is not complete - check if it has expired
-        if (urlValidator.isUrlExpired(part.getUrl())) {
+        // Part is not complete - check if it has expired. Deferred URLs are presigned when the part is downloaded
+        if (part.getUrl() != null && urlValidator.isUrlExpired(part.getUrl())) {
           val ise =
               new IllegalStateException(
                   "Presigned URL's have expired because download was not completed in allotted period. Restarting.");
@@ -100,36 +116,65 @@ public class DownloadStateStore extends TransferState {
   }
 
   /**
-   * A marker file is written to the working directory after each part is downloaded and the MD5 checksum is verified.
-   * Checking to see if a part was completed previously is based on the presence of this marker file.
+   * A record is appended to the journal after each part is downloaded and the MD5 checksum is verified. A part was
+   * completed previously if its last record is such a commit.
+   *
    * @param stateDir - working directory for download
    * @param objectId - object id
-   * @param part - metadata about part - really just for part number
-   * @return
+   * @return the MD5 of every completed part by part number
    */
-  private boolean isCompleted(File stateDir, String objectId, Part part) {
-    val partFile = new File(getObjectStateDir(stateDir, objectId), getPartName(part));
-    return partFile.exists();
+  private Map<Integer, String> loadCompletedParts(File stateDir, String objectId) {
+    val objectStateDir = getObjectStateDir(stateDir, objectId);
+    val completed = new HashMap<Integer, String>();
+    try {
+      val legacyPartFiles = objectStateDir.listFiles((dir, name) -> name.startsWith(getPartPrefix()));
+      if (legacyPartFiles != null) {
+        for (val partFile : legacyPartFiles) {
+          val part = readPart(partFile);
+          completed.put(part.getPartNumber(), part.getMd5());
+        }
+      }
+
+      DownloadJournal.read(objectStateDir, completed);
+    } catch (IOException e) {
+      throw new NotRetryableException(e);
+    }
+
+    return completed;
   }
 
   public void commit(File stateDir, String objectId, Part part) {
     log.debug("Attempting to commit {} part {} to {}", objectId, part.getPartNumber(), stateDir.toString());
     try {
-      byte[] content = MAPPER.writeValueAsBytes(part);
-      val partFile = new File(getObjectStateDir(stateDir, objectId), getPartName(part));
-      Files.copy(new ByteArrayInputStream(content), partFile.toPath());
-      log.debug("Copied part {} to {}", part.getPartNumber(), partFile.toPath().toString());
+      // A hedged part may be committed by both of its requests, in which case the last record wins
+      getJournal(stateDir, objectId).commit(part.getPartNumber(), part.getMd5());
+      log.debug("Committed part {} to {}", part.getPartNumber(), stateDir.toString());
     } catch (IOException e) {
-      log.error("Failed to create meta file {} ", stateDir.getAbsolutePath(), e);
+      log.error("Failed to write journal {} ", stateDir.getAbsolutePath(), e);
       throw new NotRetryableException(e);
     }
   }
 
-  private Part loadPart(File stateDir, String objectId, String partFileName) {
-    File objectStateDir = getObjectStateDir(stateDir, objectId);
-    File partFile = new File(objectStateDir, partFileName);
+  private DownloadJournal getJournal(File stateDir, String objectId) throws IOException {
+    val objectStateDir = getObjectStateDir(stateDir, objectId);
+    try {
+      return journals.computeIfAbsent(objectStateDir, dir -> {
+        try {
+          return DownloadJournal.open(dir);
+        } catch (IOException e) {
+          throw new UncheckedIOException(e);
+        }
+      });
+    } catch (UncheckedIOException e) {
+      throw e.getCause();
+    }
+  }
 
-    return readPart(partFile);
+  private void closeJournal(File objectStateDir) throws IOException {
+    val journal = journals.remove(objectStateDir);
+    if (journal != null) {
+      journal.close();
+    }
   }
 
   protected Part readPart(File partFile) {
@@ -158,9 +203,9 @@ public class DownloadStateStore extends TransferState {
   }
 
   public void deletePart(File stateDir, String objectId, Part part) {
-    val partStateFile = new File(getObjectStateDir(stateDir, objectId), getPartName(part));
     try {
-      partStateFile.delete();
+      new File(getObjectStateDir(stateDir, objectId), getPartName(part)).delete();
+      getJournal(stateDir, objectId).discard(part.getPartNumber());
     } catch (Throwable e) {
       throw new NotRetryableException(e);
     }
@@ -173,11 +218,32 @@ public class DownloadStateStore extends TransferState {
 
   public boolean canFinalize(File outDir, String objectId) {
     val spec = loadSpecification(outDir, objectId);
+    val completed = loadCompletedParts(outDir, objectId);
     for (val part : spec.getParts()) {
-      if (!isCompleted(outDir, objectId, part)) {
+      if (!completed.containsKey(part.getPartNumber())) {
         return false;
       }
     }
     return true;
   }
+
+  /**
+   * Releases the journal of an object whose download stopped, e.g. because it failed. Its state is kept for a resume.
+   */
+  public void release(File outDir, String objectId) {
+    try {
+      closeJournal(getObjectStateDir(outDir, objectId));
+    } catch (IOException e) {
+      log.warn("Failed to close journal of {}: {}", objectId, e.getMessage());
+    }
+  }
+
+  /**
+   * Removes the state of a completely downloaded object.
+   */
+  public void finish(File outDir, String objectId) throws IOException {
+    val objectStateDir = getObjectStateDir(outDir, objectId);
+    closeJournal(objectStateDir);
+    deleteDirectoryIfExist(objectStateDir);
+  }
 }
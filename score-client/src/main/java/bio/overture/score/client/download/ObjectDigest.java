@@ -0,0 +1,161 @@
+/*
+ * Copyright (c) 2016 The Ontario Institute for Cancer Research. All rights reserved.                             
+ *                                                                                                               
+ * This program and the accompanying materials are made available under the terms of the GNU Public License v3.0.
+ * You should have received a copy of the GNU General Public License along with                                  
+ * this program. If not, see <http://www.gnu.org/licenses/>.                                                     
+ *                                                                                                               
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY                           
+ * EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES                          
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT                           
+ * SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,                                
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED                          
+ * TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS;                               
+ * OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER                              
+ * IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN                         
+ * ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package bio.overture.score.client.download;
+
+import bio.overture.score.core.model.Part;
+import com.google.common.collect.Maps;
+import com.google.common.io.BaseEncoding;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import lombok.NonNull;
+import lombok.SneakyThrows;
+import lombok.extern.slf4j.Slf4j;
+import lombok.val;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.security.MessageDigest;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static java.nio.file.StandardOpenOption.READ;
+
+/**
+ * Computes the MD5 of a downloaded object while its parts are still arriving. Parts may complete in any order; as
+ * soon as the parts completed so far form a longer contiguous prefix of the object, a single background thread feeds
+ * the newly covered bytes into one {@link MessageDigest}. Each part is digested right after it was written, while it is
+ * still in the page cache, so validation no longer needs a second pass over the whole file.
+ */
+@Slf4j
+public class ObjectDigest {
+
+  private static final int BUFFER_SIZE = 1024 * 1024;
+
+  private final File file;
+  private final List<Part> parts;
+  private final long[] positions;
+  private final Map<Integer, Integer> indexes = Maps.newHashMap();
+
+  private final Set<Integer> completed = ConcurrentHashMap.newKeySet();
+  private final MessageDigest digest;
+  private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+  private final ExecutorService executor = Executors.newSingleThreadExecutor(
+      new ThreadFactoryBuilder().setNameFormat("object-digest-%s").setDaemon(true).build());
+
+  /**
+   * Only touched by the digest thread
+   */
+  private int next;
+  private volatile Throwable failure;
+
+  /**
+   * @param file - the object file the parts are written to
+   * @param parts - the parts of the object, sorted by part number
+   */
+  @SneakyThrows
+  public ObjectDigest(@NonNull File file, @NonNull List<Part> parts) {
+    this.file = file;
+    this.parts = parts;
+    this.positions = new long[parts.size()];
+    this.digest = MessageDigest.getInstance("MD5");
+
+    long position = 0;
+    for (int i = 0; i < parts.size(); i++) {
+      val part = parts.get(i);
+      checkArgument(i == 0 || parts.get(i - 1).compareTo(part) < 0, "Parts are not sorted: %s", parts);
+      positions[i] = position;
+      indexes.put(part.getPartNumber(), i);
+      position += part.getPartSize();
+    }
+  }
+
+  /**
+   * Signals that {@code part} is fully written to the object file. Safe to call from any thread.
+   */
+  public void partCompleted(@NonNull Part part) {
+    val index = indexes.get(part.getPartNumber());
+    checkArgument(index != null, "Unknown part: %s", part);
+    if (completed.add(index)) {
+      executor.execute(this::advance);
+    }
+  }
+
+  /**
+   * Waits for the pending parts to be digested and returns the hex encoded MD5 of the object, or nothing if some part
+   * never completed or could not be read back.
+   */
+  public Optional<String> getMd5() throws InterruptedException {
+    executor.shutdown();
+    executor.awaitTermination(Long.MAX_VALUE, TimeUnit.DAYS);
+    if (failure != null) {
+      log.warn("Could not compute the MD5 of {} while downloading: {}", file, failure.getMessage());
+      return Optional.empty();
+    }
+    if (next < parts.size()) {
+      log.debug("Only {} of {} parts of {} were digested", next, parts.size(), file);
+      return Optional.empty();
+    }
+    return Optional.of(BaseEncoding.base16().lowerCase().encode(digest.digest()));
+  }
+
+  /**
+   * Stops digesting without waiting for the pending parts
+   */
+  public void cancel() {
+    executor.shutdownNow();
+  }
+
+  private void advance() {
+    if (failure != null) {
+      return;
+    }
+
+    try (FileChannel channel = FileChannel.open(file.toPath(), READ)) {
+      while (next < parts.size() && completed.contains(next)) {
+        update(channel, positions[next], parts.get(next).getPartSize());
+        next++;
+      }
+    } catch (Throwable e) {
+      failure = e;
+    }
+  }
+
+  private void update(FileChannel channel, long position, long length) throws IOException {
+    long end = position + length;
+    while (position < end) {
+      buffer.clear();
+      buffer.limit((int) Math.min(buffer.capacity(), end - position));
+      int count = channel.read(buffer, position);
+      if (count < 0) {
+        throw new IOException(String.format("Reached end of file %s at position %d", file, position));
+      }
+      buffer.flip();
+      digest.update(buffer);
+      position += count;
+    }
+  }
+
+}
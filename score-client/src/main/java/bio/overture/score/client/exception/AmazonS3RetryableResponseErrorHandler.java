@@ -62,4 +62,41 @@ public class AmazonS3RetryableResponseErrorHandler extends DefaultResponseErrorH
 
     }
   }
+
+  /**
+   * Same translation as {@link #handleError(ClientHttpResponse)} for responses that do not come through a
+   * {@code RestTemplate}.
+   */
+  public static RuntimeException translate(int statusCode, String body) {
+    HttpStatus status = HttpStatus.resolve(statusCode);
+    IOException e = new IOException(body);
+    if (status == null) {
+      log.warn("Retryable exception: {}", statusCode);
+      return new RetryableException(e);
+    }
+
+    switch (status) {
+    case BAD_REQUEST:
+      // The error code of a bare message is always null, so the handler above retries every bad request
+      return new RetryableException(e);
+
+    case NOT_FOUND:
+      return new NotRetryableException(e);
+
+    case INTERNAL_SERVER_ERROR:
+      log.warn("Server error. Stop processing: {}", status.getReasonPhrase());
+      return new NotResumableException(e);
+
+    case FORBIDDEN:
+      log.warn("FORBIDDEN response code received");
+      return new NotRetryableException(new IOException(
+          "Access refused by object store. Confirm client is part of repository cloud and that the download was initiated less than 1 day earlier (7 days for uploads)"
+              + body));
+
+    default:
+      log.warn("Retryable exception: {}", status.getReasonPhrase());
+      return new RetryableException(e);
+
+    }
+  }
 }
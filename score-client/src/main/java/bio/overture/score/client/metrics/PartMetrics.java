@@ -0,0 +1,130 @@
+/*
+ * Copyright (c) 2016 The Ontario Institute for Cancer Research. All rights reserved.                             
+ *                                                                                                               
+ * This program and the accompanying materials are made available under the terms of the GNU Public License v3.0.
+ * You should have received a copy of the GNU General Public License along with                                  
+ * this program. If not, see <http://www.gnu.org/licenses/>.                                                     
+ *                                                                                                               
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY                           
+ * EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES                          
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT                           
+ * SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,                                
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED                          
+ * TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS;                               
+ * OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER                              
+ * IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN                         
+ * ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package bio.overture.score.client.metrics;
+
+import java.net.URI;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonInclude.Include;
+
+import bio.overture.score.core.model.Part;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.val;
+
+/**
+ * Telemetry of the transfer of a single part, including all of its retries. Exported as one line of
+ * {@code --metrics-file}.
+ * <p>
+ * Times that could not be measured for a transfer path are left {@code null}.
+ */
+@Data
+@NoArgsConstructor
+@JsonInclude(Include.NON_NULL)
+public class PartMetrics {
+
+  public static final String DOWNLOAD = "download";
+  public static final String UPLOAD = "upload";
+
+  private String direction;
+  private String objectId;
+  private int partNumber;
+  private long offset;
+  private long bytes;
+
+  /**
+   * Wall clock time in epoch milliseconds.
+   */
+  private long startMillis;
+  private long endMillis;
+
+  private int retries;
+  private Integer status;
+  private String endpoint;
+
+  /**
+   * Time of the last attempt spent on hashing and on local disk / memory I/O.
+   */
+  private Long md5Nanos;
+  private Long diskNanos;
+
+  private String error;
+
+  @JsonIgnore
+  private long startNanos;
+  @JsonIgnore
+  private long endNanos;
+
+  PartMetrics(String direction, String objectId, Part part, String url) {
+    this.direction = direction;
+    this.objectId = objectId;
+    this.partNumber = part.getPartNumber();
+    this.offset = part.getOffset();
+    this.bytes = part.getPartSize();
+    this.endpoint = endpoint(url);
+    this.startMillis = System.currentTimeMillis();
+    this.startNanos = System.nanoTime();
+  }
+
+  /**
+   * Splits the time of a read through {@code network -> hashing -> hashed -> channel} into its stages.
+   */
+  public void readTimes(long totalNanos, TimedInputStream hashed, TimedInputStream network) {
+    md5Nanos = hashed.getNanos() - network.getNanos();
+    diskNanos = totalNanos - hashed.getNanos();
+  }
+
+  public void succeeded() {
+    end();
+  }
+
+  public void failed(Throwable e) {
+    error = e.getClass().getSimpleName() + ": " + e.getMessage();
+    end();
+  }
+
+  @JsonIgnore
+  public long getDurationNanos() {
+    return endNanos - startNanos;
+  }
+
+  @JsonIgnore
+  public boolean isFailed() {
+    return error != null;
+  }
+
+  private void end() {
+    endMillis = System.currentTimeMillis();
+    endNanos = System.nanoTime();
+  }
+
+  private static String endpoint(String url) {
+    if (url == null) {
+      return null;
+    }
+
+    try {
+      val uri = URI.create(url);
+      return uri.getPort() < 0 ? uri.getHost() : uri.getHost() + ":" + uri.getPort();
+    } catch (IllegalArgumentException e) {
+      return null;
+    }
+  }
+
+}
@@ -0,0 +1,281 @@
+/*
+ * Copyright (c) 2016 The Ontario Institute for Cancer Research. All rights reserved.                             
+ *                                                                                                               
+ * This program and the accompanying materials are made available under the terms of the GNU Public License v3.0.
+ * You should have received a copy of the GNU General Public License along with                                  
+ * this program. If not, see <http://www.gnu.org/licenses/>.                                                     
+ *                                                                                                               
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY                           
+ * EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES                          
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT                           
+ * SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,                                
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED                          
+ * TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS;                               
+ * OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER                              
+ * IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN                         
+ * ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package bio.overture.score.client.metrics;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+import static java.nio.file.StandardOpenOption.APPEND;
+import static java.nio.file.StandardOpenOption.CREATE;
+import static java.util.concurrent.TimeUnit.SECONDS;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+import javax.annotation.PreDestroy;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.base.Strings;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import bio.overture.score.core.model.Part;
+import lombok.Data;
+import lombok.extern.slf4j.Slf4j;
+import lombok.val;
+
+/**
+ * Machine readable telemetry of part transfers for headless runs.
+ * <p>
+ * With {@code --metrics-file} every finished part is appended to that file as one line of JSON (see
+ * {@link PartMetrics}). With {@code --openmetrics-file} the totals per direction, endpoint and HTTP status are
+ * rewritten in the OpenMetrics text format every {@code --metrics-interval} seconds and once more on exit, for a node
+ * exporter's textfile collector to pick up. Without either, parts are still measured but nothing is kept.
+ */
+@Slf4j
+@Component
+public class TransferMetrics {
+
+  /**
+   * Constants.
+   */
+  private static final String PREFIX = "score_client_part";
+
+  /**
+   * Configuration.
+   */
+  private final Path file;
+  private final Path openMetricsFile;
+
+  /**
+   * State.
+   */
+  private final ObjectMapper mapper = new ObjectMapper();
+  private final Map<Key, Totals> totals = new ConcurrentHashMap<>();
+  private final BufferedWriter writer;
+  private final ScheduledExecutorService dumper;
+
+  @Autowired
+  public TransferMetrics(
+      @Value("${client.metrics.file:}") String file,
+      @Value("${client.metrics.openMetricsFile:}") String openMetricsFile,
+      @Value("${client.metrics.interval:15}") long interval)
+      throws IOException {
+    this.file = Strings.isNullOrEmpty(file) ? null : Paths.get(file);
+    this.openMetricsFile = Strings.isNullOrEmpty(openMetricsFile) ? null : Paths.get(openMetricsFile);
+
+    this.writer = this.file == null ? null : Files.newBufferedWriter(this.file, UTF_8, CREATE, APPEND);
+    if (this.openMetricsFile != null && interval > 0) {
+      dumper = Executors.newSingleThreadScheduledExecutor(
+          new ThreadFactoryBuilder().setNameFormat("metrics-%s").setDaemon(true).build());
+      dumper.scheduleWithFixedDelay(this::dump, interval, interval, SECONDS);
+    } else {
+      dumper = null;
+    }
+  }
+
+  public static TransferMetrics disabled() {
+    try {
+      return new TransferMetrics(null, null, 0);
+    } catch (IOException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  public boolean isEnabled() {
+    return file != null || openMetricsFile != null;
+  }
+
+  /**
+   * Starts measuring the transfer of {@code part} from or to {@code url}.
+   */
+  public PartMetrics start(String direction, String objectId, Part part, String url) {
+    return new PartMetrics(direction, objectId, part, url);
+  }
+
+  /**
+   * Keeps a finished measurement. Calls after a failure of the metrics file are ignored, so telemetry never fails a
+   * transfer.
+   */
+  public void record(PartMetrics part) {
+    if (!isEnabled()) {
+      return;
+    }
+
+    val key = new Key(part.getDirection(), String.valueOf(part.getEndpoint()),
+        part.getStatus() == null ? "none" : part.getStatus().toString());
+    totals.computeIfAbsent(key, k -> new Totals()).add(part);
+
+    if (writer != null) {
+      try {
+        val line = mapper.writeValueAsString(part);
+        synchronized (writer) {
+          writer.write(line);
+          writer.newLine();
+          writer.flush();
+        }
+      } catch (IOException e) {
+        log.warn("Could not write part metrics to {}: {}", file, e.getMessage());
+      }
+    }
+  }
+
+  @PreDestroy
+  public void close() {
+    if (dumper != null) {
+      dumper.shutdownNow();
+    }
+    dump();
+
+    if (writer != null) {
+      synchronized (writer) {
+        try {
+          writer.close();
+        } catch (IOException e) {
+          log.warn("Could not close {}: {}", file, e.getMessage());
+        }
+      }
+    }
+  }
+
+  /**
+   * Replaces the OpenMetrics file, atomically so a collector never sees a partial one.
+   */
+  synchronized void dump() {
+    if (openMetricsFile == null) {
+      return;
+    }
+
+    try {
+      val temp = openMetricsFile.resolveSibling(openMetricsFile.getFileName() + ".tmp");
+      Files.write(temp, format().getBytes(UTF_8));
+      Files.move(temp, openMetricsFile, REPLACE_EXISTING, ATOMIC_MOVE);
+    } catch (IOException e) {
+      log.warn("Could not write OpenMetrics to {}: {}", openMetricsFile, e.getMessage());
+    }
+  }
+
+  String format() {
+    val sorted = new TreeMap<Key, Totals>(totals);
+    val text = new StringWriter();
+    family(text, sorted, "transfers", "counter", "Part transfers, including failed ones", totals -> totals.count);
+    family(text, sorted, "bytes", "counter", "Bytes of transferred parts", totals -> totals.bytes);
+    family(text, sorted, "retries", "counter", "Retries of part transfers", totals -> totals.retries);
+    family(text, sorted, "failures", "counter", "Part transfers that failed after all retries",
+        totals -> totals.failures);
+    seconds(text, sorted, "seconds", "Wall clock time of part transfers", totals -> totals.nanos);
+    seconds(text, sorted, "md5_seconds", "Time spent hashing part data", totals -> totals.md5Nanos);
+    seconds(text, sorted, "disk_seconds", "Time spent on local disk or memory I/O of part data",
+        totals -> totals.diskNanos);
+    text.append("# EOF\n");
+    return text.toString();
+  }
+
+  private static void family(StringWriter text, Map<Key, Totals> totals, String name, String type, String help,
+      Function<Totals, LongAdder> value) {
+    header(text, name, type, help);
+    for (val entry : totals.entrySet()) {
+      sample(text, name + "_total", entry.getKey(), Long.toString(value.apply(entry.getValue()).sum()));
+    }
+  }
+
+  private static void seconds(StringWriter text, Map<Key, Totals> totals, String name, String help,
+      Function<Totals, LongAdder> nanos) {
+    header(text, name, "counter", help);
+    for (val entry : totals.entrySet()) {
+      sample(text, name + "_total", entry.getKey(), Double.toString(nanos.apply(entry.getValue()).sum() / 1e9));
+    }
+  }
+
+  private static void header(StringWriter text, String name, String type, String help) {
+    text
+        .append("# TYPE ").append(PREFIX).append('_').append(name).append(' ').append(type).append('\n')
+        .append("# HELP ").append(PREFIX).append('_').append(name).append(' ').append(help).append('\n');
+  }
+
+  private static void sample(StringWriter text, String name, Key key, String value) {
+    text
+        .append(PREFIX).append('_').append(name)
+        .append("{direction=\"").append(key.getDirection())
+        .append("\",endpoint=\"").append(escape(key.getEndpoint()))
+        .append("\",status=\"").append(key.getStatus())
+        .append("\"} ").append(value).append('\n');
+  }
+
+  private static String escape(String label) {
+    return label.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+  }
+
+  @Data
+  private static class Key implements Comparable<Key> {
+
+    private final String direction;
+    private final String endpoint;
+    private final String status;
+
+    @Override
+    public int compareTo(Key other) {
+      return toString().compareTo(other.toString());
+    }
+
+  }
+
+  private static class Totals {
+
+    private final LongAdder count = new LongAdder();
+    private final LongAdder bytes = new LongAdder();
+    private final LongAdder retries = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+    private final LongAdder nanos = new LongAdder();
+    private final LongAdder md5Nanos = new LongAdder();
+    private final LongAdder diskNanos = new LongAdder();
+
+    private void add(PartMetrics part) {
+      count.increment();
+      retries.add(part.getRetries());
+      nanos.add(part.getDurationNanos());
+      if (part.isFailed()) {
+        failures.increment();
+      } else {
+        bytes.add(part.getBytes());
+      }
+      if (part.getMd5Nanos() != null) {
+        md5Nanos.add(part.getMd5Nanos());
+      }
+      if (part.getDiskNanos() != null) {
+        diskNanos.add(part.getDiskNanos());
+      }
+    }
+
+  }
+
+}
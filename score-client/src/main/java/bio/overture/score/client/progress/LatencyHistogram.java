@@ -0,0 +1,108 @@
+/*
+ * Copyright (c) 2016 The Ontario Institute for Cancer Research. All rights reserved.                             
+ *                                                                                                               
+ * This program and the accompanying materials are made available under the terms of the GNU Public License v3.0.
+ * You should have received a copy of the GNU General Public License along with                                  
+ * this program. If not, see <http://www.gnu.org/licenses/>.                                                     
+ *                                                                                                               
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY                           
+ * EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES                          
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT                           
+ * SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,                                
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED                          
+ * TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS;                               
+ * OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER                              
+ * IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN                         
+ * ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package bio.overture.score.client.progress;
+
+import static java.util.concurrent.TimeUnit.MICROSECONDS;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+import lombok.val;
+
+/**
+ * Lock free histogram of durations. Values are kept in microseconds, in buckets that split every power of two into
+ * {@value #SUB_BUCKETS} linear steps, so a percentile is never more than 1/{@value #SUB_BUCKETS} above the real value.
+ */
+public class LatencyHistogram {
+
+  /**
+   * Constants.
+   */
+  private static final int SUB_BUCKET_BITS = 3;
+  private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+  private static final int BUCKETS = (Long.SIZE - SUB_BUCKET_BITS) * SUB_BUCKETS;
+
+  /**
+   * State.
+   */
+  private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+  private final LongAdder count = new LongAdder();
+  private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+  public void record(long nanos) {
+    val micros = Math.max(0, NANOSECONDS.toMicros(nanos));
+    counts.incrementAndGet(index(micros));
+    count.increment();
+    max.accumulate(micros);
+  }
+
+  public long getCount() {
+    return count.sum();
+  }
+
+  public long getMaxNanos() {
+    return MICROSECONDS.toNanos(max.get());
+  }
+
+  /**
+   * @param quantile - between 0 and 1
+   * @return the upper bound of the bucket holding the {@code quantile}, in nanoseconds, or 0 if nothing was recorded
+   */
+  public long getPercentileNanos(double quantile) {
+    val total = getCount();
+    if (total == 0) {
+      return 0;
+    }
+
+    val rank = Math.max(1, (long) Math.ceil(quantile * total));
+    long seen = 0;
+    for (int i = 0; i < BUCKETS; i++) {
+      seen += counts.get(i);
+      if (seen >= rank) {
+        return MICROSECONDS.toNanos(Math.min(upperBound(i), max.get()));
+      }
+    }
+
+    return getMaxNanos();
+  }
+
+  static int index(long value) {
+    if (value < SUB_BUCKETS) {
+      return (int) value;
+    }
+
+    val exponent = Long.SIZE - 1 - Long.numberOfLeadingZeros(value);
+    val shift = exponent - SUB_BUCKET_BITS;
+    val sub = (int) (value >>> shift) & (SUB_BUCKETS - 1);
+    return (shift + 1) * SUB_BUCKETS + sub;
+  }
+
+  static long upperBound(int index) {
+    if (index < SUB_BUCKETS) {
+      return index;
+    }
+
+    val shift = index / SUB_BUCKETS - 1;
+    val sub = index % SUB_BUCKETS;
+    val lower = (long) (SUB_BUCKETS + sub) << shift;
+    return lower + (1L << shift) - 1;
+  }
+
+}
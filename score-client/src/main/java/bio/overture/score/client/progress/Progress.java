@@ -5,17 +5,22 @@ import com.google.common.base.Stopwatch;
 import lombok.extern.slf4j.Slf4j;
 import lombok.val;
 
+import java.io.IOException;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.atomic.AtomicInteger;
-import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
 
 import static bio.overture.score.client.util.Formats.*;
 import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
 import static java.util.concurrent.TimeUnit.SECONDS;
 
 /**
  * Progress bar for keeping track of the upload/download progress.
+ * <p>
+ * Byte counts are updated from every stream callback of every worker, so they are striped and only summed by the
+ * monitor thread, which also derives the current rates from them once per {@link #DISPLAY_INTERVAL}.
  */
 @Slf4j
 public class Progress {
@@ -24,12 +29,13 @@ public class Progress {
    * Constants.
    */
   private static final long DISPLAY_INTERVAL = 1L;
+  private static final long RATE_WINDOW = 5L;
 
   /**
    * Configuration.
    */
   private final boolean quiet;
-  private final int totalParts;
+  private final AtomicInteger totalParts;
   private final int totalChecksumParts;
 
   /**
@@ -41,11 +47,13 @@ public class Progress {
   private final AtomicInteger completedChecksumParts = new AtomicInteger(0);
   private volatile int checksumPartsPercent = 100;
 
-  private final AtomicLong bytesRead = new AtomicLong(0);
-  private volatile long bytesReadPerSec;
+  private final LongAdder bytesRead = new LongAdder();
+  private final TransferRate bytesReadRate = new TransferRate(RATE_WINDOW);
 
-  private final AtomicLong bytesWritten = new AtomicLong(0);
-  private volatile long bytesWrittenPerSec;
+  private final LongAdder bytesWritten = new LongAdder();
+  private final TransferRate bytesWrittenRate = new TransferRate(RATE_WINDOW);
+
+  private final LatencyHistogram partDurations = new LatencyHistogram();
 
   /**
    * State - Other.
@@ -62,7 +70,7 @@ public class Progress {
   public Progress(Terminal terminal, boolean quiet, int totalParts, int completedParts) {
     this.terminal = terminal;
     this.quiet = quiet;
-    this.totalParts = totalParts;
+    this.totalParts = new AtomicInteger(totalParts);
     this.totalChecksumParts = completedParts;
 
     incrementParts(completedParts);
@@ -111,13 +119,32 @@ public class Progress {
         .println(
             terminal.label("Total execution time") + ": " + terminal.value(String.format("%15s", stopwatch.toString())))
         .println(terminal.label("Total bytes read    ") + ": "
-            + terminal.value(String.format("%15s", formatCount(bytesRead.get()))))
+            + terminal.value(String.format("%15s", formatCount(bytesRead.sum()))))
         .println(terminal.label("Total bytes written ") + ": "
-            + terminal.value(String.format("%15s", formatCount(bytesWritten.get()))));
+            + terminal.value(String.format("%15s", formatCount(bytesWritten.sum()))));
+
+    if (partDurations.getCount() > 0) {
+      terminal.println(terminal.label("Part duration       ") + ": "
+          + terminal.value(String.format("%15s", formatPartDurations())));
+    }
+
+    log.info("Transferred {} bytes read, {} bytes written in {} ({} B/s read, {} B/s written). Part duration: {}",
+        bytesRead.sum(), bytesWritten.sum(), stopwatch, average(bytesRead.sum()), average(bytesWritten.sum()),
+        formatPartDurations());
   }
 
   public void incrementParts(int partCount) {
-    partsPercent = completedParts.addAndGet(partCount) * 100 / totalParts;
+    val completed = completedParts.addAndGet(partCount);
+    val total = totalParts.get();
+    partsPercent = total == 0 ? 0 : completed * 100 / total;
+  }
+
+  /**
+   * For transfers of several objects whose parts only become known while earlier ones are already in flight.
+   */
+  public void incrementTotalParts(int partCount) {
+    val total = totalParts.addAndGet(partCount);
+    partsPercent = total == 0 ? 0 : completedParts.get() * 100 / total;
   }
 
   public void incrementChecksumParts() {
@@ -125,14 +152,51 @@ public class Progress {
   }
 
   public void incrementBytesRead(long byteCount) {
-    bytesReadPerSec = bytesRead.addAndGet(byteCount) / duration() * 1000;
+    bytesRead.add(byteCount);
   }
 
   public void incrementBytesWritten(long byteCount) {
-    bytesWrittenPerSec = bytesWritten.addAndGet(byteCount) / duration() * 1000;
+    bytesWritten.add(byteCount);
+  }
+
+  /**
+   * A synchronous transfer of one part, or of one coalesced run of parts, including all of its retries.
+   */
+  public interface PartTransfer {
+
+    void transfer() throws IOException;
+
+  }
+
+  /**
+   * Runs {@code transfer} and records how long it took with {@link #recordPartDuration(long)}.
+   */
+  public void transferPart(PartTransfer transfer) throws IOException {
+    startTransfer();
+    val start = System.nanoTime();
+    transfer.transfer();
+    recordPartDuration(System.nanoTime() - start);
+  }
+
+  /**
+   * Records the wall time of a single successful part transfer, from the start of its first attempt to the end of its
+   * last, so retries, backoff and local disk and digest work are all included. Failed transfers are not recorded.
+   */
+  public void recordPartDuration(long nanos) {
+    partDurations.record(nanos);
   }
 
   private synchronized void display() {
+    val now = System.nanoTime();
+    bytesReadRate.update(bytesRead.sum(), now);
+    bytesWrittenRate.update(bytesWritten.sum(), now);
+    val bytesReadPerSec = bytesReadRate.getBytesPerSec();
+    val bytesWrittenPerSec = bytesWrittenRate.getBytesPerSec();
+    if (log.isDebugEnabled()) {
+      log.debug("Read/sec: {}, Write/sec: {}, Part duration: {}", bytesReadPerSec, bytesWrittenPerSec,
+          formatPartDurations());
+    }
+
     if (quiet) {
       return;
     }
@@ -159,7 +223,7 @@ public class Progress {
         .append(" ")
         .append(terminal.label("Parts"))
         .append(": ")
-        .append(terminal.value(completedParts.get() + "/" + totalParts))
+        .append(terminal.value(completedParts.get() + "/" + totalParts.get()))
         .append(", ")
         .append(terminal.label("Checksum"))
         .append(": ")
@@ -177,6 +241,14 @@ public class Progress {
         .append(formatBytesUnits(bytesReadPerSec))
         .append("/s");
 
+    if (partDurations.getCount() > 0) {
+      bar
+          .append(", ")
+          .append(terminal.label("p99 part"))
+          .append(": ")
+          .append(terminal.value(formatSeconds(partDurations.getPercentileNanos(0.99))));
+    }
+
     val padding = 4;
     for (int i = 0; i < padding; i++)
       bar.append(" ");
@@ -184,8 +256,20 @@ public class Progress {
     terminal.print(bar.toString());
   }
 
-  private long duration() {
-    return stopwatch.elapsed(MILLISECONDS) + 1;
+  private long average(long bytes) {
+    return bytes * 1000 / (stopwatch.elapsed(MILLISECONDS) + 1);
+  }
+
+  private String formatPartDurations() {
+    return String.format("p50 %s, p90 %s, p99 %s, max %s",
+        formatSeconds(partDurations.getPercentileNanos(0.50)),
+        formatSeconds(partDurations.getPercentileNanos(0.90)),
+        formatSeconds(partDurations.getPercentileNanos(0.99)),
+        formatSeconds(partDurations.getMaxNanos()));
+  }
+
+  private static String formatSeconds(long nanos) {
+    return String.format("%.1fs", nanos / (double) NANOSECONDS.convert(1, SECONDS));
   }
 
 }
@@ -0,0 +1,77 @@
+/*
+ * Copyright (c) 2016 The Ontario Institute for Cancer Research. All rights reserved.                             
+ *                                                                                                               
+ * This program and the accompanying materials are made available under the terms of the GNU Public License v3.0.
+ * You should have received a copy of the GNU General Public License along with                                  
+ * this program. If not, see <http://www.gnu.org/licenses/>.                                                     
+ *                                                                                                               
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY                           
+ * EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES                          
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT                           
+ * SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,                                
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED                          
+ * TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS;                               
+ * OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER                              
+ * IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN                         
+ * ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package bio.overture.score.client.progress;
+
+import static java.util.concurrent.TimeUnit.SECONDS;
+
+import lombok.val;
+
+/**
+ * Exponentially weighted moving average of a byte rate, fed with a running total at irregular intervals. Samples
+ * older than about {@code window} contribute little, so the rate follows stalls and bursts within a few seconds
+ * instead of averaging them away over the whole transfer.
+ * <p>
+ * Not thread safe; meant to be updated from a single monitor thread.
+ */
+public class TransferRate {
+
+  /**
+   * Configuration.
+   */
+  private final double windowNanos;
+
+  /**
+   * State.
+   */
+  private long lastTotal;
+  private long lastNanos = -1;
+  private double bytesPerSec = -1;
+
+  public TransferRate(long windowSeconds) {
+    this.windowNanos = SECONDS.toNanos(windowSeconds);
+  }
+
+  public void update(long total, long nanos) {
+    if (lastNanos < 0) {
+      lastTotal = total;
+      lastNanos = nanos;
+      return;
+    }
+
+    val elapsed = nanos - lastNanos;
+    if (elapsed <= 0) {
+      return;
+    }
+
+    val instant = (total - lastTotal) * 1e9 / elapsed;
+    if (bytesPerSec < 0) {
+      bytesPerSec = instant;
+    } else {
+      val alpha = 1 - Math.exp(-elapsed / windowNanos);
+      bytesPerSec += alpha * (instant - bytesPerSec);
+    }
+
+    lastTotal = total;
+    lastNanos = nanos;
+  }
+
+  public long getBytesPerSec() {
+    return Math.max(0, Math.round(bytesPerSec));
+  }
+
+}
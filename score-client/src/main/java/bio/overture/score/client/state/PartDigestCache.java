@@ -0,0 +1,194 @@
+/*
+ * Copyright (c) 2016 The Ontario Institute for Cancer Research. All rights reserved.                             
+ *                                                                                                               
+ * This program and the accompanying materials are made available under the terms of the GNU Public License v3.0.
+ * You should have received a copy of the GNU General Public License along with                                  
+ * this program. If not, see <http://www.gnu.org/licenses/>.                                                     
+ *                                                                                                               
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY                           
+ * EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES                          
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT                           
+ * SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,                                
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED                          
+ * TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS;                               
+ * OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER                              
+ * IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN                         
+ * ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package bio.overture.score.client.state;
+
+import bio.overture.score.core.util.MD5s;
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+import lombok.val;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+import static java.util.concurrent.TimeUnit.SECONDS;
+
+/**
+ * Remembers the MD5 of parts of a local file that were transferred or verified before, so that a resume does not have
+ * to read them again. The digests are kept in the state directory of the transfer together with a fingerprint of the
+ * file (identity, size and modification time) taken when they were saved. If the file has changed in any way since,
+ * nothing is trusted and every part is verified as before.
+ * <p>
+ * The digests are saved every 30 seconds as parts complete, when the JVM shuts down, e.g. on an
+ * interrupt, and when the transfer ends. A file that was written after the last save, like a download that crashed,
+ * no longer matches its fingerprint and is verified in full.
+ */
+@Slf4j
+public class PartDigestCache {
+
+  /**
+   * Cache that never trusts anything, for paranoid checksums and transfers without state.
+   */
+  public static final PartDigestCache NONE = new PartDigestCache(null, null, 0);
+
+  private static final String CACHE_NAME = "digests";
+  private static final String FINGERPRINT_KEY = "fingerprint";
+  private static final long SAVE_INTERVAL = SECONDS.toNanos(30);
+
+  private final File cacheFile;
+  private final File dataFile;
+  private final long saveInterval;
+  private final Map<String, String> digests = new ConcurrentHashMap<>();
+  private final Thread shutdownHook = new Thread(this::save, "part-digests");
+  private volatile long savedAt = System.nanoTime();
+
+  private PartDigestCache(File cacheFile, File dataFile, long saveInterval) {
+    this.cacheFile = cacheFile;
+    this.dataFile = dataFile;
+    this.saveInterval = saveInterval;
+  }
+
+  /**
+   * @param stateDir - state directory of the object, see {@link TransferState#getObjectStateDir(File, String)}
+   * @param dataFile - the local file the parts are read from or written to
+   */
+  public static PartDigestCache open(@NonNull File stateDir, @NonNull File dataFile) {
+    return open(stateDir, dataFile, SAVE_INTERVAL);
+  }
+
+  static PartDigestCache open(File stateDir, File dataFile, long saveInterval) {
+    val cache = new PartDigestCache(new File(stateDir, CACHE_NAME), dataFile, saveInterval);
+    cache.load();
+    Runtime.getRuntime().addShutdownHook(cache.shutdownHook);
+    return cache;
+  }
+
+  /**
+   * @return the MD5 of the region if it is known and the file has not changed since it was recorded
+   */
+  public Optional<String> get(long offset, long length) {
+    return Optional.ofNullable(digests.get(key(offset, length)));
+  }
+
+  public boolean matches(long offset, long length, String md5) {
+    val cached = get(offset, length);
+    if (!cached.isPresent() || md5 == null) {
+      return false;
+    }
+
+    try {
+      return MD5s.isEqual(cached.get(), md5);
+    } catch (IllegalArgumentException e) {
+      return false;
+    }
+  }
+
+  public void put(long offset, long length, String md5) {
+    if (cacheFile != null && md5 != null) {
+      digests.put(key(offset, length), md5);
+      if (System.nanoTime() - savedAt >= saveInterval) {
+        save();
+      }
+    }
+  }
+
+  /**
+   * Saves the digests for the last time, at the end of the transfer.
+   */
+  public void close() {
+    if (cacheFile == null) {
+      return;
+    }
+
+    try {
+      Runtime.getRuntime().removeShutdownHook(shutdownHook);
+    } catch (IllegalStateException e) {
+      // Already shutting down, the hook saves
+    }
+    save();
+  }
+
+  /**
+   * Writes the digests together with the current fingerprint of the file. Does nothing once the state directory is
+   * gone, i.e. after the transfer was finalized.
+   */
+  public synchronized void save() {
+    savedAt = System.nanoTime();
+    if (cacheFile == null || !cacheFile.getParentFile().isDirectory() || digests.isEmpty()) {
+      return;
+    }
+
+    try {
+      val lines = new ArrayList<String>();
+      lines.add(FINGERPRINT_KEY + " " + fingerprint());
+      for (val entry : digests.entrySet()) {
+        lines.add(entry.getKey() + " " + entry.getValue());
+      }
+
+      val tempFile = new File(cacheFile.getParentFile(), CACHE_NAME + ".tmp");
+      Files.write(tempFile.toPath(), lines, UTF_8);
+      Files.move(tempFile.toPath(), cacheFile.toPath(), REPLACE_EXISTING, ATOMIC_MOVE);
+      log.debug("Saved {} part digests of '{}'", digests.size(), dataFile);
+    } catch (IOException e) {
+      // Only costs a full verification on the next resume
+      log.warn("Failed to save part digests of '{}'", dataFile, e);
+    }
+  }
+
+  private void load() {
+    if (!cacheFile.exists() || !dataFile.exists()) {
+      return;
+    }
+
+    try {
+      val lines = Files.readAllLines(cacheFile.toPath(), UTF_8);
+      if (lines.isEmpty() || !lines.get(0).equals(FINGERPRINT_KEY + " " + fingerprint())) {
+        log.info("'{}' changed since its part digests were saved; all parts will be verified", dataFile);
+        return;
+      }
+
+      for (val line : lines.subList(1, lines.size())) {
+        val separator = line.lastIndexOf(' ');
+        digests.put(line.substring(0, separator), line.substring(separator + 1));
+      }
+      log.debug("Loaded {} part digests of '{}'", digests.size(), dataFile);
+    } catch (IOException | RuntimeException e) {
+      log.warn("Ignoring unreadable part digests '{}'", cacheFile, e);
+      digests.clear();
+    }
+  }
+
+  private String fingerprint() throws IOException {
+    val attributes = Files.readAttributes(dataFile.toPath(), BasicFileAttributes.class);
+    val identity = attributes.fileKey() == null ? dataFile.getCanonicalPath() : attributes.fileKey().toString();
+    return String.format("%s %s %s", identity, attributes.size(), attributes.lastModifiedTime());
+  }
+
+  private static String key(long offset, long length) {
+    return offset + ":" + length;
+  }
+
+}
@@ -1,16 +1,22 @@
 package bio.overture.score.client.storage;
 
 import bio.overture.score.client.download.DownloadStateStore;
+import bio.overture.score.client.exception.AmazonS3RetryableResponseErrorHandler;
 import bio.overture.score.client.exception.NotResumableException;
 import bio.overture.score.client.exception.NotRetryableException;
 import bio.overture.score.client.exception.RetryableException;
+import bio.overture.score.client.metrics.PartMetrics;
+import bio.overture.score.client.metrics.TimedInputStream;
+import bio.overture.score.client.metrics.TransferMetrics;
 import bio.overture.score.core.model.DataChannel;
 import bio.overture.score.core.model.Part;
 import bio.overture.score.core.util.Parts;
 import com.google.common.hash.Hashing;
 import com.google.common.hash.HashingInputStream;
+import com.google.common.io.ByteStreams;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import lombok.val;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpMethod;
 import org.springframework.retry.RetryCallback;
@@ -19,30 +25,66 @@ import org.springframework.retry.support.RetryTemplate;
 import org.springframework.web.client.RestTemplate;
 
 import java.io.File;
+import java.io.FilterInputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.List;
+import java.time.Duration;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
 
+import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkState;
+import static java.nio.charset.StandardCharsets.UTF_8;
 
 @Slf4j
 @RequiredArgsConstructor
 public abstract class AbstractStorageService implements StorageService {
 
   private static final String ICGC_TOKEN_KEY = "X-ICGC-TOKEN";
+  /**
+   * Slowest upload, in bytes per second, that is not timed out.
+   */
+  private static final long MIN_UPLOAD_RATE = 64 * 1024;
   private final DownloadStateStore downloadStateStore;
   private final RestTemplate dataTemplate;
   private final RetryTemplate retry;
+  private final HttpClient asyncDataClient;
+  private final TransferMetrics metrics;
+  private final int readTimeoutSeconds;
 
   protected abstract Optional<String> getEncryptedAccessToken();
 
   @Override public void downloadPart(DataChannel channel, Part part, String objectId, File outputDir)
       throws IOException {
+    val partMetrics = metrics.start(PartMetrics.DOWNLOAD, objectId, part, part.getUrl());
+    try {
+      doDownloadPart(channel, part, objectId, outputDir, partMetrics);
+      partMetrics.succeeded();
+    } catch (Throwable e) {
+      partMetrics.failed(e);
+      throw e;
+    } finally {
+      metrics.record(partMetrics);
+    }
+  }
+
+  private void doDownloadPart(DataChannel channel, Part part, String objectId, File outputDir,
+      PartMetrics partMetrics) throws IOException {
     retry.execute(new RetryCallback<Void, IOException>() {
 
       @Override
       public Void doWithRetry(RetryContext ctx) throws IOException {
         log.debug("Download Part URL: {}", part.getUrl());
+        partMetrics.setRetries(ctx.getRetryCount());
         try {
           // the actual GET operation
           log.debug("performing GET {}", part.getUrl());
@@ -55,8 +97,13 @@ public abstract class AbstractStorageService implements StorageService {
               },
 
               response -> {
-                try (HashingInputStream his = new HashingInputStream(Hashing.md5(), response.getBody())) {
-                  channel.readFrom(his);
+                partMetrics.setStatus(response.getRawStatusCode());
+                val network = new TimedInputStream(response.getBody());
+                val his = new HashingInputStream(Hashing.md5(), network);
+                try (val hashed = new TimedInputStream(his)) {
+                  val start = System.nanoTime();
+                  channel.readFrom(hashed);
+                  partMetrics.readTimes(System.nanoTime() - start, hashed, network);
                   return his.hash().toString();
                 }
               });
@@ -82,11 +129,225 @@ public abstract class AbstractStorageService implements StorageService {
 
   }
 
+  @Override
+  public void downloadParts(List<DataChannel> channels, List<Part> parts, String url, String objectId,
+      File outputDir) throws IOException {
+    checkArgument(channels.size() == parts.size(), "Expected one channel per part");
+
+    val partMetrics = new ArrayList<PartMetrics>();
+    for (val part : parts) {
+      partMetrics.add(metrics.start(PartMetrics.DOWNLOAD, objectId, part, url));
+    }
+
+    // Index of the first part not committed yet. A retry only requests the remaining parts.
+    val next = new AtomicInteger();
+    try {
+      doDownloadParts(channels, parts, url, objectId, outputDir, partMetrics, next);
+    } catch (Throwable e) {
+      for (int i = next.get(); i < parts.size(); i++) {
+        partMetrics.get(i).failed(e);
+      }
+      throw e;
+    } finally {
+      partMetrics.forEach(metrics::record);
+    }
+  }
+
+  private void doDownloadParts(List<DataChannel> channels, List<Part> parts, String url, String objectId,
+      File outputDir, List<PartMetrics> partMetrics, AtomicInteger next) throws IOException {
+    retry.execute(new RetryCallback<Void, IOException>() {
+
+      @Override
+      public Void doWithRetry(RetryContext ctx) throws IOException {
+        if (next.get() >= parts.size()) {
+          return null;
+        }
+
+        val first = parts.get(next.get());
+        val last = parts.get(parts.size() - 1);
+        val end = last.getOffset() + last.getPartSize();
+        val range = Parts.getHttpRangeValue(first.getOffset(), end - first.getOffset());
+        try {
+          log.debug("performing GET {} for parts# {} to {}", range, first.getPartNumber(), last.getPartNumber());
+          dataTemplate.execute(new URI(url), HttpMethod.GET,
+
+              request -> {
+                request.getHeaders().set(HttpHeaders.RANGE, range);
+                String token = getEncryptedAccessToken().orElse("");
+                request.getHeaders().set(ICGC_TOKEN_KEY, token);
+              },
+
+              response -> {
+                try (InputStream body = response.getBody()) {
+                  for (; next.get() < parts.size(); next.incrementAndGet()) {
+                    val current = partMetrics.get(next.get());
+                    current.setRetries(ctx.getRetryCount());
+                    current.setStatus(response.getRawStatusCode());
+                    receive(body, channels.get(next.get()), parts.get(next.get()), objectId, outputDir, current);
+                    current.succeeded();
+                  }
+                }
+                return null;
+              });
+        } catch (NotResumableException | NotRetryableException e) {
+          log.error("Cannot proceed. Failed to receive parts# {} to {} : {}", first.getPartNumber(),
+              last.getPartNumber(), e.getMessage());
+          throw e;
+        } catch (Throwable e) {
+          if (next.get() >= parts.size()) {
+            // Every part is committed, only closing the response failed
+            log.debug("Ignoring failure after receiving parts# {} to {}: {}", first.getPartNumber(),
+                last.getPartNumber(), e.getMessage());
+            return null;
+          }
+
+          log.warn("Failed to receive parts# {} to {}. Retrying. {}", first.getPartNumber(), last.getPartNumber(),
+              e.getMessage());
+          channels.get(next.get()).reset();
+          throw new RetryableException(e);
+        }
+        return null;
+      }
+    });
+  }
+
+  /**
+   * Reads the next part from a response body that covers several parts and commits it on its own.
+   */
+  private void receive(InputStream body, DataChannel channel, Part part, String objectId, File outputDir,
+      PartMetrics partMetrics) throws IOException {
+    // The channel closes what it reads from, which must not close the rest of the body
+    val partBody = new FilterInputStream(ByteStreams.limit(body, part.getPartSize())) {
+
+      @Override
+      public void close() {
+      }
+
+    };
+    val network = new TimedInputStream(partBody);
+    val his = new HashingInputStream(Hashing.md5(), network);
+    val hashed = new TimedInputStream(his);
+    val start = System.nanoTime();
+    channel.readFrom(hashed);
+    partMetrics.readTimes(System.nanoTime() - start, hashed, network);
+
+    part.setMd5(his.hash().toString());
+    checkState(!part.hasFailedChecksum(), "Checksum failed for Part# %s: %s", part.getPartNumber(), part.getMd5());
+
+    downloadStateStore.commit(outputDir, objectId, part);
+    log.debug("committed {} part# {} to download state store", objectId, part.getPartNumber());
+  }
+
+  @Override
+  public CompletableFuture<Void> downloadPartAsync(File file, long position, Part part, String objectId,
+      File outputDir) {
+    log.debug("performing async GET {}", part.getUrl());
+    val request = newPartRequest(part.getUrl(), 0)
+        .header(HttpHeaders.RANGE, Parts.getHttpRangeValue(part))
+        .header(ICGC_TOKEN_KEY, getEncryptedAccessToken().orElse(""))
+        .GET()
+        .build();
+
+    val partMetrics = metrics.start(PartMetrics.DOWNLOAD, objectId, part, part.getUrl());
+    val subscriber = new AtomicReference<PositionalFileSubscriber>();
+    val cancelled = new AtomicBoolean();
+    val result = asyncDataClient
+        .sendAsync(request, recordStatus(partMetrics, info -> {
+          subscriber.set(new PositionalFileSubscriber(file, position, part.getPartSize()));
+          if (cancelled.get()) {
+            subscriber.get().cancel();
+          }
+          return subscriber.get();
+        }))
+        .thenAccept(response -> {
+          part.setMd5(response.body());
+          checkState(!part.hasFailedChecksum(), "Checksum failed for Part# %s: %s", part.getPartNumber(),
+              part.getMd5());
+
+          downloadStateStore.commit(outputDir, objectId, part);
+          log.debug("committed {} part# {} to download state store", objectId, part.getPartNumber());
+        });
+
+    // Cancelling the returned future, e.g. for the slower of two hedged requests, stops the transfer as well
+    result.whenComplete((ignored, e) -> {
+      if (result.isCancelled()) {
+        cancelled.set(true);
+        if (subscriber.get() != null) {
+          subscriber.get().cancel();
+        }
+      }
+    });
+    return record(partMetrics, result);
+  }
+
+  /**
+   * Starts an async part request that fails with an {@link java.net.http.HttpTimeoutException} when no response
+   * arrives within the read timeout, which the async transports retry like any other failed attempt. The timeout runs
+   * while the request body is sent, so an upload gets extra time for its {@code bodySize} bytes.
+   */
+  protected HttpRequest.Builder newPartRequest(String url, long bodySize) {
+    val request = HttpRequest.newBuilder(URI.create(url));
+    if (readTimeoutSeconds > 0) {
+      request.timeout(Duration.ofSeconds(readTimeoutSeconds + bodySize / MIN_UPLOAD_RATE));
+    }
+
+    return request;
+  }
+
+  /**
+   * Same as {@link #checkStatus(HttpResponse.BodyHandler)}, keeping the status of the response in
+   * {@code partMetrics}.
+   */
+  protected static <T> HttpResponse.BodyHandler<T> recordStatus(PartMetrics partMetrics,
+      HttpResponse.BodyHandler<T> handler) {
+    val checked = checkStatus(handler);
+    return info -> {
+      partMetrics.setStatus(info.statusCode());
+      return checked.apply(info);
+    };
+  }
+
+  /**
+   * Records {@code partMetrics} once {@code transfer} completes. The async transports retry by calling again, so every
+   * attempt is recorded on its own.
+   */
+  protected <T> CompletableFuture<T> record(PartMetrics partMetrics, CompletableFuture<T> transfer) {
+    transfer.whenComplete((ignored, e) -> {
+      if (e == null) {
+        partMetrics.succeeded();
+      } else {
+        partMetrics.failed(e);
+      }
+      metrics.record(partMetrics);
+    });
+    return transfer;
+  }
+
+  protected TransferMetrics getMetrics() {
+    return metrics;
+  }
+
+  /**
+   * Hands successful responses to {@code handler}; any other status completes the response exceptionally, the same
+   * way the error handler of the data template would have thrown.
+   */
+  protected static <T> HttpResponse.BodyHandler<T> checkStatus(HttpResponse.BodyHandler<T> handler) {
+    return info -> {
+      if (info.statusCode() / 100 == 2) {
+        return handler.apply(info);
+      }
+
+      return HttpResponse.BodySubscribers.mapping(HttpResponse.BodySubscribers.ofString(UTF_8), body -> {
+        throw AmazonS3RetryableResponseErrorHandler.translate(info.statusCode(), body);
+      });
+    };
+  }
+
   @Override
   public void finalizeDownload(File outDir, String objectId) throws IOException {
     log.debug("finalizing download, object-id: {}", objectId);
     if (downloadStateStore.canFinalize(outDir, objectId)) {
-      DownloadStateStore.close(outDir, objectId);
+      downloadStateStore.finish(outDir, objectId);
     } else {
       throw new NotRetryableException(new IOException("Fail download finalization"));
     }
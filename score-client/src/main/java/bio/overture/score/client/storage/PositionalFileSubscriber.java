@@ -0,0 +1,148 @@
+/*
+ * Copyright (c) 2016 The Ontario Institute for Cancer Research. All rights reserved.                             
+ *                                                                                                               
+ * This program and the accompanying materials are made available under the terms of the GNU Public License v3.0.
+ * You should have received a copy of the GNU General Public License along with                                  
+ * this program. If not, see <http://www.gnu.org/licenses/>.                                                     
+ *                                                                                                               
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY                           
+ * EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES                          
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT                           
+ * SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,                                
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED                          
+ * TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS;                               
+ * OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER                              
+ * IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN                         
+ * ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package bio.overture.score.client.storage;
+
+import com.google.common.io.BaseEncoding;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import lombok.val;
+
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.security.MessageDigest;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Flow;
+
+import static java.nio.file.StandardOpenOption.WRITE;
+
+/**
+ * Writes a response body into a region of a preallocated file as it arrives and completes with the MD5 of the bytes
+ * written. Buffers are requested one batch at a time, so a slow disk pushes back on the connection instead of
+ * piling up in memory.
+ */
+@Slf4j
+@RequiredArgsConstructor
+class PositionalFileSubscriber implements HttpResponse.BodySubscriber<String> {
+
+  private final File file;
+  private final long position;
+  private final long length;
+
+  private final CompletableFuture<String> result = new CompletableFuture<>();
+  private Flow.Subscription subscription;
+  private FileChannel channel;
+  private MessageDigest md;
+  private long written;
+  private boolean cancelled;
+
+  @Override
+  public CompletionStage<String> getBody() {
+    return result;
+  }
+
+  /**
+   * Stops writing and drops the connection, e.g. when another request for the same part finished first.
+   */
+  synchronized void cancel() {
+    cancelled = true;
+    if (subscription != null) {
+      subscription.cancel();
+    }
+    close();
+    result.completeExceptionally(new CancellationException(String.format("Cancelled download into '%s'", file)));
+  }
+
+  @Override
+  public synchronized void onSubscribe(Flow.Subscription subscription) {
+    this.subscription = subscription;
+    if (cancelled) {
+      subscription.cancel();
+      return;
+    }
+    try {
+      md = MessageDigest.getInstance("MD5");
+      channel = FileChannel.open(file.toPath(), WRITE);
+    } catch (Exception e) {
+      subscription.cancel();
+      result.completeExceptionally(e);
+      return;
+    }
+    subscription.request(1);
+  }
+
+  @Override
+  public synchronized void onNext(List<ByteBuffer> buffers) {
+    if (cancelled) {
+      return;
+    }
+    try {
+      for (val buffer : buffers) {
+        if (written + buffer.remaining() > length) {
+          throw new IOException(String.format("Received more than the %s bytes requested for '%s'", length, file));
+        }
+        md.update(buffer.duplicate());
+        while (buffer.hasRemaining()) {
+          written += channel.write(buffer, position + written);
+        }
+      }
+    } catch (IOException e) {
+      subscription.cancel();
+      close();
+      result.completeExceptionally(e);
+      return;
+    }
+    subscription.request(1);
+  }
+
+  @Override
+  public synchronized void onError(Throwable throwable) {
+    close();
+    result.completeExceptionally(throwable);
+  }
+
+  @Override
+  public synchronized void onComplete() {
+    close();
+    if (written != length) {
+      result.completeExceptionally(
+          new EOFException(String.format("Received %s of %s bytes for '%s'", written, length, file)));
+    } else {
+      result.complete(BaseEncoding.base16().lowerCase().encode(md.digest()));
+    }
+  }
+
+  private void close() {
+    if (channel == null) {
+      return;
+    }
+    try {
+      channel.close();
+      channel = null;
+    } catch (IOException e) {
+      log.warn("Failed to close '{}'", file, e);
+    }
+  }
+
+}
@@ -10,6 +10,7 @@ import lombok.SneakyThrows;
 import java.io.File;
 import java.io.IOException;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 public interface StorageService {
 
@@ -21,6 +22,26 @@ public interface StorageService {
 
   void uploadPart(DataChannel channel, Part part, String objectId, String uploadId) throws IOException;
 
+  /**
+   * Downloads a run of adjacent parts with a single ranged GET against {@code url}, which must be valid for any range
+   * of the object (see {@link #getExternalDownloadSpecification}). The body is split back into {@code channels}, one
+   * per part, and every part is verified and committed on its own.
+   */
+  void downloadParts(List<DataChannel> channels, List<Part> parts, String url, String objectId, File outputDir)
+      throws IOException;
+
+  /**
+   * Non-blocking variant of {@link #downloadPart}: writes the part at {@code position} of {@code file}. A single
+   * attempt; retries are left to the caller. Cancelling the returned future abandons the transfer.
+   */
+  CompletableFuture<Void> downloadPartAsync(File file, long position, Part part, String objectId, File outputDir);
+
+  /**
+   * Non-blocking variant of {@link #uploadPart}: sends the part from its offset in {@code file}. A single attempt;
+   * retries are left to the caller.
+   */
+  CompletableFuture<Void> uploadPartAsync(File file, Part part, String objectId, String uploadId);
+
   ObjectSpecification initiateUpload(String objectId, long length, boolean overwrite, String md5)
       throws IOException;
 
@@ -49,6 +70,26 @@ public interface StorageService {
 
   String ping();
 
+  /**
+   * Called with the parts of a download that is resumed from local state, whose specification may have left the part
+   * URLs to be presigned as the parts are downloaded.
+   */
+  default void registerDownloadParts(String objectId, List<Part> parts) {
+  }
+
+  /**
+   * Called once a download registered with {@link #registerDownloadParts}, or given its specification, has finished or
+   * failed.
+   */
+  default void releaseDownloadParts(String objectId, List<Part> parts) {
+  }
+
+  /**
+   * Called once the part transfers of an upload have finished or failed.
+   */
+  default void releaseUploadParts(String uploadId) {
+  }
+
   default ObjectSpecification getDownloadSpecification(String objectId) throws IOException{
     return getDownloadSpecification(objectId, 0L, -1L);
   }
@@ -1,6 +1,8 @@
 package bio.overture.score.client.storage.kf;
 
+import bio.overture.score.client.config.ClientProperties;
 import bio.overture.score.client.download.DownloadStateStore;
+import bio.overture.score.client.metrics.TransferMetrics;
 import bio.overture.score.client.storage.AbstractStorageService;
 import bio.overture.score.client.storage.kf.KFStorageClient.PresignedUrl;
 import bio.overture.score.core.model.DataChannel;
@@ -21,9 +23,12 @@ import org.springframework.retry.support.RetryTemplate;
 import org.springframework.stereotype.Service;
 import org.springframework.web.client.RestTemplate;
 
+import java.io.File;
 import java.io.IOException;
+import java.net.http.HttpClient;
 import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
 
 import static com.google.common.base.Preconditions.checkArgument;
 import static java.lang.String.format;
@@ -47,9 +52,12 @@ public class KFStorageService extends AbstractStorageService {
       @Qualifier("pingTemplate") @NonNull RestTemplate dataTemplate,
       @NonNull RetryTemplate retry,
       SimplePartCalculator partCalculator,
-      @NonNull KFStorageClient kfStorageClient
+      @NonNull KFStorageClient kfStorageClient,
+      @Qualifier("asyncDataClient") @NonNull HttpClient asyncDataClient,
+      @NonNull TransferMetrics metrics,
+      @NonNull ClientProperties properties
   ) {
-    super(downloadStateStore, dataTemplate, retry);
+    super(downloadStateStore, dataTemplate, retry, asyncDataClient, metrics, properties.getReadTimeoutSeconds());
     this.kfStorageClient = kfStorageClient;
     this.partCalculator = partCalculator;
   }
@@ -149,6 +157,10 @@ public class KFStorageService extends AbstractStorageService {
     throw new IllegalStateException(getNonImplementedMessage());
   }
 
+  @Override public CompletableFuture<Void> uploadPartAsync(File file, Part part, String objectId, String uploadId) {
+    throw new IllegalStateException(getNonImplementedMessage());
+  }
+
   @Override public ObjectSpecification initiateUpload(String objectId, long length, boolean overwrite, String md5)
       throws IOException {
     throw new IllegalStateException(getNonImplementedMessage());
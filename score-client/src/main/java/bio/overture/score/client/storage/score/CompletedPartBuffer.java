@@ -0,0 +1,115 @@
+/*
+ * Copyright (c) 2016 The Ontario Institute for Cancer Research. All rights reserved.                             
+ *                                                                                                               
+ * This program and the accompanying materials are made available under the terms of the GNU Public License v3.0.
+ * You should have received a copy of the GNU General Public License along with                                  
+ * this program. If not, see <http://www.gnu.org/licenses/>.                                                     
+ *                                                                                                               
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY                           
+ * EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES                          
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT                           
+ * SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,                                
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED                          
+ * TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS;                               
+ * OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER                              
+ * IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN                         
+ * ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package bio.overture.score.client.storage.score;
+
+import bio.overture.score.core.model.CompletedPart;
+import lombok.RequiredArgsConstructor;
+import lombok.Value;
+import lombok.val;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Uploaded parts waiting to be finalized on the server, so that they can be sent in batches. A batch is released when
+ * it is full or when its oldest part has waited for the maximum age, so that a stalled upload still gets its parts
+ * recorded.
+ */
+@RequiredArgsConstructor
+class CompletedPartBuffer {
+
+  private final int batchSize;
+  private final long maxAgeNanos;
+  private final Map<String, Pending> uploads = new HashMap<>();
+
+  /**
+   * @return the parts of the upload to finalize now, which is none until a batch is full or due
+   */
+  synchronized List<CompletedPart> add(String objectId, String uploadId, CompletedPart part) {
+    val pending = getPending(objectId, uploadId);
+    pending.parts.add(part);
+    return pending.parts.size() < batchSize && !pending.isDue() ? Collections.emptyList() : remove(uploadId);
+  }
+
+  /**
+   * Puts back parts that could not be finalized, to go with the next batch.
+   */
+  synchronized void restore(String objectId, String uploadId, List<CompletedPart> batch) {
+    if (batch.isEmpty()) {
+      return;
+    }
+
+    getPending(objectId, uploadId).parts.addAll(batch);
+  }
+
+  /**
+   * @return all parts of the upload still to be finalized
+   */
+  synchronized List<CompletedPart> drain(String uploadId) {
+    return uploads.containsKey(uploadId) ? remove(uploadId) : Collections.emptyList();
+  }
+
+  /**
+   * @return the parts of every upload whose oldest part has waited for the maximum age
+   */
+  synchronized List<Batch> drainDue() {
+    val batches = new ArrayList<Batch>();
+    for (val uploadId : new ArrayList<>(uploads.keySet())) {
+      val pending = uploads.get(uploadId);
+      if (pending.isDue()) {
+        batches.add(new Batch(pending.objectId, uploadId, remove(uploadId)));
+      }
+    }
+
+    return batches;
+  }
+
+  private Pending getPending(String objectId, String uploadId) {
+    return uploads.computeIfAbsent(uploadId, key -> new Pending(objectId, System.nanoTime()));
+  }
+
+  private List<CompletedPart> remove(String uploadId) {
+    return uploads.remove(uploadId).parts;
+  }
+
+  @Value
+  static class Batch {
+
+    String objectId;
+    String uploadId;
+    List<CompletedPart> parts;
+
+  }
+
+  @RequiredArgsConstructor
+  private class Pending {
+
+    private final String objectId;
+    private final long since;
+    private final List<CompletedPart> parts = new ArrayList<>();
+
+    boolean isDue() {
+      return System.nanoTime() - since >= maxAgeNanos;
+    }
+
+  }
+
+}
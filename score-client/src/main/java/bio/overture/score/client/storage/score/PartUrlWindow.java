@@ -0,0 +1,99 @@
+/*
+ * Copyright (c) 2016 The Ontario Institute for Cancer Research. All rights reserved.                             
+ *                                                                                                               
+ * This program and the accompanying materials are made available under the terms of the GNU Public License v3.0.
+ * You should have received a copy of the GNU General Public License along with                                  
+ * this program. If not, see <http://www.gnu.org/licenses/>.                                                     
+ *                                                                                                               
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY                           
+ * EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES                          
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT                           
+ * SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,                                
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED                          
+ * TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS;                               
+ * OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER                              
+ * IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN                         
+ * ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package bio.overture.score.client.storage.score;
+
+import bio.overture.score.core.model.Part;
+import lombok.RequiredArgsConstructor;
+import lombok.SneakyThrows;
+import lombok.val;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.function.IntFunction;
+
+import static com.google.common.base.Preconditions.checkState;
+
+/**
+ * Part URLs of one transfer, presigned by the server a window of parts at a time instead of all of them up front. Once
+ * a part in the second half of a window is requested, the next window is fetched in the background.
+ */
+@RequiredArgsConstructor
+class PartUrlWindow {
+
+  private final int size;
+
+  /**
+   * Returns the parts of the window starting at the given part number, with their URLs.
+   */
+  private final IntFunction<List<Part>> loader;
+  private final Executor prefetcher;
+
+  private final Map<Integer, String> urls = new ConcurrentHashMap<>();
+  private final Map<Integer, CompletableFuture<Void>> windows = new ConcurrentHashMap<>();
+
+  @SneakyThrows
+  String getUrl(int partNumber) {
+    val window = Math.floorDiv(partNumber - 1, size);
+    if (partNumber - 1 - window * size >= size / 2) {
+      load(window + 1, true);
+    }
+
+    try {
+      load(window, false).join();
+    } catch (CompletionException e) {
+      throw e.getCause();
+    }
+
+    val url = urls.get(partNumber);
+    checkState(url != null, "No URL was returned for part# %s", partNumber);
+    return url;
+  }
+
+  private CompletableFuture<Void> load(int window, boolean background) {
+    val loading = new CompletableFuture<Void>();
+    val existing = windows.putIfAbsent(window, loading);
+    if (existing != null) {
+      return existing;
+    }
+
+    Runnable fetch = () -> {
+      try {
+        for (val part : loader.apply(window * size + 1)) {
+          urls.put(part.getPartNumber(), part.getUrl());
+        }
+        loading.complete(null);
+      } catch (Throwable e) {
+        // Let the next request for the window try again
+        windows.remove(window, loading);
+        loading.completeExceptionally(e);
+      }
+    };
+
+    if (background) {
+      prefetcher.execute(fetch);
+    } else {
+      fetch.run();
+    }
+    return loading;
+  }
+
+}
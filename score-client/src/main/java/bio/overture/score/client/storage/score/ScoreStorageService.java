@@ -23,7 +23,12 @@ import bio.overture.score.client.encryption.TokenEncryptionService;
 import bio.overture.score.client.exception.NotResumableException;
 import bio.overture.score.client.exception.NotRetryableException;
 import bio.overture.score.client.exception.RetryableException;
+import bio.overture.score.client.metrics.PartMetrics;
+import bio.overture.score.client.metrics.TimedInputStream;
+import bio.overture.score.client.metrics.TimedOutputStream;
+import bio.overture.score.client.metrics.TransferMetrics;
 import bio.overture.score.client.storage.AbstractStorageService;
+import bio.overture.score.core.model.CompletedPart;
 import bio.overture.score.core.model.DataChannel;
 import bio.overture.score.core.model.ObjectInfo;
 import bio.overture.score.core.model.ObjectSpecification;
@@ -31,7 +36,13 @@ import bio.overture.score.core.model.Part;
 import bio.overture.score.core.model.UploadProgress;
 import com.amazonaws.services.s3.Headers;
 import com.amazonaws.services.s3.model.SSEAlgorithm;
+import com.google.common.hash.Hashing;
+import com.google.common.hash.HashingInputStream;
+import com.google.common.io.ByteStreams;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import lombok.Getter;
 import lombok.NonNull;
+import lombok.RequiredArgsConstructor;
 import lombok.SneakyThrows;
 import lombok.extern.slf4j.Slf4j;
 import lombok.val;
@@ -52,14 +63,36 @@ import org.springframework.web.client.ResponseExtractor;
 import org.springframework.web.client.RestClientException;
 import org.springframework.web.client.RestTemplate;
 
+import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.OutputStream;
 import java.net.SocketTimeoutException;
 import java.net.URI;
 import java.net.URISyntaxException;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest.BodyPublishers;
+import java.net.http.HttpResponse.BodyHandlers;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
-
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BiFunction;
+
+import static com.google.common.base.Preconditions.checkState;
+import static java.nio.file.StandardOpenOption.READ;
+import static java.util.concurrent.TimeUnit.SECONDS;
 import static org.springframework.http.HttpMethod.DELETE;
 import static org.springframework.http.HttpMethod.GET;
 import static org.springframework.http.HttpMethod.POST;
@@ -87,6 +120,20 @@ public class ScoreStorageService extends AbstractStorageService {
   private TokenEncryptionService tokenEncryptionService;
   private RetryTemplate retry;
   private RestTemplate dataTemplate;
+  private HttpClient asyncDataClient;
+  private CompletedPartBuffer completedParts;
+  private ExecutorService partFinalizer;
+  private int urlWindow;
+  private AtomicInteger urlRequestSize;
+  private Executor urlPrefetcher;
+
+  /**
+   * Part URLs left out of upload specifications by upload id, and of download specifications by object id. Every
+   * download of an object, e.g. of another range, has a window of its own.
+   */
+  private final Map<String, PartUrlWindow> uploadUrls = new ConcurrentHashMap<>();
+  private final Map<String, List<DownloadUrls>> downloadUrls = new ConcurrentHashMap<>();
+  private final Object flushLock = new Object();
 
   @Autowired
   public ScoreStorageService(
@@ -98,8 +145,14 @@ public class ScoreStorageService extends AbstractStorageService {
       @Qualifier("pingTemplate") @NonNull RestTemplate pingTemplate,
       @Qualifier("clientVersion") @NonNull String clientVersion,
       @NonNull ClientProperties properties,
-      @NonNull TokenEncryptionService tokenEncryptionService ) {
-    super(downloadStateStore, dataTemplate, retry);
+      @NonNull TokenEncryptionService tokenEncryptionService,
+      @Qualifier("asyncDataClient") @NonNull HttpClient asyncDataClient,
+      @NonNull TransferMetrics metrics,
+      @Value("${storage.finalizeBatchSize:1}") int finalizeBatchSize,
+      @Value("${storage.finalizeInterval:10}") int finalizeIntervalSeconds,
+      @Value("${storage.urlWindow:100}") int urlWindow) {
+    super(downloadStateStore, dataTemplate, retry, asyncDataClient, metrics, properties.getReadTimeoutSeconds());
+    this.asyncDataClient = asyncDataClient;
     this.dataTemplate = dataTemplate;
     this.retry = retry;
     this.serviceTemplate = serviceTemplate;
@@ -108,6 +161,19 @@ public class ScoreStorageService extends AbstractStorageService {
     this.properties = properties;
     this.tokenEncryptionService = tokenEncryptionService;
     this.endpoint = endpoint;
+    this.completedParts = finalizeBatchSize > 1 ?
+        new CompletedPartBuffer(finalizeBatchSize, SECONDS.toNanos(finalizeIntervalSeconds)) : null;
+    this.partFinalizer = Executors.newCachedThreadPool(
+        new ThreadFactoryBuilder().setNameFormat("part-finalizer-%s").setDaemon(true).build());
+    if (completedParts != null) {
+      Executors.newSingleThreadScheduledExecutor(
+          new ThreadFactoryBuilder().setNameFormat("part-batches-%s").setDaemon(true).build())
+          .scheduleWithFixedDelay(this::flushDueParts, finalizeIntervalSeconds, finalizeIntervalSeconds, SECONDS);
+    }
+    this.urlWindow = urlWindow;
+    this.urlRequestSize = new AtomicInteger(urlWindow);
+    this.urlPrefetcher = Executors.newCachedThreadPool(
+        new ThreadFactoryBuilder().setNameFormat("part-urls-%s").setDaemon(true).build());
     log.info("**********************LOADED SCORE STORAGE SERVICE");
   }
 
@@ -132,28 +198,50 @@ public class ScoreStorageService extends AbstractStorageService {
   }
 
   @Override public void uploadPart(DataChannel channel, Part part, String objectId, String uploadId) throws IOException {
-    retry.execute(new RetryCallback<Void, IOException>() {
+    resolveUploadUrl(part, objectId, uploadId);
+    val partMetrics = getMetrics().start(PartMetrics.UPLOAD, objectId, part, part.getUrl());
+    try {
+      doUploadPart(channel, part, objectId, uploadId, partMetrics);
+      partMetrics.succeeded();
+    } catch (Throwable e) {
+      partMetrics.failed(e);
+      throw e;
+    } finally {
+      getMetrics().record(partMetrics);
+    }
+  }
+
+  private void doUploadPart(DataChannel channel, Part part, String objectId, String uploadId,
+      PartMetrics partMetrics) throws IOException {
+    val batch = retry.execute(new RetryCallback<List<CompletedPart>, IOException>() {
 
       @Override
-      public Void doWithRetry(RetryContext ctx) throws IOException {
+      public List<CompletedPart> doWithRetry(RetryContext ctx) throws IOException {
         log.debug("Upload Part URL: {}", part.getUrl());
+        partMetrics.setRetries(ctx.getRetryCount());
 
         final RequestCallback callback = request -> {
           HttpHeaders requestHeader = request.getHeaders();
           requestHeader.setContentLength(channel.getLength());
-          try (OutputStream os = request.getBody()) {
+          try (TimedOutputStream os = new TimedOutputStream(request.getBody())) {
+            // The channel hashes what it reads, so the local time of an upload includes its MD5
+            val start = System.nanoTime();
             channel.writeTo(os);
+            partMetrics.setDiskNanos(System.nanoTime() - start - os.getNanos());
           }
         };
 
-        final ResponseExtractor<HttpHeaders> headersExtractor = response -> response.getHeaders();
+        final ResponseExtractor<HttpHeaders> headersExtractor = response -> {
+          partMetrics.setStatus(response.getRawStatusCode());
+          return response.getHeaders();
+        };
 
         try {
           HttpHeaders headers =
               dataTemplate.execute(new URI(part.getUrl()), HttpMethod.PUT, callback, headersExtractor);
 
           try {
-            finalizeUploadPart(objectId, uploadId, part.getPartNumber(), channel.getMd5(),
+            return completeUploadPart(objectId, uploadId, part.getPartNumber(), channel.getMd5(),
                 cleanUpETag(headers.getETag()), disableChecksum(headers));
           } catch (NotRetryableException e) {
             log.warn("Checksum failed for part #{}, MD5={}, ETAG={} : {}", part, channel.getMd5(), headers.getETag(),
@@ -168,7 +256,6 @@ public class ScoreStorageService extends AbstractStorageService {
           channel.reset();
           throw new RetryableException(e);
         }
-        return null;
       }
 
       private boolean disableChecksum(HttpHeaders headers) {
@@ -179,19 +266,226 @@ public class ScoreStorageService extends AbstractStorageService {
         return false;
       }
     });
+
+    flushUploadParts(objectId, uploadId, batch);
+  }
+
+  @Override public CompletableFuture<Void> uploadPartAsync(File file, Part part, String objectId, String uploadId) {
+    try {
+      resolveUploadUrl(part, objectId, uploadId);
+    } catch (Throwable e) {
+      return CompletableFuture.failedFuture(e);
+    }
+
+    log.debug("Async upload Part URL: {}", part.getUrl());
+
+    // The body is read again for every attempt, so the MD5 is taken from the stream of the last one
+    val partMetrics = getMetrics().start(PartMetrics.UPLOAD, objectId, part, part.getUrl());
+    val stream = new AtomicReference<HashingInputStream>();
+    val disk = new AtomicReference<TimedInputStream>();
+    val hashed = new AtomicReference<TimedInputStream>();
+    val body = BodyPublishers.fromPublisher(BodyPublishers.ofInputStream(() -> {
+      disk.set(new TimedInputStream(openPart(file, part)));
+      stream.set(new HashingInputStream(Hashing.md5(), disk.get()));
+      hashed.set(new TimedInputStream(stream.get()));
+      return hashed.get();
+    }), part.getPartSize());
+    val request = newPartRequest(part.getUrl(), part.getPartSize()).PUT(body).build();
+
+    // Finalizing goes back to the server, so it does not hold up the threads of the HTTP client
+    return record(partMetrics, asyncDataClient
+        .sendAsync(request, recordStatus(partMetrics, BodyHandlers.discarding()))
+        .thenAcceptAsync(response -> {
+          val md5 = stream.get().hash().toString();
+          val etag = cleanUpETag(response.headers().firstValue(HttpHeaders.ETAG).orElse(""));
+          val encryption = response.headers().allValues(Headers.SERVER_SIDE_ENCRYPTION);
+          partMetrics.setDiskNanos(disk.get().getNanos());
+          partMetrics.setMd5Nanos(hashed.get().getNanos() - disk.get().getNanos());
+          List<CompletedPart> batch;
+          try {
+            batch = completeUploadPart(objectId, uploadId, part.getPartNumber(), md5, etag,
+                encryption.contains(SSEAlgorithm.KMS.getAlgorithm()));
+          } catch (NotRetryableException | IOException e) {
+            log.warn("Checksum failed for part #{}, MD5={}, ETAG={} : {}", part, md5, etag, e);
+            throw new RetryableException(e);
+          }
+          flushUploadParts(objectId, uploadId, batch);
+        }, partFinalizer));
+  }
+
+  @Override public void downloadPart(DataChannel channel, Part part, String objectId, File outputDir)
+      throws IOException {
+    resolveDownloadUrl(part, objectId);
+    super.downloadPart(channel, part, objectId, outputDir);
+  }
+
+  @Override public CompletableFuture<Void> downloadPartAsync(File file, long position, Part part, String objectId,
+      File outputDir) {
+    try {
+      resolveDownloadUrl(part, objectId);
+    } catch (Throwable e) {
+      return CompletableFuture.failedFuture(e);
+    }
+
+    return super.downloadPartAsync(file, position, part, objectId, outputDir);
+  }
+
+  /**
+   * Parts without a URL get one from a window presigned by the server, which is shared by all parts of the upload.
+   */
+  private void resolveUploadUrl(Part part, String objectId, String uploadId) {
+    if (part.getUrl() != null) {
+      return;
+    }
+
+    val window = uploadUrls.computeIfAbsent(uploadId, key -> new PartUrlWindow(urlWindow,
+        partNumber -> getUploadPartUrls(objectId, uploadId, partNumber), urlPrefetcher));
+    part.setUrl(window.getUrl(part.getPartNumber()));
+  }
+
+  private List<Part> getUploadPartUrls(String objectId, String uploadId, int partNumber) {
+    return getPartUrls(urlWindow, (from, count) -> getUploadPartUrls(objectId, uploadId, partNumber + from, count));
+  }
+
+  @SneakyThrows
+  private List<Part> getUploadPartUrls(String objectId, String uploadId, int partNumber, int count) {
+    log.debug("Getting upload URLs, object-id: {}, upload-id: {}, parts# {} to {}", objectId, uploadId, partNumber,
+        partNumber + count - 1);
+    return retry.execute(ctx -> serviceTemplate.exchange(
+        endpoint + "/upload/{object-id}/urls?uploadId={upload-id}&partNumber={partNumber}&count={count}",
+        GET,
+        defaultEntity(),
+        new ParameterizedTypeReference<List<Part>>() {}, objectId, uploadId, partNumber, count).getBody());
+  }
+
+  /**
+   * Fetches the URLs of {@code count} parts in as few requests as the server accepts. A server that presigns fewer
+   * parts at a time than this client asks for rejects the request, which is then split until it goes through; later
+   * requests are split the same way right away.
+   *
+   * @param request - fetches the URLs of {@code count} parts starting with the part at index {@code from}
+   */
+  private List<Part> getPartUrls(int count, BiFunction<Integer, Integer, List<Part>> request) {
+    val parts = new ArrayList<Part>();
+    int from = 0;
+    while (from < count) {
+      val size = Math.min(urlRequestSize.get(), count - from);
+      try {
+        parts.addAll(request.apply(from, size));
+        from += size;
+      } catch (NotRetryableException e) {
+        if (size == 1) {
+          throw e;
+        }
+
+        log.warn("Server rejected a request for {} part URLs, asking for {} at a time: {}", size, size / 2,
+            e.getMessage());
+        urlRequestSize.accumulateAndGet(size / 2, Math::min);
+      }
+    }
+
+    return parts;
+  }
+
+  private void resolveDownloadUrl(Part part, String objectId) {
+    if (part.getUrl() != null) {
+      return;
+    }
+
+    val windows = downloadUrls.getOrDefault(objectId, Collections.emptyList());
+    val window = windows.stream().filter(urls -> urls.covers(part)).reduce((older, newer) -> newer);
+    checkState(window.isPresent(), "No URL for part# %s of %s", part.getPartNumber(), objectId);
+    part.setUrl(window.get().getWindow().getUrl(part.getPartNumber()));
+  }
+
+  /**
+   * Download URLs are signed for the range of each part, so the server is sent the parts of a window to sign.
+   */
+  @Override public void registerDownloadParts(String objectId, List<Part> parts) {
+    if (parts.stream().allMatch(part -> part.getUrl() != null)) {
+      // Specification from a server that presigns every part up front
+      return;
+    }
+
+    val geometry = new TreeMap<Integer, Part>();
+    for (val part : parts) {
+      geometry.put(part.getPartNumber(), new Part(part.getPartNumber(), part.getPartSize(), part.getOffset(), null,
+          null, null));
+    }
+
+    val urls = new DownloadUrls(geometry, new PartUrlWindow(urlWindow,
+        partNumber -> getDownloadPartUrls(objectId,
+            new ArrayList<>(geometry.subMap(partNumber, partNumber + urlWindow).values())),
+        urlPrefetcher));
+
+    // A download that is registered again, e.g. on resume, replaces its previous window
+    downloadUrls.compute(objectId, (key, windows) -> {
+      val updated = new ArrayList<DownloadUrls>();
+      if (windows != null) {
+        windows.stream().filter(window -> !window.isFor(parts)).forEach(updated::add);
+      }
+      updated.add(urls);
+      return updated;
+    });
+  }
+
+  @Override public void releaseUploadParts(String uploadId) {
+    uploadUrls.remove(uploadId);
+  }
+
+  @Override public void releaseDownloadParts(String objectId, List<Part> parts) {
+    downloadUrls.computeIfPresent(objectId, (key, windows) -> {
+      val updated = new ArrayList<DownloadUrls>();
+      windows.stream().filter(window -> !window.isFor(parts)).forEach(updated::add);
+      return updated.isEmpty() ? null : updated;
+    });
+  }
+
+  private List<Part> getDownloadPartUrls(String objectId, List<Part> parts) {
+    return getPartUrls(parts.size(), (from, count) -> requestDownloadPartUrls(objectId,
+        parts.subList(from, from + count)));
+  }
+
+  @SneakyThrows
+  private List<Part> requestDownloadPartUrls(String objectId, List<Part> parts) {
+    if (parts.isEmpty()) {
+      return parts;
+    }
+
+    log.debug("Getting download URLs, object-id: {}, parts# {} to {}", objectId, parts.get(0).getPartNumber(),
+        parts.get(parts.size() - 1).getPartNumber());
+    return retry.execute(ctx -> serviceTemplate.exchange(endpoint + "/download/{object-id}/urls",
+        POST,
+        new HttpEntity<Object>(parts, defaultHeaders()),
+        new ParameterizedTypeReference<List<Part>>() {}, objectId).getBody());
+  }
+
+  @SneakyThrows
+  private static InputStream openPart(File file, Part part) {
+    val channel = FileChannel.open(file.toPath(), READ).position(part.getOffset());
+    return ByteStreams.limit(Channels.newInputStream(channel), part.getPartSize());
   }
 
   @Override public ObjectSpecification initiateUpload(String objectId, long length, boolean overwrite, String md5)
       throws IOException {
     log.debug("Initiating upload, object-id: {} overwrite: {}", objectId, overwrite);
     return retry.execute(ctx -> serviceTemplate.exchange(
-        endpoint + "/upload/{object-id}/uploads?fileSize={file-size}&overwrite={overwrite}&md5={checksum}",
+        endpoint + "/upload/{object-id}/uploads?fileSize={file-size}&overwrite={overwrite}&md5={checksum}"
+            + "&defer-urls=true",
         POST,
         defaultEntity(),
         ObjectSpecification.class, objectId, length, overwrite, md5).getBody());
   }
 
   @Override public void finalizeUpload(String objectId, String uploadId) throws IOException {
+    if (completedParts != null) {
+      // Waits for a batch of this upload that is being finalized on a timer
+      synchronized (flushLock) {
+        flushUploadParts(objectId, uploadId, completedParts.drain(uploadId));
+      }
+    }
+
+    uploadUrls.remove(uploadId);
     log.debug("finalizing upload, object-id: {}, upload-id: {}", objectId, uploadId);
     retry.execute(ctx -> {
       serviceTemplate.exchange(endpoint + "/upload/{object-id}?uploadId={upload-id}", HttpMethod.POST, defaultEntity(),
@@ -219,6 +513,62 @@ public class ScoreStorageService extends AbstractStorageService {
     });
   }
 
+  /**
+   * Finalizes the part with the server, or when parts are finalized in batches, checks it and holds on to it.
+   *
+   * @return the parts of the upload that are due to be finalized
+   */
+  private List<CompletedPart> completeUploadPart(String objectId, String uploadId, int partNumber, String md5,
+      String etag, boolean disableChecksum) throws IOException {
+    if (completedParts == null) {
+      finalizeUploadPart(objectId, uploadId, partNumber, md5, etag, disableChecksum);
+      return Collections.emptyList();
+    }
+
+    if (!disableChecksum && !md5.equals(etag)) {
+      throw new NotRetryableException();
+    }
+    return completedParts.add(objectId, uploadId, new CompletedPart(partNumber, md5, etag));
+  }
+
+  /**
+   * Finalizes the parts that have waited too long for their batch to fill up, e.g. while the upload is stalled.
+   */
+  private void flushDueParts() {
+    synchronized (flushLock) {
+      for (val batch : completedParts.drainDue()) {
+        try {
+          flushUploadParts(batch.getObjectId(), batch.getUploadId(), batch.getParts());
+        } catch (Throwable e) {
+          log.warn("Failed to finalize {} parts of upload id {}: {}", batch.getParts().size(), batch.getUploadId(),
+              e.getMessage());
+        }
+      }
+    }
+  }
+
+  @SneakyThrows
+  private void flushUploadParts(String objectId, String uploadId, List<CompletedPart> parts) {
+    if (parts.isEmpty()) {
+      return;
+    }
+
+    log.debug("Finalizing {} upload parts, object-id: {}, upload-id: {}", parts.size(), objectId, uploadId);
+    try {
+      retry.execute(ctx -> {
+        serviceTemplate.exchange(endpoint + "/upload/{object-id}/parts/batch?uploadId={upload-id}", POST,
+            new HttpEntity<Object>(parts, defaultHeaders()), Void.class, objectId, uploadId);
+        return null;
+      });
+    } catch (NotRetryableException e) {
+      // The server has recorded the parts it could verify
+      throw e;
+    } catch (Throwable e) {
+      completedParts.restore(objectId, uploadId, parts);
+      throw e;
+    }
+  }
+
   @Override public boolean isObjectExist(String objectId) throws IOException {
     log.debug("Checking existence on Storage server for object-id: {}", objectId);
     return retry.execute(ctx -> {
@@ -232,12 +582,15 @@ public class ScoreStorageService extends AbstractStorageService {
 
   @Override public ObjectSpecification getDownloadSpecification(String objectId, long offset, long length) throws IOException {
     log.debug("Endpoint: {}", endpoint);
-    return retry.execute(ctx -> {
-      return serviceTemplate.exchange(endpoint + "/download/{object-id}?offset={offset}&length={length}",
+    val spec = retry.execute(ctx -> {
+      return serviceTemplate.exchange(
+          endpoint + "/download/{object-id}?offset={offset}&length={length}&defer-urls=true",
           GET,
           defaultEntity(),
           ObjectSpecification.class, objectId, offset, length).getBody();
     });
+    registerDownloadParts(objectId, spec.getParts());
+    return spec;
   }
 
   /**
@@ -336,4 +689,26 @@ public class ScoreStorageService extends AbstractStorageService {
     return encryptedToken;
   }
 
+  /**
+   * The URL window of one download, with the geometry of the parts it was registered for.
+   */
+  @RequiredArgsConstructor
+  private static class DownloadUrls {
+
+    private final Map<Integer, Part> geometry;
+    @Getter
+    private final PartUrlWindow window;
+
+    boolean covers(Part part) {
+      val registered = geometry.get(part.getPartNumber());
+      return registered != null && registered.getOffset() == part.getOffset()
+          && registered.getPartSize() == part.getPartSize();
+    }
+
+    boolean isFor(List<Part> parts) {
+      return geometry.size() == parts.size() && parts.stream().allMatch(this::covers);
+    }
+
+  }
+
 }
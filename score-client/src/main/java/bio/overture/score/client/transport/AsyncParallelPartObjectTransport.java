@@ -0,0 +1,357 @@
+/*
+ * Copyright (c) 2016 The Ontario Institute for Cancer Research. All rights reserved.                             
+ *                                                                                                               
+ * This program and the accompanying materials are made available under the terms of the GNU Public License v3.0.
+ * You should have received a copy of the GNU General Public License along with                                  
+ * this program. If not, see <http://www.gnu.org/licenses/>.                                                     
+ *                                                                                                               
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY                           
+ * EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES                          
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT                           
+ * SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,                                
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED                          
+ * TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS;                               
+ * OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER                              
+ * IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN                         
+ * ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package bio.overture.score.client.transport;
+
+import bio.overture.score.client.download.Downloads;
+import bio.overture.score.client.exception.NotResumableException;
+import bio.overture.score.client.exception.NotRetryableException;
+import bio.overture.score.client.storage.StorageService;
+import bio.overture.score.core.model.DataChannel;
+import bio.overture.score.core.model.Part;
+import com.google.common.collect.Ordering;
+import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.SneakyThrows;
+import lombok.extern.slf4j.Slf4j;
+import lombok.val;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.function.Supplier;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+
+/**
+ * A parallel transport built on the non-blocking part methods of the {@link StorageService}. Parts are started from
+ * the calling thread and finished in {@link CompletableFuture} callbacks, so the number of parts in flight is bounded
+ * only by the concurrency limit and not by a number of threads. Downloads are written in place like
+ * {@link DirectParallelPartObjectTransport}. Failed attempts are retried with an exponential back-off that does not
+ * hold a thread while waiting.
+ * <p>
+ * With hedging enabled, a part download that runs much longer than the others gets a second request for the same
+ * range; whichever finishes first is kept and the other is cancelled. See {@link HedgePolicy}.
+ */
+@Slf4j
+public class AsyncParallelPartObjectTransport extends ParallelPartObjectTransport {
+
+  /**
+   * Constants.
+   */
+  private static final long INITIAL_BACKOFF = 100;
+  private static final long MAX_BACKOFF = 30000;
+
+  private final int retryNumber;
+  private final HedgePolicy hedging;
+
+  private AsyncParallelPartObjectTransport(AsyncParallelBuilder builder) {
+    super(builder);
+    this.retryNumber = builder.getRetryNumber();
+    this.hedging = builder.isHedging() ? new HedgePolicy(concurrency.getMaxLimit() / 4) : null;
+    log.debug("Transport Settings: {}", builder.toString());
+  }
+
+  @Override
+  @SneakyThrows
+  public void send(File file) {
+    val results = new ArrayList<Future<Part>>();
+
+    progress.start();
+    verifyCompletedParts(file, file, false);
+    for (final Part part : parts) {
+      val channel = new FileDataChannel(file, part.getOffset(), part.getPartSize(), null);
+      results.add(start(part, part.getOffset(), true, channel, file,
+          () -> proxy.uploadPartAsync(file, part, objectId, uploadId))
+          .thenApply(sent -> {
+            progress.incrementBytesWritten(part.getPartSize());
+            return sent;
+          }));
+    }
+
+    awaitAll(results);
+    progress.stop();
+    try {
+      takeCareOfException(results);
+      proxy.finalizeUpload(objectId, uploadId);
+    } catch (Throwable e) {
+      progress.end(true);
+      throw e;
+    }
+    progress.end(false);
+  }
+
+  @Override
+  @SneakyThrows
+  public void receive(File outputDir) {
+    val objectFile = Downloads.getDownloadFile(outputDir, objectId);
+    long fileSize = Downloads.calculateTotalSize(parts);
+    log.debug("downloading object id: {} asynchronously to file: {}, size:{}", objectId, objectFile.getPath(),
+        fileSize);
+
+    // Positions in the local file are relative to the first part, which matters for ranged downloads
+    if (!Ordering.natural().isOrdered(parts)) {
+      Collections.sort(parts);
+    }
+
+    allocate(objectFile, fileSize);
+
+    val results = new ArrayList<Future<Part>>();
+    progress.start();
+    if (checksum) {
+      verifyCompletedParts(objectFile, outputDir, true);
+    }
+    long position = 0;
+    for (final Part part : parts) {
+      final long partPosition = position;
+      position += part.getPartSize();
+
+      val channel = new PositionalFileDataChannel(objectFile, partPosition, part.getPartSize(), null);
+      results.add(start(part, partPosition, checksum, channel, outputDir,
+          () -> hedged(part, () -> proxy.downloadPartAsync(objectFile, partPosition, part, objectId, outputDir)))
+          .thenApply(received -> {
+            recordDigest(partPosition, received, received.getMd5());
+            progress.incrementBytesRead(part.getPartSize());
+            partListener.partCompleted(received);
+            return received;
+          }));
+    }
+
+    awaitAll(results);
+    progress.stop();
+    try {
+      takeCareOfException(results);
+      proxy.finalizeDownload(outputDir, objectId);
+    } catch (Throwable e) {
+      progress.end(true);
+      throw e;
+    }
+    progress.end(false);
+  }
+
+  /**
+   * Waits for a free slot and starts the transfer of {@code part} unless it was completed before and, when
+   * {@code verify} is set, its local data still matches.
+   */
+  private CompletableFuture<Part> start(Part part, long position, boolean verify, DataChannel channel, File file,
+      Supplier<CompletableFuture<Void>> transfer) throws InterruptedException {
+    val slot = concurrency.acquire();
+    val resent = part.isCompleted();
+    try {
+      if (resent && !(verify && isCorrupted(channel, part, file, position))) {
+        checksumCompleted(part);
+        slot.completed();
+        return CompletableFuture.completedFuture(part);
+      }
+
+      slot.count(part.getPartSize());
+      progress.startTransfer();
+    } catch (Throwable e) {
+      slot.failed();
+      return CompletableFuture.failedFuture(e);
+    }
+
+    val start = System.nanoTime();
+    return withRetries(transfer, slot, 1).handle((ignored, e) -> {
+      if (e != null) {
+        slot.failed();
+        throw new CompletionException(unwrap(e));
+      }
+
+      slot.completed();
+      progress.recordPartDuration(System.nanoTime() - start);
+      if (resent) {
+        checksumCompleted(part);
+      } else {
+        progress.incrementParts(1);
+      }
+      return part;
+    });
+  }
+
+  private CompletableFuture<Void> withRetries(Supplier<CompletableFuture<Void>> transfer,
+      ConcurrencyController.Slot slot, int attempt) {
+    CompletableFuture<Void> result;
+    try {
+      result = transfer.get();
+    } catch (Throwable e) {
+      result = CompletableFuture.failedFuture(e);
+    }
+
+    return result
+        .handle((ignored, e) -> e == null ? null : unwrap(e))
+        .thenCompose(e -> {
+          if (e == null) {
+            return CompletableFuture.completedFuture(null);
+          }
+          if (e instanceof NotRetryableException || e instanceof NotResumableException || attempt >= retryNumber) {
+            return CompletableFuture.failedFuture(e);
+          }
+
+          val backoff = Math.min(MAX_BACKOFF, INITIAL_BACKOFF << Math.min(attempt - 1, 16));
+          log.warn("Attempt {} failed. Retrying in {} ms: {}", attempt, backoff, e.getMessage());
+          slot.retried();
+          return CompletableFuture
+              .runAsync(() -> {}, CompletableFuture.delayedExecutor(backoff, MILLISECONDS))
+              .thenCompose(delayed -> withRetries(transfer, slot, attempt + 1));
+        });
+  }
+
+  /**
+   * Runs one attempt of a part download, sending a second request if the first one turns out to be a straggler.
+   */
+  private CompletableFuture<Void> hedged(Part part, Supplier<CompletableFuture<Void>> transfer) {
+    if (hedging == null) {
+      return transfer.get();
+    }
+
+    val started = System.nanoTime();
+    val race = new Race();
+    race.add(transfer.get());
+
+    val delay = hedging.getDelay(part.getPartSize());
+    if (delay.isPresent()) {
+      CompletableFuture.delayedExecutor(delay.getAsLong(), MILLISECONDS).execute(() -> {
+        if (race.isSettled() || !hedging.tryStart()) {
+          return;
+        }
+
+        log.info("Part# {} is taking longer than {} ms; sending a hedged request", part.getPartNumber(),
+            delay.getAsLong());
+        try {
+          val hedge = transfer.get();
+          hedge.whenComplete((ignored, e) -> hedging.finished());
+          race.add(hedge);
+        } catch (Throwable e) {
+          hedging.finished();
+          log.warn("Failed to send hedged request for part# {}", part.getPartNumber(), e);
+        }
+      });
+    }
+
+    return race.getResult().whenComplete((ignored, e) -> {
+      if (e == null) {
+        hedging.completed(part.getPartSize(), System.nanoTime() - started);
+      }
+    });
+  }
+
+  /**
+   * Requests for the same part. The first one to succeed completes the part and cancels the others; the part only
+   * fails once all of them have failed.
+   */
+  private static class Race {
+
+    @Getter
+    private final CompletableFuture<Void> result = new CompletableFuture<>();
+    private final List<CompletableFuture<Void>> attempts = new ArrayList<>();
+    private int running;
+    private boolean settled;
+
+    private synchronized boolean isSettled() {
+      return settled;
+    }
+
+    private void add(CompletableFuture<Void> attempt) {
+      synchronized (this) {
+        if (settled) {
+          attempt.cancel(true);
+          return;
+        }
+        attempts.add(attempt);
+        running++;
+      }
+      attempt.whenComplete((ignored, e) -> settle(attempt, e));
+    }
+
+    private void settle(CompletableFuture<Void> attempt, Throwable e) {
+      List<CompletableFuture<Void>> losers;
+      synchronized (this) {
+        running--;
+        if (settled || (e != null && running > 0)) {
+          return;
+        }
+        settled = true;
+        losers = new ArrayList<>(attempts);
+        losers.remove(attempt);
+      }
+
+      if (e == null) {
+        result.complete(null);
+        losers.forEach(loser -> loser.cancel(true));
+      } else {
+        result.completeExceptionally(e);
+      }
+    }
+
+  }
+
+  private static void awaitAll(List<Future<Part>> results) {
+    for (val result : results) {
+      try {
+        result.get();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        return;
+      } catch (ExecutionException e) {
+        // Reported by takeCareOfException once every part has finished
+      }
+    }
+  }
+
+  private static Throwable unwrap(Throwable e) {
+    while ((e instanceof CompletionException || e instanceof ExecutionException) && e.getCause() != null) {
+      e = e.getCause();
+    }
+    return e;
+  }
+
+  public static AsyncParallelBuilder builder() {
+    return new AsyncParallelBuilder();
+  }
+
+  @Data
+  @EqualsAndHashCode(callSuper = true)
+  public static class AsyncParallelBuilder extends RemoteParallelBuilder {
+
+    private int retryNumber = 10;
+    private boolean hedging;
+
+    public AsyncParallelBuilder withRetryNumber(int retryNumber) {
+      this.retryNumber = retryNumber < 0 ? Integer.MAX_VALUE : retryNumber;
+      return this;
+    }
+
+    public AsyncParallelBuilder withHedging(boolean hedging) {
+      this.hedging = hedging;
+      return this;
+    }
+
+    @Override
+    public Transport build() {
+      checkArgumentsNotNull();
+      return new AsyncParallelPartObjectTransport(this);
+    }
+  }
+
+}
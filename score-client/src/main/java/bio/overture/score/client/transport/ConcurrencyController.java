@@ -0,0 +1,220 @@
+/*
+ * Copyright (c) 2016 The Ontario Institute for Cancer Research. All rights reserved.                             
+ *                                                                                                               
+ * This program and the accompanying materials are made available under the terms of the GNU Public License v3.0.
+ * You should have received a copy of the GNU General Public License along with                                  
+ * this program. If not, see <http://www.gnu.org/licenses/>.                                                     
+ *                                                                                                               
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY                           
+ * EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES                          
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT                           
+ * SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,                                
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED                          
+ * TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS;                               
+ * OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER                              
+ * IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN                         
+ * ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package bio.overture.score.client.transport;
+
+import bio.overture.score.client.metrics.TimedInputStream;
+import bio.overture.score.client.metrics.TimedOutputStream;
+import bio.overture.score.core.model.DataChannel;
+import bio.overture.score.core.util.ForwardingDataChannel;
+import lombok.Getter;
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+import lombok.val;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+
+/**
+ * Limits the number of parts in flight. A fixed controller simply caps concurrency at the configured number of
+ * workers. An adaptive controller adjusts the cap with an AIMD rule: after each round of {@code limit} parts it adds
+ * one slot, unless the round saw retried requests or its time per byte rose well above the best round so far, in
+ * which case it halves the cap.
+ */
+@Slf4j
+public class ConcurrencyController {
+
+  /**
+   * A round whose time per byte exceeds the best one by this factor is treated as congestion.
+   */
+  private static final double LATENCY_TOLERANCE = 2.0;
+
+  @Getter
+  private final int minLimit;
+  @Getter
+  private final int maxLimit;
+
+  /**
+   * State - guarded by {@code this}.
+   */
+  private int limit;
+  private int inFlight;
+  private int roundParts;
+  private int roundErrors;
+  private long roundBytes;
+  private long roundNanos;
+  private long roundStart = System.nanoTime();
+  private double bestNanosPerByte = Double.MAX_VALUE;
+
+  private ConcurrencyController(int minLimit, int initialLimit, int maxLimit) {
+    checkArgument(0 < minLimit && minLimit <= initialLimit && initialLimit <= maxLimit,
+        "Invalid limits: min %s, initial %s, max %s", minLimit, initialLimit, maxLimit);
+    this.minLimit = minLimit;
+    this.limit = initialLimit;
+    this.maxLimit = maxLimit;
+  }
+
+  public static ConcurrencyController fixed(int limit) {
+    return new ConcurrencyController(limit, limit, limit);
+  }
+
+  public static ConcurrencyController adaptive(int initialLimit, int maxLimit) {
+    return new ConcurrencyController(1, Math.min(initialLimit, maxLimit), maxLimit);
+  }
+
+  public synchronized int getLimit() {
+    return limit;
+  }
+
+  /**
+   * Blocks until a slot is free under the current limit.
+   */
+  public synchronized Slot acquire() throws InterruptedException {
+    while (inFlight >= limit) {
+      wait();
+    }
+    inFlight++;
+    return new Slot();
+  }
+
+  private synchronized void release(long bytes, long nanos, int errors) {
+    inFlight--;
+    if (minLimit == maxLimit || (bytes == 0 && errors == 0)) {
+      // Nothing to adapt, or nothing went over the network
+      notifyAll();
+      return;
+    }
+
+    roundParts++;
+    roundErrors += errors;
+    roundBytes += bytes;
+    roundNanos += nanos;
+    if (roundParts >= limit) {
+      adjust();
+    }
+    notifyAll();
+  }
+
+  private void adjust() {
+    double nanosPerByte = roundBytes > 0 ? (double) roundNanos / roundBytes : Double.MAX_VALUE;
+    long elapsed = Math.max(1, System.nanoTime() - roundStart);
+    long bytesPerSec = (long) (roundBytes * 1e9 / elapsed);
+
+    int previous = limit;
+    if (roundErrors > 0 || nanosPerByte > LATENCY_TOLERANCE * bestNanosPerByte) {
+      limit = Math.max(minLimit, limit / 2);
+    } else {
+      limit = Math.min(maxLimit, limit + 1);
+    }
+    bestNanosPerByte = Math.min(bestNanosPerByte, nanosPerByte);
+
+    log.debug("Concurrency {} -> {}: {} parts, {} retries, {} bytes/s, {} ms/part", previous, limit, roundParts,
+        roundErrors, bytesPerSec, NANOSECONDS.toMillis(roundNanos / roundParts));
+
+    roundParts = 0;
+    roundErrors = 0;
+    roundBytes = 0;
+    roundNanos = 0;
+    roundStart = System.nanoTime();
+  }
+
+  /**
+   * One part in flight. Must be released exactly once, through {@link #completed()} or {@link #failed()}.
+   */
+  public class Slot {
+
+    private final long start = System.nanoTime();
+    private final AtomicInteger errors = new AtomicInteger();
+    private final AtomicLong bytes = new AtomicLong();
+    private final AtomicLong networkNanos = new AtomicLong(-1);
+
+    /**
+     * Wraps {@code channel} right before it goes over the network. The channel length counts towards the sample for
+     * this slot, and every reset, which the storage service performs before a retry, counts as a congestion signal.
+     * The sample only takes the time spent on the network stream, so reading, writing and hashing the part locally do
+     * not look like congestion.
+     */
+    public DataChannel monitor(@NonNull DataChannel channel) {
+      bytes.addAndGet(channel.getLength());
+      networkNanos.compareAndSet(-1, 0);
+      return new ForwardingDataChannel(channel) {
+
+        @Override
+        public void readFrom(InputStream inputStream) throws IOException {
+          val network = new TimedInputStream(inputStream);
+          try {
+            super.readFrom(network);
+          } finally {
+            networkNanos.addAndGet(network.getNanos());
+          }
+        }
+
+        @Override
+        public void writeTo(OutputStream outputStream) throws IOException {
+          val network = new TimedOutputStream(outputStream);
+          try {
+            super.writeTo(network);
+          } finally {
+            networkNanos.addAndGet(network.getNanos());
+          }
+        }
+
+        @Override
+        public void reset() throws IOException {
+          errors.incrementAndGet();
+          super.reset();
+        }
+
+      };
+    }
+
+    /**
+     * Counterparts of {@link #monitor(DataChannel)} for transports that do not send parts through a channel.
+     */
+    public void count(long length) {
+      bytes.addAndGet(length);
+    }
+
+    public void retried() {
+      errors.incrementAndGet();
+    }
+
+    /**
+     * Parts that were only checked locally are not sampled.
+     */
+    public void completed() {
+      release(bytes.get(), getNanos(), errors.get());
+    }
+
+    public void failed() {
+      release(bytes.get(), getNanos(), errors.get() + 1);
+    }
+
+    private long getNanos() {
+      val nanos = networkNanos.get();
+      return nanos < 0 ? System.nanoTime() - start : nanos;
+    }
+
+  }
+
+}
@@ -0,0 +1,89 @@
+/*
+ * Copyright (c) 2016 The Ontario Institute for Cancer Research. All rights reserved.                             
+ *                                                                                                               
+ * This program and the accompanying materials are made available under the terms of the GNU Public License v3.0.
+ * You should have received a copy of the GNU General Public License along with                                  
+ * this program. If not, see <http://www.gnu.org/licenses/>.                                                     
+ *                                                                                                               
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY                           
+ * EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES                          
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT                           
+ * SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,                                
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED                          
+ * TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS;                               
+ * OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER                              
+ * IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN                         
+ * ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package bio.overture.score.client.transport;
+
+import lombok.Getter;
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+import lombok.val;
+
+import java.nio.ByteBuffer;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Semaphore;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * A bounded pool of reusable direct buffers. At most {@code capacity} buffers are handed out at any time and callers
+ * block in {@link #acquire()} until one is returned, so the memory held by a transfer never exceeds
+ * {@code capacity * bufferSize}. Buffers are recycled rather than freed, so nothing ever has to be unmapped.
+ */
+@Slf4j
+public class DirectBufferPool {
+
+  @Getter
+  private final int bufferSize;
+  @Getter
+  private final int capacity;
+
+  private final Semaphore permits;
+  private final Queue<ByteBuffer> buffers = new ConcurrentLinkedQueue<>();
+
+  public DirectBufferPool(int bufferSize, int capacity) {
+    checkArgument(bufferSize >= 0, "Buffer size must not be negative: %s", bufferSize);
+    checkArgument(capacity > 0, "Capacity must be positive: %s", capacity);
+    this.bufferSize = bufferSize;
+    this.capacity = capacity;
+    this.permits = new Semaphore(capacity, true);
+  }
+
+  /**
+   * Takes a cleared buffer from the pool, allocating it on first use. Blocks while all buffers are in use.
+   */
+  public ByteBuffer acquire() throws InterruptedException {
+    permits.acquire();
+    val buffer = buffers.poll();
+    if (buffer != null) {
+      buffer.clear();
+      return buffer;
+    }
+
+    try {
+      log.debug("Allocating direct buffer of {} bytes", bufferSize);
+      return ByteBuffer.allocateDirect(bufferSize);
+    } catch (Throwable e) {
+      permits.release();
+      throw e;
+    }
+  }
+
+  /**
+   * Returns a buffer obtained from {@link #acquire()} and wakes up one waiting caller.
+   */
+  public void release(@NonNull ByteBuffer buffer) {
+    buffer.clear();
+    buffers.offer(buffer);
+    permits.release();
+  }
+
+  public int available() {
+    return permits.availablePermits();
+  }
+
+}
@@ -0,0 +1,240 @@
+/*
+ * Copyright (c) 2016 The Ontario Institute for Cancer Research. All rights reserved.                             
+ *                                                                                                               
+ * This program and the accompanying materials are made available under the terms of the GNU Public License v3.0.
+ * You should have received a copy of the GNU General Public License along with                                  
+ * this program. If not, see <http://www.gnu.org/licenses/>.                                                     
+ *                                                                                                               
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY                           
+ * EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES                          
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT                           
+ * SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,                                
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED                          
+ * TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS;                               
+ * OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER                              
+ * IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN                         
+ * ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package bio.overture.score.client.transport;
+
+import bio.overture.score.client.download.Downloads;
+import bio.overture.score.client.progress.ProgressDataChannel;
+import bio.overture.score.core.model.DataChannel;
+import bio.overture.score.core.model.Part;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Ordering;
+import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.SneakyThrows;
+import lombok.extern.slf4j.Slf4j;
+import lombok.val;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A parallel transport that downloads every part straight into its position in the preallocated object file. There
+ * are no intermediate part files and no merge pass, so each byte is written to disk exactly once. Uploads behave the
+ * same as {@link ParallelPartObjectTransport}.
+ */
+@Slf4j
+public class DirectParallelPartObjectTransport extends ParallelPartObjectTransport {
+
+  private final long maxRequestSize;
+
+  private DirectParallelPartObjectTransport(DirectParallelBuilder builder) {
+    super(builder);
+    this.maxRequestSize = builder.getMaxRequestSize();
+    log.debug("Transport Settings: {}", builder.toString());
+  }
+
+  @Override
+  @SneakyThrows
+  public void receive(File outputDir) {
+    val objectFile = Downloads.getDownloadFile(outputDir, objectId);
+    long fileSize = Downloads.calculateTotalSize(parts);
+    log.debug("downloading object id: {} directly to file: {}, size:{}", objectId, objectFile.getPath(), fileSize);
+
+    // Positions in the local file are relative to the first part, which matters for ranged downloads
+    if (!Ordering.natural().isOrdered(parts)) {
+      Collections.sort(parts);
+    }
+
+    allocate(objectFile, fileSize);
+
+    ExecutorService executor = Executors.newFixedThreadPool(concurrency.getMaxLimit());
+    ImmutableList.Builder<Future<Part>> results = ImmutableList.builder();
+
+    val runs = coalesce(parts, maxRequestSize);
+    val url = runs.size() < parts.size() ? getRangeUrl() : Optional.<String> empty();
+
+    progress.start();
+    if (checksum) {
+      verifyCompletedParts(objectFile, outputDir, true);
+    }
+    long position = 0;
+    for (val run : runs) {
+      if (run.size() > 1 && url.isPresent()) {
+        final long runPosition = position;
+        position += Downloads.calculateTotalSize(run);
+        results.add(executor.submit(() -> receiveRun(run, runPosition, url.get(), objectFile, outputDir)));
+        continue;
+      }
+
+      for (final Part part : run) {
+        final long partPosition = position;
+        position += part.getPartSize();
+
+        results.add(executor.submit(new Callable<Part>() {
+
+          @Override
+          public Part call() throws Exception {
+            val slot = concurrency.acquire();
+            try {
+              DataChannel channel =
+                  new ProgressDataChannel(
+                      new PositionalFileDataChannel(objectFile, partPosition, part.getPartSize(), null),
+                      progress);
+
+              if (part.isCompleted()) {
+                if (checksum && isCorrupted(channel, part, outputDir, partPosition)) {
+                  progress.transferPart(() -> proxy.downloadPart(slot.monitor(channel), part, objectId, outputDir));
+                  recordDigest(partPosition, part, part.getMd5());
+                }
+                checksumCompleted(part);
+              } else {
+                progress.transferPart(() -> proxy.downloadPart(slot.monitor(channel), part, objectId, outputDir));
+                recordDigest(partPosition, part, part.getMd5());
+                progress.incrementParts(1);
+              }
+            } catch (Throwable e) {
+              slot.failed();
+              throw e;
+            }
+            slot.completed();
+            partListener.partCompleted(part);
+            return part;
+          }
+        }));
+      }
+    }
+
+    executor.shutdown();
+    executor.awaitTermination(maxUploadDuration, TimeUnit.DAYS);
+
+    progress.stop();
+    try {
+      takeCareOfException(results.build());
+      proxy.finalizeDownload(outputDir, objectId);
+    } catch (Throwable e) {
+      progress.end(true);
+      throw e;
+    }
+    progress.end(false);
+  }
+
+  /**
+   * Downloads a run of adjacent parts with one request and reports each part as if it had been downloaded alone.
+   */
+  private Part receiveRun(List<Part> run, long position, String url, File objectFile, File outputDir)
+      throws Exception {
+    val slot = concurrency.acquire();
+    try {
+      val channels = new ArrayList<DataChannel>();
+      long partPosition = position;
+      for (val part : run) {
+        channels.add(slot.monitor(new ProgressDataChannel(
+            new PositionalFileDataChannel(objectFile, partPosition, part.getPartSize(), null), progress)));
+        partPosition += part.getPartSize();
+      }
+
+      progress.transferPart(() -> proxy.downloadParts(channels, run, url, objectId, outputDir));
+      progress.incrementParts(run.size());
+    } catch (Throwable e) {
+      slot.failed();
+      throw e;
+    }
+    slot.completed();
+
+    long partPosition = position;
+    for (val part : run) {
+      recordDigest(partPosition, part, part.getMd5());
+      partListener.partCompleted(part);
+      partPosition += part.getPartSize();
+    }
+    return run.get(run.size() - 1);
+  }
+
+  /**
+   * The URL of a part is only valid for the range of that part, so merged requests go to the URL for external use,
+   * which is valid for any range of the object.
+   */
+  private Optional<String> getRangeUrl() {
+    try {
+      val spec = proxy.getExternalDownloadSpecification(objectId, 0, -1);
+      return Optional.of(spec.getParts().get(0).getUrl());
+    } catch (Exception e) {
+      log.warn("Failed to get an object URL for {}; parts will be requested one by one", objectId, e);
+      return Optional.empty();
+    }
+  }
+
+  /**
+   * Groups adjacent incomplete parts into runs of at most {@code maxBytes}. Completed parts, which are at most
+   * verified locally, are always on their own.
+   */
+  static List<List<Part>> coalesce(List<Part> parts, long maxBytes) {
+    val runs = new ArrayList<List<Part>>();
+    List<Part> run = new ArrayList<>();
+    long runBytes = 0;
+    for (val part : parts) {
+      val fits = !part.isCompleted() && runBytes + part.getPartSize() <= maxBytes;
+      if (!run.isEmpty() && (!fits || run.get(0).isCompleted())) {
+        runs.add(run);
+        run = new ArrayList<>();
+        runBytes = 0;
+      }
+      run.add(part);
+      runBytes += part.getPartSize();
+    }
+    if (!run.isEmpty()) {
+      runs.add(run);
+    }
+    return runs;
+  }
+
+  public static DirectParallelBuilder builder() {
+    return new DirectParallelBuilder();
+  }
+
+  @Data
+  @EqualsAndHashCode(callSuper = true)
+  public static class DirectParallelBuilder extends RemoteParallelBuilder {
+
+    private long maxRequestSize;
+
+    /**
+     * @param maxRequestSize - merge adjacent parts into requests of up to this many bytes; 0 to request every part
+     * on its own
+     */
+    public DirectParallelBuilder withCoalescing(long maxRequestSize) {
+      this.maxRequestSize = maxRequestSize;
+      return this;
+    }
+
+    @Override
+    public Transport build() {
+      checkArgumentsNotNull();
+      return new DirectParallelPartObjectTransport(this);
+    }
+  }
+
+}
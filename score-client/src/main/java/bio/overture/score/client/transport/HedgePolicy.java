@@ -0,0 +1,84 @@
+/*
+ * Copyright (c) 2016 The Ontario Institute for Cancer Research. All rights reserved.                             
+ *                                                                                                               
+ * This program and the accompanying materials are made available under the terms of the GNU Public License v3.0.
+ * You should have received a copy of the GNU General Public License along with                                  
+ * this program. If not, see <http://www.gnu.org/licenses/>.                                                     
+ *                                                                                                               
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY                           
+ * EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES                          
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT                           
+ * SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,                                
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED                          
+ * TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS;                               
+ * OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER                              
+ * IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN                         
+ * ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package bio.overture.score.client.transport;
+
+import lombok.val;
+
+import java.util.Arrays;
+import java.util.OptionalLong;
+import java.util.concurrent.Semaphore;
+
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+
+/**
+ * Decides when a part download is a straggler that deserves a second, hedged request. The time per byte of recently
+ * completed parts is kept, and a part that runs {@link #MULTIPLIER} times longer than the 90th percentile of those is
+ * hedged. Nothing is hedged before enough parts have completed to tell what is normal, and only a few hedges may be in
+ * flight at once, so a link that is slow for every part is not loaded with duplicates.
+ */
+class HedgePolicy {
+
+  /**
+   * Constants.
+   */
+  private static final int MIN_SAMPLES = 5;
+  private static final int MAX_SAMPLES = 256;
+  private static final double PERCENTILE = 0.9;
+  private static final double MULTIPLIER = 3.0;
+  private static final long MIN_DELAY = 1000;
+
+  /**
+   * Nanoseconds per byte of the last {@link #MAX_SAMPLES} completed parts.
+   */
+  private final double[] samples = new double[MAX_SAMPLES];
+  private int count;
+  private final Semaphore hedges;
+
+  HedgePolicy(int maxHedges) {
+    this.hedges = new Semaphore(Math.max(1, maxHedges));
+  }
+
+  synchronized void completed(long bytes, long nanos) {
+    if (bytes > 0) {
+      samples[count++ % MAX_SAMPLES] = (double) nanos / bytes;
+    }
+  }
+
+  /**
+   * @return milliseconds after which a download of {@code bytes} should be hedged, if that can be told yet
+   */
+  synchronized OptionalLong getDelay(long bytes) {
+    if (count < MIN_SAMPLES) {
+      return OptionalLong.empty();
+    }
+
+    val sorted = Arrays.copyOf(samples, Math.min(count, MAX_SAMPLES));
+    Arrays.sort(sorted);
+    val p90 = sorted[(int) Math.ceil(PERCENTILE * sorted.length) - 1];
+    return OptionalLong.of(Math.max(MIN_DELAY, NANOSECONDS.toMillis((long) (MULTIPLIER * p90 * bytes))));
+  }
+
+  boolean tryStart() {
+    return hedges.tryAcquire();
+  }
+
+  void finished() {
+    hedges.release();
+  }
+
+}
@@ -86,6 +86,7 @@ public class MemoryMappedParallelPartObjectTransport extends ParallelPartObjectT
 
     ImmutableList.Builder<Future<Part>> results = ImmutableList.builder();
     progress.start();
+    verifyCompletedParts(file, file, false);
     for (final Part part : parts) {
       tasksSubmitted.incrementAndGet();
       try (FileInputStream fis = new FileInputStream(file)) {
@@ -105,16 +106,14 @@ public class MemoryMappedParallelPartObjectTransport extends ParallelPartObjectT
                   new ProgressDataChannel(new MemoryMappedDataChannel(buffer, 0, part.getPartSize(), null), progress);
               if (part.isCompleted()) {
                 log.info("Checksumming part: {}", part);
-                if (checksum && isCorrupted(channel, part, file)) {
+                if (isCorrupted(channel, part, file)) {
                   log.info("Checksum failed; Reuploading part: {}", part);
-                  progress.startTransfer();
-                  proxy.uploadPart(channel, part, objectId, uploadId);
+                  progress.transferPart(() -> proxy.uploadPart(channel, part, objectId, uploadId));
                 }
-                progress.incrementChecksumParts();
+                checksumCompleted(part);
               } else {
                 log.info("Sending remaining part {}", part);
-                progress.startTransfer();
-                proxy.uploadPart(channel, part, objectId, uploadId);
+                progress.transferPart(() -> proxy.uploadPart(channel, part, objectId, uploadId));
                 progress.incrementParts(1);
               }
             } finally {
@@ -181,6 +180,10 @@ public class MemoryMappedParallelPartObjectTransport extends ParallelPartObjectT
       Collections.sort(parts);
     }
 
+    if (checksum) {
+      verifyCompletedParts(filename, outputDir, true);
+    }
+
     boolean hasError = false;
     long prevLength = 0;
     long offset = 0;
@@ -211,18 +214,17 @@ public class MemoryMappedParallelPartObjectTransport extends ParallelPartObjectT
                   log.debug("Checking if part #{} is corrupted", part.getPartNumber());
                   if (checksum && isCorrupted(progressChannel, part, outputDir)) {
                     log.debug("Part #{} is corrupted. Re-downloading...", part.getPartNumber());
-                    progress.startTransfer();
-                    proxy.downloadPart(progressChannel, part, objectId, outputDir);
+                    progress.transferPart(() -> proxy.downloadPart(progressChannel, part, objectId, outputDir));
                     // progress.incrementBytesWritten(part.getPartSize());
                   }
-                  progress.incrementChecksumParts();
+                  checksumCompleted(part);
                 } else {
                   log.debug("Part #{} is not downloaded. Downloading...", part.getPartNumber());
-                  progress.startTransfer();
-                  proxy.downloadPart(progressChannel, part, objectId, outputDir);
+                  progress.transferPart(() -> proxy.downloadPart(progressChannel, part, objectId, outputDir));
                   // progress.incrementBytesWritten(part.getPartSize());
                   progress.incrementParts(1);
                 }
+                partListener.partCompleted(part);
                 return memoryChannel;
               } catch (RetryableException | NotResumableException | NotRetryableException e) {
                 log.error("Failed to receive part: {}", part, e);
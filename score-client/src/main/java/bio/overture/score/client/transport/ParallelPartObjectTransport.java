@@ -20,6 +20,7 @@ package bio.overture.score.client.transport;
 import bio.overture.score.client.download.Downloads;
 import bio.overture.score.client.progress.Progress;
 import bio.overture.score.client.progress.ProgressDataChannel;
+import bio.overture.score.client.state.PartDigestCache;
 import bio.overture.score.client.storage.StorageService;
 import bio.overture.score.core.model.DataChannel;
 import bio.overture.score.core.model.Part;
@@ -34,9 +35,12 @@ import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.RandomAccessFile;
 import java.nio.channels.FileChannel;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.*;
 import java.util.concurrent.atomic.AtomicLong;
 
@@ -51,6 +55,7 @@ public class ParallelPartObjectTransport implements Transport {
 
   private static final int MIN_WORKER = 1;
   private static final long MIN_MEMORY = 1024L * 1024L;
+  private static final int MAX_ADAPTIVE_WORKER = 128;
 
   final protected StorageService proxy;
   final protected int nThreads;
@@ -63,6 +68,15 @@ public class ParallelPartObjectTransport implements Transport {
   final protected AtomicLong memory;
   final protected int maxUploadDuration;
   final protected boolean checksum;
+  final protected PartListener partListener;
+  final protected ConcurrencyController concurrency;
+  final protected PartDigestCache digestCache;
+
+  /**
+   * State - Verification. Part number to whether the completed part was found corrupted by
+   * {@link #verifyCompletedParts(File, File, boolean)}.
+   */
+  private final Map<Integer, Boolean> verified = new ConcurrentHashMap<>();
 
   protected ParallelPartObjectTransport(RemoteParallelBuilder builder) {
 
@@ -77,33 +91,63 @@ public class ParallelPartObjectTransport implements Transport {
     this.maxUploadDuration = builder.maxUploadDuration;
     this.mode = builder.mode;
     this.checksum = builder.checksum;
+    this.partListener = builder.partListener;
+    this.digestCache = builder.digestCache;
+    this.concurrency = createConcurrencyController(builder);
+  }
+
+  /**
+   * With adaptive concurrency, the number of workers starts at the configured value and may grow as far as the memory
+   * budget allows for parts of this size.
+   */
+  private static ConcurrencyController createConcurrencyController(RemoteParallelBuilder builder) {
+    if (!builder.adaptive) {
+      return ConcurrencyController.fixed(builder.nThreads);
+    }
+
+    long partSize = 1;
+    for (val part : builder.parts) {
+      partSize = Math.max(partSize, part.getPartSize());
+    }
+    val maxLimit = (int) Math.max(builder.nThreads, Math.min(MAX_ADAPTIVE_WORKER, builder.memory / partSize));
+    log.debug("Adaptive concurrency: {} to {} workers", builder.nThreads, maxLimit);
+    return ConcurrencyController.adaptive(builder.nThreads, maxLimit);
   }
 
   @Override
   @SneakyThrows
   public void send(File file) {
-    ExecutorService executor = Executors.newFixedThreadPool(nThreads);
+    ExecutorService executor = Executors.newFixedThreadPool(concurrency.getMaxLimit());
 
     ImmutableList.Builder<Future<Part>> results = ImmutableList.builder();
     progress.start();
+    verifyCompletedParts(file, file, false);
     for (final Part part : parts) {
       results.add(executor.submit(new Callable<Part>() {
 
         @Override
         public Part call() throws Exception {
-          DataChannel channel =
-              new ProgressDataChannel(new FileDataChannel(file, part.getOffset(), part.getPartSize(), null), progress);
-          if (part.isCompleted()) {
-            if (isCorrupted(channel, part, file)) {
-              progress.startTransfer();
-              proxy.uploadPart(channel, part, objectId, uploadId);
+          val slot = concurrency.acquire();
+          try {
+            DataChannel channel =
+                new ProgressDataChannel(new FileDataChannel(file, part.getOffset(), part.getPartSize(), null),
+                    progress);
+            if (part.isCompleted()) {
+              if (isCorrupted(channel, part, file, part.getOffset())) {
+                progress.transferPart(() -> proxy.uploadPart(slot.monitor(channel), part, objectId, uploadId));
+                recordDigest(part.getOffset(), part, channel.getMd5());
+              }
+              checksumCompleted(part);
+            } else {
+              progress.transferPart(() -> proxy.uploadPart(slot.monitor(channel), part, objectId, uploadId));
+              recordDigest(part.getOffset(), part, channel.getMd5());
+              progress.incrementParts(1);
             }
-            progress.incrementChecksumParts();
-          } else {
-            progress.startTransfer();
-            proxy.uploadPart(channel, part, objectId, uploadId);
-            progress.incrementParts(1);
+          } catch (Throwable e) {
+            slot.failed();
+            throw e;
           }
+          slot.completed();
           // progress.incrementByteWritten(part.getPartSize());
           // progress.incrementByteRead(part.getPartSize());
           return part;
@@ -129,7 +173,7 @@ public class ParallelPartObjectTransport implements Transport {
   public void receive(File outputDir) {
     long fileSize = Downloads.calculateTotalSize(parts);
     log.debug("downloading object id: {}, size:{}", objectId, fileSize);
-    ExecutorService executor = Executors.newFixedThreadPool(nThreads);
+    ExecutorService executor = Executors.newFixedThreadPool(concurrency.getMaxLimit());
     ImmutableList.Builder<Future<Part>> results = ImmutableList.builder();
 
     // This is used to calculate
@@ -138,27 +182,35 @@ public class ParallelPartObjectTransport implements Transport {
     }
 
     progress.start();
+    if (checksum) {
+      verifyCompletedPartFiles(outputDir);
+    }
     for (final Part part : parts) {
       results.add(executor.submit(new Callable<Part>() {
 
         @Override
         public Part call() throws Exception {
-          DataChannel channel =
-              new ProgressDataChannel(
-                  new FileDataChannel(getPartFile(outputDir, part), part.getOffset(), part.getPartSize(), null),
-                  progress);
-
-          if (part.isCompleted()) {
-            if (checksum && isCorrupted(channel, part, outputDir)) {
-              progress.startTransfer();
-              proxy.downloadPart(channel, part, objectId, outputDir);
+          val slot = concurrency.acquire();
+          try {
+            // Each part file holds just its part
+            DataChannel channel =
+                new ProgressDataChannel(
+                    new FileDataChannel(getPartFile(outputDir, part), 0, part.getPartSize(), null), progress);
+
+            if (part.isCompleted()) {
+              if (checksum && isCorrupted(channel, part, outputDir)) {
+                progress.transferPart(() -> proxy.downloadPart(slot.monitor(channel), part, objectId, outputDir));
+              }
+              checksumCompleted(part);
+            } else {
+              progress.transferPart(() -> proxy.downloadPart(slot.monitor(channel), part, objectId, outputDir));
+              progress.incrementParts(1);
             }
-            progress.incrementChecksumParts();
-          } else {
-            progress.startTransfer();
-            proxy.downloadPart(channel, part, objectId, outputDir);
-            progress.incrementParts(1);
+          } catch (Throwable e) {
+            slot.failed();
+            throw e;
           }
+          slot.completed();
           // progress.incrementByteRead(part.getPartSize());
           // progress.incrementByteWritten(part.getPartSize());
           return part;
@@ -201,8 +253,101 @@ public class ParallelPartObjectTransport implements Transport {
     }
   }
 
+  /**
+   * Checks all completed parts of {@code file} up front, on as many threads as there are cores, before any part goes
+   * over the network. Parts are handed to the threads in file order so that the disk is still read front to back.
+   * Corrupted parts have their state deleted as in {@link #isCorrupted(DataChannel, Part, File)}; the transfer that
+   * follows only picks up the result, so it does no local I/O for intact parts.
+   *
+   * @param packed - whether parts are laid out back to back from the start of {@code file} in part order, as in the
+   * object file of a download, rather than at their offsets
+   */
+  protected void verifyCompletedParts(File file, File outputDir, boolean packed) throws Throwable {
+    verifyCompletedParts(packed, (part, position) -> {
+      val channel = new ProgressDataChannel(new FileDataChannel(file, position, part.getPartSize(), null), progress);
+      return isCorrupted(channel, part, outputDir, position);
+    });
+  }
+
+  /**
+   * Like {@link #verifyCompletedParts(File, File, boolean)} for a download that keeps every part in its own part file
+   * until all of them are merged.
+   */
+  protected void verifyCompletedPartFiles(File outputDir) throws Throwable {
+    verifyCompletedParts(true, (part, position) -> {
+      val channel = new ProgressDataChannel(
+          new FileDataChannel(getPartFile(outputDir, part), 0, part.getPartSize(), null), progress);
+      return isCorrupted(channel, part, outputDir);
+    });
+  }
+
+  private void verifyCompletedParts(boolean packed, PartCheck check) throws Throwable {
+    val positions = new ArrayList<Long>();
+    val completed = new ArrayList<Part>();
+    long position = 0;
+    for (val part : Ordering.natural().sortedCopy(parts)) {
+      if (part.isCompleted()) {
+        positions.add(packed ? position : part.getOffset());
+        completed.add(part);
+      }
+      position += part.getPartSize();
+    }
+    if (completed.isEmpty()) {
+      return;
+    }
+
+    val nThreads = Math.min(Runtime.getRuntime().availableProcessors(), completed.size());
+    log.info("Verifying {} completed parts of object {} on {} threads", completed.size(), objectId, nThreads);
+    val start = System.currentTimeMillis();
+    val executor = Executors.newFixedThreadPool(nThreads);
+    val results = new ArrayList<Future<Boolean>>();
+    for (int i = 0; i < completed.size(); i++) {
+      val part = completed.get(i);
+      val partPosition = positions.get(i);
+      results.add(executor.submit(() -> {
+        val corrupted = check.isCorrupted(part, partPosition);
+        verified.put(part.getPartNumber(), corrupted);
+        progress.incrementChecksumParts();
+        return corrupted;
+      }));
+    }
+
+    executor.shutdown();
+    takeCareOfException(results);
+
+    int corrupted = 0;
+    for (val result : results) {
+      corrupted += result.get() ? 1 : 0;
+    }
+    log.info("Verified {} completed parts of object {} in {} ms; {} to be transferred again", completed.size(),
+        objectId, System.currentTimeMillis() - start, corrupted);
+  }
+
+  /**
+   * Checks a single completed part at {@code position} of the local file.
+   */
+  private interface PartCheck {
+
+    boolean isCorrupted(Part part, long position) throws IOException;
+
+  }
+
+  /**
+   * Counts a completed part towards the checksum progress unless {@link #verifyCompletedParts(File, File, boolean)}
+   * already has.
+   */
+  protected void checksumCompleted(Part part) {
+    if (!verified.containsKey(part.getPartNumber())) {
+      progress.incrementChecksumParts();
+    }
+  }
+
   // TODO: need unit test confirming case where source MD5 is null
   protected boolean isCorrupted(DataChannel channel, Part part, File outputDir) throws IOException {
+    val result = verified.get(part.getPartNumber());
+    if (result != null) {
+      return result;
+    }
     if ((part.getSourceMd5() != null) && channel.verifyMd5(part.getSourceMd5())) {
       return false;
     }
@@ -220,6 +365,49 @@ public class ParallelPartObjectTransport implements Transport {
     return true;
   }
 
+  /**
+   * Like {@link #isCorrupted(DataChannel, Part, File)}, but trusts the digest cache for the part at {@code position} of
+   * the local file if the file has not changed since the part was last transferred or verified.
+   */
+  protected boolean isCorrupted(DataChannel channel, Part part, File outputDir, long position) throws IOException {
+    val result = verified.get(part.getPartNumber());
+    if (result != null) {
+      return result;
+    }
+    if (digestCache.matches(position, part.getPartSize(), part.getSourceMd5())) {
+      log.debug("Part {} matches its cached digest", part.getPartNumber());
+      return false;
+    }
+    if (isCorrupted(channel, part, outputDir)) {
+      return true;
+    }
+
+    digestCache.put(position, part.getPartSize(), part.getSourceMd5());
+    return false;
+  }
+
+  /**
+   * Remembers the MD5 of the part just transferred at {@code position} of the local file.
+   */
+  protected void recordDigest(long position, Part part, String md5) {
+    if (md5 != null) {
+      digestCache.put(position, part.getPartSize(), md5);
+    }
+  }
+
+  /**
+   * Sizes the object file up front so that every part can be written at its own position. An existing file of the
+   * right size is left untouched so that the parts recorded in the download state survive a resume.
+   */
+  public static void allocate(File objectFile, long fileSize) throws IOException {
+    try (RandomAccessFile raf = new RandomAccessFile(objectFile, "rw")) {
+      if (raf.length() != fileSize) {
+        log.debug("Allocating {} bytes for file '{}'", fileSize, objectFile);
+        raf.setLength(fileSize);
+      }
+    }
+  }
+
   protected <T> void takeCareOfException(Collection<Future<T>> results) throws Throwable {
     for (Future<T> result : results) {
       try {
@@ -246,6 +434,7 @@ public class ParallelPartObjectTransport implements Transport {
     private int nThreads;
     private long memory;
     private int maxUploadDuration;
+    private boolean adaptive;
 
     public RemoteParallelBuilder withNumberOfWorkerThreads(int threads) {
       this.nThreads = threads;
@@ -262,6 +451,11 @@ public class ParallelPartObjectTransport implements Transport {
       return this;
     }
 
+    public RemoteParallelBuilder withAdaptiveConcurrency(boolean adaptive) {
+      this.adaptive = adaptive;
+      return this;
+    }
+
     @Override
     public Transport build() {
       checkArgumentsNotNull();
@@ -275,6 +469,8 @@ public class ParallelPartObjectTransport implements Transport {
       Preconditions.checkNotNull(uploadId);
       Preconditions.checkNotNull(progressBar);
       Preconditions.checkNotNull(mode);
+      Preconditions.checkNotNull(partListener);
+      Preconditions.checkNotNull(digestCache);
 
       nThreads = nThreads < MIN_WORKER ? MIN_WORKER : nThreads;
       memory = memory < MIN_MEMORY ? MIN_MEMORY : memory;
@@ -284,12 +480,19 @@ public class ParallelPartObjectTransport implements Transport {
   }
 
   private void mergeToFile(List<Part> parts, File outputDir) throws IOException {
+    val partFiles = new ArrayList<File>();
+    for (Part part : parts) {
+      partFiles.add(getPartFile(outputDir, part));
+    }
+    mergeToFile(partFiles, Downloads.getDownloadFile(outputDir, objectId), Downloads.calculateTotalSize(parts));
+  }
+
+  static void mergeToFile(List<File> partFiles, File objectFile, long fileSize) throws IOException {
     // appending parts to objectFile
-    try (RandomAccessFile fos = new RandomAccessFile(Downloads.getDownloadFile(outputDir, objectId), "rw")) {
-      fos.setLength(Downloads.calculateTotalSize(parts));
+    try (RandomAccessFile fos = new RandomAccessFile(objectFile, "rw")) {
+      fos.setLength(fileSize);
       FileChannel target = fos.getChannel();
-      for (Part part : parts) {
-        File partFile = getPartFile(outputDir, part);
+      for (File partFile : partFiles) {
         try (FileInputStream fis = new FileInputStream(partFile)) {
           fis.getChannel().transferTo(0, partFile.length(), target);
         }
@@ -20,49 +20,105 @@ package bio.overture.score.client.transport;
 import bio.overture.score.client.exception.NotRetryableException;
 import com.google.common.hash.Hashing;
 import com.google.common.hash.HashingOutputStream;
-import lombok.AllArgsConstructor;
 import lombok.Getter;
+import lombok.NonNull;
+import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.apache.commons.compress.utils.IOUtils;
+import lombok.val;
 
 import java.io.IOException;
+import java.io.InterruptedIOException;
 import java.io.OutputStream;
-import java.io.PipedInputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
 
 /**
- * Channels that use pipe
+ * A one-shot channel fed with chunks of a part by a producer thread through {@link #put(ByteBuffer)}. Chunks come
+ * from a shared {@link DirectBufferPool} and are returned to it as soon as they have been written out, so the pool
+ * capacity is a hard limit on the data in flight for the whole transfer.
  */
 @Slf4j
-@AllArgsConstructor
+@RequiredArgsConstructor
 public class PipedDataChannel extends AbstractDataChannel {
 
-  private final PipedInputStream is;
-  @Getter
-  private final long offset;
+  @NonNull
+  private final DirectBufferPool pool;
   @Getter
   private final long length;
+
+  private final BlockingQueue<ByteBuffer> chunks = new LinkedBlockingQueue<>();
+  private volatile boolean closed;
+
   @Getter
   private String md5 = null;
 
+  /**
+   * Hands over the next chunk of the part. Chunks for a channel that has already been closed are recycled right away.
+   */
+  public void put(@NonNull ByteBuffer chunk) {
+    if (closed) {
+      pool.release(chunk);
+      return;
+    }
+
+    chunks.add(chunk);
+    if (closed) {
+      // Lost the race with close(), which may have drained the queue already
+      drain();
+    }
+  }
+
   @Override
   public void reset() throws IOException {
     log.warn("cannot be reset");
+    commitToDisk();
     throw new NotRetryableException();
   }
 
   @Override
   public void writeTo(OutputStream os) throws IOException {
     HashingOutputStream hos = new HashingOutputStream(Hashing.md5(), os);
-    IOUtils.copy(is, hos);
+    val toChannel = Channels.newChannel(hos);
+
+    long remaining = length;
+    while (remaining > 0) {
+      val chunk = take();
+      try {
+        remaining -= chunk.remaining();
+        while (chunk.hasRemaining()) {
+          toChannel.write(chunk);
+        }
+      } finally {
+        pool.release(chunk);
+      }
+    }
     md5 = hos.hash().toString();
   }
 
+  /**
+   * Closes the consuming end of the pipe and recycles any chunk that is still queued
+   */
   @Override
   public void commitToDisk() {
+    closed = true;
+    drain();
+  }
+
+  private ByteBuffer take() throws IOException {
     try {
-      is.close();
-    } catch (IOException e) {
-      log.warn("fail to close the input pipe", e);
+      return chunks.take();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("Interrupted while waiting for data");
+    }
+  }
+
+  private void drain() {
+    ByteBuffer chunk;
+    while ((chunk = chunks.poll()) != null) {
+      pool.release(chunk);
     }
   }
 
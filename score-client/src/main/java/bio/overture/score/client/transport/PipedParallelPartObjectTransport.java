@@ -18,25 +18,30 @@
 package bio.overture.score.client.transport;
 
 import bio.overture.score.client.progress.ProgressDataChannel;
-import bio.overture.score.core.model.DataChannel;
 import bio.overture.score.core.model.Part;
 import com.google.common.collect.ImmutableList;
-import com.google.common.io.ByteSource;
-import com.google.common.io.Files;
 import lombok.SneakyThrows;
 import lombok.extern.slf4j.Slf4j;
+import lombok.val;
 
+import java.io.EOFException;
 import java.io.File;
-import java.io.PipedInputStream;
-import java.io.PipedOutputStream;
+import java.nio.channels.FileChannel;
 import java.util.concurrent.*;
 
+import static java.nio.file.StandardOpenOption.READ;
+
 /**
- * A data transport using piped input channels for parallel upload
+ * A parallel transport where a single thread reads the file sequentially into fixed-size chunks and the upload
+ * workers stream those chunks straight into the request bodies. The reader blocks as soon as {@code transport.memory}
+ * worth of chunks is in flight and resumes the moment a worker hands one back, so disk reads and network sends overlap
+ * without polling.
  */
 @Slf4j
 public class PipedParallelPartObjectTransport extends ParallelPartObjectTransport {
 
+  private static final int CHUNK_SIZE = 1024 * 1024;
+
   private PipedParallelPartObjectTransport(RemoteParallelBuilder builder) {
     super(builder);
   }
@@ -46,39 +51,56 @@ public class PipedParallelPartObjectTransport extends ParallelPartObjectTranspor
   public void send(File file) {
 
     log.debug("Number of Concurrency: {}", nThreads);
+    val chunks = Math.max(1, Math.min(Integer.MAX_VALUE, memory.get() / CHUNK_SIZE));
+    val pool = new DirectBufferPool(CHUNK_SIZE, (int) chunks);
+    log.debug("Chunks in flight: {} of {} bytes", pool.getCapacity(), CHUNK_SIZE);
+
     ExecutorService executor = Executors.newFixedThreadPool(nThreads);
     ImmutableList.Builder<Future<Part>> results = ImmutableList.builder();
     progress.start();
-    for (final Part part : parts) {
-      final PipedOutputStream pos = new PipedOutputStream();
-      final PipedInputStream pis = new PipedInputStream(pos, (int) part.getPartSize());
-
-      results.add(executor.submit(new Callable<Part>() {
-
-        @Override
-        public Part call() throws Exception {
-          DataChannel dataChannel =
-              new ProgressDataChannel(new PipedDataChannel(pis, 0, part.getPartSize(), null), progress);
-          progress.startTransfer();
-          proxy.uploadPart(dataChannel, part, objectId, uploadId);
-          // progress.incrementByteWritten(part.getPartSize());
-          progress.incrementParts(1);
-          memory.addAndGet(part.getPartSize());
-          return part;
+    try (FileChannel fileChannel = FileChannel.open(file.toPath(), READ)) {
+      for (final Part part : parts) {
+        final PipedDataChannel pipe = new PipedDataChannel(pool, part.getPartSize());
+
+        results.add(executor.submit(new Callable<Part>() {
+
+          @Override
+          public Part call() throws Exception {
+            try {
+              progress.transferPart(
+                  () -> proxy.uploadPart(new ProgressDataChannel(pipe, progress), part, objectId, uploadId));
+              progress.incrementParts(1);
+            } finally {
+              pipe.commitToDisk();
+            }
+            return part;
+          }
+        }));
+
+        long position = part.getOffset();
+        long end = part.getOffset() + part.getPartSize();
+        while (position < end) {
+          val chunk = pool.acquire();
+          chunk.limit((int) Math.min(chunk.capacity(), end - position));
+          while (chunk.hasRemaining()) {
+            int count = fileChannel.read(chunk, position);
+            if (count < 0) {
+              pool.release(chunk);
+              throw new EOFException(String.format("Reached end of file %s at position %d", file, position));
+            }
+            position += count;
+          }
+          chunk.flip();
+          pipe.put(chunk);
         }
-      }));
-
-      ByteSource source = Files.asByteSource(file);
-      source.slice(part.getOffset(), part.getPartSize()).copyTo(pos);
-      pos.close();
-      // progress.incrementByteRead(part.getPartSize());
-      progress.incrementParts(0);
-      long remaining = memory.addAndGet(-part.getPartSize());
-      log.debug("Remaining Memory : {}", remaining);
-      while (memory.get() < 0) {
-        TimeUnit.SECONDS.sleep(1);
       }
+    } catch (Throwable e) {
+      // Workers may be waiting on chunks that will never come
+      executor.shutdownNow();
+      progress.end(true);
+      throw e;
     }
+
     executor.shutdown();
     executor.awaitTermination(super.maxUploadDuration, TimeUnit.DAYS);
     try {
@@ -0,0 +1,142 @@
+/*
+ * Copyright (c) 2016 The Ontario Institute for Cancer Research. All rights reserved.                             
+ *                                                                                                               
+ * This program and the accompanying materials are made available under the terms of the GNU Public License v3.0.
+ * You should have received a copy of the GNU General Public License along with                                  
+ * this program. If not, see <http://www.gnu.org/licenses/>.                                                     
+ *                                                                                                               
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY                           
+ * EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES                          
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT                           
+ * SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,                                
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED                          
+ * TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS;                               
+ * OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER                              
+ * IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN                         
+ * ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package bio.overture.score.client.transport;
+
+import com.google.common.hash.Hashing;
+import com.google.common.hash.HashingOutputStream;
+import lombok.Getter;
+import lombok.NonNull;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import lombok.val;
+
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+
+import static java.nio.file.StandardOpenOption.READ;
+import static java.nio.file.StandardOpenOption.WRITE;
+
+/**
+ * A data channel that stages a region of a {@link java.io.File File} in a pooled direct {@link ByteBuffer}. Data read
+ * into the channel is written to the file at {@code position} as soon as the buffer is full; data written out of the
+ * channel is loaded from the file on first use.
+ */
+@Slf4j
+@RequiredArgsConstructor
+public class PooledDataChannel extends AbstractDataChannel {
+
+  @NonNull
+  private final ByteBuffer buffer;
+  @NonNull
+  private final File file;
+  @Getter
+  private final long position;
+  @Getter
+  private final long length;
+
+  @Getter
+  private String md5;
+  private boolean loaded;
+
+  /**
+   * Nothing to reset: every write starts over from the beginning of the buffer
+   */
+  @Override
+  public void reset() throws IOException {
+  }
+
+  @Override
+  public void writeTo(OutputStream os) throws IOException {
+    if (!loaded) {
+      load();
+    }
+
+    HashingOutputStream hos = new HashingOutputStream(Hashing.md5(), os);
+    try (WritableByteChannel toChannel = Channels.newChannel(hos)) {
+      val data = contents();
+      while (data.hasRemaining()) {
+        toChannel.write(data);
+      }
+    }
+    md5 = hos.hash().toString();
+  }
+
+  @Override
+  public void readFrom(InputStream is) throws IOException {
+    loaded = false;
+    buffer.clear();
+    buffer.limit((int) length);
+
+    val fromChannel = Channels.newChannel(is);
+    while (buffer.hasRemaining()) {
+      if (fromChannel.read(buffer) < 0) {
+        throw new EOFException(
+            String.format("Reached end of stream after %d of %d bytes at position %d of %s", buffer.position(), length,
+                position, file));
+      }
+    }
+
+    try (FileChannel toChannel = FileChannel.open(file.toPath(), WRITE)) {
+      val data = contents();
+      while (data.hasRemaining()) {
+        toChannel.write(data, position + data.position());
+      }
+    }
+    loaded = true;
+  }
+
+  /**
+   * Data is already on disk once {@link #readFrom(InputStream)} returns
+   */
+  @Override
+  public void commitToDisk() {
+  }
+
+  private void load() throws IOException {
+    log.debug("Loading {} bytes at position {} of {}", length, position, file);
+    buffer.clear();
+    buffer.limit((int) length);
+
+    try (FileChannel fromChannel = FileChannel.open(file.toPath(), READ)) {
+      while (buffer.hasRemaining()) {
+        if (fromChannel.read(buffer, position + buffer.position()) < 0) {
+          throw new EOFException(String.format("Reached end of file %s at position %d", file, position));
+        }
+      }
+    }
+    loaded = true;
+  }
+
+  /**
+   * An independent view of the staged bytes so that the channel can be written any number of times.
+   */
+  private ByteBuffer contents() {
+    val data = buffer.duplicate();
+    data.clear();
+    data.limit((int) length);
+    return data;
+  }
+
+}
@@ -0,0 +1,220 @@
+/*
+ * Copyright (c) 2016 The Ontario Institute for Cancer Research. All rights reserved.                             
+ *                                                                                                               
+ * This program and the accompanying materials are made available under the terms of the GNU Public License v3.0.
+ * You should have received a copy of the GNU General Public License along with                                  
+ * this program. If not, see <http://www.gnu.org/licenses/>.                                                     
+ *                                                                                                               
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY                           
+ * EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES                          
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT                           
+ * SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,                                
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED                          
+ * TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS;                               
+ * OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER                              
+ * IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN                         
+ * ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package bio.overture.score.client.transport;
+
+import bio.overture.score.client.download.Downloads;
+import bio.overture.score.client.progress.ProgressDataChannel;
+import bio.overture.score.core.model.DataChannel;
+import bio.overture.score.core.model.Part;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Ordering;
+import lombok.SneakyThrows;
+import lombok.extern.slf4j.Slf4j;
+import lombok.val;
+
+import java.io.File;
+import java.util.Collections;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static com.google.common.base.Preconditions.checkState;
+
+/**
+ * A parallel transport that stages every part in a direct buffer taken from a fixed {@link DirectBufferPool} sized
+ * to {@code transport.memory}. A worker has to take a buffer before it touches a part, so the memory in use is a hard
+ * upper bound rather than an estimate, and buffers are reused across parts instead of being mapped and unmapped.
+ */
+@Slf4j
+public class PooledParallelPartObjectTransport extends ParallelPartObjectTransport {
+
+  private PooledParallelPartObjectTransport(RemoteParallelBuilder builder) {
+    super(builder);
+    log.debug("Transport Settings: {}", builder.toString());
+  }
+
+  @Override
+  @SneakyThrows
+  public void send(File file) {
+    log.debug("send file: {}", file.getPath());
+    val pool = createBufferPool();
+    ExecutorService executor = Executors.newFixedThreadPool(concurrency.getMaxLimit());
+
+    ImmutableList.Builder<Future<Part>> results = ImmutableList.builder();
+    progress.start();
+    verifyCompletedParts(file, file, false);
+    for (final Part part : parts) {
+      results.add(executor.submit(new Callable<Part>() {
+
+        @Override
+        public Part call() throws Exception {
+          val slot = concurrency.acquire();
+          val buffer = pool.acquire();
+          try {
+            DataChannel channel =
+                new ProgressDataChannel(new PooledDataChannel(buffer, file, part.getOffset(), part.getPartSize()),
+                    progress);
+            if (part.isCompleted()) {
+              if (isCorrupted(channel, part, file, part.getOffset())) {
+                log.info("Checksum failed; Reuploading part: {}", part);
+                progress.transferPart(() -> proxy.uploadPart(slot.monitor(channel), part, objectId, uploadId));
+                recordDigest(part.getOffset(), part, channel.getMd5());
+              }
+              checksumCompleted(part);
+            } else {
+              progress.transferPart(() -> proxy.uploadPart(slot.monitor(channel), part, objectId, uploadId));
+              recordDigest(part.getOffset(), part, channel.getMd5());
+              progress.incrementParts(1);
+            }
+          } catch (Throwable e) {
+            slot.failed();
+            throw e;
+          } finally {
+            pool.release(buffer);
+          }
+          slot.completed();
+          return part;
+        }
+      }));
+    }
+
+    executor.shutdown();
+    executor.awaitTermination(maxUploadDuration, TimeUnit.DAYS);
+    progress.stop();
+    try {
+      takeCareOfException(results.build());
+      proxy.finalizeUpload(objectId, uploadId);
+    } catch (Throwable e) {
+      progress.end(true);
+      throw e;
+    }
+    progress.end(false);
+  }
+
+  @Override
+  @SneakyThrows
+  public void receive(File outputDir) {
+    val objectFile = Downloads.getDownloadFile(outputDir, objectId);
+    long fileSize = Downloads.calculateTotalSize(parts);
+    log.debug("downloading object id: {} to file: {}, size:{}", objectId, objectFile.getPath(), fileSize);
+
+    // Positions in the local file are relative to the first part, which matters for ranged downloads
+    if (!Ordering.natural().isOrdered(parts)) {
+      Collections.sort(parts);
+    }
+
+    allocate(objectFile, fileSize);
+
+    val pool = createBufferPool();
+    ExecutorService executor = Executors.newFixedThreadPool(concurrency.getMaxLimit());
+    ImmutableList.Builder<Future<Part>> results = ImmutableList.builder();
+
+    progress.start();
+    if (checksum) {
+      verifyCompletedParts(objectFile, outputDir, true);
+    }
+    long position = 0;
+    for (final Part part : parts) {
+      final long partPosition = position;
+      position += part.getPartSize();
+
+      results.add(executor.submit(new Callable<Part>() {
+
+        @Override
+        public Part call() throws Exception {
+          if (part.isCompleted() && !checksum) {
+            progress.incrementChecksumParts();
+            partListener.partCompleted(part);
+            return part;
+          }
+
+          val slot = concurrency.acquire();
+          val buffer = pool.acquire();
+          try {
+            DataChannel channel =
+                new ProgressDataChannel(new PooledDataChannel(buffer, objectFile, partPosition, part.getPartSize()),
+                    progress);
+            if (part.isCompleted()) {
+              if (isCorrupted(channel, part, outputDir, partPosition)) {
+                progress.transferPart(() -> proxy.downloadPart(slot.monitor(channel), part, objectId, outputDir));
+                recordDigest(partPosition, part, part.getMd5());
+              }
+              checksumCompleted(part);
+            } else {
+              progress.transferPart(() -> proxy.downloadPart(slot.monitor(channel), part, objectId, outputDir));
+              recordDigest(partPosition, part, part.getMd5());
+              progress.incrementParts(1);
+            }
+          } catch (Throwable e) {
+            slot.failed();
+            throw e;
+          } finally {
+            pool.release(buffer);
+          }
+          slot.completed();
+          partListener.partCompleted(part);
+          return part;
+        }
+      }));
+    }
+
+    executor.shutdown();
+    executor.awaitTermination(maxUploadDuration, TimeUnit.DAYS);
+
+    progress.stop();
+    try {
+      takeCareOfException(results.build());
+      proxy.finalizeDownload(outputDir, objectId);
+    } catch (Throwable e) {
+      progress.end(true);
+      throw e;
+    }
+    progress.end(false);
+  }
+
+  /**
+   * One buffer per worker slot at most, and never more buffers than the memory budget can hold.
+   */
+  private DirectBufferPool createBufferPool() {
+    long bufferSize = 0;
+    for (val part : parts) {
+      bufferSize = Math.max(bufferSize, part.getPartSize());
+    }
+    checkState(bufferSize <= Integer.MAX_VALUE, "Part size %s is too large to be buffered", bufferSize);
+
+    val capacity = (int) Math.max(1, Math.min(concurrency.getMaxLimit(), memory.get() / Math.max(1, bufferSize)));
+    log.debug("Buffer pool: {} buffers of {} bytes", capacity, bufferSize);
+    return new DirectBufferPool((int) bufferSize, capacity);
+  }
+
+  public static PooledParallelBuilder builder() {
+    return new PooledParallelBuilder();
+  }
+
+  public static class PooledParallelBuilder extends RemoteParallelBuilder {
+
+    @Override
+    public Transport build() {
+      checkArgumentsNotNull();
+      return new PooledParallelPartObjectTransport(this);
+    }
+  }
+
+}
@@ -0,0 +1,96 @@
+/*
+ * Copyright (c) 2016 The Ontario Institute for Cancer Research. All rights reserved.                             
+ *                                                                                                               
+ * This program and the accompanying materials are made available under the terms of the GNU Public License v3.0.
+ * You should have received a copy of the GNU General Public License along with                                  
+ * this program. If not, see <http://www.gnu.org/licenses/>.                                                     
+ *                                                                                                               
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY                           
+ * EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES                          
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT                           
+ * SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,                                
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED                          
+ * TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS;                               
+ * OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER                              
+ * IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN                         
+ * ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package bio.overture.score.client.transport;
+
+import com.google.common.hash.Hashing;
+import com.google.common.hash.HashingOutputStream;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+
+import static java.nio.file.StandardOpenOption.READ;
+import static java.nio.file.StandardOpenOption.WRITE;
+
+/**
+ * A data channel over a fixed region of a shared, preallocated {@link java.io.File File}. Unlike
+ * {@link FileDataChannel}, reading into this channel writes the data in place at {@code position} instead of
+ * truncating the file, so several channels can fill the same file concurrently.
+ */
+@AllArgsConstructor
+public class PositionalFileDataChannel extends AbstractDataChannel {
+
+  private final File file;
+  @Getter
+  private final long position;
+  @Getter
+  private final long length;
+  @Getter
+  private String md5;
+
+  /**
+   * Nothing to reset: every read overwrites the whole region from the beginning
+   */
+  @Override
+  public void reset() throws IOException {
+  }
+
+  @Override
+  public void writeTo(OutputStream os) throws IOException {
+    try (FileChannel fromChannel = FileChannel.open(file.toPath(), READ)) {
+      HashingOutputStream hos = new HashingOutputStream(Hashing.md5(), os);
+      try (WritableByteChannel toChannel = Channels.newChannel(hos)) {
+        long transferred = 0;
+        while (transferred < length) {
+          long count = fromChannel.transferTo(position + transferred, length - transferred, toChannel);
+          if (count <= 0) {
+            break;
+          }
+          transferred += count;
+        }
+      }
+      md5 = hos.hash().toString();
+    }
+  }
+
+  @Override
+  public void readFrom(InputStream is) throws IOException {
+    try (FileChannel toChannel = FileChannel.open(file.toPath(), WRITE)) {
+      try (ReadableByteChannel fromChannel = Channels.newChannel(is)) {
+        long transferred = toChannel.transferFrom(fromChannel, position, length);
+        if (transferred < length) {
+          throw new IOException(
+              String.format("Reached end of stream after %d of %d bytes at position %d of %s", transferred, length,
+                  position, file));
+        }
+      }
+    }
+  }
+
+  @Override
+  public void commitToDisk() {
+  }
+
+}
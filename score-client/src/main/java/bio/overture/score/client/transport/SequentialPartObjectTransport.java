@@ -70,9 +70,8 @@ public class SequentialPartObjectTransport implements Transport {
         resend = true;
       }
 
-      progress.startTransfer();
       // progress.incrementByteRead(part.getPartSize());
-      proxy.uploadPart(channel, part, objectId, uploadId);
+      progress.transferPart(() -> proxy.uploadPart(channel, part, objectId, uploadId));
       // progress.incrementByteWritten(part.getPartSize());
 
       if (resend) {
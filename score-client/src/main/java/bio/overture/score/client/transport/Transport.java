@@ -18,6 +18,7 @@
 package bio.overture.score.client.transport;
 
 import bio.overture.score.client.progress.Progress;
+import bio.overture.score.client.state.PartDigestCache;
 import bio.overture.score.client.storage.StorageService;
 import bio.overture.score.core.model.Part;
 
@@ -33,6 +34,17 @@ public interface Transport {
     UPLOAD, DOWNLOAD
   };
 
+  /**
+   * Callback for parts that have been written to their final place in the object file.
+   */
+  interface PartListener {
+
+    PartListener NONE = part -> {};
+
+    void partCompleted(Part part);
+
+  }
+
   /**
    * Send a specified {@code file}.
    */
@@ -63,6 +75,10 @@ public interface Transport {
     Builder withTransportMode(Mode mode);
 
     Builder withChecksum(boolean checksum);
+
+    Builder withPartListener(PartListener partListener);
+
+    Builder withDigestCache(PartDigestCache digestCache);
   }
 
   abstract class AbstractBuilder implements Builder {
@@ -74,6 +90,8 @@ public interface Transport {
     protected String uploadId;
     protected Mode mode;
     protected boolean checksum;
+    protected PartListener partListener = PartListener.NONE;
+    protected PartDigestCache digestCache = PartDigestCache.NONE;
 
     @Override
     public Builder withProgressBar(Progress progressBar) {
@@ -117,6 +135,18 @@ public interface Transport {
       return this;
     }
 
+    @Override
+    public Builder withPartListener(PartListener partListener) {
+      this.partListener = partListener;
+      return this;
+    }
+
+    @Override
+    public Builder withDigestCache(PartDigestCache digestCache) {
+      this.digestCache = digestCache;
+      return this;
+    }
+
   }
 
 }
@@ -17,8 +17,11 @@
  */
 package bio.overture.score.client.upload;
 
+import lombok.val;
+
 import java.io.File;
 import java.io.IOException;
+import java.util.List;
 
 public interface UploadService {
 
@@ -26,4 +29,13 @@ public interface UploadService {
 
   public boolean isObjectExist(String objectId) throws IOException;
 
+  /**
+   * Uploads several files. Implementations may overlap them; by default they are uploaded one after another.
+   */
+  default void upload(List<UploadRequest> requests, boolean redo) throws IOException {
+    for (val request : requests) {
+      upload(request.getFile(), request.getObjectId(), request.getMd5(), redo);
+    }
+  }
+
 }
@@ -0,0 +1,240 @@
+/*
+ * Copyright (c) 2016 The Ontario Institute for Cancer Research. All rights reserved.                             
+ *                                                                                                               
+ * This program and the accompanying materials are made available under the terms of the GNU Public License v3.0.
+ * You should have received a copy of the GNU General Public License along with                                  
+ * this program. If not, see <http://www.gnu.org/licenses/>.                                                     
+ *                                                                                                               
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY                           
+ * EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES                          
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT                           
+ * SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,                                
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED                          
+ * TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS;                               
+ * OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER                              
+ * IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN                         
+ * ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package bio.overture.score.client.upload.s3;
+
+import bio.overture.score.client.cli.Terminal;
+import bio.overture.score.client.exception.NotResumableException;
+import bio.overture.score.client.exception.NotRetryableException;
+import bio.overture.score.client.progress.Progress;
+import bio.overture.score.client.progress.ProgressDataChannel;
+import bio.overture.score.client.storage.StorageService;
+import bio.overture.score.client.transport.FileDataChannel;
+import bio.overture.score.client.upload.UploadRequest;
+import bio.overture.score.client.upload.UploadStateStore;
+import bio.overture.score.core.model.ObjectSpecification;
+import bio.overture.score.core.model.Part;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import lombok.Data;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import lombok.val;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Uploads the files of a manifest on one shared pool of workers. Initiating an upload, sending its parts and
+ * finalizing it are all tasks on the same pool, so the round trips of one file overlap with the parts of others.
+ * The parts in flight across all files are bounded by a single memory budget.
+ * <p>
+ * Files with an upload in progress from a previous run, and files that fail here, are uploaded afterwards through
+ * {@link S3UploadService#upload(java.io.File, String, String, boolean)}, which resumes them from their upload state.
+ */
+@Slf4j
+@RequiredArgsConstructor
+class S3UploadScheduler {
+
+  /**
+   * Constants.
+   */
+  private static final long MB = 1024L * 1024L;
+  private static final int OPEN_FILES_PER_WORKER = 2;
+
+  /**
+   * Configuration.
+   */
+  private final boolean quiet;
+  private final int nThreads;
+  private final long memory;
+
+  /**
+   * Dependencies.
+   */
+  private final S3UploadService uploadService;
+  private final StorageService storageService;
+  private final Terminal terminal;
+
+  /**
+   * State.
+   */
+  private final List<UploadRequest> deferred = Collections.synchronizedList(new ArrayList<>());
+  private ExecutorService workers;
+  private Semaphore openFiles;
+  private Semaphore memoryBudget;
+  private CountDownLatch finishedFiles;
+  private Progress progress;
+  private volatile NotResumableException notResumable;
+
+  void upload(List<UploadRequest> requests, boolean redo) throws IOException, InterruptedException {
+    log.info("Uploading {} files with {} workers and a budget of {} bytes", requests.size(), nThreads, memory);
+    workers = Executors.newFixedThreadPool(nThreads,
+        new ThreadFactoryBuilder().setNameFormat("upload-worker-%s").setDaemon(true).build());
+    openFiles = new Semaphore(nThreads * OPEN_FILES_PER_WORKER);
+    memoryBudget = new Semaphore(getBudgetPermits());
+    finishedFiles = new CountDownLatch(requests.size());
+    progress = new Progress(terminal, quiet, 0, 0);
+
+    progress.start();
+    try {
+      for (val request : requests) {
+        openFiles.acquire();
+        workers.execute(() -> open(request, redo));
+      }
+      finishedFiles.await();
+    } finally {
+      workers.shutdownNow();
+    }
+    progress.stop();
+    progress.end(!deferred.isEmpty());
+
+    if (notResumable != null) {
+      throw notResumable;
+    }
+
+    for (val request : deferred) {
+      terminal.printf("Resuming upload of '%s' using the object id %s%n", request.getFile(), request.getObjectId());
+      uploadService.upload(request.getFile(), request.getObjectId(), request.getMd5(), false);
+    }
+  }
+
+  private void open(UploadRequest request, boolean redo) {
+    val file = request.getFile();
+    val objectId = request.getObjectId();
+    ObjectSpecification spec;
+    try {
+      if (!redo && isInProgress(request)) {
+        log.info("Upload of {} is already in progress; it will be resumed separately", objectId);
+        finish(request, true);
+        return;
+      }
+
+      spec = storageService.initiateUpload(objectId, file.length(), true, request.getMd5());
+      UploadStateStore.create(uploadService.getUploadStateDir(file), spec);
+    } catch (NotResumableException e) {
+      log.error("Cannot upload {}", objectId, e);
+      notResumable = e;
+      finish(request, false);
+      return;
+    } catch (Throwable e) {
+      log.warn("Failed to initiate upload of {}", objectId, e);
+      finish(request, true);
+      return;
+    }
+
+    val upload = new FileUpload(request, spec.getUploadId(), new AtomicInteger(spec.getParts().size()));
+    progress.incrementTotalParts(spec.getParts().size());
+    if (spec.getParts().isEmpty()) {
+      complete(upload);
+      return;
+    }
+
+    for (val part : spec.getParts()) {
+      workers.execute(() -> sendPart(upload, part));
+    }
+  }
+
+  /**
+   * Same check as a resume: anything but "no upload in progress" is left to {@link S3UploadService}.
+   */
+  private boolean isInProgress(UploadRequest request) {
+    try {
+      uploadService.checkProgress(request.getFile(), request.getObjectId());
+      return true;
+    } catch (NotRetryableException e) {
+      return false;
+    }
+  }
+
+  private void sendPart(FileUpload upload, Part part) {
+    val request = upload.getRequest();
+    val permits = getPartPermits(part);
+    try {
+      memoryBudget.acquire(permits);
+      try {
+        // Once a file has failed its remaining parts are left to the resume
+        if (!upload.isFailed()) {
+          val channel = new ProgressDataChannel(
+              new FileDataChannel(request.getFile(), part.getOffset(), part.getPartSize(), null), progress);
+          progress.transferPart(
+              () -> storageService.uploadPart(channel, part, request.getObjectId(), upload.getUploadId()));
+          progress.incrementParts(1);
+        }
+      } finally {
+        memoryBudget.release(permits);
+      }
+    } catch (Throwable e) {
+      log.warn("Failed to upload part# {} of {}", part.getPartNumber(), request.getObjectId(), e);
+      upload.setFailed(true);
+    } finally {
+      if (upload.getRemainingParts().decrementAndGet() == 0) {
+        complete(upload);
+      }
+    }
+  }
+
+  private void complete(FileUpload upload) {
+    val request = upload.getRequest();
+    try {
+      if (!upload.isFailed()) {
+        storageService.finalizeUpload(request.getObjectId(), upload.getUploadId());
+        uploadService.cleanupState(request.getFile(), request.getObjectId());
+        log.info("Finished upload of {}", request.getObjectId());
+      }
+    } catch (Throwable e) {
+      log.warn("Failed to finalize upload of {}", request.getObjectId(), e);
+      upload.setFailed(true);
+    }
+    storageService.releaseUploadParts(upload.getUploadId());
+    finish(request, upload.isFailed());
+  }
+
+  private void finish(UploadRequest request, boolean resume) {
+    if (resume) {
+      deferred.add(request);
+    }
+    openFiles.release();
+    finishedFiles.countDown();
+  }
+
+  private int getBudgetPermits() {
+    return (int) Math.max(1, Math.min(Integer.MAX_VALUE, memory / MB));
+  }
+
+  private int getPartPermits(Part part) {
+    val permits = (part.getPartSize() + MB - 1) / MB;
+    return (int) Math.max(1, Math.min(getBudgetPermits(), permits));
+  }
+
+  @Data
+  private static class FileUpload {
+
+    private final UploadRequest request;
+    private final String uploadId;
+    private final AtomicInteger remainingParts;
+    private volatile boolean failed;
+
+  }
+
+}
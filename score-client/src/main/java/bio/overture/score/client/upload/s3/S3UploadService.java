@@ -21,8 +21,11 @@ import bio.overture.score.client.cli.Terminal;
 import bio.overture.score.client.exception.NotResumableException;
 import bio.overture.score.client.exception.NotRetryableException;
 import bio.overture.score.client.progress.Progress;
+import bio.overture.score.client.state.PartDigestCache;
+import bio.overture.score.client.state.TransferState;
 import bio.overture.score.client.storage.StorageService;
 import bio.overture.score.client.transport.Transport;
+import bio.overture.score.client.upload.UploadRequest;
 import bio.overture.score.client.upload.UploadService;
 import bio.overture.score.client.upload.UploadStateStore;
 import bio.overture.score.core.model.ObjectSpecification;
@@ -54,6 +57,12 @@ public class S3UploadService implements UploadService {
   private int retryNumber;
   @Value("${client.uploadStateDir}")
   private String uploadStateDir;
+  @Value("${transport.parallel}")
+  private int parallel;
+  @Value("${transport.memory}")
+  private long memory;
+  @Value("${transport.paranoid}")
+  private boolean paranoid;
 
   /**
    * Dependencies.
@@ -97,6 +106,16 @@ public class S3UploadService implements UploadService {
       }
   }
 
+  /**
+   * Uploads the files of a manifest concurrently, sharing one pool of workers and one memory budget between them
+   */
+  @Override
+  @SneakyThrows
+  public void upload(List<UploadRequest> requests, boolean redo) throws IOException {
+    new S3UploadScheduler(quiet, Math.max(1, parallel), memory * 1024 * 1024 * 1024, this, storageService, terminal)
+        .upload(requests, redo);
+  }
+
   /**
    * Start an upload given the object id
    */
@@ -144,7 +163,7 @@ public class S3UploadService implements UploadService {
   }
 
   @SneakyThrows
-  private UploadProgress checkProgress(File uploadFile, String objectId) {
+  UploadProgress checkProgress(File uploadFile, String objectId) {
 
     // See if there is already an upload in progress for this object id. Fetch upload id and send if present. If
     // missing, send null
@@ -218,15 +237,23 @@ public class S3UploadService implements UploadService {
    */
   @SneakyThrows
   private void uploadParts(List<Part> parts, File file, String objectId, String uploadId, Progress progressBar) {
+    val digestCache = paranoid ? PartDigestCache.NONE : PartDigestCache.open(
+        TransferState.getObjectStateDir(new File(getUploadStateDir(file)), objectId), file);
     val transport = transportBuilder
         .withProxy(storageService)
         .withProgressBar(progressBar)
         .withParts(parts)
         .withObjectId(objectId)
         .withTransportMode(Transport.Mode.UPLOAD)
+        .withDigestCache(digestCache)
         .withSessionId(uploadId).build();
 
-    transport.send(file);
+    try {
+      transport.send(file);
+    } finally {
+      storageService.releaseUploadParts(uploadId);
+      digestCache.close();
+    }
   }
 
   @Override
@@ -234,11 +261,11 @@ public class S3UploadService implements UploadService {
     return storageService.isObjectExist(objectId);
   }
 
-  private void cleanupState(File uploadFile, String objectId) throws IOException {
+  void cleanupState(File uploadFile, String objectId) throws IOException {
     UploadStateStore.close(getUploadStateDir(uploadFile), objectId);
   }
 
-  private String getUploadStateDir(File uploadFile) {
+  String getUploadStateDir(File uploadFile) {
     if (!uploadStateDir.isEmpty()) {
       return uploadStateDir;
     } else {
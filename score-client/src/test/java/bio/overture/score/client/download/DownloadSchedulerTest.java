@@ -0,0 +1,179 @@
+/*
+ * Copyright (c) 2016 The Ontario Institute for Cancer Research. All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the terms of the GNU Public License v3.0.
+ * You should have received a copy of the GNU General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY
+ * EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT
+ * SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED
+ * TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS;
+ * OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER
+ * IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN
+ * ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package bio.overture.score.client.download;
+
+import bio.overture.score.client.cli.Terminal;
+import bio.overture.score.client.config.TransportProperties;
+import bio.overture.score.client.storage.StorageService;
+import bio.overture.score.core.model.DataChannel;
+import bio.overture.score.core.model.ObjectSpecification;
+import bio.overture.score.core.model.Part;
+import com.google.common.collect.ImmutableList;
+import lombok.val;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.RETURNS_SELF;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class DownloadSchedulerTest {
+
+  @Rule
+  public TemporaryFolder tmp = new TemporaryFolder();
+
+  private final StorageService storageService = mock(StorageService.class);
+  private final DownloadStateStore downloadStateStore = mock(DownloadStateStore.class);
+  private final DownloadService downloadService = mock(DownloadService.class);
+  private final TransportProperties transport = new TransportProperties();
+
+  private final DownloadScheduler scheduler = new DownloadScheduler();
+  private final List<String> completed = Collections.synchronizedList(new ArrayList<>());
+
+  private File outputDir;
+
+  @Before
+  public void setUp() throws Exception {
+    outputDir = tmp.newFolder();
+    transport.setFileFrom("memory");
+
+    ReflectionTestUtils.setField(scheduler, "quiet", true);
+    ReflectionTestUtils.setField(scheduler, "parallel", 3);
+    ReflectionTestUtils.setField(scheduler, "transport", transport);
+    ReflectionTestUtils.setField(scheduler, "storageService", storageService);
+    ReflectionTestUtils.setField(scheduler, "downloadStateStore", downloadStateStore);
+    ReflectionTestUtils.setField(scheduler, "downloadService", downloadService);
+    ReflectionTestUtils.setField(scheduler, "terminal", mock(Terminal.class, RETURNS_SELF));
+
+    // Every part is filled with the first letter of its object id
+    doAnswer(invocation -> {
+      DataChannel channel = invocation.getArgument(0);
+      Part part = invocation.getArgument(1);
+      String objectId = invocation.getArgument(2);
+      if (objectId.startsWith("x")) {
+        throw new IOException("Broken object");
+      }
+
+      val data = new byte[(int) part.getPartSize()];
+      Arrays.fill(data, (byte) objectId.charAt(0));
+      channel.readFrom(new ByteArrayInputStream(data));
+      return null;
+    }).when(storageService).downloadPart(any(), any(), any(), any());
+  }
+
+  @Test
+  public void test_objects_are_downloaded_and_finalized() throws Exception {
+    val a = request("aaa", 4, 4, 2);
+    val b = request("bbb", 3);
+    val c = request("ccc", 1, 1, 1, 1);
+
+    scheduler.download(ImmutableList.of(a, b, c), false, request -> completed.add(request.getObjectId()));
+
+    assertThat(completed).containsExactlyInAnyOrder("aaa", "bbb", "ccc");
+    assertThat(new String(Files.readAllBytes(a.getOutputFilePath().toPath()))).isEqualTo("aaaaaaaaaa");
+    assertThat(new String(Files.readAllBytes(b.getOutputFilePath().toPath()))).isEqualTo("bbb");
+    assertThat(new String(Files.readAllBytes(c.getOutputFilePath().toPath()))).isEqualTo("cccc");
+    verify(storageService).finalizeDownload(outputDir, "ccc");
+    verify(downloadService, never()).download(any(), eq(false));
+  }
+
+  @Test
+  public void test_failed_and_started_objects_are_resumed() throws Exception {
+    val a = request("aaa", 4);
+    val broken = request("xxx", 4, 4);
+    val started = request("sss", 4);
+    when(downloadStateStore.hasStarted(outputDir, "sss")).thenReturn(true);
+
+    scheduler.download(ImmutableList.of(a, broken, started), false, request -> completed.add(request.getObjectId()));
+
+    assertThat(completed).containsExactlyInAnyOrder("aaa", "xxx", "sss");
+    verify(storageService, never()).finalizeDownload(outputDir, "xxx");
+    verify(storageService, never()).getDownloadSpecification(eq("sss"), anyLong(), anyLong());
+    verify(downloadService).download(broken, false);
+    verify(downloadService).download(started, false);
+    verify(downloadService, never()).download(a, false);
+  }
+
+  @Test
+  public void test_objects_are_left_to_the_remote_transport() throws Exception {
+    transport.setFileFrom("remote");
+    val a = request("aaa", 4);
+    val started = request("sss", 4, 4);
+    when(downloadStateStore.hasStarted(outputDir, "sss")).thenReturn(true);
+
+    scheduler.download(ImmutableList.of(a, started), false, request -> completed.add(request.getObjectId()));
+
+    // The remote transport keeps its parts in separate files, so nothing may be written in place here
+    assertThat(completed).containsExactly("aaa", "sss");
+    assertThat(a.getOutputFilePath()).doesNotExist();
+    verify(downloadService).download(a, false);
+    verify(downloadService).download(started, false);
+    verify(storageService, never()).downloadPart(any(), any(), any(), any());
+    verify(storageService, never()).finalizeDownload(any(), any());
+  }
+
+  @Test
+  public void test_tuned_transports_are_not_scheduled() throws Exception {
+    transport.setFileFrom("async");
+    transport.setHedge(true);
+    val a = request("aaa", 4);
+
+    scheduler.download(ImmutableList.of(a), true, request -> completed.add(request.getObjectId()));
+
+    assertThat(completed).containsExactly("aaa");
+    verify(downloadService).download(a, true);
+    verify(storageService, never()).downloadPart(any(), any(), any(), any());
+  }
+
+  private DownloadRequest request(String objectId, long... partSizes) throws IOException {
+    val parts = new ArrayList<Part>();
+    long offset = 0;
+    for (int i = 0; i < partSizes.length; i++) {
+      parts.add(Part.builder().partNumber(i + 1).partSize(partSizes[i]).offset(offset).build());
+      offset += partSizes[i];
+    }
+
+    val spec = new ObjectSpecification();
+    spec.setObjectId(objectId);
+    spec.setObjectSize(offset);
+    spec.setParts(parts);
+    when(storageService.getDownloadSpecification(objectId, 0, -1)).thenReturn(spec);
+
+    return DownloadRequest.builder().outputDir(outputDir).objectId(objectId).offset(0).length(-1).build();
+  }
+
+}
@@ -0,0 +1,142 @@
+/*
+ * Copyright (c) 2016 The Ontario Institute for Cancer Research. All rights reserved.                             
+ *                                                                                                               
+ * This program and the accompanying materials are made available under the terms of the GNU Public License v3.0.
+ * You should have received a copy of the GNU General Public License along with                                  
+ * this program. If not, see <http://www.gnu.org/licenses/>.                                                     
+ *                                                                                                               
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY                           
+ * EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES                          
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT                           
+ * SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,                                
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED                          
+ * TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS;                               
+ * OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER                              
+ * IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN                         
+ * ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package bio.overture.score.client.download;
+
+import static java.nio.charset.StandardCharsets.US_ASCII;
+import static java.nio.file.StandardOpenOption.APPEND;
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.ArrayList;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.base.Strings;
+
+import bio.overture.score.client.state.TransferState;
+import bio.overture.score.core.model.ObjectSpecification;
+import bio.overture.score.core.model.Part;
+import lombok.val;
+
+public class DownloadStateStoreTest {
+
+  private static final String OBJECT_ID = "object";
+
+  @Rule
+  public TemporaryFolder tmp = new TemporaryFolder();
+
+  private final DownloadStateStore store = new DownloadStateStore();
+  private File stateDir;
+
+  @Before
+  public void setUp() throws Exception {
+    stateDir = tmp.newFolder();
+
+    val parts = new ArrayList<Part>();
+    for (int i = 1; i <= 3; i++) {
+      parts.add(part(i, null));
+    }
+    val spec = new ObjectSpecification();
+    spec.setObjectId(OBJECT_ID);
+    spec.setObjectSize(30);
+    spec.setParts(parts);
+    store.init(stateDir, spec);
+  }
+
+  @Test
+  public void test_committed_parts_are_finalizable() throws Exception {
+    store.commit(stateDir, OBJECT_ID, part(1, md5('a')));
+    store.commit(stateDir, OBJECT_ID, part(2, md5('b')));
+    assertThat(store.canFinalize(stateDir, OBJECT_ID)).isFalse();
+
+    store.commit(stateDir, OBJECT_ID, part(3, md5('c')));
+    store.deletePart(stateDir, OBJECT_ID, part(2, null));
+    assertThat(store.canFinalize(stateDir, OBJECT_ID)).isFalse();
+
+    store.commit(stateDir, OBJECT_ID, part(2, md5('d')));
+    assertThat(store.canFinalize(stateDir, OBJECT_ID)).isTrue();
+    assertThat(objectStateDir().list()).containsExactlyInAnyOrder("meta", "journal");
+
+    store.finish(stateDir, OBJECT_ID);
+    assertThat(objectStateDir()).doesNotExist();
+  }
+
+  @Test
+  public void test_torn_record_is_ignored() throws Exception {
+    store.commit(stateDir, OBJECT_ID, part(1, md5('a')));
+    store.finish(stateDir, OBJECT_ID);
+    setUp();
+    store.commit(stateDir, OBJECT_ID, part(1, md5('a')));
+
+    // A crash in the middle of a record, followed by a new run
+    val journal = new File(objectStateDir(), "journal").toPath();
+    Files.write(journal, ("2 " + md5('b').substring(0, 10)).getBytes(US_ASCII), APPEND);
+    val restarted = new DownloadStateStore();
+    restarted.commit(stateDir, OBJECT_ID, part(3, md5('c')));
+
+    assertThat(restarted.canFinalize(stateDir, OBJECT_ID)).isFalse();
+    restarted.commit(stateDir, OBJECT_ID, part(2, md5('b')));
+    assertThat(restarted.canFinalize(stateDir, OBJECT_ID)).isTrue();
+  }
+
+  @Test
+  public void test_torn_record_is_dropped_on_reopen() throws Exception {
+    store.commit(stateDir, OBJECT_ID, part(1, md5('a')));
+    store.release(stateDir, OBJECT_ID);
+
+    // Torn from "-12", which must not pass for a discard of part 1 once the next record follows
+    val journal = new File(objectStateDir(), "journal").toPath();
+    Files.write(journal, "-1".getBytes(US_ASCII), APPEND);
+    val restarted = new DownloadStateStore();
+    restarted.commit(stateDir, OBJECT_ID, part(2, md5('b')));
+    restarted.commit(stateDir, OBJECT_ID, part(3, md5('c')));
+
+    assertThat(restarted.canFinalize(stateDir, OBJECT_ID)).isTrue();
+  }
+
+  @Test
+  public void test_legacy_part_files_are_read() throws Exception {
+    val mapper = new ObjectMapper();
+    mapper.writeValue(new File(objectStateDir(), "part-00000001"), part(1, md5('a')));
+    mapper.writeValue(new File(objectStateDir(), "part-00000002"), part(2, md5('b')));
+    store.commit(stateDir, OBJECT_ID, part(3, md5('c')));
+
+    assertThat(store.canFinalize(stateDir, OBJECT_ID)).isTrue();
+
+    store.deletePart(stateDir, OBJECT_ID, part(1, null));
+    assertThat(store.canFinalize(stateDir, OBJECT_ID)).isFalse();
+  }
+
+  private File objectStateDir() {
+    return TransferState.getObjectStateDir(stateDir, OBJECT_ID);
+  }
+
+  private static Part part(int partNumber, String md5) {
+    return Part.builder().partNumber(partNumber).partSize(10).offset((partNumber - 1) * 10).md5(md5).build();
+  }
+
+  private static String md5(char c) {
+    return Strings.repeat(String.valueOf(c), 32);
+  }
+
+}
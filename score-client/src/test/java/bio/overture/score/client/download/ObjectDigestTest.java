@@ -0,0 +1,68 @@
+/*
+ * Copyright (c) 2016 The Ontario Institute for Cancer Research. All rights reserved.                             
+ *                                                                                                               
+ * This program and the accompanying materials are made available under the terms of the GNU Public License v3.0.
+ * You should have received a copy of the GNU General Public License along with                                  
+ * this program. If not, see <http://www.gnu.org/licenses/>.                                                     
+ *                                                                                                               
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY                           
+ * EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES                          
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT                           
+ * SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,                                
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED                          
+ * TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS;                               
+ * OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER                              
+ * IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN                         
+ * ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package bio.overture.score.client.download;
+
+import bio.overture.score.core.model.Part;
+import com.google.common.collect.ImmutableList;
+import com.google.common.hash.Hashing;
+import lombok.val;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.nio.file.Files;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class ObjectDigestTest {
+
+  @Rule
+  public TemporaryFolder tmp = new TemporaryFolder();
+
+  @Test
+  public void test_parts_completed_out_of_order() throws Exception {
+    val data = "aaaabbbbcc".getBytes();
+    val file = tmp.newFile();
+    Files.write(file.toPath(), data);
+
+    val parts = ImmutableList.of(part(1, 4, 100), part(2, 4, 104), part(3, 2, 108));
+    val digest = new ObjectDigest(file, parts);
+    digest.partCompleted(parts.get(2));
+    digest.partCompleted(parts.get(0));
+    digest.partCompleted(parts.get(1));
+
+    assertThat(digest.getMd5()).contains(Hashing.md5().hashBytes(data).toString());
+  }
+
+  @Test
+  public void test_missing_part_yields_no_digest() throws Exception {
+    val file = tmp.newFile();
+    Files.write(file.toPath(), "aaaabbbb".getBytes());
+
+    val parts = ImmutableList.of(part(1, 4, 0), part(2, 4, 4));
+    val digest = new ObjectDigest(file, parts);
+    digest.partCompleted(parts.get(1));
+
+    assertThat(digest.getMd5()).isEmpty();
+  }
+
+  private static Part part(int partNumber, long partSize, long offset) {
+    return Part.builder().partNumber(partNumber).partSize(partSize).offset(offset).build();
+  }
+
+}
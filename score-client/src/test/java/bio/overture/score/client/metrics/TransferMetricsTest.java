@@ -0,0 +1,99 @@
+/*
+ * Copyright (c) 2016 The Ontario Institute for Cancer Research. All rights reserved.                             
+ *                                                                                                               
+ * This program and the accompanying materials are made available under the terms of the GNU Public License v3.0.
+ * You should have received a copy of the GNU General Public License along with                                  
+ * this program. If not, see <http://www.gnu.org/licenses/>.                                                     
+ *                                                                                                               
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY                           
+ * EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES                          
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT                           
+ * SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,                                
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED                          
+ * TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS;                               
+ * OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER                              
+ * IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN                         
+ * ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package bio.overture.score.client.metrics;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.IOException;
+import java.nio.file.Files;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import bio.overture.score.core.model.Part;
+import lombok.val;
+
+public class TransferMetricsTest {
+
+  @Rule
+  public TemporaryFolder tmp = new TemporaryFolder();
+
+  @Test
+  public void test_parts_are_exported() throws IOException {
+    val file = tmp.getRoot().toPath().resolve("metrics.jsonl");
+    val openMetricsFile = tmp.getRoot().toPath().resolve("score.prom");
+    val metrics = new TransferMetrics(file.toString(), openMetricsFile.toString(), 0);
+
+    val ok = metrics.start(PartMetrics.DOWNLOAD, "object", part(1), "https://s3.example.org:9000/bucket/key?x=y");
+    ok.setStatus(206);
+    ok.setRetries(1);
+    ok.setMd5Nanos(2_000_000_000L);
+    ok.succeeded();
+    metrics.record(ok);
+
+    val failed = metrics.start(PartMetrics.DOWNLOAD, "object", part(2), "https://s3.example.org:9000/bucket/key");
+    failed.setStatus(503);
+    failed.failed(new IOException("Slow down"));
+    metrics.record(failed);
+    metrics.close();
+
+    val lines = Files.readAllLines(file);
+    assertThat(lines).hasSize(2);
+    val first = new ObjectMapper().readTree(lines.get(0));
+    assertThat(first.get("partNumber").asInt()).isEqualTo(1);
+    assertThat(first.get("bytes").asLong()).isEqualTo(10);
+    assertThat(first.get("endpoint").asText()).isEqualTo("s3.example.org:9000");
+    assertThat(first.get("status").asInt()).isEqualTo(206);
+    assertThat(first.has("error")).isFalse();
+    assertThat(first.has("diskNanos")).isFalse();
+    assertThat(new ObjectMapper().readTree(lines.get(1)).get("error").asText()).isEqualTo("IOException: Slow down");
+
+    val text = new String(Files.readAllBytes(openMetricsFile));
+    assertThat(text)
+        .contains("# TYPE score_client_part_transfers counter\n")
+        .contains("score_client_part_bytes_total{direction=\"download\",endpoint=\"s3.example.org:9000\","
+            + "status=\"206\"} 10\n")
+        .contains("score_client_part_bytes_total{direction=\"download\",endpoint=\"s3.example.org:9000\","
+            + "status=\"503\"} 0\n")
+        .contains("score_client_part_failures_total{direction=\"download\",endpoint=\"s3.example.org:9000\","
+            + "status=\"503\"} 1\n")
+        .contains("score_client_part_md5_seconds_total{direction=\"download\",endpoint=\"s3.example.org:9000\","
+            + "status=\"206\"} 2.0\n")
+        .endsWith("# EOF\n");
+  }
+
+  @Test
+  public void test_disabled() {
+    val metrics = TransferMetrics.disabled();
+    val part = metrics.start(PartMetrics.UPLOAD, "object", part(1), null);
+    part.succeeded();
+    metrics.record(part);
+    metrics.close();
+
+    assertThat(metrics.isEnabled()).isFalse();
+    assertThat(part.getEndpoint()).isNull();
+  }
+
+  private static Part part(int partNumber) {
+    return Part.builder().partNumber(partNumber).partSize(10).offset((partNumber - 1) * 10).build();
+  }
+
+}
@@ -0,0 +1,57 @@
+/*
+ * Copyright (c) 2016 The Ontario Institute for Cancer Research. All rights reserved.                             
+ *                                                                                                               
+ * This program and the accompanying materials are made available under the terms of the GNU Public License v3.0.
+ * You should have received a copy of the GNU General Public License along with                                  
+ * this program. If not, see <http://www.gnu.org/licenses/>.                                                     
+ *                                                                                                               
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY                           
+ * EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES                          
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT                           
+ * SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,                                
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED                          
+ * TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS;                               
+ * OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER                              
+ * IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN                         
+ * ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package bio.overture.score.client.progress;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+import lombok.val;
+import org.junit.Test;
+
+public class LatencyHistogramTest {
+
+  @Test
+  public void test_buckets_are_contiguous() {
+    for (long value = 0; value < 100_000; value++) {
+      val index = LatencyHistogram.index(value);
+      assertThat(LatencyHistogram.upperBound(index)).isGreaterThanOrEqualTo(value);
+      if (index > 0) {
+        assertThat(LatencyHistogram.upperBound(index - 1)).isLessThan(value);
+      }
+    }
+    assertThat(LatencyHistogram.index(Long.MAX_VALUE)).isLessThan((Long.SIZE - 3) * 8);
+  }
+
+  @Test
+  public void test_percentiles() {
+    val histogram = new LatencyHistogram();
+    assertThat(histogram.getPercentileNanos(0.99)).isZero();
+
+    for (int i = 1; i <= 100; i++) {
+      histogram.record(MILLISECONDS.toNanos(i * 10));
+    }
+
+    assertThat(histogram.getCount()).isEqualTo(100);
+    assertThat(histogram.getMaxNanos()).isEqualTo(MILLISECONDS.toNanos(1000));
+    assertThat((double) histogram.getPercentileNanos(0.50)).isCloseTo(MILLISECONDS.toNanos(500), within(0.125 * 5e8));
+    assertThat((double) histogram.getPercentileNanos(0.99)).isCloseTo(MILLISECONDS.toNanos(990), within(0.125 * 1e9));
+    assertThat(histogram.getPercentileNanos(1.0)).isEqualTo(MILLISECONDS.toNanos(1000));
+  }
+
+}
@@ -0,0 +1,95 @@
+/*
+ * Copyright (c) 2016 The Ontario Institute for Cancer Research. All rights reserved.                             
+ *                                                                                                               
+ * This program and the accompanying materials are made available under the terms of the GNU Public License v3.0.
+ * You should have received a copy of the GNU General Public License along with                                  
+ * this program. If not, see <http://www.gnu.org/licenses/>.                                                     
+ *                                                                                                               
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY                           
+ * EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES                          
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT                           
+ * SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,                                
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED                          
+ * TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS;                               
+ * OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER                              
+ * IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN                         
+ * ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package bio.overture.score.client.state;
+
+import lombok.val;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.attribute.FileTime;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class PartDigestCacheTest {
+
+  private static final String MD5 = "900150983cd24fb0d6963f7d28e17f72";
+
+  @Rule
+  public TemporaryFolder tmp = new TemporaryFolder();
+
+  private File stateDir;
+  private File dataFile;
+
+  @Before
+  public void setUp() throws Exception {
+    stateDir = tmp.newFolder(".object");
+    dataFile = tmp.newFile("object");
+    Files.write(dataFile.toPath(), "abcabc".getBytes());
+  }
+
+  @Test
+  public void test_saved_digests_are_trusted_on_reopen() {
+    val cache = PartDigestCache.open(stateDir, dataFile);
+    cache.put(0, 3, MD5);
+    cache.close();
+
+    val reopened = PartDigestCache.open(stateDir, dataFile);
+    assertThat(reopened.matches(0, 3, MD5)).isTrue();
+    assertThat(reopened.matches(3, 3, MD5)).isFalse();
+    assertThat(reopened.matches(0, 3, "not-an-md5")).isFalse();
+  }
+
+  @Test
+  public void test_digests_are_saved_as_parts_complete() {
+    val cache = PartDigestCache.open(stateDir, dataFile, 0);
+    cache.put(0, 3, MD5);
+
+    assertThat(PartDigestCache.open(stateDir, dataFile).matches(0, 3, MD5)).isTrue();
+    cache.close();
+  }
+
+  @Test
+  public void test_digests_are_dropped_when_file_changed() throws Exception {
+    val cache = PartDigestCache.open(stateDir, dataFile);
+    cache.put(0, 3, MD5);
+    cache.save();
+
+    Files.setLastModifiedTime(dataFile.toPath(),
+        FileTime.fromMillis(Files.getLastModifiedTime(dataFile.toPath()).toMillis() + 10_000));
+
+    assertThat(PartDigestCache.open(stateDir, dataFile).get(0, 3)).isEmpty();
+  }
+
+  @Test
+  public void test_nothing_is_saved_without_state_dir() throws Exception {
+    val cache = PartDigestCache.open(stateDir, dataFile);
+    cache.put(0, 3, MD5);
+    Files.delete(stateDir.toPath());
+    cache.save();
+
+    assertThat(stateDir).doesNotExist();
+
+    PartDigestCache.NONE.put(0, 3, MD5);
+    assertThat(PartDigestCache.NONE.matches(0, 3, MD5)).isFalse();
+  }
+
+}
@@ -0,0 +1,110 @@
+/*
+ * Copyright (c) 2016 The Ontario Institute for Cancer Research. All rights reserved.                             
+ *                                                                                                               
+ * This program and the accompanying materials are made available under the terms of the GNU Public License v3.0.
+ * You should have received a copy of the GNU General Public License along with                                  
+ * this program. If not, see <http://www.gnu.org/licenses/>.                                                     
+ *                                                                                                               
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY                           
+ * EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES                          
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT                           
+ * SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,                                
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED                          
+ * TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS;                               
+ * OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER                              
+ * IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN                         
+ * ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package bio.overture.score.client.storage;
+
+import com.google.common.hash.Hashing;
+import lombok.val;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.EOFException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Flow;
+
+import static java.util.Arrays.asList;
+import static java.util.Collections.singletonList;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class PositionalFileSubscriberTest {
+
+  @Rule
+  public TemporaryFolder tmp = new TemporaryFolder();
+
+  @Test
+  public void test_body_is_written_at_position() throws Exception {
+    val file = tmp.newFile();
+    Files.write(file.toPath(), "..........".getBytes());
+
+    val subscriber = new PositionalFileSubscriber(file, 3, 5);
+    publish(subscriber, asList(buffer("ab"), buffer("c")), singletonList(buffer("de")));
+    subscriber.onComplete();
+
+    assertThat(subscriber.getBody().toCompletableFuture().get())
+        .isEqualTo(Hashing.md5().hashBytes("abcde".getBytes()).toString());
+    assertThat(new String(Files.readAllBytes(file.toPath()))).isEqualTo("...abcde..");
+  }
+
+  @Test
+  public void test_short_body_fails() throws Exception {
+    val file = tmp.newFile();
+    Files.write(file.toPath(), new byte[10]);
+
+    val subscriber = new PositionalFileSubscriber(file, 0, 5);
+    publish(subscriber, singletonList(buffer("abc")));
+    subscriber.onComplete();
+
+    assertThatThrownBy(() -> subscriber.getBody().toCompletableFuture().get())
+        .isInstanceOf(ExecutionException.class)
+        .hasCauseInstanceOf(EOFException.class);
+  }
+
+  @Test
+  public void test_cancelled_subscriber_stops_writing() throws Exception {
+    val file = tmp.newFile();
+    Files.write(file.toPath(), "..........".getBytes());
+
+    val subscriber = new PositionalFileSubscriber(file, 0, 5);
+    publish(subscriber, singletonList(buffer("ab")));
+    subscriber.cancel();
+    subscriber.onNext(singletonList(buffer("cde")));
+    subscriber.onComplete();
+
+    assertThatThrownBy(() -> subscriber.getBody().toCompletableFuture().get())
+        .isInstanceOf(CancellationException.class);
+    assertThat(new String(Files.readAllBytes(file.toPath()))).isEqualTo("ab........");
+  }
+
+  @SafeVarargs
+  private static void publish(PositionalFileSubscriber subscriber, List<ByteBuffer>... batches) {
+    subscriber.onSubscribe(new Flow.Subscription() {
+
+      @Override
+      public void request(long n) {
+      }
+
+      @Override
+      public void cancel() {
+      }
+
+    });
+    for (val batch : batches) {
+      subscriber.onNext(batch);
+    }
+  }
+
+  private static ByteBuffer buffer(String data) {
+    return ByteBuffer.wrap(data.getBytes());
+  }
+
+}
@@ -0,0 +1,68 @@
+/*
+ * Copyright (c) 2016 The Ontario Institute for Cancer Research. All rights reserved.                             
+ *                                                                                                               
+ * This program and the accompanying materials are made available under the terms of the GNU Public License v3.0.
+ * You should have received a copy of the GNU General Public License along with                                  
+ * this program. If not, see <http://www.gnu.org/licenses/>.                                                     
+ *                                                                                                               
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY                           
+ * EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES                          
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT                           
+ * SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,                                
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED                          
+ * TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS;                               
+ * OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER                              
+ * IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN                         
+ * ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package bio.overture.score.client.storage.score;
+
+import bio.overture.score.core.model.CompletedPart;
+import lombok.val;
+import org.junit.Test;
+
+import static java.util.Arrays.asList;
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class CompletedPartBufferTest {
+
+  @Test
+  public void test_parts_are_released_in_full_batches_per_upload() {
+    val buffer = new CompletedPartBuffer(2, Long.MAX_VALUE);
+
+    assertThat(buffer.add("object-1", "upload-1", part(1))).isEmpty();
+    assertThat(buffer.add("object-2", "upload-2", part(1))).isEmpty();
+    assertThat(buffer.add("object-1", "upload-1", part(2))).extracting(CompletedPart::getPartNumber).containsExactly(1, 2);
+
+    assertThat(buffer.drain("upload-1")).isEmpty();
+    assertThat(buffer.drain("upload-2")).extracting(CompletedPart::getPartNumber).containsExactly(1);
+  }
+
+  @Test
+  public void test_restored_parts_go_with_the_next_batch() {
+    val buffer = new CompletedPartBuffer(3, Long.MAX_VALUE);
+    buffer.restore("object-1", "upload-1", buffer.drain("upload-1"));
+    buffer.restore("object-1", "upload-1", asList(part(1), part(2)));
+
+    assertThat(buffer.add("object-1", "upload-1", part(3))).extracting(CompletedPart::getPartNumber).containsExactly(1, 2, 3);
+  }
+
+  @Test
+  public void test_parts_that_waited_too_long_are_due() {
+    val buffer = new CompletedPartBuffer(10, 0);
+    buffer.restore("object-1", "upload-1", asList(part(1), part(2)));
+
+    val batches = buffer.drainDue();
+
+    assertThat(batches).hasSize(1);
+    assertThat(batches.get(0).getObjectId()).isEqualTo("object-1");
+    assertThat(batches.get(0).getParts()).extracting(CompletedPart::getPartNumber).containsExactly(1, 2);
+    assertThat(buffer.drainDue()).isEmpty();
+    assertThat(buffer.add("object-1", "upload-1", part(3))).extracting(CompletedPart::getPartNumber).containsExactly(3);
+  }
+
+  private static CompletedPart part(int partNumber) {
+    return new CompletedPart(partNumber, "md5", "md5");
+  }
+
+}
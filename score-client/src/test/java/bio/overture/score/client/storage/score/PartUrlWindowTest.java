@@ -0,0 +1,77 @@
+/*
+ * Copyright (c) 2016 The Ontario Institute for Cancer Research. All rights reserved.                             
+ *                                                                                                               
+ * This program and the accompanying materials are made available under the terms of the GNU Public License v3.0.
+ * You should have received a copy of the GNU General Public License along with                                  
+ * this program. If not, see <http://www.gnu.org/licenses/>.                                                     
+ *                                                                                                               
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY                           
+ * EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES                          
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT                           
+ * SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,                                
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED                          
+ * TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS;                               
+ * OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER                              
+ * IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN                         
+ * ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package bio.overture.score.client.storage.score;
+
+import bio.overture.score.core.model.Part;
+import lombok.val;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.catchThrowable;
+
+public class PartUrlWindowTest {
+
+  private static final int TOTAL_PARTS = 10;
+
+  List<Integer> requested = new CopyOnWriteArrayList<>();
+
+  @Test
+  public void test_windows_are_loaded_once_and_prefetched_halfway() {
+    val window = new PartUrlWindow(4, this::sign, Runnable::run);
+
+    assertThat(window.getUrl(1)).isEqualTo("url-1");
+    assertThat(window.getUrl(2)).isEqualTo("url-2");
+    assertThat(requested).containsExactly(1);
+
+    // Part 3 is in the second half of the first window, so the next one is fetched ahead of time
+    assertThat(window.getUrl(3)).isEqualTo("url-3");
+    assertThat(requested).containsExactly(1, 5);
+
+    assertThat(window.getUrl(6)).isEqualTo("url-6");
+    assertThat(window.getUrl(4)).isEqualTo("url-4");
+    assertThat(requested).containsExactly(1, 5);
+  }
+
+  @Test
+  public void test_failed_window_is_requested_again() {
+    val failures = new int[] { 1 };
+    val window = new PartUrlWindow(4, partNumber -> {
+      if (failures[0]-- > 0) {
+        throw new IllegalStateException("Unavailable");
+      }
+      return sign(partNumber);
+    }, Runnable::run);
+
+    assertThat(catchThrowable(() -> window.getUrl(1))).isInstanceOf(IllegalStateException.class);
+    assertThat(window.getUrl(1)).isEqualTo("url-1");
+  }
+
+  private List<Part> sign(int partNumber) {
+    requested.add(partNumber);
+    val parts = new ArrayList<Part>();
+    for (int i = partNumber; i < partNumber + 4 && i <= TOTAL_PARTS; i++) {
+      parts.add(new Part(i, 1, i - 1, "url-" + i, null, null));
+    }
+    return parts;
+  }
+
+}
@@ -0,0 +1,79 @@
+/*
+ * Copyright (c) 2016 The Ontario Institute for Cancer Research. All rights reserved.                             
+ *                                                                                                               
+ * This program and the accompanying materials are made available under the terms of the GNU Public License v3.0.
+ * You should have received a copy of the GNU General Public License along with                                  
+ * this program. If not, see <http://www.gnu.org/licenses/>.                                                     
+ *                                                                                                               
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY                           
+ * EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES                          
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT                           
+ * SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,                                
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED                          
+ * TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS;                               
+ * OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER                              
+ * IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN                         
+ * ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package bio.overture.score.client.transport;
+
+import bio.overture.score.client.transport.ConcurrencyController.Slot;
+import bio.overture.score.core.model.DataChannel;
+import lombok.val;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class ConcurrencyControllerTest {
+
+  @Test
+  public void test_fixed_limit_never_changes() throws InterruptedException {
+    val controller = ConcurrencyController.fixed(3);
+    completeRound(controller, 3, false);
+    assertThat(controller.getLimit()).isEqualTo(3);
+  }
+
+  @Test
+  public void test_adaptive_limit_grows_then_backs_off_on_errors() throws InterruptedException {
+    val controller = ConcurrencyController.adaptive(2, 4);
+
+    completeRound(controller, 2, false);
+    assertThat(controller.getLimit()).isEqualTo(3);
+
+    completeRound(controller, 3, true);
+    assertThat(controller.getLimit()).isEqualTo(1);
+  }
+
+  @Test
+  public void test_adaptive_limit_is_bounded() throws InterruptedException {
+    val controller = ConcurrencyController.adaptive(2, 2);
+    completeRound(controller, 2, false);
+    assertThat(controller.getLimit()).isEqualTo(2);
+  }
+
+  private static void completeRound(ConcurrencyController controller, int parts, boolean failed)
+      throws InterruptedException {
+    List<Slot> slots = new ArrayList<>();
+    for (int i = 0; i < parts; i++) {
+      val slot = controller.acquire();
+      val channel = mock(DataChannel.class);
+      when(channel.getLength()).thenReturn(1024L);
+      slot.monitor(channel);
+      slots.add(slot);
+    }
+
+    for (val slot : slots) {
+      if (failed) {
+        slot.failed();
+      } else {
+        slot.completed();
+      }
+    }
+  }
+
+}
@@ -0,0 +1,70 @@
+/*
+ * Copyright (c) 2016 The Ontario Institute for Cancer Research. All rights reserved.                             
+ *                                                                                                               
+ * This program and the accompanying materials are made available under the terms of the GNU Public License v3.0.
+ * You should have received a copy of the GNU General Public License along with                                  
+ * this program. If not, see <http://www.gnu.org/licenses/>.                                                     
+ *                                                                                                               
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY                           
+ * EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES                          
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT                           
+ * SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,                                
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED                          
+ * TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS;                               
+ * OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER                              
+ * IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN                         
+ * ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package bio.overture.score.client.transport;
+
+import lombok.val;
+import org.junit.Test;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class DirectBufferPoolTest {
+
+  @Test
+  public void test_buffers_are_direct_and_reused() throws InterruptedException {
+    val pool = new DirectBufferPool(16, 1);
+
+    val first = pool.acquire();
+    assertThat(first.isDirect()).isTrue();
+    assertThat(first.capacity()).isEqualTo(16);
+    first.put((byte) 1);
+    pool.release(first);
+
+    val second = pool.acquire();
+    assertThat(second).isSameAs(first);
+    assertThat(second.position()).isEqualTo(0);
+  }
+
+  @Test
+  public void test_acquire_blocks_until_release() throws Exception {
+    val pool = new DirectBufferPool(16, 2);
+    val first = pool.acquire();
+    pool.acquire();
+    assertThat(pool.available()).isEqualTo(0);
+
+    val executor = Executors.newSingleThreadExecutor();
+    try {
+      val waiting = executor.submit(pool::acquire);
+      try {
+        waiting.get(200, TimeUnit.MILLISECONDS);
+        throw new AssertionError("Acquired a buffer beyond the pool capacity");
+      } catch (TimeoutException e) {
+        // Expected: the pool is exhausted
+      }
+
+      pool.release(first);
+      assertThat(waiting.get(5, TimeUnit.SECONDS)).isSameAs(first);
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+}
@@ -0,0 +1,66 @@
+/*
+ * Copyright (c) 2016 The Ontario Institute for Cancer Research. All rights reserved.                             
+ *                                                                                                               
+ * This program and the accompanying materials are made available under the terms of the GNU Public License v3.0.
+ * You should have received a copy of the GNU General Public License along with                                  
+ * this program. If not, see <http://www.gnu.org/licenses/>.                                                     
+ *                                                                                                               
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY                           
+ * EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES                          
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT                           
+ * SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,                                
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED                          
+ * TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS;                               
+ * OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER                              
+ * IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN                         
+ * ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package bio.overture.score.client.transport;
+
+import bio.overture.score.core.model.Part;
+import lombok.val;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class DirectParallelPartObjectTransportTest {
+
+  @Test
+  public void test_adjacent_parts_are_coalesced_up_to_limit() {
+    val parts = parts(10, 10, 10, 10, 5);
+
+    val runs = DirectParallelPartObjectTransport.coalesce(parts, 25);
+
+    assertThat(runs).extracting(List::size).containsExactly(2, 3);
+    assertThat(runs.get(1).get(0)).isSameAs(parts.get(2));
+  }
+
+  @Test
+  public void test_completed_parts_are_never_coalesced() {
+    val parts = parts(10, 10, 10, 10);
+    parts.get(1).setMd5("ab");
+
+    val runs = DirectParallelPartObjectTransport.coalesce(parts, 100);
+
+    assertThat(runs).extracting(List::size).containsExactly(1, 1, 2);
+  }
+
+  @Test
+  public void test_nothing_is_coalesced_without_limit() {
+    assertThat(DirectParallelPartObjectTransport.coalesce(parts(10, 10, 10), 0)).hasSize(3);
+  }
+
+  private static List<Part> parts(long... sizes) {
+    val parts = new ArrayList<Part>();
+    long offset = 0;
+    for (int i = 0; i < sizes.length; i++) {
+      parts.add(Part.builder().partNumber(i + 1).partSize(sizes[i]).offset(offset).build());
+      offset += sizes[i];
+    }
+    return parts;
+  }
+
+}
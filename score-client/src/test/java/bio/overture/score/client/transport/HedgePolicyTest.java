@@ -0,0 +1,63 @@
+/*
+ * Copyright (c) 2016 The Ontario Institute for Cancer Research. All rights reserved.                             
+ *                                                                                                               
+ * This program and the accompanying materials are made available under the terms of the GNU Public License v3.0.
+ * You should have received a copy of the GNU General Public License along with                                  
+ * this program. If not, see <http://www.gnu.org/licenses/>.                                                     
+ *                                                                                                               
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY                           
+ * EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES                          
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT                           
+ * SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,                                
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED                          
+ * TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS;                               
+ * OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER                              
+ * IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN                         
+ * ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package bio.overture.score.client.transport;
+
+import lombok.val;
+import org.junit.Test;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class HedgePolicyTest {
+
+  @Test
+  public void test_no_delay_until_enough_parts_completed() {
+    val policy = new HedgePolicy(1);
+    for (int i = 0; i < 4; i++) {
+      policy.completed(1000, MILLISECONDS.toNanos(2000));
+    }
+    assertThat(policy.getDelay(1000)).isEmpty();
+
+    policy.completed(1000, MILLISECONDS.toNanos(2000));
+    assertThat(policy.getDelay(1000)).hasValue(6000);
+  }
+
+  @Test
+  public void test_delay_follows_90th_percentile_and_part_size() {
+    val policy = new HedgePolicy(1);
+    for (int i = 0; i < 9; i++) {
+      policy.completed(1000, MILLISECONDS.toNanos(1000));
+    }
+    policy.completed(1000, MILLISECONDS.toNanos(60000));
+
+    assertThat(policy.getDelay(1000)).hasValue(3000);
+    assertThat(policy.getDelay(4000)).hasValue(12000);
+    assertThat(policy.getDelay(10)).hasValue(1000);
+  }
+
+  @Test
+  public void test_hedges_are_limited() {
+    val policy = new HedgePolicy(1);
+    assertThat(policy.tryStart()).isTrue();
+    assertThat(policy.tryStart()).isFalse();
+
+    policy.finished();
+    assertThat(policy.tryStart()).isTrue();
+  }
+
+}
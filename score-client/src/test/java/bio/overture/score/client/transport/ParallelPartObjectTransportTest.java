@@ -0,0 +1,138 @@
+/*
+ * Copyright (c) 2016 The Ontario Institute for Cancer Research. All rights reserved.                             
+ *                                                                                                               
+ * This program and the accompanying materials are made available under the terms of the GNU Public License v3.0.
+ * You should have received a copy of the GNU General Public License along with                                  
+ * this program. If not, see <http://www.gnu.org/licenses/>.                                                     
+ *                                                                                                               
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY                           
+ * EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES                          
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT                           
+ * SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,                                
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED                          
+ * TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS;                               
+ * OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER                              
+ * IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN                         
+ * ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package bio.overture.score.client.transport;
+
+import bio.overture.score.client.cli.Terminal;
+import bio.overture.score.client.progress.Progress;
+import bio.overture.score.client.storage.StorageService;
+import bio.overture.score.client.transport.Transport.Mode;
+import bio.overture.score.core.model.DataChannel;
+import bio.overture.score.core.model.Part;
+import com.google.common.base.Strings;
+import com.google.common.hash.Hashing;
+import lombok.val;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayInputStream;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.RETURNS_SELF;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+public class ParallelPartObjectTransportTest {
+
+  @Rule
+  public TemporaryFolder tmp = new TemporaryFolder();
+
+  @Test
+  public void test_only_corrupted_and_incomplete_parts_are_sent_after_verification() throws Exception {
+    val file = tmp.newFile("object");
+    Files.write(file.toPath(), "aaaabbbbccccdddd".getBytes(UTF_8));
+
+    val parts = parts(4, 4, 4, 4);
+    complete(parts.get(0), "aaaa");
+    complete(parts.get(1), "xxxx");
+    complete(parts.get(3), "dddd");
+
+    val proxy = mock(StorageService.class);
+    ParallelPartObjectTransport.builder()
+        .withProxy(proxy)
+        .withProgressBar(new Progress(mock(Terminal.class, RETURNS_SELF), true, parts.size(), 3))
+        .withParts(parts)
+        .withObjectId("object-id")
+        .withSessionId("upload-id")
+        .withTransportMode(Mode.UPLOAD)
+        .build()
+        .send(file);
+
+    verify(proxy).deleteUploadPart("object-id", "upload-id", parts.get(1));
+    verify(proxy, never()).deleteUploadPart(any(), any(), eq(parts.get(0)));
+    verify(proxy, never()).deleteUploadPart(any(), any(), eq(parts.get(3)));
+    verify(proxy).uploadPart(any(DataChannel.class), eq(parts.get(1)), eq("object-id"), eq("upload-id"));
+    verify(proxy).uploadPart(any(DataChannel.class), eq(parts.get(2)), eq("object-id"), eq("upload-id"));
+    verify(proxy, never()).uploadPart(any(DataChannel.class), eq(parts.get(0)), any(), any());
+    verify(proxy, never()).uploadPart(any(DataChannel.class), eq(parts.get(3)), any(), any());
+  }
+
+  @Test
+  public void test_only_corrupted_and_incomplete_part_files_are_received_after_verification() throws Exception {
+    val outputDir = tmp.newFolder();
+    Files.write(outputDir.toPath().resolve(".object-id-1"), "aaaa".getBytes(UTF_8));
+    Files.write(outputDir.toPath().resolve(".object-id-2"), "xxxx".getBytes(UTF_8));
+
+    val parts = parts(4, 4, 4);
+    complete(parts.get(0), "aaaa");
+    complete(parts.get(1), "bbbb");
+
+    val proxy = mock(StorageService.class);
+    doAnswer(invocation -> {
+      DataChannel channel = invocation.getArgument(0);
+      Part part = invocation.getArgument(1);
+      channel.readFrom(new ByteArrayInputStream(Strings.repeat("abc".substring(part.getPartNumber() - 1,
+          part.getPartNumber()), 4).getBytes(UTF_8)));
+      return null;
+    }).when(proxy).downloadPart(any(), any(), any(), any());
+
+    ParallelPartObjectTransport.builder()
+        .withProxy(proxy)
+        .withProgressBar(new Progress(mock(Terminal.class, RETURNS_SELF), true, parts.size(), 2))
+        .withParts(parts)
+        .withObjectId("object-id")
+        .withSessionId("object-id")
+        .withTransportMode(Mode.DOWNLOAD)
+        .withChecksum(true)
+        .build()
+        .receive(outputDir);
+
+    assertThat(new String(Files.readAllBytes(outputDir.toPath().resolve("object-id")), UTF_8))
+        .isEqualTo("aaaabbbbcccc");
+    verify(proxy).deleteDownloadPart(outputDir, "object-id", parts.get(1));
+    verify(proxy, never()).deleteDownloadPart(any(), any(), eq(parts.get(0)));
+    verify(proxy).downloadPart(any(DataChannel.class), eq(parts.get(1)), eq("object-id"), eq(outputDir));
+    verify(proxy).downloadPart(any(DataChannel.class), eq(parts.get(2)), eq("object-id"), eq(outputDir));
+    verify(proxy, never()).downloadPart(any(DataChannel.class), eq(parts.get(0)), any(), any());
+  }
+
+  private static void complete(Part part, String content) {
+    val md5 = Hashing.md5().hashString(content, UTF_8).toString();
+    part.setMd5(md5);
+    part.setSourceMd5(md5);
+  }
+
+  private static List<Part> parts(long... sizes) {
+    val parts = new ArrayList<Part>();
+    long offset = 0;
+    for (int i = 0; i < sizes.length; i++) {
+      parts.add(Part.builder().partNumber(i + 1).partSize(sizes[i]).offset(offset).build());
+      offset += sizes[i];
+    }
+    return parts;
+  }
+
+}
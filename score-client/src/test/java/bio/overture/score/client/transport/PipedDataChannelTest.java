@@ -0,0 +1,77 @@
+/*
+ * Copyright (c) 2016 The Ontario Institute for Cancer Research. All rights reserved.                             
+ *                                                                                                               
+ * This program and the accompanying materials are made available under the terms of the GNU Public License v3.0.
+ * You should have received a copy of the GNU General Public License along with                                  
+ * this program. If not, see <http://www.gnu.org/licenses/>.                                                     
+ *                                                                                                               
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY                           
+ * EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES                          
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT                           
+ * SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,                                
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED                          
+ * TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS;                               
+ * OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER                              
+ * IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN                         
+ * ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package bio.overture.score.client.transport;
+
+import com.google.common.hash.Hashing;
+import lombok.val;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class PipedDataChannelTest {
+
+  @Test
+  public void test_chunks_are_streamed_and_recycled() throws Exception {
+    val data = "The quick brown fox jumps over the lazy dog".getBytes();
+    val pool = new DirectBufferPool(4, 2);
+    val pipe = new PipedDataChannel(pool, data.length);
+
+    val executor = Executors.newSingleThreadExecutor();
+    try {
+      // More chunks than the pool holds, so the producer only finishes if the consumer recycles them
+      val producer = executor.submit(() -> {
+        for (int offset = 0; offset < data.length; offset += pool.getBufferSize()) {
+          val chunk = pool.acquire();
+          chunk.put(data, offset, Math.min(chunk.remaining(), data.length - offset));
+          chunk.flip();
+          pipe.put(chunk);
+        }
+        return null;
+      });
+
+      val os = new ByteArrayOutputStream();
+      pipe.writeTo(os);
+      producer.get(5, TimeUnit.SECONDS);
+
+      assertThat(os.toByteArray()).isEqualTo(data);
+      assertThat(pipe.getMd5()).isEqualTo(Hashing.md5().hashBytes(data).toString());
+      assertThat(pool.available()).isEqualTo(pool.getCapacity());
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  @Test
+  public void test_closed_pipe_recycles_chunks() throws Exception {
+    val pool = new DirectBufferPool(4, 1);
+    val pipe = new PipedDataChannel(pool, 8);
+
+    pipe.put(pool.acquire());
+    pipe.commitToDisk();
+    assertThat(pool.available()).isEqualTo(1);
+
+    pipe.put(pool.acquire());
+    assertThat(pool.available()).isEqualTo(1);
+  }
+
+}
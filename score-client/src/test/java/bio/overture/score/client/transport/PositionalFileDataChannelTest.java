@@ -0,0 +1,82 @@
+/*
+ * Copyright (c) 2016 The Ontario Institute for Cancer Research. All rights reserved.                             
+ *                                                                                                               
+ * This program and the accompanying materials are made available under the terms of the GNU Public License v3.0.
+ * You should have received a copy of the GNU General Public License along with                                  
+ * this program. If not, see <http://www.gnu.org/licenses/>.                                                     
+ *                                                                                                               
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY                           
+ * EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES                          
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT                           
+ * SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,                                
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED                          
+ * TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS;                               
+ * OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER                              
+ * IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN                         
+ * ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package bio.overture.score.client.transport;
+
+import com.google.common.hash.Hashing;
+import lombok.val;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.util.Arrays;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class PositionalFileDataChannelTest {
+
+  @Rule
+  public TemporaryFolder tmp = new TemporaryFolder();
+
+  @Test
+  public void test_parts_are_written_in_place() throws IOException {
+    val file = tmp.newFile();
+    try (val raf = new RandomAccessFile(file, "rw")) {
+      raf.setLength(10);
+    }
+
+    // Out of order on purpose
+    new PositionalFileDataChannel(file, 6, 4, null).readFrom(new ByteArrayInputStream(bytes('c', 4)));
+    new PositionalFileDataChannel(file, 0, 3, null).readFrom(new ByteArrayInputStream(bytes('a', 3)));
+    new PositionalFileDataChannel(file, 3, 3, null).readFrom(new ByteArrayInputStream(bytes('b', 3)));
+
+    assertThat(new String(Files.readAllBytes(file.toPath()))).isEqualTo("aaabbbcccc");
+  }
+
+  @Test
+  public void test_verify_md5_reads_only_its_region() throws IOException {
+    val file = tmp.newFile();
+    Files.write(file.toPath(), "aaabbbcccc".getBytes());
+
+    val channel = new PositionalFileDataChannel(file, 3, 3, null);
+    val expected = Hashing.md5().hashBytes(bytes('b', 3)).toString();
+
+    assertThat(channel.verifyMd5(expected)).isTrue();
+    assertThat(channel.getMd5()).isEqualTo(expected);
+  }
+
+  @Test(expected = IOException.class)
+  public void test_short_stream_is_rejected() throws IOException {
+    val file = tmp.newFile();
+    try (val raf = new RandomAccessFile(file, "rw")) {
+      raf.setLength(10);
+    }
+
+    new PositionalFileDataChannel(file, 0, 10, null).readFrom(new ByteArrayInputStream(bytes('a', 4)));
+  }
+
+  private static byte[] bytes(char c, int count) {
+    val bytes = new byte[count];
+    Arrays.fill(bytes, (byte) c);
+    return bytes;
+  }
+
+}
@@ -0,0 +1,122 @@
+/*
+ * Copyright (c) 2016 The Ontario Institute for Cancer Research. All rights reserved.                             
+ *                                                                                                               
+ * This program and the accompanying materials are made available under the terms of the GNU Public License v3.0.
+ * You should have received a copy of the GNU General Public License along with                                  
+ * this program. If not, see <http://www.gnu.org/licenses/>.                                                     
+ *                                                                                                               
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY                           
+ * EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES                          
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT                           
+ * SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,                                
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED                          
+ * TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS;                               
+ * OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER                              
+ * IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN                         
+ * ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package bio.overture.score.client.upload.s3;
+
+import bio.overture.score.client.cli.Terminal;
+import bio.overture.score.client.exception.NotRetryableException;
+import bio.overture.score.client.storage.StorageService;
+import bio.overture.score.client.upload.UploadRequest;
+import bio.overture.score.core.model.ObjectSpecification;
+import bio.overture.score.core.model.Part;
+import com.google.common.collect.ImmutableList;
+import lombok.val;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.RETURNS_SELF;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class S3UploadSchedulerTest {
+
+  @Rule
+  public TemporaryFolder tmp = new TemporaryFolder();
+
+  private final StorageService storageService = mock(StorageService.class);
+  private final S3UploadService uploadService = mock(S3UploadService.class);
+
+  @Before
+  public void setUp() throws Exception {
+    when(uploadService.checkProgress(any(), anyString())).thenThrow(new NotRetryableException(new IOException()));
+    when(uploadService.getUploadStateDir(any())).thenReturn(tmp.getRoot().getPath());
+  }
+
+  @Test
+  public void test_files_are_uploaded_and_finalized() throws Exception {
+    val a = request("a", 4, 4, 2);
+    val b = request("b", 3);
+
+    scheduler(1024).upload(ImmutableList.of(a, b), false);
+
+    verify(storageService, times(4)).uploadPart(any(), any(), any(), any());
+    verify(storageService).finalizeUpload("a", "upload-a");
+    verify(storageService).finalizeUpload("b", "upload-b");
+    verify(uploadService).cleanupState(a.getFile(), "a");
+    verify(uploadService, never()).upload(any(), any(), any(), anyBoolean());
+  }
+
+  @Test
+  public void test_failed_and_started_files_are_resumed() throws Exception {
+    val a = request("a", 4);
+    val broken = request("x", 4, 4);
+    val started = request("s", 4);
+    doThrow(new IOException("Broken part")).when(storageService).uploadPart(any(), any(), eq("x"), any());
+    doReturn(null).when(uploadService).checkProgress(started.getFile(), "s");
+
+    // A budget smaller than a part still lets every part through, one at a time
+    scheduler(1).upload(ImmutableList.of(a, broken, started), false);
+
+    verify(storageService).finalizeUpload("a", "upload-a");
+    verify(storageService, never()).finalizeUpload(eq("x"), any());
+    verify(storageService, never()).initiateUpload(eq("s"), any(Long.class), anyBoolean(), any());
+    verify(uploadService).upload(broken.getFile(), "x", "md5-x", false);
+    verify(uploadService).upload(started.getFile(), "s", "md5-s", false);
+  }
+
+  private S3UploadScheduler scheduler(long memory) {
+    return new S3UploadScheduler(true, 3, memory, uploadService, storageService, mock(Terminal.class, RETURNS_SELF));
+  }
+
+  private UploadRequest request(String objectId, long... partSizes) throws IOException {
+    val parts = new ArrayList<Part>();
+    long offset = 0;
+    for (int i = 0; i < partSizes.length; i++) {
+      parts.add(Part.builder().partNumber(i + 1).partSize(partSizes[i]).offset(offset).build());
+      offset += partSizes[i];
+    }
+
+    val file = new File(tmp.getRoot(), objectId);
+    Files.write(file.toPath(), new byte[(int) offset]);
+
+    val spec = new ObjectSpecification();
+    spec.setObjectId(objectId);
+    spec.setUploadId("upload-" + objectId);
+    spec.setObjectSize(offset);
+    spec.setParts(parts);
+    when(storageService.initiateUpload(objectId, offset, true, "md5-" + objectId)).thenReturn(spec);
+
+    return UploadRequest.builder().file(file).objectId(objectId).md5("md5-" + objectId).build();
+  }
+
+}
@@ -34,8 +34,14 @@ public final class Parts {
    * Generates Range header for part URL.
    */
   public static String getHttpRangeValue(@NonNull Part part) {
-    return String.valueOf("bytes=" + part.getOffset()) + "-"
-        + String.valueOf(part.getOffset() + part.getPartSize() - 1L);
+    return getHttpRangeValue(part.getOffset(), part.getPartSize());
+  }
+
+  /**
+   * Generates Range header for {@code length} bytes starting at {@code offset}.
+   */
+  public static String getHttpRangeValue(long offset, long length) {
+    return String.valueOf("bytes=" + offset) + "-" + String.valueOf(offset + length - 1L);
   }
 
 }
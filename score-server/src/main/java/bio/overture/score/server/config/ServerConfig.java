@@ -21,14 +21,17 @@ import bio.overture.score.core.util.SimplePartCalculator;
 import bio.overture.score.server.repository.URLGenerator;
 import bio.overture.score.server.repository.BucketNamingService;
 import bio.overture.score.core.util.PartCalculator;
+import bio.overture.score.server.repository.CachingUploadStateStore;
 import bio.overture.score.server.repository.UploadStateStore;
 import bio.overture.score.server.repository.s3.S3BucketNamingService;
 import bio.overture.score.server.repository.s3.S3URLGenerator;
+import bio.overture.score.server.repository.s3.S3CompactUploadStateStore;
 import bio.overture.score.server.repository.s3.S3UploadStateStore;
 import com.amazonaws.services.s3.AmazonS3;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
 import org.springframework.context.annotation.Profile;
 
 /**
@@ -41,6 +44,18 @@ public class ServerConfig {
   @Value("${upload.partsize}")
   private int partSize;
 
+  @Value("${upload.state.compact:false}")
+  private boolean compactState;
+
+  @Value("${upload.state.cache.enabled:false}")
+  private boolean cacheState;
+
+  @Value("${upload.state.cache.ttl:10}")
+  private int cacheTtlMinutes;
+
+  @Value("${upload.state.cache.size:1000}")
+  private int cacheSize;
+
   @Value("${s3.preSignedUrl.override.host}")
   private String preSignedUrlsHostOverride;
 
@@ -48,8 +63,14 @@ public class ServerConfig {
   private String s3Endpoint;
 
   @Bean
-  public UploadStateStore stateStore() {
-    return new S3UploadStateStore();
+  public S3UploadStateStore s3StateStore() {
+    return compactState ? new S3CompactUploadStateStore() : new S3UploadStateStore();
+  }
+
+  @Bean
+  @Primary
+  public UploadStateStore stateStore(S3UploadStateStore s3StateStore) {
+    return cacheState ? new CachingUploadStateStore(s3StateStore, cacheTtlMinutes, cacheSize) : s3StateStore;
   }
 
   @Bean
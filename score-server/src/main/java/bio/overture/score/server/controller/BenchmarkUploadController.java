@@ -68,9 +68,10 @@ public class BenchmarkUploadController extends UploadController {
       @RequestParam(value = "overwrite", required = false, defaultValue = "false") boolean overwrite,
       @RequestParam(value = "fileSize", required = true) long fileSize,
       @RequestParam(value = "md5", required = false) String md5,
+      @RequestParam(value = "defer-urls", required = false, defaultValue = "false") boolean deferUrls,
       @RequestHeader(value = "User-Agent", defaultValue = "unknown") String userAgent,
       HttpServletRequest request) {
-    return uploadService.initiateUpload(objectId, fileSize, md5, overwrite);
+    return uploadService.initiateUpload(objectId, fileSize, md5, overwrite, deferUrls);
   }
 
   @Override
@@ -18,6 +18,7 @@
 package bio.overture.score.server.controller;
 
 import bio.overture.score.core.model.ObjectSpecification;
+import bio.overture.score.core.model.Part;
 import bio.overture.score.server.repository.DownloadService;
 import bio.overture.score.server.security.TokenHasher;
 import bio.overture.score.server.util.HttpServletRequests;
@@ -33,6 +34,7 @@ import org.springframework.security.access.AccessDeniedException;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestMethod;
@@ -41,6 +43,7 @@ import org.springframework.web.bind.annotation.ResponseBody;
 import org.springframework.web.bind.annotation.RestController;
 
 import javax.servlet.http.HttpServletRequest;
+import java.util.List;
 
 /**
  * A controller to expose RESTful API for download
@@ -76,6 +79,7 @@ public class DownloadController {
       @RequestParam(value = "length", required = true) long length,
       @RequestParam(value = "external", defaultValue = "false") boolean external,
       @RequestParam(value = "exclude-urls", defaultValue = "false") boolean excludeUrls,
+      @RequestParam(value = "defer-urls", defaultValue = "false") boolean deferUrls,
       @RequestHeader(value = "User-Agent", defaultValue = "unknown") String userAgent,
       HttpServletRequest request) {
 
@@ -83,7 +87,16 @@ public class DownloadController {
 
     log.info("Requesting download of object id {} with access token {} (MD5) from {} and client version {}", objectId,
         identifier(accessToken), ipAddress, userAgent);
-    return downloadService.download(objectId, offset, length, external, excludeUrls);
+    return downloadService.download(objectId, offset, length, external, excludeUrls, deferUrls);
+  }
+
+  @PreAuthorize("@accessSecurity.authorize(authentication,#objectId)")
+  @RequestMapping(method = RequestMethod.POST, value = "/{object-id}/urls")
+  public @ResponseBody List<Part> getPartUrls(
+      @RequestHeader(value = HttpHeaders.AUTHORIZATION, required = false) final String accessToken,
+      @PathVariable(value = "object-id") String objectId,
+      @RequestBody List<Part> parts) {
+    return downloadService.getDownloadPartUrls(objectId, parts);
   }
 
   protected String identifier(String accessToken) {
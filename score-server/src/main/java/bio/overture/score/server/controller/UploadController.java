@@ -20,10 +20,13 @@ package bio.overture.score.server.controller;
 import java.io.IOException;
 import java.lang.annotation.Retention;
 import java.lang.annotation.RetentionPolicy;
+import java.util.List;
 
 import javax.servlet.http.HttpServletRequest;
 
+import bio.overture.score.core.model.CompletedPart;
 import bio.overture.score.core.model.ObjectSpecification;
+import bio.overture.score.core.model.Part;
 import bio.overture.score.core.model.UploadProgress;
 import bio.overture.score.server.util.HttpServletRequests;
 import bio.overture.score.server.repository.UploadService;
@@ -37,6 +40,7 @@ import org.springframework.security.access.AccessDeniedException;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestMethod;
@@ -72,6 +76,7 @@ public class UploadController {
       @RequestParam(value = "overwrite", required = false, defaultValue = "false") boolean overwrite,
       @RequestParam(value = "fileSize", required = true) long fileSize,
       @RequestParam(value = "md5", required = false) String md5,
+      @RequestParam(value = "defer-urls", required = false, defaultValue = "false") boolean deferUrls,
       @RequestHeader(value = "User-Agent", defaultValue = "unknown") String userAgent,
       HttpServletRequest request) {
 
@@ -85,7 +90,18 @@ public class UploadController {
         Long.toString(fileSize),
         ipAddress,
         userAgent);
-    return uploadService.initiateUpload(objectId, fileSize, md5, overwrite);
+    return uploadService.initiateUpload(objectId, fileSize, md5, overwrite, deferUrls);
+  }
+
+  @ProjectCodeScoped
+  @RequestMapping(method = RequestMethod.GET, value = "/{object-id}/urls")
+  public @ResponseBody List<Part> getPartUrls(
+      @RequestHeader(value = HttpHeaders.AUTHORIZATION, required = true) final String accessToken,
+      @PathVariable(value = "object-id") String objectId,
+      @RequestParam(value = "uploadId", required = true) String uploadId,
+      @RequestParam(value = "partNumber", required = true) int partNumber,
+      @RequestParam(value = "count", required = true) int count) {
+    return uploadService.getUploadPartUrls(objectId, uploadId, partNumber, count);
   }
 
   @ProjectCodeScoped
@@ -122,6 +138,17 @@ public class UploadController {
     uploadService.finalizeUploadPart(objectId, uploadId, partNumber, md5, eTag);
   }
 
+  @ProjectCodeScoped
+  @RequestMapping(method = RequestMethod.POST, value = "/{object-id}/parts/batch")
+  @ResponseStatus(value = HttpStatus.OK)
+  public void finalizePartUploads(
+      @RequestHeader(value = HttpHeaders.AUTHORIZATION, required = true) final String accessToken,
+      @PathVariable(value = "object-id") String objectId,
+      @RequestParam(value = "uploadId", required = true) String uploadId,
+      @RequestBody List<CompletedPart> parts) {
+    uploadService.finalizeUploadParts(objectId, uploadId, parts);
+  }
+
   @ProjectCodeScoped
   @RequestMapping(method = RequestMethod.POST, value = "/{object-id}")
   @ResponseStatus(value = HttpStatus.OK)
@@ -20,25 +20,41 @@ package bio.overture.score.server.metadata;
 import bio.overture.score.server.exception.IdNotFoundException;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader.InvalidCacheLoadException;
+import com.google.common.util.concurrent.UncheckedExecutionException;
 import lombok.NonNull;
 import lombok.SneakyThrows;
 import lombok.extern.slf4j.Slf4j;
 import lombok.val;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.impl.client.HttpClientBuilder;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.context.annotation.Bean;
+import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
 import org.springframework.stereotype.Service;
 import org.springframework.web.client.HttpClientErrorException;
 import org.springframework.web.client.RestTemplate;
 
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+
 import static com.google.common.base.Preconditions.checkArgument;
 import static java.lang.String.format;
+import static java.util.concurrent.TimeUnit.SECONDS;
 import static org.springframework.http.HttpStatus.BAD_REQUEST;
 import static org.springframework.http.HttpStatus.NOT_FOUND;
 
+/**
+ * Client of the metadata server. Entities and analysis states are cached for a short while, since authorizing and
+ * serving a single request asks for the same ones several times, and concurrent requests for an id share one call.
+ */
 @Slf4j
 @Service
 public class MetadataService {
-  private final RestTemplate restTemplate = new RestTemplate();
+  private final RestTemplate restTemplate;
+  private final Cache<String, MetadataEntity> entities;
+  private final Cache<String, String> analysisStates;
 
   @Value("${metadata.url}")
   private String metadataUrl;
@@ -46,7 +62,28 @@ public class MetadataService {
   private static final String ANALYSIS_STATE = "analysisState";
   private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
 
+  public MetadataService(
+      @Value("${metadata.cache.ttl:30}") int cacheTtlSeconds,
+      @Value("${metadata.cache.size:10000}") int cacheSize,
+      @Value("${metadata.connections:50}") int maxConnections,
+      @Value("${metadata.connectTimeout:10}") int connectTimeoutSeconds,
+      @Value("${metadata.readTimeout:30}") int readTimeoutSeconds) {
+    this.restTemplate = createRestTemplate(maxConnections, connectTimeoutSeconds, readTimeoutSeconds);
+    this.entities = CacheBuilder.newBuilder().expireAfterWrite(cacheTtlSeconds, SECONDS).maximumSize(cacheSize).build();
+    this.analysisStates =
+        CacheBuilder.newBuilder().expireAfterWrite(cacheTtlSeconds, SECONDS).maximumSize(cacheSize).build();
+  }
+
   public MetadataEntity getEntity(@NonNull String id) {
+    try {
+      return get(entities, id, () -> fetchEntity(id));
+    } catch (InvalidCacheLoadException e) {
+      // No body in the response, which is not cached
+      return null;
+    }
+  }
+
+  private MetadataEntity fetchEntity(String id) {
     log.debug("using " + metadataUrl + " for MetaData server");
     try {
       return restTemplate.getForEntity(metadataUrl + "/entities/" + id, MetadataEntity.class).getBody();
@@ -64,6 +101,10 @@ public class MetadataService {
   public String getAnalysisStateForMetadata(@NonNull MetadataEntity metadataEntity){
     val studyId = getStudyId(metadataEntity);
     val analysisId = getAnalysisId(metadataEntity);
+    return get(analysisStates, studyId + "/" + analysisId, () -> fetchAnalysisState(studyId, analysisId));
+  }
+
+  private String fetchAnalysisState(String studyId, String analysisId) {
     try{
       return readAnalysisState(studyId, analysisId);
     } catch (HttpClientErrorException e) {
@@ -78,6 +119,38 @@ public class MetadataService {
     }
   }
 
+  /**
+   * Failures, such as an id that is not registered yet, are not cached.
+   */
+  @SneakyThrows
+  private static <V> V get(Cache<String, V> cache, String key, Callable<V> loader) {
+    try {
+      return cache.get(key, loader);
+    } catch (ExecutionException | UncheckedExecutionException e) {
+      throw e.getCause();
+    }
+  }
+
+  /**
+   * Waiting for a pooled connection counts against the connect timeout, so a saturated pool fails instead of piling
+   * up requests.
+   */
+  private static RestTemplate createRestTemplate(int maxConnections, int connectTimeoutSeconds,
+      int readTimeoutSeconds) {
+    val requestConfig = RequestConfig.custom()
+        .setConnectTimeout((int) SECONDS.toMillis(connectTimeoutSeconds))
+        .setConnectionRequestTimeout((int) SECONDS.toMillis(connectTimeoutSeconds))
+        .setSocketTimeout((int) SECONDS.toMillis(readTimeoutSeconds))
+        .build();
+    val httpClient = HttpClientBuilder.create()
+        .useSystemProperties()
+        .setMaxConnTotal(maxConnections)
+        .setMaxConnPerRoute(maxConnections)
+        .setDefaultRequestConfig(requestConfig)
+        .build();
+    return new RestTemplate(new HttpComponentsClientHttpRequestFactory(httpClient));
+  }
+
   public static String getAnalysisId(MetadataEntity metadataEntity){
     return metadataEntity.getGnosId();
   }
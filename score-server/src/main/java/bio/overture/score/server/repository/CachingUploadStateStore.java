@@ -0,0 +1,245 @@
+/*
+ * Copyright (c) 2016 The Ontario Institute for Cancer Research. All rights reserved.                             
+ *                                                                                                               
+ * This program and the accompanying materials are made available under the terms of the GNU Public License v3.0.
+ * You should have received a copy of the GNU General Public License along with                                  
+ * this program. If not, see <http://www.gnu.org/licenses/>.                                                     
+ *                                                                                                               
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY                           
+ * EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES                          
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT                           
+ * SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,                                
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED                          
+ * TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS;                               
+ * OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER                              
+ * IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN                         
+ * ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package bio.overture.score.server.repository;
+
+import static java.util.concurrent.TimeUnit.MINUTES;
+import static java.util.stream.Collectors.toList;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReadWriteLock;
+
+import bio.overture.score.core.model.CompletedPart;
+import bio.overture.score.core.model.ObjectSpecification;
+import bio.overture.score.core.model.Part;
+
+import com.amazonaws.services.s3.model.PartETag;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.util.concurrent.Striped;
+
+import lombok.NonNull;
+import lombok.RequiredArgsConstructor;
+import lombok.val;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Keeps an in-process snapshot of each active upload, i.e. its specification and its completed parts, in front of
+ * another {@link UploadStateStore}. A snapshot is built once from the backing store and kept up to date by
+ * {@link #finalizeUploadPart} and {@link #deletePart}, so that status and finalize calls do not go back to the backing
+ * store.
+ * <p>
+ * Parts finalized through another server are not seen by a snapshot until it expires, except that an upload that looks
+ * incomplete is read again before {@link #isCompleted} says so. A client asking for the status meanwhile only
+ * uploads those parts again.
+ * <p>
+ * Only use this store when a single server node handles the uploads: a part uploaded again through another node keeps
+ * its old ETag in the snapshot, which then fails the completion of the multipart upload.
+ */
+@Slf4j
+public class CachingUploadStateStore implements UploadStateStore {
+
+  /**
+   * Dependencies.
+   */
+  private final UploadStateStore delegate;
+
+  /**
+   * State.
+   */
+  private final Cache<String, Snapshot> snapshots;
+  private final Striped<ReadWriteLock> locks = Striped.readWriteLock(64);
+
+  public CachingUploadStateStore(@NonNull UploadStateStore delegate, int ttlMinutes, int maximumSize) {
+    this.delegate = delegate;
+    this.snapshots = CacheBuilder.newBuilder().expireAfterAccess(ttlMinutes, MINUTES).maximumSize(maximumSize).build();
+  }
+
+  @Override
+  public void create(ObjectSpecification spec) {
+    delegate.create(spec);
+    snapshots.put(getKey(spec.getObjectId(), spec.getUploadId()), new Snapshot(copy(spec), new ConcurrentHashMap<>()));
+  }
+
+  @Override
+  public ObjectSpecification read(String objectId, String uploadId) {
+    return copy(getSnapshot(objectId, uploadId).spec);
+  }
+
+  @Override
+  public void delete(String objectId, String uploadId) {
+    try {
+      delegate.delete(objectId, uploadId);
+    } finally {
+      snapshots.invalidate(getKey(objectId, uploadId));
+    }
+  }
+
+  @Override
+  public void deletePart(String objectId, String uploadId, int partNumber) {
+    delegate.deletePart(objectId, uploadId, partNumber);
+
+    val snapshot = snapshots.getIfPresent(getKey(objectId, uploadId));
+    if (snapshot != null) {
+      snapshot.parts.remove(partNumber);
+    }
+  }
+
+  @Override
+  public void markCompletedParts(String objectId, String uploadId, List<Part> parts) {
+    if (parts == null) {
+      return;
+    }
+
+    val completedParts = getSnapshot(objectId, uploadId).parts;
+    for (val part : parts) {
+      val completedPart = completedParts.get(part.getPartNumber());
+      if (completedPart != null) {
+        part.setSourceMd5(completedPart.getMd5());
+      }
+    }
+  }
+
+  @Override
+  public boolean isCompleted(String objectId, String uploadId) {
+    if (getSnapshot(objectId, uploadId).isCompleted()) {
+      return true;
+    }
+
+    // Parts may have been finalized through another server
+    snapshots.invalidate(getKey(objectId, uploadId));
+    return getSnapshot(objectId, uploadId).isCompleted();
+  }
+
+  @Override
+  public void finalizeUploadPart(String objectId, String uploadId, int partNumber, String md5, String eTag) {
+    val key = getKey(objectId, uploadId);
+    val lock = locks.get(key).readLock();
+    lock.lock();
+    try {
+      delegate.finalizeUploadPart(objectId, uploadId, partNumber, md5, eTag);
+
+      val snapshot = snapshots.getIfPresent(key);
+      if (snapshot != null) {
+        snapshot.parts.put(partNumber, getDetail(partNumber, md5, eTag));
+      }
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  @Override
+  public void finalizeUploadParts(String objectId, String uploadId, List<CompletedPart> parts) {
+    val key = getKey(objectId, uploadId);
+    val lock = locks.get(key).readLock();
+    lock.lock();
+    try {
+      delegate.finalizeUploadParts(objectId, uploadId, parts);
+
+      val snapshot = snapshots.getIfPresent(key);
+      if (snapshot != null) {
+        for (val part : parts) {
+          snapshot.parts.put(part.getPartNumber(), getDetail(part.getPartNumber(), part.getMd5(), part.getEtag()));
+        }
+      }
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  @Override
+  public Map<Integer, UploadPartDetail> getUploadStatePartDetails(String objectId, String uploadId) {
+    return new ConcurrentHashMap<>(getSnapshot(objectId, uploadId).parts);
+  }
+
+  /**
+   * Not cached: the upload id of an object changes whenever its upload is cancelled and initiated again, possibly
+   * through another server.
+   */
+  @Override
+  public String getUploadId(String objectId) {
+    return delegate.getUploadId(objectId);
+  }
+
+  /**
+   * Concurrent callers for an upload without a snapshot wait for the one that builds it. Building holds the write
+   * lock of the upload until the snapshot is cached, so a part finalized meanwhile is either read by the build or
+   * added to the snapshot afterwards.
+   */
+  private Snapshot getSnapshot(String objectId, String uploadId) {
+    val key = getKey(objectId, uploadId);
+    val snapshot = snapshots.getIfPresent(key);
+    if (snapshot != null) {
+      return snapshot;
+    }
+
+    val lock = locks.get(key).writeLock();
+    lock.lock();
+    try {
+      val cached = snapshots.getIfPresent(key);
+      if (cached != null) {
+        return cached;
+      }
+
+      log.debug("Building upload state snapshot for object id: {}, upload id: {}", objectId, uploadId);
+      val spec = delegate.read(objectId, uploadId);
+      val parts = delegate.getUploadStatePartDetails(objectId, uploadId);
+      val built = new Snapshot(spec, new ConcurrentHashMap<>(parts));
+      snapshots.put(key, built);
+      return built;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  private static UploadPartDetail getDetail(int partNumber, String md5, String eTag) {
+    return UploadPartDetail.builder().etag(new PartETag(partNumber, eTag)).partNumber(partNumber).md5(md5).build();
+  }
+
+  private static String getKey(String objectId, String uploadId) {
+    return objectId + "_" + uploadId;
+  }
+
+  /**
+   * Callers update the parts of a specification they read, so the snapshot only ever hands out copies.
+   */
+  private static ObjectSpecification copy(ObjectSpecification spec) {
+    val parts = spec.getParts() == null ? null : spec.getParts().stream()
+        .map(part -> new Part(part.getPartNumber(), part.getPartSize(), part.getOffset(), part.getUrl(), part.getMd5(),
+            part.getSourceMd5()))
+        .collect(toList());
+
+    return new ObjectSpecification(spec.getObjectKey(), spec.getObjectId(), spec.getUploadId(), parts,
+        spec.getObjectSize(), spec.getObjectMd5(), spec.isRelocated());
+  }
+
+  @RequiredArgsConstructor
+  private static class Snapshot {
+
+    private final ObjectSpecification spec;
+    private final Map<Integer, UploadPartDetail> parts;
+
+    boolean isCompleted() {
+      return spec.getParts() == null
+          || spec.getParts().stream().allMatch(part -> parts.containsKey(part.getPartNumber()));
+    }
+
+  }
+
+}
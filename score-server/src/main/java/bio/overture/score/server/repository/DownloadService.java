@@ -17,11 +17,29 @@
  */
 package bio.overture.score.server.repository;
 
+import java.util.List;
+
 import bio.overture.score.core.model.ObjectSpecification;
+import bio.overture.score.core.model.Part;
 
 public interface DownloadService {
 
-  ObjectSpecification download(String objectId, long offset, long length, boolean forExternalUse, boolean excludeUrls);
+  default ObjectSpecification download(String objectId, long offset, long length, boolean forExternalUse,
+      boolean excludeUrls) {
+    return download(objectId, offset, length, forExternalUse, excludeUrls, false);
+  }
+
+  /**
+   * With {@code deferUrls} the specification is checked the same way but returned without part URLs, which are then
+   * presigned a window at a time by {@link #getDownloadPartUrls}.
+   */
+  ObjectSpecification download(String objectId, long offset, long length, boolean forExternalUse, boolean excludeUrls,
+      boolean deferUrls);
+
+  /**
+   * Presigns the URLs of {@code parts}, part geometry as returned by a deferred {@link #download}.
+   */
+  List<Part> getDownloadPartUrls(String objectId, List<Part> parts);
 
   /**
    * Attempts to fetch a pre-defined object id (defined in application.yml) from the object repository. Used to confirm
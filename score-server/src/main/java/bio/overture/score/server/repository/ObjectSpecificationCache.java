@@ -0,0 +1,104 @@
+/*
+ * Copyright (c) 2016 The Ontario Institute for Cancer Research. All rights reserved.                             
+ *                                                                                                               
+ * This program and the accompanying materials are made available under the terms of the GNU Public License v3.0.
+ * You should have received a copy of the GNU General Public License along with                                  
+ * this program. If not, see <http://www.gnu.org/licenses/>.                                                     
+ *                                                                                                               
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY                           
+ * EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES                          
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT                           
+ * SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,                                
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED                          
+ * TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS;                               
+ * OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER                              
+ * IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN                         
+ * ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package bio.overture.score.server.repository;
+
+import static java.util.concurrent.TimeUnit.MINUTES;
+import static java.util.stream.Collectors.toList;
+
+import java.util.concurrent.ExecutionException;
+import java.util.function.Function;
+
+import bio.overture.score.core.model.ObjectSpecification;
+import bio.overture.score.core.model.Part;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+
+import lombok.SneakyThrows;
+import lombok.val;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Parsed {@code .meta} specifications of finalized objects, so that downloads of the same objects do not each fetch
+ * and parse it again. Concurrent misses for an object share a single load.
+ * <p>
+ * Entries are weighed by their number of parts and kept without URLs. An object finalized or cancelled on this server
+ * is evicted right away; changes made through another server are seen once the entry expires.
+ */
+@Slf4j
+@Component
+public class ObjectSpecificationCache {
+
+  /**
+   * State.
+   */
+  private final Cache<String, ObjectSpecification> specs;
+
+  public ObjectSpecificationCache(
+      @Value("${object.spec.cache.ttl:1}") int ttlMinutes,
+      @Value("${object.spec.cache.maxParts:1000000}") long maxParts) {
+    this.specs = CacheBuilder.newBuilder()
+        .expireAfterWrite(ttlMinutes, MINUTES)
+        .maximumWeight(maxParts)
+        .<String, ObjectSpecification> weigher((objectId, spec) -> weigh(spec))
+        .build();
+  }
+
+  /**
+   * @param loader reads the specification of the object from the state bucket
+   * @return a copy of the specification, which the caller is free to change
+   */
+  @SneakyThrows
+  public ObjectSpecification get(String objectId, Function<String, ObjectSpecification> loader) {
+    try {
+      return copy(specs.get(objectId, () -> {
+        log.debug("Loading specification for objectId: {}", objectId);
+        val spec = loader.apply(objectId);
+        if (spec.getParts() != null) {
+          spec.getParts().forEach(part -> part.setUrl(null));
+        }
+        return spec;
+      }));
+    } catch (ExecutionException | UncheckedExecutionException e) {
+      // Failed loads are not cached, e.g. an object that is not found yet
+      throw e.getCause();
+    }
+  }
+
+  public void invalidate(String objectId) {
+    specs.invalidate(objectId);
+  }
+
+  private static int weigh(ObjectSpecification spec) {
+    return 1 + (spec.getParts() == null ? 0 : spec.getParts().size());
+  }
+
+  private static ObjectSpecification copy(ObjectSpecification spec) {
+    val parts = spec.getParts() == null ? null : spec.getParts().stream()
+        .map(part -> new Part(part.getPartNumber(), part.getPartSize(), part.getOffset(), part.getUrl(), part.getMd5(),
+            part.getSourceMd5()))
+        .collect(toList());
+
+    return new ObjectSpecification(spec.getObjectKey(), spec.getObjectId(), spec.getUploadId(), parts,
+        spec.getObjectSize(), spec.getObjectMd5(), spec.isRelocated());
+  }
+
+}
@@ -17,10 +17,21 @@
  */
 package bio.overture.score.server.repository;
 
+import static com.google.common.base.Strings.isNullOrEmpty;
 import static com.google.common.base.Strings.repeat;
 import static java.time.temporal.ChronoUnit.DAYS;
 
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
 import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import bio.overture.score.core.util.ObjectKeys;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -30,13 +41,21 @@ import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 
 import com.amazonaws.services.s3.model.MultipartUpload;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.base.Stopwatch;
+import com.google.common.util.concurrent.RateLimiter;
 
 import lombok.Setter;
+import lombok.SneakyThrows;
 import lombok.val;
 import lombok.extern.slf4j.Slf4j;
 
 /**
  * Service that will periodically remove aborted or failed uploads.
+ * <p>
+ * Uploads are listed a page at a time and the stale ones cancelled on a few threads, at a limited rate so that a large
+ * backlog does not compete with the uploads in progress. The position in the listing is saved after every page, so a
+ * sweep that is interrupted continues from there the next time.
  */
 @Slf4j
 @Setter
@@ -44,6 +63,11 @@ import lombok.extern.slf4j.Slf4j;
 @ConditionalOnProperty("upload.clean.enabled")
 public class UploadCleanupService {
 
+  /**
+   * Constants.
+   */
+  private static final ObjectMapper MAPPER = new ObjectMapper();
+
   /**
    * Configuration.
    */
@@ -51,6 +75,14 @@ public class UploadCleanupService {
   private String dataDir;
   @Value("${collaboratory.upload.expiration}")
   private int expiration;
+  @Value("${upload.clean.threads:4}")
+  private int threads = 4;
+  @Value("${upload.clean.rate:10}")
+  private double rate = 10;
+  @Value("${upload.clean.pageSize:1000}")
+  private int pageSize = 1000;
+  @Value("${upload.clean.checkpoint:}")
+  private String checkpoint = "";
 
   /**
    * Dependencies.
@@ -64,20 +96,56 @@ public class UploadCleanupService {
     log.info("Cleaning stale uploads");
     log.info(repeat("-", 100));
 
-    log.info("In-progress multipart uploads: ");
-    for (val upload : uploadService.listUploads()) {
-      log.info(" - Upload: {}", formatUpload(upload));
-
-      if (isStale(upload)) {
-        log.info("*** Cancelling stale upload: {}", formatUpload(upload));
+    val watch = Stopwatch.createStarted();
+    val listed = new AtomicInteger();
+    val cancelled = new AtomicInteger();
+    val failed = new AtomicInteger();
+    val limiter = RateLimiter.create(rate);
+    val executor = Executors.newFixedThreadPool(threads);
+    try {
+      UploadListing.Marker marker = readCheckpoint();
+      do {
+        val listing = uploadService.listUploads(marker, pageSize);
+        val cancellations = new ArrayList<Future<?>>();
+        for (val upload : listing.getUploads()) {
+          listed.incrementAndGet();
+          log.debug(" - Upload: {}", formatUpload(upload));
 
-        try {
-          val objectId = ObjectKeys.getObjectId(dataDir, upload.getKey());
-          uploadService.cancelUpload(objectId, upload.getUploadId());
-        } catch (Exception e) {
-          log.error("Error cancelling stale upload: {}: {}", formatUpload(upload), e);
+          if (isStale(upload)) {
+            limiter.acquire();
+            cancellations.add(executor.submit(() -> {
+              if (cancel(upload)) {
+                cancelled.incrementAndGet();
+              } else {
+                failed.incrementAndGet();
+              }
+            }));
+          }
         }
-      }
+
+        // Only move the checkpoint past uploads that are done with
+        awaitAll(cancellations);
+        marker = listing.getNext();
+        writeCheckpoint(marker);
+        log.info("Listed {} uploads so far: {} cancelled, {} failed", listed, cancelled, failed);
+      } while (marker != null);
+    } finally {
+      executor.shutdown();
+    }
+
+    log.info("Cleaned stale uploads in {}: {} listed, {} cancelled, {} failed", watch, listed, cancelled, failed);
+  }
+
+  private boolean cancel(MultipartUpload upload) {
+    log.info("*** Cancelling stale upload: {}", formatUpload(upload));
+
+    try {
+      val objectId = ObjectKeys.getObjectId(dataDir, upload.getKey());
+      uploadService.cancelUpload(objectId, upload.getUploadId());
+      return true;
+    } catch (Exception e) {
+      log.error("Error cancelling stale upload: {}: {}", formatUpload(upload), e);
+      return false;
     }
   }
 
@@ -87,6 +155,52 @@ public class UploadCleanupService {
     return started.isBefore(threshold);
   }
 
+  @SneakyThrows
+  private static void awaitAll(List<Future<?>> futures) {
+    for (val future : futures) {
+      try {
+        future.get();
+      } catch (ExecutionException e) {
+        // Already counted as failed
+      }
+    }
+  }
+
+  private UploadListing.Marker readCheckpoint() {
+    if (isNullOrEmpty(checkpoint) || !new File(checkpoint).exists()) {
+      return null;
+    }
+
+    try {
+      val marker = MAPPER.readValue(new File(checkpoint), UploadListing.Marker.class);
+      log.info("Resuming the previous sweep at {}", marker);
+      return marker;
+    } catch (IOException e) {
+      log.warn("Could not read checkpoint '{}', starting from the beginning: {}", checkpoint, e.getMessage());
+      return null;
+    }
+  }
+
+  private void writeCheckpoint(UploadListing.Marker marker) {
+    if (isNullOrEmpty(checkpoint)) {
+      return;
+    }
+
+    val file = new File(checkpoint);
+    try {
+      if (marker == null) {
+        Files.deleteIfExists(file.toPath());
+        return;
+      }
+
+      val temp = new File(checkpoint + ".tmp");
+      MAPPER.writeValue(temp, marker);
+      Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    } catch (IOException e) {
+      log.warn("Could not write checkpoint '{}': {}", checkpoint, e.getMessage());
+    }
+  }
+
   private static String formatUpload(MultipartUpload upload) {
     return String.format("uploadId = %s, key = %s, initiated = %s, owner = %s, initiator = %s, storageClass = %s",
         upload.getUploadId(),
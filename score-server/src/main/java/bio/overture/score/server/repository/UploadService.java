@@ -19,7 +19,9 @@ package bio.overture.score.server.repository;
 
 import java.util.List;
 
+import bio.overture.score.core.model.CompletedPart;
 import bio.overture.score.core.model.ObjectSpecification;
+import bio.overture.score.core.model.Part;
 import bio.overture.score.core.model.UploadProgress;
 
 import com.amazonaws.services.s3.model.MultipartUpload;
@@ -27,12 +29,31 @@ import com.amazonaws.services.s3.model.ObjectMetadata;
 
 public interface UploadService {
 
-  ObjectSpecification initiateUpload(String objectId, long fileSize, String md5, boolean overwrite);
+  default ObjectSpecification initiateUpload(String objectId, long fileSize, String md5, boolean overwrite) {
+    return initiateUpload(objectId, fileSize, md5, overwrite, false);
+  }
+
+  /**
+   * With {@code deferUrls} the parts of the returned specification have no URLs. The client gets them a window at a
+   * time from {@link #getUploadPartUrls}.
+   */
+  ObjectSpecification initiateUpload(String objectId, long fileSize, String md5, boolean overwrite, boolean deferUrls);
+
+  /**
+   * Presigns the upload URLs of at most {@code count} parts, starting at {@code partNumber}.
+   */
+  List<Part> getUploadPartUrls(String objectId, String uploadId, int partNumber, int count);
 
   boolean exists(String objectId);
 
   void finalizeUploadPart(String objectId, String uploadId, int partNumber, String md5, String eTag);
 
+  /**
+   * Like {@link #finalizeUploadPart} for many parts. Parts that cannot be verified are left out and reported with a
+   * {@code NotRetryableException} once the others are recorded.
+   */
+  void finalizeUploadParts(String objectId, String uploadId, List<CompletedPart> parts);
+
   void finalizeUpload(String objectId, String uploadId);
 
   String getUploadId(String objectId);
@@ -51,4 +72,10 @@ public interface UploadService {
 
   List<MultipartUpload> listUploads();
 
+  /**
+   * Lists at most {@code maxUploads} in-progress uploads, starting at {@code marker} or at the beginning if it is
+   * {@code null}.
+   */
+  UploadListing listUploads(UploadListing.Marker marker, int maxUploads);
+
 }
\ No newline at end of file
@@ -20,6 +20,7 @@ package bio.overture.score.server.repository;
 import java.util.List;
 import java.util.Map;
 
+import bio.overture.score.core.model.CompletedPart;
 import bio.overture.score.core.model.ObjectSpecification;
 import bio.overture.score.core.model.Part;
 
@@ -42,6 +43,11 @@ public interface UploadStateStore {
 
   void finalizeUploadPart(String objectId, String uploadId, int partNumber, String md5, String eTag);
 
+  /**
+   * Records several completed parts at once, in a single write where the store allows it.
+   */
+  void finalizeUploadParts(String objectId, String uploadId, List<CompletedPart> parts);
+
   Map<Integer, UploadPartDetail> getUploadStatePartDetails(String objectId, String uploadId);
 
   String getUploadId(String objectId);
@@ -70,7 +70,9 @@ public class AzureDownloadService implements DownloadService {
   private String sentinelObjectId;
 
   @Override
-  public ObjectSpecification download(String objectId, long offset, long length, boolean forExternalUse, boolean excludeUrls) {
+  public ObjectSpecification download(String objectId, long offset, long length, boolean forExternalUse, boolean excludeUrls,
+      boolean deferUrls) {
+    // All parts share a single URL, so there is nothing to gain from deferring it
     try {
       checkArgument(offset >= 0L);
 
@@ -115,6 +117,12 @@ public class AzureDownloadService implements DownloadService {
     return null;
   }
 
+  @Override
+  public List<Part> getDownloadPartUrls(String objectId, List<Part> parts) {
+    fillPartUrls(objectId, parts);
+    return parts;
+  }
+
   public CloudBlockBlob getBlobReference(String objectId) throws URISyntaxException, StorageException {
     val result = container.getBlockBlobReference(objectId);
     if (result.exists()) {
@@ -22,15 +22,19 @@ import lombok.val;
 import lombok.extern.slf4j.Slf4j;
 
 import java.net.URISyntaxException;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 
+import bio.overture.score.core.model.CompletedPart;
 import bio.overture.score.core.model.ObjectSpecification;
+import bio.overture.score.core.model.Part;
 import bio.overture.score.core.model.UploadProgress;
 import bio.overture.score.core.util.ObjectKeys;
 import bio.overture.score.server.exception.InternalUnrecoverableError;
 import bio.overture.score.server.exception.NotRetryableException;
 import bio.overture.score.server.repository.URLGenerator;
+import bio.overture.score.server.repository.UploadListing;
 import bio.overture.score.core.util.PartCalculator;
 import bio.overture.score.server.repository.UploadService;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -58,7 +62,9 @@ public class AzureUploadService implements UploadService {
   public PartCalculator partCalculator;
 
   @Override
-  public ObjectSpecification initiateUpload(String objectId, long fileSize, String md5, boolean overwrite) {
+  public ObjectSpecification initiateUpload(String objectId, long fileSize, String md5, boolean overwrite,
+      boolean deferUrls) {
+    // The whole blob is uploaded with a single URL, so it is always included
     ObjectSpecification result;
     try {
       val blob = container.getBlockBlobReference(objectId);
@@ -90,6 +96,23 @@ public class AzureUploadService implements UploadService {
     return result;
   }
 
+  @Override
+  public List<Part> getUploadPartUrls(String objectId, String uploadId, int partNumber, int count) {
+    if (count < 1) {
+      throw new NotRetryableException(new IllegalArgumentException(
+          String.format("Expected at least 1 part URL but %d were requested", count)));
+    }
+
+    // The whole blob is uploaded with a single URL, so every requested part gets the same one
+    val objectKey = ObjectKeys.getObjectKey("", objectId);
+    val url = urlGenerator.getUploadPartUrl("", objectKey, "", Part.builder().partNumber(partNumber).build(), null);
+    val parts = new ArrayList<Part>(count);
+    for (int i = 0; i < count; i++) {
+      parts.add(Part.builder().partNumber(partNumber + i).url(url).build());
+    }
+    return parts;
+  }
+
   @Override
   public boolean exists(String objectId) {
     try {
@@ -108,6 +131,12 @@ public class AzureUploadService implements UploadService {
     // SDK
   }
 
+  @Override
+  public void finalizeUploadParts(String objectId, String uploadId, List<CompletedPart> parts) {
+    // Empty implementation - not applicable for Azure Upload since we're using the Upload implementation supplied by
+    // SDK
+  }
+
   @Override
   public void finalizeUpload(String objectId, String uploadId) {
     // Empty implementation - not applicable for Azure Upload since we're using the Upload implementation supplied by
@@ -165,4 +194,11 @@ public class AzureUploadService implements UploadService {
     // SDK
     return Collections.<MultipartUpload> emptyList();
   }
+
+  @Override
+  public UploadListing listUploads(UploadListing.Marker marker, int maxUploads) {
+    // Empty implementation - not applicable for Azure Upload since we're using the Upload implementation supplied by
+    // SDK
+    return new UploadListing(Collections.<MultipartUpload> emptyList(), null);
+  }
 }
@@ -23,6 +23,7 @@ import lombok.Setter;
 import java.util.List;
 import java.util.Map;
 
+import bio.overture.score.core.model.CompletedPart;
 import bio.overture.score.core.model.ObjectSpecification;
 import bio.overture.score.core.model.Part;
 import bio.overture.score.server.repository.UploadPartDetail;
@@ -77,6 +78,12 @@ public class AzureUploadStateStore implements UploadStateStore {
 
   }
 
+  @Override
+  public void finalizeUploadParts(String objectId, String uploadId, List<CompletedPart> parts) {
+    // Empty implementation - not applicable for Azure Upload since we're using the Upload implementation supplied by
+    // SDK
+  }
+
   @Override
   public Map<Integer, UploadPartDetail> getUploadStatePartDetails(String objectId, String uploadId) {
     // TODO Auto-generated method stub
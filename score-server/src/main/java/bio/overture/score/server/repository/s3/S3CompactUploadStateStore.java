@@ -0,0 +1,300 @@
+/*
+ * Copyright (c) 2016 The Ontario Institute for Cancer Research. All rights reserved.                             
+ *                                                                                                               
+ * This program and the accompanying materials are made available under the terms of the GNU Public License v3.0.
+ * You should have received a copy of the GNU General Public License along with                                  
+ * this program. If not, see <http://www.gnu.org/licenses/>.                                                     
+ *                                                                                                               
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY                           
+ * EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES                          
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT                           
+ * SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,                                
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED                          
+ * TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS;                               
+ * OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER                              
+ * IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN                         
+ * ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package bio.overture.score.server.repository.s3;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.SortedSet;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.locks.Lock;
+
+import bio.overture.score.core.model.CompletedPart;
+import bio.overture.score.core.model.Part;
+import bio.overture.score.server.exception.NotRetryableException;
+import bio.overture.score.server.exception.RetryableException;
+import bio.overture.score.server.repository.UploadPartDetail;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+
+import com.amazonaws.AmazonServiceException;
+import com.amazonaws.services.s3.model.AmazonS3Exception;
+import com.amazonaws.services.s3.model.ObjectMetadata;
+import com.amazonaws.services.s3.model.PartETag;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Maps;
+import com.google.common.util.concurrent.Striped;
+
+import lombok.Data;
+import lombok.Setter;
+import lombok.val;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Stores the completed parts of an upload in two small documents next to the {@code .meta} file instead of one
+ * zero-byte marker object per part, so that neither finalizing a part nor reading the state of an upload lists the
+ * state bucket:
+ * <ul>
+ * <li>{@code .state} - the completed parts as of the last compaction</li>
+ * <li>{@code .delta} - the parts finalized or deleted since, folded into {@code .state} once it holds
+ * {@code upload.state.compactionThreshold} entries</li>
+ * </ul>
+ * Updates and deletes are read-modify-write under a lock per upload, which only holds within one server. This store
+ * is therefore only safe when a single server node handles the uploads: a part lost to a concurrent update on another
+ * node is reported as missing and uploaded again by the client, and a state document written after another node
+ * deleted the upload is left behind.
+ */
+@Slf4j
+@Setter
+public class S3CompactUploadStateStore extends S3UploadStateStore {
+
+  /**
+   * Constants.
+   */
+  private static final String STATE = ".state";
+  private static final String DELTA = ".delta";
+
+  /**
+   * Configuration.
+   */
+  @Value("${upload.state.compactionThreshold:256}")
+  private int compactionThreshold = 256;
+
+  /**
+   * State.
+   */
+  private final Striped<Lock> locks = Striped.lock(64);
+
+  @Override
+  protected List<String> getPartKeys(String objectId, String uploadId) {
+    return ImmutableList.of(getUploadStateKey(objectId, uploadId, DELTA), getUploadStateKey(objectId, uploadId, STATE));
+  }
+
+  /**
+   * Waits for updates of the upload in progress, so that none of them writes its state after it was deleted.
+   */
+  @Override
+  public void delete(String objectId, String uploadId) {
+    val lock = lock(objectId, uploadId);
+    try {
+      super.delete(objectId, uploadId);
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  @Override
+  protected void deletePartState(String objectId, String uploadId) {
+    val lock = lock(objectId, uploadId);
+    try {
+      super.deletePartState(objectId, uploadId);
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  @Override
+  public void deletePart(String objectId, String uploadId, int partNumber) {
+    val lock = lock(objectId, uploadId);
+    try {
+      val delta = readPartState(objectId, uploadId, DELTA);
+      delta.delete(partNumber);
+      writeDelta(objectId, uploadId, delta);
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  @Override
+  public void finalizeUploadPart(String objectId, String uploadId, int partNumber, String md5, String eTag) {
+    log.debug("Finalizing part for object id: {}, upload id: {}, md5: {}, eTag: {}", objectId, uploadId, md5, eTag);
+    val lock = lock(objectId, uploadId);
+    try {
+      val delta = readPartState(objectId, uploadId, DELTA);
+      delta.complete(new CompletedPart(partNumber, md5, eTag));
+      writeDelta(objectId, uploadId, delta);
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  @Override
+  public void finalizeUploadParts(String objectId, String uploadId, List<CompletedPart> parts) {
+    if (parts.isEmpty()) {
+      return;
+    }
+
+    log.debug("Finalizing {} parts for object id: {}, upload id: {}", parts.size(), objectId, uploadId);
+    val lock = lock(objectId, uploadId);
+    try {
+      val delta = readPartState(objectId, uploadId, DELTA);
+      parts.forEach(delta::complete);
+      writeDelta(objectId, uploadId, delta);
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  @Override
+  public void markCompletedParts(String objectId, String uploadId, List<Part> parts) {
+    if (parts == null || parts.isEmpty()) {
+      return;
+    }
+
+    val completedParts = readCompletedParts(objectId, uploadId);
+    for (val part : parts) {
+      val completedPart = completedParts.get(part.getPartNumber());
+      if (completedPart != null) {
+        part.setSourceMd5(completedPart.getMd5());
+      }
+    }
+  }
+
+  @Override
+  public boolean isCompleted(String objectId, String uploadId) {
+    val spec = read(objectId, uploadId);
+    val completedParts = readCompletedParts(objectId, uploadId);
+
+    return spec.getParts().stream().allMatch(part -> completedParts.containsKey(part.getPartNumber()));
+  }
+
+  @Override
+  public Map<Integer, UploadPartDetail> getUploadStatePartDetails(String objectId, String uploadId) {
+    val details = Maps.<Integer, UploadPartDetail> newHashMap();
+    for (val part : readCompletedParts(objectId, uploadId).values()) {
+      details.put(part.getPartNumber(), UploadPartDetail.builder()
+          .etag(new PartETag(part.getPartNumber(), part.getEtag()))
+          .partNumber(part.getPartNumber())
+          .md5(part.getMd5())
+          .build());
+    }
+
+    return details;
+  }
+
+  private Map<Integer, CompletedPart> readCompletedParts(String objectId, String uploadId) {
+    // The delta goes first: a compaction in between then only leaves entries that are already in the state
+    val delta = readPartState(objectId, uploadId, DELTA);
+    val state = readPartState(objectId, uploadId, STATE);
+    state.apply(delta);
+
+    return state.getParts();
+  }
+
+  /**
+   * Writes {@code delta} back, or folds it into the state once it has grown to the compaction threshold.
+   */
+  private void writeDelta(String objectId, String uploadId, PartState delta) {
+    if (delta.size() < compactionThreshold) {
+      writePartState(objectId, uploadId, DELTA, delta);
+      return;
+    }
+
+    log.debug("Compacting upload state for object id: {}, upload id: {}", objectId, uploadId);
+    val state = readPartState(objectId, uploadId, STATE);
+    state.apply(delta);
+    writePartState(objectId, uploadId, STATE, state);
+
+    // Should this fail, applying the delta again is harmless
+    deleteObjects(objectId, Collections.singletonList(getUploadStateKey(objectId, uploadId, DELTA)));
+  }
+
+  private PartState readPartState(String objectId, String uploadId, String filename) {
+    val uploadStateKey = getUploadStateKey(objectId, uploadId, filename);
+
+    try {
+      val obj = s3Client.getObject(bucketNamingService.getStateBucketName(objectId), uploadStateKey);
+      try (val inputStream = obj.getObjectContent()) {
+        return MAPPER.readValue(inputStream, PartState.class);
+      }
+    } catch (AmazonS3Exception e) {
+      if (e.getStatusCode() == HttpStatus.NOT_FOUND.value()) {
+        return new PartState();
+      }
+
+      log.error("Failed to read {} for objectId: {}, uploadId: {}", filename, objectId, uploadId, e);
+      throw new RetryableException(e);
+    } catch (AmazonServiceException e) {
+      log.error("Failed to read {} for objectId: {}, uploadId: {}", filename, objectId, uploadId, e);
+      throw new RetryableException(e);
+    } catch (IOException e) {
+      log.error("Error reading {} for objectId: {}, uploadId: {}", filename, objectId, uploadId, e);
+      throw new NotRetryableException(e);
+    }
+  }
+
+  private void writePartState(String objectId, String uploadId, String filename, PartState partState) {
+    try {
+      byte[] content = MAPPER.writeValueAsBytes(partState);
+      val meta = new ObjectMetadata();
+      meta.setContentLength(content.length);
+
+      s3Client.putObject(bucketNamingService.getStateBucketName(objectId),
+          getUploadStateKey(objectId, uploadId, filename), new ByteArrayInputStream(content), meta);
+    } catch (AmazonServiceException e) {
+      log.error("Failed to write {} for objectId: {}, uploadId: {}", filename, objectId, uploadId, e);
+      throw new RetryableException(e);
+    } catch (JsonProcessingException e) {
+      log.error("Failed to write {} for objectId: {}, uploadId: {}", filename, objectId, uploadId, e);
+      throw new NotRetryableException(e);
+    }
+  }
+
+  private Lock lock(String objectId, String uploadId) {
+    val lock = locks.get(objectId + UPLOAD_SEPARATOR + uploadId);
+    lock.lock();
+    return lock;
+  }
+
+  /**
+   * Completed parts by part number, and the parts deleted since the last compaction.
+   */
+  @Data
+  static class PartState {
+
+    private SortedMap<Integer, CompletedPart> parts = new TreeMap<>();
+    private SortedSet<Integer> deleted = new TreeSet<>();
+
+    void complete(CompletedPart part) {
+      deleted.remove(part.getPartNumber());
+      parts.put(part.getPartNumber(), part);
+    }
+
+    void delete(int partNumber) {
+      parts.remove(partNumber);
+      deleted.add(partNumber);
+    }
+
+    void apply(PartState delta) {
+      parts.keySet().removeAll(delta.deleted);
+      parts.putAll(delta.parts);
+      deleted.clear();
+    }
+
+    int size() {
+      return parts.size() + deleted.size();
+    }
+
+  }
+
+}
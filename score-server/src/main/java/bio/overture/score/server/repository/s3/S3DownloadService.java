@@ -30,6 +30,7 @@ import bio.overture.score.server.metadata.MetadataEntity;
 import bio.overture.score.server.metadata.MetadataService;
 import bio.overture.score.server.repository.BucketNamingService;
 import bio.overture.score.server.repository.DownloadService;
+import bio.overture.score.server.repository.ObjectSpecificationCache;
 import bio.overture.score.server.repository.URLGenerator;
 import com.amazonaws.AmazonServiceException;
 import com.amazonaws.services.s3.AmazonS3;
@@ -80,6 +81,8 @@ public class S3DownloadService implements DownloadService {
   private String dataDir;
   @Value("${collaboratory.download.expiration}")
   private int expiration;
+  @Value("${collaboratory.download.urlWindow:1000}")
+  private int urlWindow = 1000;
   @Value("${object.sentinel}")
   private String sentinelObjectId;
   @Value("${metadata.useLegacyMode:false}")
@@ -98,10 +101,13 @@ public class S3DownloadService implements DownloadService {
   private PartCalculator partCalculator;
   @Autowired
   private MetadataService metadataService;
+  @Autowired
+  private ObjectSpecificationCache specificationCache;
 
 
   @Override
-  public ObjectSpecification download(String objectId, long offset, long length, boolean forExternalUse, boolean excludeUrls) {
+  public ObjectSpecification download(String objectId, long offset, long length, boolean forExternalUse, boolean excludeUrls,
+      boolean deferUrls) {
     try {
       if (!excludeUrls){
         checkPublishedAnalysisState(metadataService.getEntity(objectId));
@@ -114,7 +120,14 @@ public class S3DownloadService implements DownloadService {
 
       // Short-circuit in default case
       if (!forExternalUse && (offset == 0L && length < 0L)) {
-        return excludeUrls ? removeUrls(objectSpec) : objectSpec;
+        if (excludeUrls || deferUrls) {
+          // The .meta file may still hold the URLs of the upload
+          return removeUrls(objectSpec);
+        }
+
+        val objectKey = ObjectKeys.getObjectKey(dataDir, objectId);
+        fillPartUrls(objectKey, objectSpec.getParts(), objectSpec.isRelocated(), false);
+        return objectSpec;
       }
 
       // Calculate range values
@@ -142,21 +155,44 @@ public class S3DownloadService implements DownloadService {
         parts = partCalculator.divide(offset, length);
       }
 
-      fillPartUrls(objectKey, parts, objectSpec.isRelocated(), forExternalUse);
+      // A single part for external use is cheap to sign, and external clients do not ask for windows
+      if (!excludeUrls && (forExternalUse || !deferUrls)) {
+        fillPartUrls(objectKey, parts, objectSpec.isRelocated(), forExternalUse);
+      }
 
-      val spec = new ObjectSpecification(objectKey.getKey(), objectId, objectId, parts, length, objectSpec.getObjectMd5(),
+      return new ObjectSpecification(objectKey.getKey(), objectId, objectId, parts, length, objectSpec.getObjectMd5(),
           objectSpec.isRelocated());
 
-      return excludeUrls ? removeUrls(spec) : spec;
-
     } catch (Exception e) {
-      log.error("Failed to download objectId: {}, offset: {}, length: {}, forExternalUse: {}, excludeUrls: {} : {} ",
-          objectId, offset, length, forExternalUse, excludeUrls, e);
+      log.error("Failed to download objectId: {}, offset: {}, length: {}, forExternalUse: {}, excludeUrls: {}, "
+          + "deferUrls: {} : {} ", objectId, offset, length, forExternalUse, excludeUrls, deferUrls, e);
 
       throw e;
     }
   }
 
+  @Override
+  public List<Part> getDownloadPartUrls(String objectId, @NonNull List<Part> parts) {
+    if (parts.isEmpty() || parts.size() > urlWindow) {
+      throw new NotRetryableException(new IllegalArgumentException(
+          String.format("Expected between 1 and %d part URLs but %d were requested", urlWindow, parts.size())));
+    }
+
+    checkPublishedAnalysisState(metadataService.getEntity(objectId));
+    val objectSpec = getSpecification(objectId);
+    for (val part : parts) {
+      if (part.getOffset() < 0L || part.getPartSize() < 0L
+          || part.getOffset() + part.getPartSize() > objectSpec.getObjectSize()) {
+        throw new NotRetryableException(new IllegalArgumentException(String.format(
+            "Part# %d at offset %d of size %d exceeds object size %d (object id: %s)", part.getPartNumber(),
+            part.getOffset(), part.getPartSize(), objectSpec.getObjectSize(), objectId)));
+      }
+    }
+
+    fillPartUrls(ObjectKeys.getObjectKey(dataDir, objectId), parts, objectSpec.isRelocated(), false);
+    return parts;
+  }
+
   private static ObjectSpecification removeUrls(ObjectSpecification spec){
     spec.getParts().forEach(x -> x.setUrl(null));
     return spec;
@@ -179,22 +215,24 @@ public class S3DownloadService implements DownloadService {
 
   // This really is a misleading method name - should be retrieveMetaFile() or something
   public ObjectSpecification getSpecification(String objectId) {
+    return specificationCache.get(objectId, this::loadSpecification);
+  }
+
+  private ObjectSpecification loadSpecification(String objectId) {
     val objectKey = ObjectKeys.getObjectKey(dataDir, objectId);
     val objectMetaKey = ObjectKeys.getObjectMetaKey(dataDir, objectId);
     log.debug("Getting specification for objectId: {}, objectKey: {}, objectMetaKey: {}", objectId, objectKey,
         objectMetaKey);
 
     try {
-      // Retrieve .meta file to get list of pre-signed URL's
+      // Retrieve .meta file to get the list of parts
       // also returns flag indicating whether the object was not in the expected partitioned bucket
       val obj = getObject(objectId, objectMetaKey);
 
       val spec = readSpecification(obj.getS3Object());
       spec.setRelocated(obj.isRelocated());
 
-      // We do this now in case we are returning it immediately in download() call
-      fillPartUrls(objectKey, spec.getParts(), obj.isRelocated(), false);
-
+      // Part URLs are left to the caller, which often divides the object differently or needs no URLs at all
       return spec;
     } catch (JsonParseException | JsonMappingException e) {
       log.error("Error reading specification for objectId: {}, objectMetaKey: {}, objectKey: {}: {}",
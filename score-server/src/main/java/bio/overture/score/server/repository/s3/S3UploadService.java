@@ -1,7 +1,9 @@
 package bio.overture.score.server.repository.s3;
 
+import bio.overture.score.core.model.CompletedPart;
 import bio.overture.score.core.model.ObjectKey;
 import bio.overture.score.core.model.ObjectSpecification;
+import bio.overture.score.core.model.Part;
 import bio.overture.score.core.model.UploadProgress;
 import bio.overture.score.core.util.ObjectKeys;
 import bio.overture.score.server.config.S3Config;
@@ -13,6 +15,8 @@ import bio.overture.score.server.metadata.MetadataEntity;
 import bio.overture.score.server.metadata.MetadataService;
 import bio.overture.score.core.util.PartCalculator;
 import bio.overture.score.server.repository.URLGenerator;
+import bio.overture.score.server.repository.ObjectSpecificationCache;
+import bio.overture.score.server.repository.UploadListing;
 import bio.overture.score.server.repository.UploadPartDetail;
 import bio.overture.score.server.repository.UploadService;
 import bio.overture.score.server.repository.UploadStateStore;
@@ -27,6 +31,7 @@ import com.amazonaws.services.s3.model.ListMultipartUploadsRequest;
 import com.amazonaws.services.s3.model.ListPartsRequest;
 import com.amazonaws.services.s3.model.MultipartUpload;
 import com.amazonaws.services.s3.model.ObjectMetadata;
+import com.amazonaws.services.s3.model.PartListing;
 import com.amazonaws.services.s3.model.PartSummary;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.NonNull;
@@ -47,10 +52,13 @@ import java.time.LocalDateTime;
 import java.time.ZoneId;
 import java.util.ArrayList;
 import java.util.Date;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.stream.Collectors;
 
 import static bio.overture.score.server.metadata.MetadataService.getAnalysisId;
+import static com.google.common.base.Strings.isNullOrEmpty;
 
 /**
  * A service for object upload.
@@ -66,6 +74,7 @@ public class S3UploadService implements UploadService {
    */
   private static final ObjectMapper MAPPER = new ObjectMapper();
   private static final String UNPUBLISHED_ANALYSIS_STATE = "UNPUBLISHED";
+  private static final int MAX_UPLOADS = 1000;
 
   /**
    * Configuration.
@@ -74,6 +83,8 @@ public class S3UploadService implements UploadService {
   private String dataDir;
   @Value("${collaboratory.upload.expiration}")
   private int expiration;
+  @Value("${collaboratory.upload.urlWindow:1000}")
+  private int urlWindow = 1000;
 
   @Value("${metadata.useLegacyMode:false}")
   private boolean useLegacyMode;
@@ -96,9 +107,12 @@ public class S3UploadService implements UploadService {
   private URLGenerator urlGenerator;
   @Autowired
   private PartCalculator partCalculator;
+  @Autowired
+  private ObjectSpecificationCache specificationCache;
 
   @Override
-  public ObjectSpecification initiateUpload(String objectId, long fileSize, String md5, boolean overwrite) {
+  public ObjectSpecification initiateUpload(String objectId, long fileSize, String md5, boolean overwrite,
+      boolean deferUrls) {
     // First ensure that the system is aware of the requested object
     checkRegistered(objectId);
 
@@ -134,12 +148,8 @@ public class S3UploadService implements UploadService {
       // complete, or abort the multipart upload request.
       val result = s3Client.initiateMultipartUpload(request);
       val parts = partCalculator.divide(fileSize);
-
-      val now = LocalDateTime.now();
-      val expirationDate = Date.from(now.plusDays(expiration).atZone(ZoneId.systemDefault()).toInstant());
-      for (val part : parts) {
-        part.setUrl(urlGenerator.getUploadPartUrl(actualBucketName, objectKey, result.getUploadId(), part,
-            expirationDate));
+      if (!deferUrls) {
+        fillPartUrls(actualBucketName, objectKey, result.getUploadId(), parts);
       }
 
       val spec = new ObjectSpecification(objectKey.getKey(), objectId, result.getUploadId(), parts, fileSize, md5, false);
@@ -157,6 +167,31 @@ public class S3UploadService implements UploadService {
     }
   }
 
+  @Override
+  public List<Part> getUploadPartUrls(String objectId, String uploadId, int partNumber, int count) {
+    if (count < 1 || count > urlWindow) {
+      throw new NotRetryableException(new IllegalArgumentException(
+          String.format("Expected between 1 and %d part URLs but %d were requested", urlWindow, count)));
+    }
+
+    val spec = stateStore.read(objectId, uploadId);
+    val parts = spec.getParts().stream()
+        .filter(part -> part.getPartNumber() >= partNumber && part.getPartNumber() < partNumber + count)
+        .collect(Collectors.toList());
+
+    val objectKey = ObjectKeys.getObjectKey(dataDir, objectId);
+    fillPartUrls(bucketNamingService.getObjectBucketName(objectId), objectKey, uploadId, parts);
+    return parts;
+  }
+
+  private void fillPartUrls(String bucketName, ObjectKey objectKey, String uploadId, List<Part> parts) {
+    val now = LocalDateTime.now();
+    val expirationDate = Date.from(now.plusDays(expiration).atZone(ZoneId.systemDefault()).toInstant());
+    for (val part : parts) {
+      part.setUrl(urlGenerator.getUploadPartUrl(bucketName, objectKey, uploadId, part, expirationDate));
+    }
+  }
+
   @Override
   public boolean exists(@NonNull String objectId) {
     val objectKey = ObjectKeys.getObjectKey(dataDir, objectId);
@@ -247,6 +282,71 @@ public class S3UploadService implements UploadService {
     }
   }
 
+  @Override
+  public void finalizeUploadParts(String objectId, String uploadId, @NonNull List<CompletedPart> parts) {
+    if (parts.isEmpty()) {
+      return;
+    }
+
+    val firstPartNumber = parts.stream().mapToInt(CompletedPart::getPartNumber).min().getAsInt();
+    val lastPartNumber = parts.stream().mapToInt(CompletedPart::getPartNumber).max().getAsInt();
+    val eTags = listPartETags(ObjectKeys.getObjectKey(dataDir, objectId), uploadId, firstPartNumber, lastPartNumber);
+
+    val verified = new ArrayList<CompletedPart>();
+    val rejected = new ArrayList<Integer>();
+    for (val part : parts) {
+      if (isNullOrEmpty(part.getMd5()) || isNullOrEmpty(part.getEtag())
+          || !part.getEtag().equals(eTags.get(part.getPartNumber()))) {
+        rejected.add(part.getPartNumber());
+      } else {
+        verified.add(part);
+      }
+    }
+
+    stateStore.finalizeUploadParts(objectId, uploadId, verified);
+    if (!rejected.isEmpty()) {
+      val message = String.format("Parts %s do not exist or have a different etag for objectId %s and uploadId %s",
+          rejected, objectId, uploadId);
+      throw new NotRetryableException(new IOException(message));
+    }
+  }
+
+  /**
+   * The etags of the uploaded parts numbered {@code firstPartNumber} to {@code lastPartNumber}, in one sweep over the
+   * part listing of the upload.
+   */
+  private Map<Integer, String> listPartETags(@NonNull ObjectKey objectKey, String uploadId, int firstPartNumber,
+      int lastPartNumber) {
+    val eTags = new HashMap<Integer, String>();
+    val actualBucketName = bucketNamingService.getObjectBucketName(objectKey.getObjectId());
+    try {
+      val req = new ListPartsRequest(actualBucketName, objectKey.getKey(), uploadId);
+      req.setPartNumberMarker(firstPartNumber - 1);
+
+      PartListing listing;
+      do {
+        listing = s3Client.listParts(req);
+        for (val part : listing.getParts()) {
+          if (part.getPartNumber() > lastPartNumber) {
+            return eTags;
+          }
+          eTags.put(part.getPartNumber(), part.getETag());
+        }
+        req.setPartNumberMarker(listing.getNextPartNumberMarker());
+      } while (listing.isTruncated());
+    } catch (RestClientException | AmazonClientException e) {
+      log.error("Request failure listing parts {} to {} with objectKey: {}, uploadId: {}: ",
+          firstPartNumber, lastPartNumber, objectKey, uploadId, e);
+      throw new RetryableException(e);
+    } catch (Exception e) {
+      log.error("Unknown failure listing parts {} to {} with objectKey: {}, uploadId: {}: ",
+          firstPartNumber, lastPartNumber, objectKey, uploadId, e);
+      throw new NotRetryableException(e);
+    }
+
+    return eTags;
+  }
+
   @Override
   public void finalizeUpload(String objectId, String uploadId) {
     log.info("finalizing object id {} with upload id: {}", objectId, uploadId);
@@ -289,6 +389,7 @@ public class S3UploadService implements UploadService {
         val objectMetaKey = ObjectKeys.getObjectMetaKey(dataDir, objectId);
         log.debug("about to s3.putObject into " + actualStateBucketName + ": " + objectMetaKey.toString());
         s3Client.putObject(actualStateBucketName, objectMetaKey, data, meta);
+        specificationCache.invalidate(objectId);
         // Delete working files in upload directory
         log.debug("About to delete working files from state directory");
         stateStore.delete(objectId, uploadId);
@@ -372,6 +473,7 @@ public class S3UploadService implements UploadService {
 
       s3Client.abortMultipartUpload(request);
       stateStore.delete(objectId, uploadId);
+      specificationCache.invalidate(objectId);
     } catch (AmazonServiceException e) {
       log.error("Failed to cancel upload for objectId: {}, uploadId: {}: ", objectId, uploadId, e);
       throw new RetryableException(e);
@@ -427,29 +529,51 @@ public class S3UploadService implements UploadService {
 
   @Override
   public List<MultipartUpload> listUploads() {
-    List<MultipartUpload> result = null;
-    try {
-      if (bucketNamingService.isPartitioned()) {
-        result = new ArrayList<MultipartUpload>();
-        for (int i = 0; i < bucketNamingService.getBucketPoolSize(); i++) {
-          val actualBucketName =
-              bucketNamingService.constructBucketName(bucketNamingService.getBaseObjectBucketName(), i);
-          val request = new ListMultipartUploadsRequest(actualBucketName);
-          val response = s3Client.listMultipartUploads(request);
-          result.addAll(response.getMultipartUploads());
-        }
+    val result = new ArrayList<MultipartUpload>();
+    UploadListing.Marker marker = null;
+    do {
+      val listing = listUploads(marker, MAX_UPLOADS);
+      result.addAll(listing.getUploads());
+      marker = listing.getNext();
+    } while (marker != null);
+
+    return result;
+  }
 
-      } else {
-        val request = new ListMultipartUploadsRequest(bucketNamingService.getBaseObjectBucketName());
-        val response = s3Client.listMultipartUploads(request);
-        result = response.getMultipartUploads();
+  @Override
+  public UploadListing listUploads(UploadListing.Marker marker, int maxUploads) {
+    val start = marker == null ? new UploadListing.Marker() : marker;
+    val actualBucketName = getObjectBucketName(start.getBucketIndex());
+    try {
+      val request = new ListMultipartUploadsRequest(actualBucketName)
+          .withMaxUploads(maxUploads)
+          .withKeyMarker(start.getKeyMarker())
+          .withUploadIdMarker(start.getUploadIdMarker());
+      val response = s3Client.listMultipartUploads(request);
+
+      UploadListing.Marker next = null;
+      if (response.isTruncated()) {
+        next = new UploadListing.Marker(start.getBucketIndex(), response.getNextKeyMarker(),
+            response.getNextUploadIdMarker());
+      } else if (start.getBucketIndex() + 1 < getObjectBucketCount()) {
+        next = new UploadListing.Marker(start.getBucketIndex() + 1, null, null);
       }
 
-      return result;
+      return new UploadListing(response.getMultipartUploads(), next);
     } catch (AmazonServiceException e) {
-      log.error("Failed to list uploads on partition : ", e);
+      log.error("Failed to list uploads on partition {}: ", actualBucketName, e);
       throw new RetryableException(e);
     }
   }
 
+  private int getObjectBucketCount() {
+    return bucketNamingService.isPartitioned() ? bucketNamingService.getBucketPoolSize() : 1;
+  }
+
+  private String getObjectBucketName(int bucketIndex) {
+    return bucketNamingService.isPartitioned()
+        ? bucketNamingService.constructBucketName(bucketNamingService.getBaseObjectBucketName(), bucketIndex)
+        : bucketNamingService.getBaseObjectBucketName();
+  }
+
 }
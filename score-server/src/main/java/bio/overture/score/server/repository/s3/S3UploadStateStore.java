@@ -17,6 +17,8 @@
  */
 package bio.overture.score.server.repository.s3;
 
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.MINUTES;
 import static org.apache.commons.lang.StringUtils.removeEnd;
 import static org.apache.commons.lang.StringUtils.removeStart;
 import static org.apache.commons.lang.StringUtils.substringAfter;
@@ -24,11 +26,18 @@ import static org.apache.commons.lang.StringUtils.substringBetween;
 
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
 import java.util.function.Consumer;
 
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
 import bio.overture.score.core.model.CompletedPart;
 import bio.overture.score.core.model.ObjectSpecification;
 import bio.overture.score.core.model.Part;
@@ -47,8 +56,10 @@ import org.springframework.http.HttpStatus;
 import com.amazonaws.AmazonServiceException;
 import com.amazonaws.services.s3.AmazonS3;
 import com.amazonaws.services.s3.model.AmazonS3Exception;
+import com.amazonaws.services.s3.model.DeleteObjectsRequest;
 import com.amazonaws.services.s3.model.GetObjectRequest;
 import com.amazonaws.services.s3.model.ListObjectsRequest;
+import com.amazonaws.services.s3.model.MultiObjectDeleteException;
 import com.amazonaws.services.s3.model.ObjectListing;
 import com.amazonaws.services.s3.model.ObjectMetadata;
 import com.amazonaws.services.s3.model.PartETag;
@@ -56,6 +67,7 @@ import com.amazonaws.services.s3.model.S3ObjectSummary;
 import com.fasterxml.jackson.core.JsonParseException;
 import com.fasterxml.jackson.databind.JsonMappingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 
 import lombok.NonNull;
@@ -74,12 +86,13 @@ public class S3UploadStateStore implements UploadStateStore {
   /**
    * Constants.
    */
-  private static final String UPLOAD_SEPARATOR = "_";
+  protected static final String UPLOAD_SEPARATOR = "_";
   private static final String DIRECTORY_SEPARATOR = "/";
-  private static final String META = ".meta";
+  protected static final String META = ".meta";
   private static final String PART = "part";
   private static final Integer MAX_KEYS = 5000;
-  private static final ObjectMapper MAPPER = new ObjectMapper();
+  private static final int MAX_DELETE_KEYS = 1000;
+  protected static final ObjectMapper MAPPER = new ObjectMapper();
 
   /**
    * Configuration.
@@ -88,14 +101,39 @@ public class S3UploadStateStore implements UploadStateStore {
   private String dataDir;
   @Value("${collaboratory.upload.directory}")
   private String uploadDir;
+  @Value("${upload.state.cleanup.threads:2}")
+  private int cleanupThreads = 2;
+  @Value("${upload.state.cleanup.queueSize:1000}")
+  private int cleanupQueueSize = 1000;
 
   /**
    * Dependencies.
    */
   @Autowired
-  private AmazonS3 s3Client;
+  protected AmazonS3 s3Client;
   @Autowired
-  private BucketNamingService bucketNamingService;
+  protected BucketNamingService bucketNamingService;
+
+  /**
+   * State.
+   */
+  private ExecutorService cleanupExecutor;
+
+  /**
+   * Once the queue is full, callers clean up after themselves.
+   */
+  @PostConstruct
+  public void init() {
+    cleanupExecutor = new ThreadPoolExecutor(cleanupThreads, cleanupThreads, 0, MILLISECONDS,
+        new ArrayBlockingQueue<>(cleanupQueueSize), new ThreadPoolExecutor.CallerRunsPolicy());
+  }
+
+  @PreDestroy
+  @SneakyThrows
+  public void destroy() {
+    cleanupExecutor.shutdown();
+    cleanupExecutor.awaitTermination(1, MINUTES);
+  }
 
   /*
    * (non-Javadoc)
@@ -160,28 +198,23 @@ public class S3UploadStateStore implements UploadStateStore {
    */
   @Override
   public void delete(String objectId, String uploadId) {
-    val uploadStateKey = getUploadStateKey(objectId, uploadId, META);
     try {
-
-      // Delete the meta file
-      val spec = read(objectId, uploadId);
-      log.debug("About to delete (bucket) {} / (uploadStateKey) {}", bucketNamingService.getStateBucketName(objectId),
-          uploadStateKey);
-      deleteObject(objectId, uploadStateKey);
-
-      // Delete the part files
-      for (val part : spec.getParts()) {
-        try {
-          deletePart(objectId, uploadId, part.getPartNumber());
-        } catch (Exception e) {
-          log.warn("Error deleting objectId: {}, uploadId: {} part: {} : {}", objectId, uploadId, part, e);
-        }
-      }
+      // Without its .meta file the upload is gone as far as the rest of the server is concerned
+      deleteObjects(objectId, Collections.singletonList(getUploadStateKey(objectId, uploadId, META)));
     } catch (Exception e) {
       log.error("Error deleting objectId: {}, uploadId: {}: {}", objectId, uploadId, e);
 
       throw e;
     }
+
+    // ...so the part files can go in the background
+    cleanupExecutor.execute(() -> {
+      try {
+        deletePartState(objectId, uploadId);
+      } catch (Exception e) {
+        log.warn("Error deleting the state of objectId: {}, uploadId: {}: {}", objectId, uploadId, e);
+      }
+    });
   }
 
   /*
@@ -195,29 +228,48 @@ public class S3UploadStateStore implements UploadStateStore {
     val partName = formatUploadPartName(partNumber, "");
     val uploadStateKey = getUploadStateKey(objectId, uploadId, partName);
 
-    log.debug("About to deleteObject in bucket {} ", bucketNamingService.getStateBucketName(objectId));
-    eachObjectSummary(
-        objectId,
-        uploadStateKey,
-        objectSummary -> deleteObject(objectId,objectSummary.getKey()));
+    log.debug("About to delete part {} in bucket {} ", partNumber, bucketNamingService.getStateBucketName(objectId));
+    val keys = new ArrayList<String>();
+    eachObjectSummary(objectId, uploadStateKey, objectSummary -> keys.add(objectSummary.getKey()));
+    deleteObjects(objectId, keys);
   }
 
+  /**
+   * Deletes the state of an upload other than its .meta file.
+   */
+  protected void deletePartState(String objectId, String uploadId) {
+    deleteObjects(objectId, getPartKeys(objectId, uploadId));
+  }
 
-  /* Deletes object only if it is available
-     A connection reset might cause this request to be re-issued from the client and object might actually be
-     deleted as a result of the original request
-     DCC-5673: https://jira.oicr.on.ca/browse/DCC-5673
-     */
-  void deleteObject(String objectId, String objectKey){
-
-    // if object keys don't exist - it means it is already deleted, no need to delete again
-    // it does add an additional step before deletion of every part;
-    // an alternative way would be to directly catch a "NOT FOUND" exception from s3Client.deleteObject
-    // but that also throws a null pointer exception and we cannot assume all Null pointer exceptions
-    // mean that object has already been deleted.
-    if(!isPartAvailable(objectId,objectKey)) return;
-    // delete object if still available
-    s3Client.deleteObject(bucketNamingService.getStateBucketName(objectId),objectKey);
+  /**
+   * The keys of the state of an upload other than its .meta file.
+   */
+  protected List<String> getPartKeys(String objectId, String uploadId) {
+    val keys = new ArrayList<String>();
+    val prefix = getUploadStateKey(objectId, uploadId, PART);
+    eachObjectSummary(objectId, prefix, objectSummary -> keys.add(objectSummary.getKey()));
+    return keys;
+  }
+
+  /**
+   * Deletes {@code keys} with as few requests as possible. Keys that are already gone count as deleted, so a request
+   * re-issued after a connection reset does no harm (DCC-5673).
+   */
+  protected void deleteObjects(String objectId, List<String> keys) {
+    val bucketName = bucketNamingService.getStateBucketName(objectId);
+    for (val batch : Lists.partition(keys, MAX_DELETE_KEYS)) {
+      try {
+        s3Client.deleteObjects(new DeleteObjectsRequest(bucketName).withKeys(batch.toArray(new String[0]))
+            .withQuiet(true));
+      } catch (MultiObjectDeleteException e) {
+        log.error("Failed to delete {} of {} keys in bucket {}: {}", e.getErrors().size(), batch.size(), bucketName,
+            e.getErrors().get(0).getMessage());
+        throw new RetryableException(e);
+      } catch (AmazonServiceException e) {
+        log.error("Failed to delete {} keys in bucket {}: {}", batch.size(), bucketName, e);
+        throw new RetryableException(e);
+      }
+    }
   }
 
   /*
@@ -342,6 +394,20 @@ public class S3UploadStateStore implements UploadStateStore {
     }
   }
 
+  /*
+   * (non-Javadoc)
+   * 
+   * @see bio.overture.score.server.repository.UploadStateStore#finalizeUploadParts(java.lang.String,
+   * java.lang.String, java.util.List)
+   */
+  @Override
+  public void finalizeUploadParts(String objectId, String uploadId, List<CompletedPart> parts) {
+    // One marker object per part
+    for (val part : parts) {
+      finalizeUploadPart(objectId, uploadId, part.getPartNumber(), part.getMd5(), part.getEtag());
+    }
+  }
+
   /*
    * (non-Javadoc)
    * 
@@ -506,7 +572,7 @@ public class S3UploadStateStore implements UploadStateStore {
     return substringAfter(removeStart(key, uploadStateKey), "|");
   }
 
-  private String getUploadStateKey(String objectId, String uploadId, String filename) {
+  protected String getUploadStateKey(String objectId, String uploadId, String filename) {
     val directorySeparator = getDirectorySeparator();
 
     return new StringBuilder(uploadDir)
@@ -24,6 +24,7 @@ import lombok.NoArgsConstructor;
 import lombok.val;
 
 import bio.overture.score.server.config.S3Config;
+import bio.overture.score.server.repository.ObjectSpecificationCache;
 import bio.overture.score.server.repository.UploadService;
 import bio.overture.score.server.repository.s3.S3BucketNamingService;
 import bio.overture.score.server.repository.s3.S3UploadService;
@@ -57,6 +58,7 @@ public class Tests {
     uploadService.setS3Conf(s3Config);
     uploadService.setS3Client(s3Client);
     uploadService.setStateStore(stateStore);
+    uploadService.setSpecificationCache(new ObjectSpecificationCache(0, 0));
 
     return uploadService;
   }
@@ -0,0 +1,88 @@
+/*
+ * Copyright (c) 2016 The Ontario Institute for Cancer Research. All rights reserved.                             
+ *                                                                                                               
+ * This program and the accompanying materials are made available under the terms of the GNU Public License v3.0.
+ * You should have received a copy of the GNU General Public License along with                                  
+ * this program. If not, see <http://www.gnu.org/licenses/>.                                                     
+ *                                                                                                               
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY                           
+ * EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES                          
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT                           
+ * SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,                                
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED                          
+ * TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS;                               
+ * OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER                              
+ * IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN                         
+ * ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package bio.overture.score.server.metadata;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.catchThrowable;
+import static org.springframework.http.MediaType.APPLICATION_JSON;
+import static org.springframework.test.web.client.ExpectedCount.once;
+import static org.springframework.test.web.client.ExpectedCount.twice;
+import static org.springframework.test.web.client.match.MockRestRequestMatchers.requestTo;
+import static org.springframework.test.web.client.response.MockRestResponseCreators.withStatus;
+import static org.springframework.test.web.client.response.MockRestResponseCreators.withSuccess;
+
+import bio.overture.score.server.exception.IdNotFoundException;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.test.web.client.MockRestServiceServer;
+import org.springframework.web.client.RestTemplate;
+
+import lombok.val;
+
+public class MetadataServiceTest {
+
+  /**
+   * Constants.
+   */
+  private static final String METADATA_URL = "http://song";
+  private static final String OBJECT_ID = "objectId1";
+
+  /**
+   * Subject.
+   */
+  MetadataService service = new MetadataService(60, 100, 2, 10, 30);
+
+  MockRestServiceServer server;
+
+  @Before
+  public void setUp() {
+    ReflectionTestUtils.setField(service, "metadataUrl", METADATA_URL);
+    server = MockRestServiceServer.bindTo((RestTemplate) ReflectionTestUtils.getField(service, "restTemplate")).build();
+  }
+
+  @Test
+  public void test_entity_and_analysis_state_are_fetched_once() {
+    server.expect(once(), requestTo(METADATA_URL + "/entities/" + OBJECT_ID))
+        .andRespond(withSuccess("{\"id\":\"objectId1\",\"gnosId\":\"an1\",\"projectCode\":\"PR\",\"access\":\"open\"}",
+            APPLICATION_JSON));
+    server.expect(once(), requestTo(METADATA_URL + "/studies/PR/analysis/an1"))
+        .andRespond(withSuccess("{\"analysisState\":\"PUBLISHED\"}", APPLICATION_JSON));
+
+    for (int i = 0; i < 3; i++) {
+      val entity = service.getEntity(OBJECT_ID);
+      assertThat(entity.getProjectCode()).isEqualTo("PR");
+      assertThat(service.getAnalysisStateForMetadata(entity)).isEqualTo("PUBLISHED");
+    }
+
+    server.verify();
+  }
+
+  @Test
+  public void test_unregistered_entity_is_not_cached() {
+    server.expect(twice(), requestTo(METADATA_URL + "/entities/" + OBJECT_ID))
+        .andRespond(withStatus(HttpStatus.NOT_FOUND));
+
+    assertThat(catchThrowable(() -> service.getEntity(OBJECT_ID))).isInstanceOf(IdNotFoundException.class);
+    assertThat(catchThrowable(() -> service.getEntity(OBJECT_ID))).isInstanceOf(IdNotFoundException.class);
+
+    server.verify();
+  }
+
+}
@@ -0,0 +1,121 @@
+/*
+ * Copyright (c) 2016 The Ontario Institute for Cancer Research. All rights reserved.                             
+ *                                                                                                               
+ * This program and the accompanying materials are made available under the terms of the GNU Public License v3.0.
+ * You should have received a copy of the GNU General Public License along with                                  
+ * this program. If not, see <http://www.gnu.org/licenses/>.                                                     
+ *                                                                                                               
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY                           
+ * EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES                          
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT                           
+ * SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,                                
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED                          
+ * TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS;                               
+ * OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER                              
+ * IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN                         
+ * ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package bio.overture.score.server.repository;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.Collections;
+
+import bio.overture.score.core.model.ObjectSpecification;
+import bio.overture.score.core.model.Part;
+import org.junit.Test;
+
+import com.amazonaws.services.s3.model.PartETag;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+
+import lombok.val;
+
+public class CachingUploadStateStoreTest {
+
+  /**
+   * Constants.
+   */
+  private static final String OBJECT_ID = "objectId1";
+  private static final String UPLOAD_ID = "uploadId1";
+
+  /**
+   * Dependencies.
+   */
+  UploadStateStore delegate = mock(UploadStateStore.class);
+
+  /**
+   * Subject.
+   */
+  CachingUploadStateStore store = new CachingUploadStateStore(delegate, 60, 10);
+
+  @Test
+  public void test_snapshot_is_built_once_and_updated_by_finalized_parts() {
+    when(delegate.read(OBJECT_ID, UPLOAD_ID)).thenReturn(spec(2));
+    when(delegate.getUploadStatePartDetails(OBJECT_ID, UPLOAD_ID)).thenReturn(ImmutableMap.of(1, detail(1)));
+
+    val parts = store.read(OBJECT_ID, UPLOAD_ID).getParts();
+    store.markCompletedParts(OBJECT_ID, UPLOAD_ID, parts);
+    assertThat(parts).extracting(Part::getSourceMd5).containsExactly("md5-1", null);
+
+    store.finalizeUploadPart(OBJECT_ID, UPLOAD_ID, 2, "md5-2", "etag-2");
+
+    assertThat(store.isCompleted(OBJECT_ID, UPLOAD_ID)).isTrue();
+    assertThat(store.getUploadStatePartDetails(OBJECT_ID, UPLOAD_ID)).containsOnlyKeys(1, 2);
+    verify(delegate, times(1)).read(OBJECT_ID, UPLOAD_ID);
+    verify(delegate, times(1)).getUploadStatePartDetails(OBJECT_ID, UPLOAD_ID);
+  }
+
+  @Test
+  public void test_incomplete_snapshot_is_read_again() {
+    when(delegate.read(OBJECT_ID, UPLOAD_ID)).thenReturn(spec(1));
+    when(delegate.getUploadStatePartDetails(OBJECT_ID, UPLOAD_ID))
+        .thenReturn(Collections.emptyMap(), ImmutableMap.of(1, detail(1)));
+
+    assertThat(store.isCompleted(OBJECT_ID, UPLOAD_ID)).isTrue();
+    verify(delegate, times(2)).getUploadStatePartDetails(OBJECT_ID, UPLOAD_ID);
+  }
+
+  @Test
+  public void test_read_returns_copies() {
+    when(delegate.read(OBJECT_ID, UPLOAD_ID)).thenReturn(spec(1));
+
+    store.read(OBJECT_ID, UPLOAD_ID).getParts().get(0).setSourceMd5("changed");
+
+    assertThat(store.read(OBJECT_ID, UPLOAD_ID).getParts().get(0).getSourceMd5()).isNull();
+  }
+
+  @Test
+  public void test_upload_id_is_not_cached() {
+    when(delegate.getUploadId(OBJECT_ID)).thenReturn(UPLOAD_ID, "uploadId2");
+
+    assertThat(store.getUploadId(OBJECT_ID)).isEqualTo(UPLOAD_ID);
+    assertThat(store.getUploadId(OBJECT_ID)).isEqualTo("uploadId2");
+  }
+
+  private static UploadPartDetail detail(int partNumber) {
+    return UploadPartDetail.builder()
+        .etag(new PartETag(partNumber, "etag-" + partNumber))
+        .partNumber(partNumber)
+        .md5("md5-" + partNumber)
+        .build();
+  }
+
+  private static ObjectSpecification spec(int partCount) {
+    val parts = ImmutableList.<Part> builder();
+    for (int partNumber = 1; partNumber <= partCount; partNumber++) {
+      parts.add(Part.builder().partNumber(partNumber).partSize(1).offset(partNumber - 1).build());
+    }
+
+    val spec = new ObjectSpecification();
+    spec.setObjectId(OBJECT_ID);
+    spec.setUploadId(UPLOAD_ID);
+    spec.setParts(parts.build());
+    return spec;
+  }
+
+}
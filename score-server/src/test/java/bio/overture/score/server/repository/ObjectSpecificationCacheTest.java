@@ -0,0 +1,84 @@
+/*
+ * Copyright (c) 2016 The Ontario Institute for Cancer Research. All rights reserved.                             
+ *                                                                                                               
+ * This program and the accompanying materials are made available under the terms of the GNU Public License v3.0.
+ * You should have received a copy of the GNU General Public License along with                                  
+ * this program. If not, see <http://www.gnu.org/licenses/>.                                                     
+ *                                                                                                               
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY                           
+ * EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES                          
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT                           
+ * SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,                                
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED                          
+ * TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS;                               
+ * OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER                              
+ * IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN                         
+ * ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package bio.overture.score.server.repository;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.catchThrowable;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import bio.overture.score.core.model.ObjectSpecification;
+import bio.overture.score.core.model.Part;
+import bio.overture.score.server.exception.IdNotFoundException;
+import org.junit.Test;
+
+import com.google.common.collect.ImmutableList;
+
+import lombok.val;
+
+public class ObjectSpecificationCacheTest {
+
+  /**
+   * Constants.
+   */
+  private static final String OBJECT_ID = "objectId1";
+
+  /**
+   * Subject.
+   */
+  ObjectSpecificationCache cache = new ObjectSpecificationCache(60, 100);
+
+  AtomicInteger loads = new AtomicInteger();
+
+  @Test
+  public void test_specification_is_loaded_once_and_returned_as_copy_without_urls() {
+    val first = cache.get(OBJECT_ID, this::load);
+    first.getParts().get(0).setUrl("changed");
+    val second = cache.get(OBJECT_ID, this::load);
+
+    assertThat(loads).hasValue(1);
+    assertThat(second.getParts()).extracting(Part::getUrl).containsOnlyNulls();
+    assertThat(second.isRelocated()).isTrue();
+  }
+
+  @Test
+  public void test_invalidated_specification_is_loaded_again() {
+    cache.get(OBJECT_ID, this::load);
+    cache.invalidate(OBJECT_ID);
+    cache.get(OBJECT_ID, this::load);
+
+    assertThat(loads).hasValue(2);
+  }
+
+  @Test
+  public void test_failed_load_is_not_cached() {
+    val thrown = catchThrowable(() -> cache.get(OBJECT_ID, objectId -> {
+      throw new IdNotFoundException(objectId);
+    }));
+    assertThat(thrown).isInstanceOf(IdNotFoundException.class);
+
+    assertThat(cache.get(OBJECT_ID, this::load).getObjectId()).isEqualTo(OBJECT_ID);
+  }
+
+  private ObjectSpecification load(String objectId) {
+    loads.incrementAndGet();
+    val parts = ImmutableList.of(new Part(1, 10, 0, "url-1", null, "md5-1"), new Part(2, 5, 10, "url-2", null, "md5-2"));
+    return new ObjectSpecification("data/" + objectId, objectId, objectId, parts, 15, "md5", true);
+  }
+
+}
@@ -0,0 +1,141 @@
+/*
+ * Copyright (c) 2016 The Ontario Institute for Cancer Research. All rights reserved.                             
+ *                                                                                                               
+ * This program and the accompanying materials are made available under the terms of the GNU Public License v3.0.
+ * You should have received a copy of the GNU General Public License along with                                  
+ * this program. If not, see <http://www.gnu.org/licenses/>.                                                     
+ *                                                                                                               
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY                           
+ * EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES                          
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT                           
+ * SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,                                
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED                          
+ * TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS;                               
+ * OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER                              
+ * IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN                         
+ * ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package bio.overture.score.server.repository;
+
+import static com.google.common.collect.ImmutableList.of;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.File;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.Date;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.amazonaws.services.s3.model.MultipartUpload;
+
+import lombok.val;
+
+public class UploadCleanupServiceSweepTest {
+
+  /**
+   * Constants.
+   */
+  private static final String DATA_DIR = "data";
+
+  @Rule
+  public TemporaryFolder tmp = new TemporaryFolder();
+
+  /**
+   * Dependencies.
+   */
+  UploadService uploadService = mock(UploadService.class);
+
+  /**
+   * Subject.
+   */
+  UploadCleanupService cleanupService = new UploadCleanupService();
+
+  File checkpoint;
+
+  @Before
+  public void setUp() {
+    checkpoint = new File(tmp.getRoot(), "clean.json");
+
+    cleanupService.setDataDir(DATA_DIR);
+    cleanupService.setExpiration(7);
+    cleanupService.setThreads(2);
+    cleanupService.setRate(1000);
+    cleanupService.setPageSize(2);
+    cleanupService.setCheckpoint(checkpoint.getPath());
+    cleanupService.setUploadService(uploadService);
+  }
+
+  @Test
+  public void test_stale_uploads_are_cancelled_across_pages() {
+    val next = new UploadListing.Marker(0, DATA_DIR + "/object2", "upload2");
+    when(uploadService.listUploads(isNull(), eq(2)))
+        .thenReturn(new UploadListing(of(upload("object1", "upload1", 10), upload("object2", "upload2", 1)), next));
+    when(uploadService.listUploads(eq(next), eq(2)))
+        .thenReturn(new UploadListing(of(upload("object3", "upload3", 30)), null));
+
+    cleanupService.clean();
+
+    verify(uploadService).cancelUpload("object1", "upload1");
+    verify(uploadService).cancelUpload("object3", "upload3");
+    verify(uploadService, never()).cancelUpload("object2", "upload2");
+    assertThat(checkpoint).doesNotExist();
+  }
+
+  @Test
+  public void test_failed_cancellation_does_not_stop_the_sweep() {
+    when(uploadService.listUploads(isNull(), eq(2)))
+        .thenReturn(new UploadListing(of(upload("object1", "upload1", 10), upload("object2", "upload2", 10)), null));
+    doThrow(new RuntimeException("boom")).when(uploadService).cancelUpload("object1", "upload1");
+
+    cleanupService.clean();
+
+    verify(uploadService).cancelUpload("object2", "upload2");
+  }
+
+  @Test
+  public void test_interrupted_sweep_resumes_from_checkpoint() {
+    val next = new UploadListing.Marker(1, DATA_DIR + "/object2", "upload2");
+    when(uploadService.listUploads(isNull(), eq(2)))
+        .thenReturn(new UploadListing(of(upload("object1", "upload1", 10)), next));
+    when(uploadService.listUploads(eq(next), eq(2)))
+        .thenThrow(new RuntimeException("listing failed"))
+        .thenReturn(new UploadListing(of(upload("object3", "upload3", 10)), null));
+
+    try {
+      cleanupService.clean();
+    } catch (RuntimeException e) {
+      // Expected
+    }
+    assertThat(checkpoint).exists();
+
+    cleanupService.clean();
+
+    verify(uploadService, times(1)).listUploads(isNull(), eq(2));
+    verify(uploadService, times(1)).cancelUpload("object1", "upload1");
+    verify(uploadService).cancelUpload("object3", "upload3");
+    verify(uploadService, times(2)).cancelUpload(anyString(), anyString());
+    assertThat(checkpoint).doesNotExist();
+  }
+
+  private static MultipartUpload upload(String objectId, String uploadId, int ageDays) {
+    val upload = new MultipartUpload();
+    upload.setKey(DATA_DIR + "/" + objectId);
+    upload.setUploadId(uploadId);
+    upload.setInitiated(Date.from(Instant.now().minus(ageDays, ChronoUnit.DAYS)));
+    return upload;
+  }
+
+}
@@ -22,6 +22,7 @@ import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
@@ -36,14 +37,20 @@ import bio.overture.score.server.repository.s3.S3UploadStateStore;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.MockitoJUnitRunner;
 
 import com.amazonaws.services.s3.AmazonS3;
+import com.amazonaws.services.s3.model.DeleteObjectsRequest;
+import com.amazonaws.services.s3.model.DeleteObjectsRequest.KeyVersion;
+import com.amazonaws.services.s3.model.ListObjectsRequest;
+import com.amazonaws.services.s3.model.ObjectListing;
 import com.amazonaws.services.s3.model.ObjectMetadata;
 import com.amazonaws.services.s3.model.S3Object;
 import com.amazonaws.services.s3.model.S3ObjectInputStream;
+import com.amazonaws.services.s3.model.S3ObjectSummary;
 
 @RunWith(MockitoJUnitRunner.class)
 public class UploadStateStoreTest {
@@ -116,6 +123,29 @@ public class UploadStateStoreTest {
     assertThat(spec.getUploadId()).isEqualTo(uploadId);
   }
 
+  @Test
+  public void testDelete() throws Exception {
+    val objectId = "objectId1";
+    val uploadId = "uploadId1";
+    val listing = new ObjectListing();
+    for (val partName : new String[] { "part-00000001|{}", "part-00000002|{}" }) {
+      val summary = new S3ObjectSummary();
+      summary.setKey("upload/" + objectId + "_" + uploadId + "/" + partName);
+      listing.getObjectSummaries().add(summary);
+    }
+    when(s3Client.listObjects(any(ListObjectsRequest.class))).thenReturn(listing);
+
+    store.init();
+    store.delete(objectId, uploadId);
+    store.destroy();
+
+    val requests = ArgumentCaptor.forClass(DeleteObjectsRequest.class);
+    verify(s3Client, times(2)).deleteObjects(requests.capture());
+    assertThat(requests.getAllValues().get(0).getKeys()).extracting(KeyVersion::getKey)
+        .containsExactly("upload/" + objectId + "_" + uploadId + "/.meta");
+    assertThat(requests.getAllValues().get(1).getKeys()).hasSize(2);
+  }
+
   @Test
   public void testFormatUploadPartName() throws Exception {
     val partNumber = 17;
@@ -0,0 +1,52 @@
+/*
+ * Copyright (c) 2016 The Ontario Institute for Cancer Research. All rights reserved.                             
+ *                                                                                                               
+ * This program and the accompanying materials are made available under the terms of the GNU Public License v3.0.
+ * You should have received a copy of the GNU General Public License along with                                  
+ * this program. If not, see <http://www.gnu.org/licenses/>.                                                     
+ *                                                                                                               
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY                           
+ * EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES                          
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT                           
+ * SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,                                
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED                          
+ * TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS;                               
+ * OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER                              
+ * IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN                         
+ * ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package bio.overture.score.server.repository.azure;
+
+import bio.overture.score.core.model.Part;
+import bio.overture.score.server.exception.NotRetryableException;
+import bio.overture.score.server.repository.URLGenerator;
+import lombok.val;
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class AzureUploadServiceTest {
+
+  @Test
+  public void test_every_requested_part_gets_the_blob_url() {
+    val urlGenerator = mock(URLGenerator.class);
+    when(urlGenerator.getUploadPartUrl(eq(""), any(), eq(""), any(Part.class), any())).thenReturn("blob-url");
+    val service = new AzureUploadService();
+    service.setUrlGenerator(urlGenerator);
+
+    val parts = service.getUploadPartUrls("object-id", "", 3, 2);
+
+    assertThat(parts).extracting(Part::getPartNumber).containsExactly(3, 4);
+    assertThat(parts).extracting(Part::getUrl).containsOnly("blob-url");
+  }
+
+  @Test(expected = NotRetryableException.class)
+  public void test_no_parts_are_rejected() {
+    new AzureUploadService().getUploadPartUrls("object-id", "", 1, 0);
+  }
+
+}
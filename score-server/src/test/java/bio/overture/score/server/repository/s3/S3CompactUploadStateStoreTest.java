@@ -0,0 +1,176 @@
+/*
+ * Copyright (c) 2016 The Ontario Institute for Cancer Research. All rights reserved.                             
+ *                                                                                                               
+ * This program and the accompanying materials are made available under the terms of the GNU Public License v3.0.
+ * You should have received a copy of the GNU General Public License along with                                  
+ * this program. If not, see <http://www.gnu.org/licenses/>.                                                     
+ *                                                                                                               
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY                           
+ * EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES                          
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT                           
+ * SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,                                
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED                          
+ * TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS;                               
+ * OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER                              
+ * IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN                         
+ * ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package bio.overture.score.server.repository.s3;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.util.Map;
+
+import bio.overture.score.core.model.ObjectSpecification;
+import bio.overture.score.core.model.Part;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.amazonaws.services.s3.AmazonS3;
+import com.amazonaws.services.s3.model.AmazonS3Exception;
+import com.amazonaws.services.s3.model.DeleteObjectsRequest;
+import com.amazonaws.services.s3.model.GetObjectRequest;
+import com.amazonaws.services.s3.model.ListObjectsRequest;
+import com.amazonaws.services.s3.model.ObjectMetadata;
+import com.amazonaws.services.s3.model.S3Object;
+import com.amazonaws.services.s3.model.S3ObjectInputStream;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Maps;
+import com.google.common.io.ByteStreams;
+
+import lombok.SneakyThrows;
+import lombok.val;
+
+public class S3CompactUploadStateStoreTest {
+
+  /**
+   * Constants.
+   */
+  private static final String BUCKET_NAME = "oicr.icgc";
+  private static final String OBJECT_ID = "objectId1";
+  private static final String UPLOAD_ID = "uploadId1";
+
+  /**
+   * Dependencies.
+   */
+  AmazonS3 s3Client = mock(AmazonS3.class);
+  Map<String, byte[]> objects = Maps.newConcurrentMap();
+
+  /**
+   * Subject.
+   */
+  S3CompactUploadStateStore store = new S3CompactUploadStateStore();
+
+  @Before
+  @SneakyThrows
+  public void setUp() {
+    val namingService = new S3BucketNamingService();
+    namingService.setObjectBucketName(BUCKET_NAME);
+    namingService.setStateBucketName(BUCKET_NAME);
+    namingService.setBucketPoolSize(0);
+
+    store.setS3Client(s3Client);
+    store.setBucketNamingService(namingService);
+    store.setUploadDir("upload");
+    store.setCompactionThreshold(3);
+    store.init();
+
+    // A bucket held in memory
+    when(s3Client.putObject(anyString(), anyString(), any(InputStream.class), any(ObjectMetadata.class)))
+        .then(invocation -> {
+          objects.put(invocation.getArgument(1), ByteStreams.toByteArray(invocation.<InputStream> getArgument(2)));
+          return null;
+        });
+    when(s3Client.getObject(anyString(), anyString())).then(invocation -> get(invocation.getArgument(1)));
+    when(s3Client.getObject(any(GetObjectRequest.class)))
+        .then(invocation -> get(invocation.<GetObjectRequest> getArgument(0).getKey()));
+    when(s3Client.deleteObjects(any(DeleteObjectsRequest.class))).then(invocation -> {
+      invocation.<DeleteObjectsRequest> getArgument(0).getKeys().forEach(key -> objects.remove(key.getKey()));
+      return null;
+    });
+  }
+
+  @Test
+  public void test_completed_parts_survive_compaction() {
+    store.create(spec(5));
+    for (int partNumber = 1; partNumber <= 4; partNumber++) {
+      store.finalizeUploadPart(OBJECT_ID, UPLOAD_ID, partNumber, "md5-" + partNumber, "etag-" + partNumber);
+    }
+
+    assertThat(objects).containsKey("upload/" + OBJECT_ID + "_" + UPLOAD_ID + "/.state");
+    assertThat(store.isCompleted(OBJECT_ID, UPLOAD_ID)).isFalse();
+
+    store.finalizeUploadPart(OBJECT_ID, UPLOAD_ID, 5, "md5-5", "etag-5");
+
+    assertThat(store.isCompleted(OBJECT_ID, UPLOAD_ID)).isTrue();
+    val details = store.getUploadStatePartDetails(OBJECT_ID, UPLOAD_ID);
+    assertThat(details).hasSize(5);
+    assertThat(details.get(2).getMd5()).isEqualTo("md5-2");
+    assertThat(details.get(2).getEtag().getETag()).isEqualTo("etag-2");
+    verify(s3Client, never()).listObjects(any(ListObjectsRequest.class));
+  }
+
+  @Test
+  public void test_deleted_parts_are_no_longer_completed() {
+    val spec = spec(3);
+    store.create(spec);
+    for (int partNumber = 1; partNumber <= 3; partNumber++) {
+      store.finalizeUploadPart(OBJECT_ID, UPLOAD_ID, partNumber, "md5-" + partNumber, "etag-" + partNumber);
+    }
+
+    store.deletePart(OBJECT_ID, UPLOAD_ID, 2);
+
+    assertThat(store.isCompleted(OBJECT_ID, UPLOAD_ID)).isFalse();
+    store.markCompletedParts(OBJECT_ID, UPLOAD_ID, spec.getParts());
+    assertThat(spec.getParts()).extracting(Part::getSourceMd5).containsExactly("md5-1", null, "md5-3");
+  }
+
+  @Test
+  public void test_delete_removes_all_state() {
+    store.create(spec(1));
+    store.finalizeUploadPart(OBJECT_ID, UPLOAD_ID, 1, "md5-1", "etag-1");
+
+    store.delete(OBJECT_ID, UPLOAD_ID);
+    store.destroy();
+
+    assertThat(objects).isEmpty();
+    verify(s3Client, never()).listObjects(any(ListObjectsRequest.class));
+  }
+
+  private S3Object get(String key) {
+    val content = objects.get(key);
+    if (content == null) {
+      val e = new AmazonS3Exception("Not Found");
+      e.setStatusCode(404);
+      throw e;
+    }
+
+    val obj = new S3Object();
+    obj.setObjectContent(new S3ObjectInputStream(new ByteArrayInputStream(content), null));
+    return obj;
+  }
+
+  private static ObjectSpecification spec(int partCount) {
+    val parts = ImmutableList.<Part> builder();
+    for (int partNumber = 1; partNumber <= partCount; partNumber++) {
+      parts.add(Part.builder().partNumber(partNumber).partSize(1).offset(partNumber - 1).build());
+    }
+
+    val spec = new ObjectSpecification();
+    spec.setObjectId(OBJECT_ID);
+    spec.setUploadId(UPLOAD_ID);
+    spec.setObjectKey("objectKey1");
+    spec.setObjectSize(partCount);
+    spec.setParts(parts.build());
+    return spec;
+  }
+
+}
@@ -3,6 +3,7 @@ package bio.overture.score.server.repository.s3;
 import bio.overture.score.server.exception.NotRetryableException;
 import bio.overture.score.server.metadata.MetadataEntity;
 import bio.overture.score.server.metadata.MetadataService;
+import bio.overture.score.server.repository.ObjectSpecificationCache;
 import lombok.extern.slf4j.Slf4j;
 import lombok.val;
 import org.junit.Before;
@@ -32,6 +33,7 @@ public class S3DownloadServiceTest {
     public void set_up(){
         mockService = mock(MetadataService.class);
         s3DownloadService.setMetadataService(mockService);
+        s3DownloadService.setSpecificationCache(new ObjectSpecificationCache(0, 0));
         metadataEntity = MetadataEntity.builder()
                 .id(objectId)
                 .fileName("file_1")
@@ -0,0 +1,96 @@
+/*
+ * Copyright (c) 2016 The Ontario Institute for Cancer Research. All rights reserved.                             
+ *                                                                                                               
+ * This program and the accompanying materials are made available under the terms of the GNU Public License v3.0.
+ * You should have received a copy of the GNU General Public License along with                                  
+ * this program. If not, see <http://www.gnu.org/licenses/>.                                                     
+ *                                                                                                               
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY                           
+ * EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES                          
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT                           
+ * SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,                                
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED                          
+ * TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS;                               
+ * OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER                              
+ * IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN                         
+ * ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package bio.overture.score.server.repository.s3;
+
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import bio.overture.score.core.model.CompletedPart;
+import bio.overture.score.server.exception.NotRetryableException;
+import bio.overture.score.server.repository.ObjectSpecificationCache;
+import bio.overture.score.server.repository.UploadStateStore;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.amazonaws.services.s3.AmazonS3;
+import com.amazonaws.services.s3.model.ListPartsRequest;
+import com.amazonaws.services.s3.model.PartListing;
+import com.amazonaws.services.s3.model.PartSummary;
+import com.google.common.collect.ImmutableList;
+
+import lombok.val;
+
+public class S3UploadServiceFinalizePartsTest {
+
+  /**
+   * Constants.
+   */
+  private static final String OBJECT_ID = "a82efa12-9aaf-5c6b-b1d3-2c4ab1d7d8e4";
+  private static final String UPLOAD_ID = "uploadId1";
+
+  /**
+   * Dependencies.
+   */
+  AmazonS3 s3Client = mock(AmazonS3.class);
+  UploadStateStore stateStore = mock(UploadStateStore.class);
+
+  /**
+   * Subject.
+   */
+  S3UploadService service = new S3UploadService();
+
+  @Before
+  public void setUp() {
+    val namingService = new S3BucketNamingService();
+    namingService.setObjectBucketName("oicr.icgc");
+    namingService.setStateBucketName("oicr.icgc");
+    namingService.setBucketPoolSize(0);
+
+    service.setDataDir("data");
+    service.setS3Client(s3Client);
+    service.setBucketNamingService(namingService);
+    service.setStateStore(stateStore);
+    service.setSpecificationCache(new ObjectSpecificationCache(0, 0));
+  }
+
+  @Test
+  public void test_parts_are_verified_with_one_listing_and_recorded_together() {
+    val listing = new PartListing();
+    for (int partNumber = 1; partNumber <= 4; partNumber++) {
+      val summary = new PartSummary();
+      summary.setPartNumber(partNumber);
+      summary.setETag("etag-" + partNumber);
+      listing.getParts().add(summary);
+    }
+    when(s3Client.listParts(any(ListPartsRequest.class))).thenReturn(listing);
+
+    val valid = new CompletedPart(2, "md5-2", "etag-2");
+    val parts = ImmutableList.of(valid, new CompletedPart(3, "md5-3", "other"), new CompletedPart(5, "md5-5", "etag-5"));
+
+    assertThatThrownBy(() -> service.finalizeUploadParts(OBJECT_ID, UPLOAD_ID, parts))
+        .isInstanceOf(NotRetryableException.class)
+        .hasMessageContaining("[3, 5]");
+    verify(s3Client, times(1)).listParts(any(ListPartsRequest.class));
+    verify(stateStore).finalizeUploadParts(OBJECT_ID, UPLOAD_ID, ImmutableList.of(valid));
+  }
+
+}
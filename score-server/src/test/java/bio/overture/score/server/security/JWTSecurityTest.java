@@ -281,10 +281,12 @@ public class JWTSecurityTest {
         when(metadataService.getAnalysisStateForMetadata(metaData)).thenReturn(PUBLISHED);
 
         val dummyObject = ObjectSpecification.builder().objectId(EXISTING_OBJECT_ID).build();
-        when(downloadService.download(eq(EXISTING_OBJECT_ID), anyLong(), anyLong(), anyBoolean(), anyBoolean())).thenReturn(dummyObject);
+        when(downloadService.download(eq(EXISTING_OBJECT_ID), anyLong(), anyLong(), anyBoolean(), anyBoolean(),
+            anyBoolean())).thenReturn(dummyObject);
 
         val newObjectSpec = ObjectSpecification.builder().objectId(EXISTING_OBJECT_ID).build();
-        when(uploadService.initiateUpload(eq(EXISTING_OBJECT_ID), anyByte(), anyString(), anyBoolean())).thenReturn(newObjectSpec);
+        when(uploadService.initiateUpload(eq(EXISTING_OBJECT_ID), anyByte(), anyString(), anyBoolean(),
+            anyBoolean())).thenReturn(newObjectSpec);
     }
 
     enum ScopeOptions {
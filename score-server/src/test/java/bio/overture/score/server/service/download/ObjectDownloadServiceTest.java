@@ -20,9 +20,12 @@ package bio.overture.score.server.service.download;
 import bio.overture.score.core.util.ObjectKeys;
 import bio.overture.score.core.util.SimplePartCalculator;
 import bio.overture.score.server.config.ServerConfig;
+import bio.overture.score.core.model.Part;
 import bio.overture.score.server.exception.IdNotFoundException;
+import bio.overture.score.server.exception.NotRetryableException;
 import bio.overture.score.server.metadata.MetadataEntity;
 import bio.overture.score.server.metadata.MetadataService;
+import bio.overture.score.server.repository.ObjectSpecificationCache;
 import bio.overture.score.server.repository.s3.S3BucketNamingService;
 import bio.overture.score.server.repository.s3.S3DownloadService;
 import bio.overture.score.server.repository.s3.S3URLGenerator;
@@ -41,6 +44,7 @@ import org.springframework.test.context.ContextConfiguration;
 import org.springframework.test.util.ReflectionTestUtils;
 
 import java.net.URL;
+import java.util.Collections;
 import java.util.regex.Pattern;
 
 import static org.junit.Assert.assertEquals;
@@ -85,6 +89,7 @@ public class ObjectDownloadServiceTest extends S3DownloadService {
     namingService.setBucketKeySize(3);
     service.setBucketNamingService(namingService);
     service.setS3Client(s3Client);
+    service.setSpecificationCache(new ObjectSpecificationCache(0, 0));
 
     ReflectionTestUtils.setField(service, "dataDir", dataDir);
     ReflectionTestUtils.setField(service, "expiration", 7);
@@ -215,4 +220,38 @@ public class ObjectDownloadServiceTest extends S3DownloadService {
 
     System.out.println();
   }
+
+  @Test
+  public void verify_deferred_download_has_no_urls_until_signed() throws Exception {
+    val urlGen = new S3URLGenerator(this.s3Client);
+    ReflectionTestUtils.setField(urlGen, "s3Client",
+        ObjectDownloadServiceStubFactory.createS3ClientForRadosGW(endpointUrl));
+    ReflectionTestUtils.setField(service, "urlGenerator", urlGen);
+
+    val os = ObjectDownloadServiceStubFactory.createObjectSpecification(objectId,
+        ObjectKeys.getObjectKey(dataDir, objectId), 104857600);
+    os.setParts(ObjectDownloadServiceStubFactory.createParts(5));
+
+    val sut = spy(service);
+    doReturn(os).when(sut).getSpecification(objectId);
+
+    val objSpec = sut.download(objectId, 0, -1, false, false, true);
+    assertTrue(objSpec.getParts().stream().allMatch(part -> part.getUrl() == null));
+
+    val window = objSpec.getParts().subList(1, 3);
+    val signed = sut.getDownloadPartUrls(objectId, window);
+    assertEquals(2, signed.size());
+    assertTrue(signed.stream().allMatch(part -> part.getUrl() != null));
+  }
+
+  @Test(expected = NotRetryableException.class)
+  public void verify_part_urls_are_not_signed_past_the_object() {
+    val os = ObjectDownloadServiceStubFactory.createObjectSpecification(objectId,
+        ObjectKeys.getObjectKey(dataDir, objectId), 1000);
+
+    val sut = spy(service);
+    doReturn(os).when(sut).getSpecification(objectId);
+
+    sut.getDownloadPartUrls(objectId, Collections.singletonList(new Part(1, 1000, 500, null, null, null)));
+  }
 }
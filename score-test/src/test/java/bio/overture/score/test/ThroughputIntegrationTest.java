@@ -0,0 +1,332 @@
+/*
+ * Copyright (c) 2016 The Ontario Institute for Cancer Research. All rights reserved.                             
+ *                                                                                                               
+ * This program and the accompanying materials are made available under the terms of the GNU Public License v3.0.
+ * You should have received a copy of the GNU General Public License along with                                  
+ * this program. If not, see <http://www.gnu.org/licenses/>.                                                     
+ *                                                                                                               
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY                           
+ * EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES                          
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT                           
+ * SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,                                
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED                          
+ * TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS;                               
+ * OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER                              
+ * IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN                         
+ * ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package bio.overture.score.test;
+
+import static bio.overture.score.test.util.SpringBootProcess.bootRun;
+import static com.google.common.base.MoreObjects.firstNonNull;
+import static com.google.common.collect.ObjectArrays.concat;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.MINUTES;
+import static java.util.stream.Collectors.toList;
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.icgc.dcc.common.core.util.Splitters;
+import org.junit.After;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.common.base.Stopwatch;
+import com.google.common.hash.Hashing;
+import com.google.common.hash.HashingOutputStream;
+import com.google.common.primitives.Longs;
+
+import bio.overture.score.test.auth.AuthClient;
+import bio.overture.score.test.benchmark.ThroughputReport;
+import bio.overture.score.test.benchmark.ThroughputReport.Latency;
+import bio.overture.score.test.benchmark.ThroughputReport.Result;
+import bio.overture.score.test.meta.Entity;
+import bio.overture.score.test.util.JvmSampler;
+import lombok.SneakyThrows;
+import lombok.val;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * End-to-end throughput harness. Launches score-server against the local S3 stand-in and sweeps
+ * {@code transport.fileFrom}, {@code transport.parallel} and the server part size, uploading and then downloading
+ * with {@code benchmark.clients} concurrent score-client processes per configuration. Results are written to
+ * {@code benchmark.report}.
+ * <p>
+ * Only runs when asked to, e.g.:
+ * 
+ * <pre>
+ * mvn -pl score-test test -Dtest=ThroughputIntegrationTest -Dbenchmark=true -Dbenchmark.size=512 \
+ *     -Dbenchmark.fileFrom=remote,direct,async -Dbenchmark.parallel=4,8 -Dbenchmark.partSizes=20,64
+ * </pre>
+ */
+@Slf4j
+public class ThroughputIntegrationTest extends AbstractStorageIntegrationTest {
+
+  /**
+   * Configuration.
+   */
+  final long payloadSize = Long.getLong("benchmark.size", 1024) * 1024 * 1024;
+  final int clients = Integer.getInteger("benchmark.clients", 1);
+  final List<String> fileFroms = list("benchmark.fileFrom", "memory,remote,direct,pooled,async");
+  final List<Integer> parallels = list("benchmark.parallel", "2,6,12").stream().map(Integer::valueOf)
+      .collect(toList());
+  final List<Long> partSizes = list("benchmark.partSizes", "20,64").stream()
+      .map(size -> Long.valueOf(size) * 1024 * 1024).collect(toList());
+  final int timeoutMinutes = Integer.getInteger("benchmark.timeout", 30);
+  final File reportFile = new File(System.getProperty("benchmark.report", "target/benchmark/throughput.json"));
+  final boolean enabled = Boolean.getBoolean("benchmark");
+
+  /**
+   * State.
+   */
+  final ThroughputReport report = new ThroughputReport();
+  final int serverJmxPort = JvmSampler.freePort();
+  long partSize = partSizes.isEmpty() ? 20 * 1024 * 1024 : partSizes.get(0);
+  String accessToken;
+  List<Entity> payloads;
+
+  @Before
+  @Override
+  public void setUp() throws Exception {
+    Assume.assumeTrue("Set -Dbenchmark=true to run the throughput harness", enabled);
+
+    banner("THROUGHPUT HARNESS");
+    super.setUp();
+
+    banner("Registering " + clients + " payload(s) of " + payloadSize + " bytes...");
+    accessToken = new AuthClient("https://localhost:" + authPort).createAccessToken();
+    register();
+  }
+
+  @After
+  @Override
+  public void tearDown() {
+    if (!enabled) {
+      return;
+    }
+
+    if (accessToken != null) {
+      report.write(reportFile);
+      log.info("Wrote throughput report to {}", reportFile.getAbsolutePath());
+    }
+    super.tearDown();
+  }
+
+  @Test
+  public void test_throughput() throws InterruptedException {
+    for (val size : partSizes) {
+      restartStorageServer(size);
+
+      for (val fileFrom : fileFroms) {
+        for (val parallel : parallels) {
+          banner(String.format("%s, parallel = %d, part size = %d", fileFrom, parallel, size));
+          report.add(run("upload", fileFrom, parallel));
+          report.add(run("download", fileFrom, parallel));
+        }
+      }
+    }
+  }
+
+  private Result run(String direction, String fileFrom, int parallel) throws InterruptedException {
+    val upload = direction.equals("upload");
+    val latencies = new ArrayList<Long>();
+    s3.onCompleted((request, nanos) -> {
+      if (upload ? request.isUpload() : request.isDownload()) {
+        synchronized (latencies) {
+          latencies.add(nanos);
+        }
+      }
+    });
+
+    val processes = new ArrayList<Process>();
+    val samplers = new ArrayList<JvmSampler>();
+    val watch = Stopwatch.createStarted();
+    try (val serverSampler = new JvmSampler(serverJmxPort)) {
+      for (int i = 0; i < clients; i++) {
+        val payload = payloads.get(i);
+        val jmxPort = JvmSampler.freePort();
+        val settings = concat(JvmSampler.jmxProperties(jmxPort), new String[] {
+            "-Dtransport.fileFrom=" + fileFrom,
+            "-Dtransport.parallel=" + parallel }, String.class);
+
+        // --quiet is an option of the client itself, so it goes before the command
+        val args = upload ? new String[] {
+            "--quiet",
+            "upload",
+            "--verify-connection", "false",
+            "--force",
+            "--object-id", payload.getId(),
+            "--file", payloadFile(i).getPath() } : new String[] {
+                "--quiet",
+                "download",
+                "--verify-connection", "false",
+                "--force",
+                "--object-id", payload.getId(),
+                "--output-dir", new File(fs.getDownloadsDir(), fileFrom + "-" + parallel + "-" + i).getPath() };
+
+        processes.add(storageClient(accessToken, settings, args));
+        samplers.add(new JvmSampler(jmxPort));
+      }
+
+      for (val process : processes) {
+        assertThat(process.waitFor(timeoutMinutes, MINUTES)).isTrue();
+        assertThat(process.exitValue()).isEqualTo(0);
+      }
+      watch.stop();
+      s3.reset();
+
+      val seconds = watch.elapsed(MILLISECONDS) / 1000.0;
+      val bytes = payloadSize * clients;
+      long[] nanos;
+      synchronized (latencies) {
+        nanos = Longs.toArray(latencies);
+      }
+
+      return Result.builder()
+          .direction(direction)
+          .fileFrom(fileFrom)
+          .parallel(parallel)
+          .partSize(partSize)
+          .clients(clients)
+          .bytes(bytes)
+          .seconds(seconds)
+          .megabytesPerSecond(bytes / 1024.0 / 1024.0 / seconds)
+          .partLatency(Latency.of(nanos))
+          .clientCpuSeconds(samplers.stream().mapToLong(JvmSampler::getCpuNanos).sum() / 1e9)
+          .clientPeakHeapBytes(samplers.stream().mapToLong(JvmSampler::getPeakHeapBytes).max().orElse(0))
+          .serverCpuSeconds(serverSampler.getCpuNanos() / 1e9)
+          .serverPeakHeapBytes(serverSampler.getPeakHeapBytes())
+          .build();
+    } finally {
+      samplers.forEach(JvmSampler::close);
+      processes.forEach(Process::destroy);
+    }
+  }
+
+  /**
+   * Writes the payloads next to the fixture and registers them with the metadata server.
+   */
+  @SneakyThrows
+  private void register() {
+    val gnosDir = new File(fs.getUploadsDir(), gnosId);
+    val manifest = new File(fs.getRootDir(), "throughput-manifest.txt");
+    try (val writer = new PrintWriter(manifest)) {
+      writer.println("gnos-id\tproject-code\tfilename\tmd5sum\taccess");
+      writer.printf("%s\tGUMBY-POKEY\t%s\tfad796f6be6a628f85e259200477c9a5\tcontrolled%n", gnosId,
+          new File(gnosDir, gnosId + ".xml").getPath());
+      for (int i = 0; i < clients; i++) {
+        val file = payloadFile(i);
+        writer.printf("%s\tGUMBY-POKEY\t%s\t%s\tcontrolled%n", gnosId, file.getPath(), generate(file, i));
+      }
+    }
+
+    val register = bootRun(
+        "dcc-metadata-client",
+        -1,
+        new String[] { "-i", gnosDir.getPath(), "-m", manifest.getPath(), "-o", fs.getRootDir().toString() },
+        "-Dspring.profiles.active=development",
+        "-Dlogging.file=" + fs.getLogsDir() + "/dcc-metadata-client.log",
+        "-Dserver.baseUrl=https://localhost:" + metadataPort,
+        "-DaccessToken=" + accessToken);
+    register.waitFor(1, MINUTES);
+    assertThat(register.exitValue()).isEqualTo(0);
+
+    payloads = new ArrayList<>();
+    for (int i = 0; i < clients; i++) {
+      val fileName = payloadFile(i).getName();
+      payloads.add(findEntities(gnosId).stream()
+          .filter(entity -> entity.getFileName().equals(fileName))
+          .findFirst().get());
+    }
+  }
+
+  /**
+   * @return the MD5 of {@code file} after filling it with {@code payloadSize} pseudo random bytes
+   */
+  @SneakyThrows
+  private String generate(File file, long seed) {
+    val random = new Random(seed);
+    val buffer = new byte[1024 * 1024];
+    try (val output = new HashingOutputStream(Hashing.md5(), new FileOutputStream(file))) {
+      for (long remaining = payloadSize; remaining > 0; remaining -= buffer.length) {
+        random.nextBytes(buffer);
+        output.write(buffer, 0, (int) Math.min(buffer.length, remaining));
+      }
+      return output.hash().toString();
+    }
+  }
+
+  private File payloadFile(int i) {
+    return new File(new File(fs.getUploadsDir(), gnosId), "payload-" + i + ".bin");
+  }
+
+  private void restartStorageServer(long partSize) throws InterruptedException {
+    if (storageServer != null && storageServer.isAlive() && this.partSize == partSize) {
+      return;
+    }
+
+    this.partSize = partSize;
+    if (storageServer != null) {
+      storageServer.destroy();
+      storageServer.waitFor(1, MINUTES);
+    }
+
+    banner("Starting score-server with part size " + partSize + "...");
+    storageServer();
+    waitForPort(storagePort);
+  }
+
+  @Override
+  Process storageServer() {
+    int debugPort = Integer.parseInt(System.getProperty("storage.server.debugPort", "-1"));
+
+    storageServer = bootRun(
+        "score-server",
+        debugPort,
+        concat(JvmSampler.jmxProperties(serverJmxPort), new String[] {
+            "-Dspring.profiles.active=dev,secure,default", // Secure
+            "-Dlogging.file=" + fs.getLogsDir() + "/score-server.log",
+            "-Dserver.port=" + storagePort,
+            "-Dbucket.name.object=oicr.icgc.dev",
+            "-Dbucket.name.state=oicr.icgc.dev.state",
+            "-Dupload.partsize=" + partSize,
+            "-Dauth.server.url=https://localhost:" + authPort + "/oauth/check_token",
+            "-Dauth.server.clientId=storage",
+            "-Dauth.server.clientsecret=pass",
+            "-Dmetadata.url=https://localhost:" + metadataPort,
+            "-Dendpoints.jmx.domain=storage" }, String.class));
+    return storageServer;
+  }
+
+  @Override
+  Process storageClient(String accessToken, String... args) {
+    return storageClient(accessToken, new String[] {}, args);
+  }
+
+  private Process storageClient(String accessToken, String[] settings, String... args) {
+    int debugPort = Integer.parseInt(firstNonNull(System.getProperty("storage.client.debugPort"), "-1"));
+
+    return bootRun(
+        "score-client",
+        debugPort,
+        args,
+        concat(settings, new String[] {
+            "-Dlogging.file=" + fs.getLogsDir() + "/score-client.log",
+            "-Dmetadata.url=https://localhost:" + metadataPort,
+            "-Dmetadata.ssl.enabled=false",
+            "-Dstorage.url=http://localhost:" + storagePort,
+            "-DaccessToken=" + accessToken }, String.class));
+  }
+
+  private static List<String> list(String property, String defaultValue) {
+    return Splitters.COMMA.splitToList(System.getProperty(property, defaultValue));
+  }
+
+}
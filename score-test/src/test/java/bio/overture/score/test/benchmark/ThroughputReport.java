@@ -0,0 +1,119 @@
+/*
+ * Copyright (c) 2016 The Ontario Institute for Cancer Research. All rights reserved.                             
+ *                                                                                                               
+ * This program and the accompanying materials are made available under the terms of the GNU Public License v3.0.
+ * You should have received a copy of the GNU General Public License along with                                  
+ * this program. If not, see <http://www.gnu.org/licenses/>.                                                     
+ *                                                                                                               
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY                           
+ * EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES                          
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT                           
+ * SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,                                
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED                          
+ * TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS;                               
+ * OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER                              
+ * IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN                         
+ * ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package bio.overture.score.test.benchmark;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+
+import lombok.Builder;
+import lombok.Data;
+import lombok.Getter;
+import lombok.SneakyThrows;
+import lombok.Value;
+import lombok.val;
+
+/**
+ * Machine readable result of a throughput sweep. Written as JSON, one entry per transfer configuration.
+ */
+@Getter
+public class ThroughputReport {
+
+  private final List<Result> results = new ArrayList<>();
+
+  public synchronized void add(Result result) {
+    results.add(result);
+  }
+
+  @SneakyThrows
+  public synchronized void write(File file) {
+    file.getParentFile().mkdirs();
+    new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT).writeValue(file, this);
+  }
+
+  @Value
+  @Builder
+  public static class Result {
+
+    /**
+     * Configuration.
+     */
+    String direction;
+    String fileFrom;
+    int parallel;
+    long partSize;
+    int clients;
+
+    /**
+     * Measurements.
+     */
+    long bytes;
+    double seconds;
+    double megabytesPerSecond;
+    Latency partLatency;
+    double clientCpuSeconds;
+    long clientPeakHeapBytes;
+    double serverCpuSeconds;
+    long serverPeakHeapBytes;
+
+  }
+
+  /**
+   * Percentiles of the time the S3 stand-in spent serving each part, in milliseconds.
+   */
+  @Data
+  public static class Latency {
+
+    long count;
+    double p50;
+    double p90;
+    double p99;
+    double max;
+
+    public static Latency of(long[] nanos) {
+      val latency = new Latency();
+      if (nanos.length == 0) {
+        return latency;
+      }
+
+      val sorted = nanos.clone();
+      Arrays.sort(sorted);
+      latency.setCount(sorted.length);
+      latency.setP50(millis(percentile(sorted, 0.50)));
+      latency.setP90(millis(percentile(sorted, 0.90)));
+      latency.setP99(millis(percentile(sorted, 0.99)));
+      latency.setMax(millis(sorted[sorted.length - 1]));
+      return latency;
+    }
+
+    private static long percentile(long[] sorted, double quantile) {
+      val index = (int) Math.ceil(quantile * sorted.length) - 1;
+      return sorted[Math.max(0, index)];
+    }
+
+    private static double millis(long nanos) {
+      return nanos / 1e6;
+    }
+
+  }
+
+}
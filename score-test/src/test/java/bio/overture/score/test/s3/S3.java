@@ -22,6 +22,7 @@ import static com.google.common.base.Preconditions.checkState;
 import java.io.File;
 import java.util.function.Consumer;
 import java.util.function.Function;
+import java.util.function.ObjLongConsumer;
 
 import lombok.Getter;
 import lombok.val;
@@ -59,8 +60,13 @@ public class S3 {
     });
   }
 
+  public void onCompleted(ObjLongConsumer<S3Request> timer) {
+    getController().setTimer(timer);
+  }
+
   public void reset() {
     getController().unsetHandler();
+    getController().unsetTimer();
   }
 
   public void stop() {
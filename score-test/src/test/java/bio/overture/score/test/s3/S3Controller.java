@@ -22,6 +22,7 @@ import static java.util.stream.Collectors.joining;
 import java.util.List;
 import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.Function;
+import java.util.function.ObjLongConsumer;
 
 import com.google.common.collect.ImmutableList;
 
@@ -44,11 +45,13 @@ public class S3Controller extends ninja.S3Controller implements Controller {
    */
   private static final int PRIORITY = 0; // Needs to be lower than all @Routed priorities in super
   private static final Function<S3Request, Boolean> DEFAULT_HANDLER = (request) -> false;
+  private static final ObjLongConsumer<S3Request> DEFAULT_TIMER = (request, nanos) -> {};
 
   /**
    * Configuration.
    */
   private final AtomicReference<Function<S3Request, Boolean>> handler = new AtomicReference<>(DEFAULT_HANDLER);
+  private final AtomicReference<ObjLongConsumer<S3Request>> timer = new AtomicReference<>(DEFAULT_TIMER);
 
   public void setHandler(@NonNull Function<S3Request, Boolean> handler) {
     this.handler.set(handler);
@@ -58,6 +61,17 @@ public class S3Controller extends ninja.S3Controller implements Controller {
     setHandler(DEFAULT_HANDLER);
   }
 
+  /**
+   * Receives every object request along with the nanoseconds spent serving it.
+   */
+  public void setTimer(@NonNull ObjLongConsumer<S3Request> timer) {
+    this.timer.set(timer);
+  }
+
+  public void unsetTimer() {
+    setTimer(DEFAULT_TIMER);
+  }
+
   @Override
   @Routed(value = "/s3/:1/:2/**", priority = PRIORITY)
   public void object(WebContext ctx, String bucketName, String objectId, List<String> idList) throws Exception {
@@ -67,7 +81,9 @@ public class S3Controller extends ninja.S3Controller implements Controller {
       return;
     }
 
+    val start = System.nanoTime();
     super.object(ctx, bucketName, objectId, idList);
+    timer.get().accept(request, System.nanoTime() - start);
   }
 
   @Override
@@ -80,7 +96,9 @@ public class S3Controller extends ninja.S3Controller implements Controller {
       return;
     }
 
+    val start = System.nanoTime();
     super.object(ctx, bucketName, objectId, idList, in);
+    timer.get().accept(request, System.nanoTime() - start);
   }
 
   @Override
@@ -0,0 +1,139 @@
+/*
+ * Copyright (c) 2016 The Ontario Institute for Cancer Research. All rights reserved.                             
+ *                                                                                                               
+ * This program and the accompanying materials are made available under the terms of the GNU Public License v3.0.
+ * You should have received a copy of the GNU General Public License along with                                  
+ * this program. If not, see <http://www.gnu.org/licenses/>.                                                     
+ *                                                                                                               
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY                           
+ * EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES                          
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT                           
+ * SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,                                
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED                          
+ * TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS;                               
+ * OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER                              
+ * IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN                         
+ * ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package bio.overture.score.test.util;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+
+import javax.management.MBeanServerConnection;
+import javax.management.ObjectName;
+import javax.management.openmbean.CompositeData;
+import javax.management.remote.JMXConnector;
+import javax.management.remote.JMXConnectorFactory;
+import javax.management.remote.JMXServiceURL;
+
+import lombok.Getter;
+import lombok.SneakyThrows;
+import lombok.val;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Polls the CPU time and heap usage of a forked JVM over JMX. The JVM must have been started with
+ * {@link #jmxProperties(int)}.
+ * <p>
+ * Samples are taken every {@value #INTERVAL_MS} ms, so the CPU time of a process that exits is short by at most one
+ * interval.
+ */
+@Slf4j
+public class JvmSampler implements Closeable {
+
+  /**
+   * Constants.
+   */
+  private static final long INTERVAL_MS = 250;
+  private static final String MEMORY = "java.lang:type=Memory";
+  private static final String OPERATING_SYSTEM = "java.lang:type=OperatingSystem";
+
+  /**
+   * Configuration.
+   */
+  private final int port;
+
+  /**
+   * State.
+   */
+  private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+  private JMXConnector connector;
+  private long firstCpuNanos = -1;
+  private long lastCpuNanos = -1;
+  @Getter
+  private long peakHeapBytes;
+
+  public JvmSampler(int port) {
+    this.port = port;
+    scheduler.scheduleWithFixedDelay(this::sample, 0, INTERVAL_MS, MILLISECONDS);
+  }
+
+  public static String[] jmxProperties(int port) {
+    return new String[] {
+        "-Dcom.sun.management.jmxremote.port=" + port,
+        "-Dcom.sun.management.jmxremote.rmi.port=" + port,
+        "-Dcom.sun.management.jmxremote.authenticate=false",
+        "-Dcom.sun.management.jmxremote.ssl=false" };
+  }
+
+  @SneakyThrows
+  public static int freePort() {
+    try (val socket = new ServerSocket(0)) {
+      return socket.getLocalPort();
+    }
+  }
+
+  /**
+   * @return the CPU time consumed by the process between the first and the last sample
+   */
+  public synchronized long getCpuNanos() {
+    return firstCpuNanos < 0 ? 0 : lastCpuNanos - firstCpuNanos;
+  }
+
+  @Override
+  public void close() {
+    scheduler.shutdownNow();
+    disconnect();
+  }
+
+  private synchronized void sample() {
+    try {
+      if (connector == null) {
+        val url = new JMXServiceURL("service:jmx:rmi:///jndi/rmi://localhost:" + port + "/jmxrmi");
+        connector = JMXConnectorFactory.connect(url);
+      }
+
+      MBeanServerConnection connection = connector.getMBeanServerConnection();
+      val cpuNanos = (Long) connection.getAttribute(new ObjectName(OPERATING_SYSTEM), "ProcessCpuTime");
+      val heap = (CompositeData) connection.getAttribute(new ObjectName(MEMORY), "HeapMemoryUsage");
+
+      if (firstCpuNanos < 0) {
+        firstCpuNanos = cpuNanos;
+      }
+      lastCpuNanos = cpuNanos;
+      peakHeapBytes = Math.max(peakHeapBytes, (Long) heap.get("used"));
+    } catch (Exception e) {
+      // Not up yet or already gone
+      log.debug("Could not sample JVM on port {}: {}", port, e.getMessage());
+      disconnect();
+    }
+  }
+
+  private synchronized void disconnect() {
+    if (connector != null) {
+      try {
+        connector.close();
+      } catch (IOException e) {
+        // Ignore
+      }
+      connector = null;
+    }
+  }
+
+}